@@ -0,0 +1,50 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Takes the usual JMH arguments, but adds the GC
+ * profiler ("-prof gc") when no profiler is given, so allocation per operation is
+ * always part of the results.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options;
+        try {
+            options = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        // Listing and help are handled by the stock JMH entry point
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams() ||
+            options.shouldListProfilers() || options.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (options.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+
+        try {
+            new Runner(builder.build()).run();
+        } catch (RunnerException e) {
+            System.err.println("Benchmark run failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Just enough of a Bukkit server to run the plugin's block code outside of Minecraft.
+ * Block data is a plain state string and a material; nothing else about the server exists.
+ */
+public final class Headless {
+    private static final Map<String, BlockData> BLOCK_DATA = new ConcurrentHashMap<>();
+    private static boolean initialized;
+
+    private Headless() {
+    }
+
+    /**
+     * Install the headless server, if it isn't installed already.
+     */
+    public static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+
+        Server server = (Server) Proxy.newProxyInstance(Headless.class.getClassLoader(),
+            new Class<?>[] { Server.class }, Headless::handleServer);
+
+        // Set the field directly, since setServer prints build information we don't have
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not install the headless server", e);
+        }
+        initialized = true;
+    }
+
+    /**
+     * Get the block data for a block state string, such as "minecraft:oak_stairs[facing=north]".
+     * @param state The block state string
+     * @return The block data
+     */
+    public static BlockData blockData(String state) {
+        String normalized = state.indexOf(':') < 0 ? "minecraft:" + state : state;
+        return BLOCK_DATA.computeIfAbsent(normalized, Headless::createBlockData);
+    }
+
+    /**
+     * Get the default block data of a material.
+     * @param material The material
+     * @return The block data
+     */
+    public static BlockData blockData(Material material) {
+        return blockData("minecraft:" + material.name().toLowerCase(Locale.ROOT));
+    }
+
+    private static BlockData createBlockData(String state) {
+        int bracket = state.indexOf('[');
+        String id = bracket < 0 ? state : state.substring(0, bracket);
+        Material material = Material.matchMaterial(id);
+        if (material == null) {
+            throw new IllegalArgumentException("Unknown block: " + state);
+        }
+        return (BlockData) Proxy.newProxyInstance(Headless.class.getClassLoader(),
+            new Class<?>[] { BlockData.class }, new BlockDataHandler(state, material));
+    }
+
+    private static Object handleServer(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getLogger":
+                return java.util.logging.Logger.getLogger("Headless");
+            case "getName":
+            case "getVersion":
+            case "getBukkitVersion":
+                return "Headless";
+            case "createBlockData":
+                if (args[0] instanceof Material) {
+                    return blockData((Material) args[0]);
+                }
+                return blockData((String) args[0]);
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    /**
+     * Get the value a stubbed method returns.
+     * @param type The return type
+     * @return Zero, false or null
+     */
+    static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        return null;
+    }
+
+    /**
+     * Block data backed by its state string. Instances are shared, so clone returns itself.
+     */
+    private static class BlockDataHandler implements InvocationHandler {
+        private final String state;
+        private final Material material;
+
+        BlockDataHandler(String state, Material material) {
+            this.state = state;
+            this.material = material;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getAsString":
+                case "toString":
+                    return state;
+                case "getMaterial":
+                    return material;
+                case "clone":
+                    return proxy;
+                case "hashCode":
+                    return state.hashCode();
+                case "equals":
+                case "matches":
+                    return args[0] != null && Proxy.isProxyClass(args[0].getClass()) &&
+                           Proxy.getInvocationHandler(args[0]) instanceof BlockDataHandler &&
+                           ((BlockDataHandler) Proxy.getInvocationHandler(args[0])).state.equals(state);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.brushes.BrushManager;
+import org.frizzlenpop.frizzlenEdit.clipboard.ClipboardManager;
+import org.frizzlenpop.frizzlenEdit.config.ConfigManager;
+import org.frizzlenpop.frizzlenEdit.history.HistoryManager;
+import org.frizzlenpop.frizzlenEdit.operations.OperationManager;
+import org.frizzlenpop.frizzlenEdit.scheduler.SystemClock;
+import org.frizzlenpop.frizzlenEdit.scheduler.TaskScheduler;
+import org.frizzlenpop.frizzlenEdit.selection.SelectionManager;
+import org.frizzlenpop.frizzlenEdit.session.SessionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the plugin with its editing managers, without a server to load it. The plugin
+ * can't be constructed outside of a plugin class loader, so it is allocated without running
+ * its constructor and the fields the loader would set are filled in by hand.
+ *
+ * Only what editing needs is created: the session, selection, clipboard, history, operation
+ * and brush managers. Commands, listeners, schematics and the trace recorder are left out,
+ * and logging stays off.
+ */
+public final class HeadlessPlugin {
+
+    private HeadlessPlugin() {
+    }
+
+    /**
+     * Create the plugin.
+     * @param dataFolder The folder for the config, sessions and logs
+     * @param scheduler The main thread
+     * @param config Config values to use instead of the defaults, by key
+     * @return The plugin
+     */
+    public static FrizzlenEdit create(File dataFolder, TaskScheduler scheduler, Map<String, Object> config) {
+        Headless.init();
+        try {
+            FrizzlenEdit plugin = (FrizzlenEdit) unsafe().allocateInstance(FrizzlenEdit.class);
+
+            // What the plugin loader would have set up
+            File configFile = new File(dataFolder, "config.yml");
+            writeDefaultConfig(configFile);
+            YamlConfiguration yaml = YamlConfiguration.loadConfiguration(configFile);
+            config.forEach(yaml::set);
+            set(plugin, JavaPlugin.class, "server", Bukkit.getServer());
+            set(plugin, JavaPlugin.class, "dataFolder", dataFolder);
+            set(plugin, JavaPlugin.class, "configFile", configFile);
+            set(plugin, JavaPlugin.class, "newConfig", yaml);
+
+            // What onEnable sets up before the managers
+            ExecutorService asyncExecutor = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
+            set(null, FrizzlenEdit.class, "instance", plugin);
+            set(plugin, FrizzlenEdit.class, "asyncExecutor", asyncExecutor);
+            set(plugin, FrizzlenEdit.class, "taskScheduler", scheduler);
+            set(plugin, FrizzlenEdit.class, "clock", SystemClock.INSTANCE);
+
+            // The managers in the order onEnable creates them, since each may use the ones before it
+            set(plugin, FrizzlenEdit.class, "configManager", new ConfigManager(plugin));
+            set(plugin, FrizzlenEdit.class, "sessionManager", new SessionManager(plugin));
+            set(plugin, FrizzlenEdit.class, "selectionManager", new SelectionManager(plugin));
+            set(plugin, FrizzlenEdit.class, "clipboardManager", new ClipboardManager(plugin));
+            set(plugin, FrizzlenEdit.class, "historyManager", new HistoryManager(plugin));
+            set(plugin, FrizzlenEdit.class, "operationManager", new OperationManager(plugin));
+            set(plugin, FrizzlenEdit.class, "brushManager", new BrushManager(plugin));
+            return plugin;
+        } catch (ReflectiveOperationException | IOException e) {
+            throw new IllegalStateException("Could not create the headless plugin", e);
+        }
+    }
+
+    /**
+     * Shut the plugin down the way onDisable does, and stop its async threads.
+     * @param plugin The plugin
+     */
+    public static void shutdown(FrizzlenEdit plugin) {
+        plugin.getOperationManager().shutdown();
+        plugin.getAsyncExecutor().shutdown();
+        try {
+            plugin.getAsyncExecutor().awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        plugin.getSessionManager().shutdown();
+    }
+
+    private static void writeDefaultConfig(File configFile) throws IOException {
+        Files.createDirectories(configFile.getParentFile().toPath());
+        try (InputStream in = FrizzlenEdit.class.getResourceAsStream("/config.yml")) {
+            if (in != null) {
+                Files.copy(in, configFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                // Without the plugin's config, the config manager fills in every default
+                Files.write(configFile.toPath(), new byte[0]);
+            }
+        }
+    }
+
+    private static void set(Object target, Class<?> owner, String name, Object value) throws ReflectiveOperationException {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static sun.misc.Unsafe unsafe() throws ReflectiveOperationException {
+        Field field = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        return (sun.misc.Unsafe) field.get(null);
+    }
+}
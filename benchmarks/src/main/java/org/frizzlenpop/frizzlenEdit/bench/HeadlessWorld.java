@@ -0,0 +1,249 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A world that only stores block data in memory. Blocks that were never set are air.
+ */
+public class HeadlessWorld {
+    private final String name;
+    private final Map<Long, BlockData> blocks = new HashMap<>();
+    private final BlockData air;
+    private final World world;
+
+    /**
+     * Create a new empty world.
+     * @param name The world name
+     */
+    public HeadlessWorld(String name) {
+        Headless.init();
+        this.name = name;
+        this.air = Headless.blockData(Material.AIR);
+        this.world = (World) Proxy.newProxyInstance(HeadlessWorld.class.getClassLoader(),
+            new Class<?>[] { World.class }, this::handleWorld);
+    }
+
+    /**
+     * Get the Bukkit view of this world.
+     * @return The world
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Get the block data at a position.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The block data
+     */
+    public BlockData get(int x, int y, int z) {
+        return blocks.getOrDefault(key(x, y, z), air);
+    }
+
+    /**
+     * Set the block data at a position.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @param data The block data
+     */
+    public void set(int x, int y, int z, BlockData data) {
+        if (data.getMaterial() == Material.AIR) {
+            blocks.remove(key(x, y, z));
+        } else {
+            blocks.put(key(x, y, z), data);
+        }
+    }
+
+    /**
+     * Remove every block.
+     */
+    public void clear() {
+        blocks.clear();
+    }
+
+    /**
+     * Create a player standing in this world.
+     * @param playerName The player's name
+     * @return The player
+     */
+    public Player createPlayer(String playerName) {
+        return createPlayer(playerName, message -> { });
+    }
+
+    /**
+     * Create a player standing in this world, who hands the chat messages they are sent to
+     * a consumer. The consumer is called on whatever thread sends the message.
+     * @param playerName The player's name
+     * @param messages Receives the messages
+     * @return The player
+     */
+    public Player createPlayer(String playerName, Consumer<String> messages) {
+        return createPlayer(playerName, messages, () -> new Location(world, 0, 64, 0));
+    }
+
+    /**
+     * Create a player in this world who stands wherever a supplier says, and hands the chat
+     * messages they are sent to a consumer.
+     * @param playerName The player's name
+     * @param messages Receives the messages
+     * @param location Gives the player's location each time it is asked for
+     * @return The player
+     */
+    public Player createPlayer(String playerName, Consumer<String> messages, Supplier<Location> location) {
+        UUID uuid = UUID.nameUUIDFromBytes(playerName.getBytes());
+        return (Player) Proxy.newProxyInstance(HeadlessWorld.class.getClassLoader(),
+            new Class<?>[] { Player.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getWorld":
+                        return world;
+                    case "getName":
+                    case "getDisplayName":
+                        return playerName;
+                    case "getUniqueId":
+                        return uuid;
+                    case "isOnline":
+                    case "hasPermission":
+                    case "isOp":
+                        return true;
+                    case "getLocation":
+                        return location.get();
+                    case "sendMessage":
+                        if (args.length == 1 && args[0] instanceof String) {
+                            messages.accept((String) args[0]);
+                        }
+                        return null;
+                    case "hashCode":
+                        return uuid.hashCode();
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "HeadlessPlayer{" + playerName + "}";
+                    default:
+                        return Headless.defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    private Object handleWorld(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getName":
+                return name;
+            case "getBlockAt":
+                if (args.length == 1) {
+                    Location location = (Location) args[0];
+                    return block(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+                }
+                return block((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+            case "getBlockData":
+                if (args.length == 1) {
+                    Location location = (Location) args[0];
+                    return get(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+                }
+                return get((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+            case "getMinHeight":
+                return -64;
+            case "getMaxHeight":
+                return 320;
+            case "hashCode":
+                return name.hashCode();
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "HeadlessWorld{" + name + "}";
+            default:
+                return Headless.defaultValue(method.getReturnType());
+        }
+    }
+
+    private Block block(int x, int y, int z) {
+        return (Block) Proxy.newProxyInstance(HeadlessWorld.class.getClassLoader(),
+            new Class<?>[] { Block.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getBlockData":
+                        return get(x, y, z);
+                    case "setBlockData":
+                        set(x, y, z, (BlockData) args[0]);
+                        return null;
+                    case "getType":
+                        return get(x, y, z).getMaterial();
+                    case "setType":
+                        set(x, y, z, Headless.blockData((Material) args[0]));
+                        return null;
+                    case "isEmpty":
+                        return get(x, y, z).getMaterial().isAir();
+                    case "getState":
+                        return state(x, y, z, get(x, y, z));
+                    case "getX":
+                        return x;
+                    case "getY":
+                        return y;
+                    case "getZ":
+                        return z;
+                    case "getWorld":
+                        return world;
+                    case "getLocation":
+                        return new Location(world, x, y, z);
+                    case "hashCode":
+                        return Long.hashCode(key(x, y, z));
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return Headless.defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    private BlockState state(int x, int y, int z, BlockData data) {
+        return (BlockState) Proxy.newProxyInstance(HeadlessWorld.class.getClassLoader(),
+            new Class<?>[] { BlockState.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getBlockData":
+                        return data;
+                    case "getType":
+                        return data.getMaterial();
+                    case "getBlock":
+                        return block(x, y, z);
+                    case "getX":
+                        return x;
+                    case "getY":
+                        return y;
+                    case "getZ":
+                        return z;
+                    case "getWorld":
+                        return world;
+                    case "getLocation":
+                        return args == null || args.length == 0 ? new Location(world, x, y, z) : null;
+                    case "update":
+                        set(x, y, z, data);
+                        return true;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return Headless.defaultValue(method.getReturnType());
+                }
+            });
+    }
+}
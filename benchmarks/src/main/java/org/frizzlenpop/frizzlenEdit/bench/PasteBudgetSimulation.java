@@ -0,0 +1,206 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.operations.BatchPasteOperation;
+import org.frizzlenpop.frizzlenEdit.utils.ServerPerformanceMonitor;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Runs a large batch paste on a simulated server and checks the tick budget. Every block
+ * placed costs a fixed amount of simulated time, and every tick the rest of the server
+ * costs the configured load, so the run is the same on every machine. Exits with status 1
+ * if any tick spent more than the budget on the paste (plus the one block that crosses it),
+ * or if the blocks placed per tick never settle.
+ *
+ * Options, as "--name value" or "--name=value":
+ * --blocks        Blocks to paste, as a cube (default 5000000)
+ * --budget-ms     The paste's budget per tick (default 20)
+ * --block-us      Simulated cost of placing one block, in microseconds (default 15)
+ * --load-ms       Simulated cost of the rest of the server per tick (default 25)
+ * --spike-ms      Extra load on spike ticks (default 40)
+ * --spike-every   Ticks between spikes, or 0 for none (default 200)
+ * --batch-size    Base batch size (default 1000)
+ * --tolerance     Largest coefficient of variation of blocks per tick over the second
+ *                 half of the paste that still counts as settled (default 0.1)
+ */
+public final class PasteBudgetSimulation {
+    // Give up on pastes that take longer than this many ticks
+    private static final long MAX_TICKS = 1_000_000L;
+
+    private PasteBudgetSimulation() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = RegressionGate.parseOptions(args);
+        int blocks = Integer.parseInt(options.getOrDefault("blocks", "5000000"));
+        long budgetNanos = Long.parseLong(options.getOrDefault("budget-ms", "20")) * 1_000_000L;
+        long blockNanos = Long.parseLong(options.getOrDefault("block-us", "15")) * 1_000L;
+        long loadNanos = Long.parseLong(options.getOrDefault("load-ms", "25")) * 1_000_000L;
+        long spikeNanos = Long.parseLong(options.getOrDefault("spike-ms", "40")) * 1_000_000L;
+        int spikeEvery = Integer.parseInt(options.getOrDefault("spike-every", "200"));
+        int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "1000"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.1"));
+
+        Headless.init();
+        int side = (int) Math.ceil(Math.cbrt(blocks));
+        Clipboard clipboard = clipboard(side);
+        System.out.printf("Pasting %,d blocks (%d^3), budget %.1f ms, %.1f us per block%n",
+            clipboard.getVolume(), side, budgetNanos / 1e6, blockNanos / 1e3);
+
+        SimulatedClock clock = new SimulatedClock();
+        SimulatedScheduler scheduler = new SimulatedScheduler(clock);
+        scheduler.setServerLoad(tick -> spikeEvery > 0 && tick > 0 && tick % spikeEvery == 0 ? loadNanos + spikeNanos : loadNanos);
+        ServerPerformanceMonitor monitor = new ServerPerformanceMonitor(scheduler, clock);
+
+        Player player = new HeadlessWorld("simulation").createPlayer("simulation");
+        CostExtent extent = new CostExtent(new MemoryExtent("simulation", 0, side), clock, blockNanos);
+        boolean[] done = new boolean[1];
+        BatchPasteOperation operation = new BatchPasteOperation(scheduler, clock, monitor, player, new Vector3(0, 0, 0),
+            clipboard, false, batchSize, 1, (int) (budgetNanos / 1_000_000L), "Simulated paste", entry -> done[0] = true);
+        operation.setExtent(extent);
+        operation.execute();
+
+        // Paste time and blocks of every tick
+        long[] tickNanos = new long[1024];
+        int[] tickBlocks = new int[1024];
+        int ticks = 0;
+        while (!done[0] && scheduler.getCurrentTick() < MAX_TICKS) {
+            extent.reset();
+            scheduler.tick();
+            if (ticks == tickNanos.length) {
+                tickNanos = Arrays.copyOf(tickNanos, ticks * 2);
+                tickBlocks = Arrays.copyOf(tickBlocks, ticks * 2);
+            }
+            tickNanos[ticks] = extent.spentNanos;
+            tickBlocks[ticks] = extent.blocks;
+            ticks++;
+        }
+        monitor.shutdown();
+
+        if (!done[0]) {
+            System.err.println("Paste did not finish within " + MAX_TICKS + " ticks");
+            System.exit(1);
+        }
+
+        // The batch checks the budget after each block, so the block that crosses it is allowed
+        long limit = budgetNanos + blockNanos;
+        long worst = 0;
+        int overBudget = 0;
+        for (int i = 0; i < ticks; i++) {
+            worst = Math.max(worst, tickNanos[i]);
+            if (tickNanos[i] > limit) {
+                overBudget++;
+            }
+        }
+
+        // Blocks per tick over the second half, leaving out the last (partial) batch
+        int from = ticks / 2;
+        int to = Math.max(from + 1, ticks - 1);
+        double mean = 0;
+        for (int i = from; i < to; i++) {
+            mean += tickBlocks[i];
+        }
+        mean /= to - from;
+        double variance = 0;
+        for (int i = from; i < to; i++) {
+            variance += (tickBlocks[i] - mean) * (tickBlocks[i] - mean);
+        }
+        double variation = mean > 0 ? Math.sqrt(variance / (to - from)) / mean : 0;
+
+        System.out.printf("Finished in %,d ticks (%.1f s simulated), final TPS %.1f%n",
+            ticks, clock.nanoTime() / 1e9, monitor.getCurrentTps());
+        System.out.printf("Worst tick: %.2f ms of paste work, %d tick(s) over %.2f ms%n",
+            worst / 1e6, overBudget, limit / 1e6);
+        System.out.printf("Second half: %.0f blocks/tick, coefficient of variation %.3f%n", mean, variation);
+
+        boolean failed = false;
+        if (overBudget > 0) {
+            System.err.println("Paste went over its tick budget in " + overBudget + " tick(s)");
+            failed = true;
+        }
+        if (variation > tolerance) {
+            System.err.printf("Blocks per tick did not settle: variation %.3f is above %.3f%n", variation, tolerance);
+            failed = true;
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static Clipboard clipboard(int side) {
+        BlockData[] palette = {
+            Headless.blockData(Material.STONE),
+            Headless.blockData(Material.DIRT),
+            Headless.blockData(Material.OAK_PLANKS),
+            Headless.blockData(Material.GLASS)
+        };
+        Clipboard clipboard = new Clipboard(new Vector3(0, 0, 0), side, side, side);
+        for (int y = 0; y < side; y++) {
+            for (int z = 0; z < side; z++) {
+                for (int x = 0; x < side; x++) {
+                    clipboard.setBlock(new Vector3(x, y, z), palette[(x + y + z) & 3]);
+                }
+            }
+        }
+        return clipboard;
+    }
+
+    /**
+     * An extent that charges simulated time for every block placed and counts the work of
+     * the current tick.
+     */
+    private static class CostExtent implements Extent {
+        private final Extent delegate;
+        private final SimulatedClock clock;
+        private final long blockNanos;
+        private long spentNanos;
+        private int blocks;
+
+        CostExtent(Extent delegate, SimulatedClock clock, long blockNanos) {
+            this.delegate = delegate;
+            this.clock = clock;
+            this.blockNanos = blockNanos;
+        }
+
+        void reset() {
+            spentNanos = 0;
+            blocks = 0;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public int getMinY() {
+            return delegate.getMinY();
+        }
+
+        @Override
+        public int getMaxY() {
+            return delegate.getMaxY();
+        }
+
+        @Override
+        public BlockData getBlock(int x, int y, int z) {
+            return delegate.getBlock(x, y, z);
+        }
+
+        @Override
+        public boolean setBlock(int x, int y, int z, BlockData data) {
+            clock.advance(blockNanos);
+            spentNanos += blockNanos;
+            blocks++;
+            return delegate.setBlock(x, y, z, data);
+        }
+    }
+}
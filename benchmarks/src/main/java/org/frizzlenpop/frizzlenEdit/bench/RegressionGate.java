@@ -0,0 +1,441 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.operations.Operation;
+import org.frizzlenpop.frizzlenEdit.operations.PasteOperation;
+import org.frizzlenpop.frizzlenEdit.operations.ReplaceOperation;
+import org.frizzlenpop.frizzlenEdit.operations.SetOperation;
+import org.frizzlenpop.frizzlenEdit.operations.SmoothOperation;
+import org.frizzlenpop.frizzlenEdit.schematic.SchematicFiles;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the core operations over fixture terrain in memory, writes their throughput and
+ * allocation to a JSON report and compares them with a baseline. Exits with status 1 if any
+ * scenario got slower or allocates more than the baseline's tolerance allows, or is missing
+ * from the baseline.
+ *
+ * Throughput isn't compared as it is: a fixed workload that doesn't touch the plugin is run
+ * alongside the scenarios, and the baseline's throughput is scaled by how much faster or
+ * slower that reference ran here than when the baseline was recorded. Allocation per block
+ * doesn't depend on the machine and is compared directly.
+ *
+ * Options, as "--name value" or "--name=value":
+ * --baseline    The baseline file (default baseline.json)
+ * --fallback    A baseline to look up scenarios missing from the first one in, such as the
+ *               checked-in one when comparing with a run of the target revision (default none)
+ * --report      Where to write the report (default target/regression-report.json)
+ * --update      If true, write the results as the new baseline instead of comparing
+ * --size        Width, length and height of the terrain (default 64)
+ * --warmup      Unmeasured runs of each scenario (default 5)
+ * --iterations  Measured runs of each scenario; the median throughput and the lowest
+ *               allocation are reported (default 10)
+ */
+public final class RegressionGate {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // Allowed change from the baseline before a scenario counts as regressed
+    private static final double DEFAULT_THROUGHPUT_TOLERANCE = 0.25;
+    private static final double DEFAULT_ALLOCATION_TOLERANCE = 0.10;
+
+    // Allocation growth below this many bytes per block is never a regression
+    private static final double ALLOCATION_SLACK = 1.0;
+
+    // Values sorted and hashed by each run of the reference workload
+    private static final int REFERENCE_VALUES = 1 << 20;
+
+    // Keeps the reference workload's result alive, so it isn't optimized away
+    private static volatile long referenceChecksum;
+
+    private final int size;
+    private final TerrainFixture fixture;
+    private final Player player;
+    private final Region region;
+    private final Clipboard clipboard;
+    private final File schematic;
+
+    private RegressionGate(int size) throws IOException {
+        HeadlessWorld world = new HeadlessWorld("regression");
+        this.size = size;
+        this.fixture = new TerrainFixture(TerrainFixture.DEFAULT_SEED, size, size);
+        this.player = world.createPlayer("regression");
+        this.region = new Region(world.getWorld(), fixture.getMin(), fixture.getMax());
+
+        // Paste and schematic loading start from the same copy of the terrain
+        this.clipboard = new Clipboard(region, region.getMinimumPoint());
+        clipboard.copy(region, fixture.create("clipboard"));
+        this.schematic = Files.createTempFile("frizzlenedit-regression", ".schem").toFile();
+        schematic.deleteOnExit();
+        SchematicFiles.save(clipboard, schematic);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        File baselineFile = new File(options.getOrDefault("baseline", "baseline.json"));
+        String fallbackPath = options.getOrDefault("fallback", "");
+        File reportFile = new File(options.getOrDefault("report", "target/regression-report.json"));
+        boolean update = Boolean.parseBoolean(options.getOrDefault("update", "false"));
+        int size = Integer.parseInt(options.getOrDefault("size", "64"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "10"));
+
+        Headless.init();
+        RegressionGate gate = new RegressionGate(size);
+
+        Result reference = measure(RegressionGate::reference, warmup, iterations);
+        System.out.printf("%-16s %,14.0f values/s%n", "reference", reference.blocksPerSecond);
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Scenario> scenario : gate.scenarios().entrySet()) {
+            Result result = measure(scenario.getValue(), warmup, iterations);
+            results.put(scenario.getKey(), result);
+            System.out.printf("%-16s %,14.0f blocks/s %10.1f bytes/block%n",
+                scenario.getKey(), result.blocksPerSecond, result.bytesPerBlock);
+        }
+
+        Baseline baseline = readBaseline(baselineFile);
+
+        if (update) {
+            baseline.size = size;
+            baseline.referenceScore = reference.blocksPerSecond;
+            baseline.scenarios = results;
+            write(baselineFile, baseline);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+
+        Baseline fallback = fallbackPath.isEmpty() ? null : readBaseline(new File(fallbackPath));
+        Report report = compare(baseline, fallback, results, reference.blocksPerSecond, size);
+        write(reportFile, report);
+        System.out.println("Report written to " + reportFile);
+
+        if (!report.passed) {
+            System.err.println("Performance regression against " + baselineFile + ":");
+            for (Map.Entry<String, ReportEntry> entry : report.scenarios.entrySet()) {
+                if (!entry.getValue().status.equals("ok")) {
+                    System.err.println("  " + entry.getKey() + ": " + entry.getValue().status);
+                }
+            }
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Get the scenarios to run, in order.
+     * @return The scenarios by name
+     */
+    private Map<String, Scenario> scenarios() {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        int volume = region.getVolume();
+
+        scenarios.put("set", () -> operation(
+            new SetOperation(player, region, "minecraft:andesite"), fixture.create("set"), volume));
+        scenarios.put("replace", () -> operation(
+            new ReplaceOperation(player, region, "minecraft:stone", "minecraft:andesite"), fixture.create("replace"), volume));
+        scenarios.put("paste", () -> operation(
+            new PasteOperation(player, new Vector3(0, 0, 0), clipboard, false), new MemoryExtent("paste", 0, size),
+            clipboard.getBlocks().size()));
+        scenarios.put("smooth", () -> operation(
+            new SmoothOperation(player, region, 1, 2.0, true, true, 0.0), fixture.create("smooth"), volume));
+        scenarios.put("schematic-load", () -> () -> SchematicFiles.load(schematic).getBlocks().size());
+
+        return scenarios;
+    }
+
+    /**
+     * Prepare one run of the reference workload: sorting and hashing pseudo-random values,
+     * which allocates and touches memory much like the scenarios do without using any of
+     * the plugin's code.
+     * @return The job, processing {@link #REFERENCE_VALUES} values
+     */
+    private static Job reference() {
+        return () -> {
+            long[] values = new long[REFERENCE_VALUES];
+            long seed = TerrainFixture.DEFAULT_SEED;
+            for (int i = 0; i < values.length; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                values[i] = seed >>> 16;
+            }
+            Arrays.sort(values);
+
+            Map<Long, long[]> buckets = new HashMap<>();
+            for (long value : values) {
+                buckets.computeIfAbsent(value & 0xFFFF, key -> new long[1])[0] += value;
+            }
+            long checksum = 0;
+            for (long[] bucket : buckets.values()) {
+                checksum += bucket[0];
+            }
+            referenceChecksum = checksum;
+            return values.length;
+        };
+    }
+
+    /**
+     * Prepare an operation to run against an extent.
+     * @param operation The operation
+     * @param extent The extent
+     * @param blocks The number of blocks the operation processes
+     * @return The job running the operation
+     */
+    private static Job operation(Operation operation, Extent extent, long blocks) {
+        operation.setExtent(extent);
+        return () -> {
+            HistoryEntry entry = operation.execute();
+            if (entry == null) {
+                throw new IllegalStateException(operation.getDescription() + " failed");
+            }
+            return blocks;
+        };
+    }
+
+    /**
+     * Run a scenario and take the median throughput and the lowest allocation of the
+     * measured runs.
+     * @param scenario The scenario
+     * @param warmup The number of unmeasured runs
+     * @param iterations The number of measured runs
+     * @return The result
+     */
+    private static Result measure(Scenario scenario, int warmup, int iterations) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            scenario.prepare().run();
+        }
+
+        double[] blocksPerSecond = new double[iterations];
+        double[] bytesPerBlock = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            Job job = scenario.prepare();
+            System.gc();
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long blocks = job.run();
+            long nanos = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+
+            blocksPerSecond[i] = blocks / (nanos / 1_000_000_000.0);
+            bytesPerBlock[i] = allocatedBefore < 0 ? -1 : allocated / (double) blocks;
+        }
+
+        // Allocation only drops as the JIT finishes compiling a scenario, so the run that
+        // allocated least is the steady state; later compilation would otherwise show as noise
+        return new Result(median(blocksPerSecond), Arrays.stream(bytesPerBlock).min().orElse(-1));
+    }
+
+    /**
+     * Compare results with the baseline.
+     * @param baseline The baseline
+     * @param fallback The baseline to look up scenarios missing from the first one in, or null
+     * @param results The results by scenario
+     * @param referenceScore The throughput of the reference workload in this run
+     * @param size The terrain size the results were measured with
+     * @return The report
+     */
+    private static Report compare(Baseline baseline, Baseline fallback, Map<String, Result> results, 
+                                  double referenceScore, int size) {
+        Report report = new Report();
+        report.size = size;
+        report.java = System.getProperty("java.version");
+        report.referenceScore = referenceScore;
+        report.throughputTolerance = baseline.throughputTolerance;
+        report.allocationTolerance = baseline.allocationTolerance;
+        report.passed = true;
+
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            Result result = entry.getValue();
+            Baseline source = baseline;
+            Result expected = baseline.size == size ? baseline.scenarios.get(entry.getKey()) : null;
+            if (expected == null && fallback != null && fallback.size == size) {
+                source = fallback;
+                expected = fallback.scenarios.get(entry.getKey());
+            }
+
+            ReportEntry reportEntry = new ReportEntry();
+            reportEntry.blocksPerSecond = result.blocksPerSecond;
+            reportEntry.bytesPerBlock = result.bytesPerBlock;
+            reportEntry.status = "ok";
+
+            if (expected == null) {
+                // A scenario without a baseline would never be checked; record one with --update
+                reportEntry.status = "missing from the baseline";
+                report.passed = false;
+            } else {
+                // Scale to this machine by how fast the reference workload ran on each
+                double scale = source.referenceScore > 0 ? referenceScore / source.referenceScore : 1;
+                double expectedThroughput = expected.blocksPerSecond * scale;
+                reportEntry.baselineBlocksPerSecond = expectedThroughput;
+                reportEntry.baselineBytesPerBlock = expected.bytesPerBlock;
+
+                double minThroughput = expectedThroughput * (1 - baseline.throughputTolerance);
+                double maxAllocation = expected.bytesPerBlock * (1 + baseline.allocationTolerance) + ALLOCATION_SLACK;
+
+                if (result.blocksPerSecond < minThroughput) {
+                    reportEntry.status = String.format("regressed: %.0f blocks/s, baseline %.0f scaled to this machine",
+                        result.blocksPerSecond, expectedThroughput);
+                    report.passed = false;
+                } else if (result.bytesPerBlock >= 0 && expected.bytesPerBlock >= 0 && result.bytesPerBlock > maxAllocation) {
+                    reportEntry.status = String.format("regressed: %.1f bytes/block, baseline %.1f",
+                        result.bytesPerBlock, expected.bytesPerBlock);
+                    report.passed = false;
+                }
+            }
+
+            report.scenarios.put(entry.getKey(), reportEntry);
+        }
+
+        return report;
+    }
+
+    private static Baseline readBaseline(File file) throws IOException {
+        if (!file.exists()) {
+            return new Baseline();
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Baseline baseline = GSON.fromJson(reader, Baseline.class);
+            return baseline != null ? baseline : new Baseline();
+        }
+    }
+
+    private static void write(File file, Object value) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(value, writer);
+        }
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String option = args[i].substring(2);
+            int equals = option.indexOf('=');
+            if (equals >= 0) {
+                options.put(option.substring(0, equals), option.substring(equals + 1));
+            } else if (i + 1 < args.length) {
+                options.put(option, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for --" + option);
+            }
+        }
+        return options;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * Get the number of bytes allocated so far by the current thread.
+     * @return The number of bytes, or -1 if the JVM doesn't support allocation tracking
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Sets up one run of a scenario; only the returned job is measured.
+     */
+    private interface Scenario {
+        Job prepare() throws Exception;
+    }
+
+    /**
+     * One measured run.
+     */
+    private interface Job {
+        /**
+         * Run the job.
+         * @return The number of blocks processed
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * The measured throughput and allocation of a scenario.
+     */
+    private static class Result {
+        double blocksPerSecond;
+        double bytesPerBlock;
+
+        Result() {
+        }
+
+        Result(double blocksPerSecond, double bytesPerBlock) {
+            this.blocksPerSecond = blocksPerSecond;
+            this.bytesPerBlock = bytesPerBlock;
+        }
+    }
+
+    /**
+     * The checked-in baseline file.
+     */
+    private static class Baseline {
+        int size;
+        // Throughput of the reference workload when the baseline was recorded; 0 if unknown
+        double referenceScore;
+        double throughputTolerance = DEFAULT_THROUGHPUT_TOLERANCE;
+        double allocationTolerance = DEFAULT_ALLOCATION_TOLERANCE;
+        Map<String, Result> scenarios = new LinkedHashMap<>();
+    }
+
+    /**
+     * The report written after a comparison.
+     */
+    private static class Report {
+        int size;
+        String java;
+        double referenceScore;
+        double throughputTolerance;
+        double allocationTolerance;
+        boolean passed;
+        Map<String, ReportEntry> scenarios = new LinkedHashMap<>();
+    }
+
+    /**
+     * One scenario in the report.
+     */
+    private static class ReportEntry {
+        double blocksPerSecond;
+        double bytesPerBlock;
+        Double baselineBlocksPerSecond;
+        Double baselineBytesPerBlock;
+        String status;
+    }
+}
@@ -0,0 +1,35 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+
+/**
+ * A clock that only moves when told to. Work "takes time" by advancing it, so timings
+ * are the same on every run and every machine.
+ */
+public class SimulatedClock implements Clock {
+    // Wall clock time the simulation starts at
+    private static final long EPOCH_MILLIS = 1_700_000_000_000L;
+
+    private long nanos;
+
+    @Override
+    public long nanoTime() {
+        return nanos;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return EPOCH_MILLIS + nanos / 1_000_000L;
+    }
+
+    /**
+     * Move the clock forward.
+     * @param amount The time to advance by, in nanoseconds
+     */
+    public void advance(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Time can't go backwards");
+        }
+        nanos += amount;
+    }
+}
@@ -0,0 +1,131 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.scheduler.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A main thread that only ticks when told to, on a {@link SimulatedClock}. Each tick runs
+ * the due tasks, charges the configured server load to the clock, and then waits out the
+ * rest of the 50ms like a real server does. A tick that takes longer than 50ms is not
+ * caught up on, so an overloaded simulated server loses TPS like a real one.
+ */
+public class SimulatedScheduler implements TaskScheduler {
+    // Length of a tick on a server keeping up with 20 TPS
+    public static final long TICK_NANOS = 50_000_000L;
+
+    private final SimulatedClock clock;
+    private final List<Task> tasks = new ArrayList<>();
+    private LongUnaryOperator serverLoad = tick -> 0;
+    private long currentTick;
+
+    /**
+     * Create a new simulated scheduler.
+     * @param clock The clock the ticks advance
+     */
+    public SimulatedScheduler(SimulatedClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Set the time the rest of the server spends in each tick, besides the scheduled tasks.
+     * @param serverLoad The load in nanoseconds, by tick number
+     */
+    public void setServerLoad(LongUnaryOperator serverLoad) {
+        this.serverLoad = serverLoad;
+    }
+
+    @Override
+    public ScheduledTask runTask(Runnable task) {
+        return schedule(task, 1, 0);
+    }
+
+    @Override
+    public ScheduledTask runTaskLater(Runnable task, long delay) {
+        return schedule(task, delay, 0);
+    }
+
+    @Override
+    public ScheduledTask runTaskTimer(Runnable task, long delay, long period) {
+        return schedule(task, delay, Math.max(1, period));
+    }
+
+    /**
+     * Run one tick.
+     * @return The time the tick's work took, in nanoseconds
+     */
+    public long tick() {
+        long start = clock.nanoTime();
+        clock.advance(serverLoad.applyAsLong(currentTick));
+
+        // Tasks scheduled while this tick runs wait for a later tick
+        for (Task task : new ArrayList<>(tasks)) {
+            if (task.cancelled || task.nextRun > currentTick) {
+                continue;
+            }
+            task.runnable.run();
+            if (task.period > 0) {
+                task.nextRun = currentTick + task.period;
+            } else {
+                task.cancelled = true;
+            }
+        }
+        tasks.removeIf(task -> task.cancelled);
+
+        long work = clock.nanoTime() - start;
+        if (work < TICK_NANOS) {
+            clock.advance(TICK_NANOS - work);
+        }
+        currentTick++;
+        return work;
+    }
+
+    /**
+     * Get the number of ticks run so far.
+     * @return The current tick
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Get the number of tasks waiting to run.
+     * @return The number of tasks
+     */
+    public int getPendingTasks() {
+        return tasks.size();
+    }
+
+    private ScheduledTask schedule(Runnable runnable, long delay, long period) {
+        // Like Bukkit, a delay of 0 still means the next tick
+        Task task = new Task(runnable, currentTick + Math.max(1, delay), period);
+        tasks.add(task);
+        return task;
+    }
+
+    private static class Task implements ScheduledTask {
+        final Runnable runnable;
+        final long period;
+        long nextRun;
+        boolean cancelled;
+
+        Task(Runnable runnable, long nextRun, long period) {
+            this.runnable = runnable;
+            this.nextRun = nextRun;
+            this.period = period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
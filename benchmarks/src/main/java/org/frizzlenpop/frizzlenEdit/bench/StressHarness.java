@@ -0,0 +1,643 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.brushes.Brush;
+import org.frizzlenpop.frizzlenEdit.brushes.BrushManager;
+import org.frizzlenpop.frizzlenEdit.brushes.SphereBrush;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.clipboard.ClipboardManager;
+import org.frizzlenpop.frizzlenEdit.config.ConfigManager;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.history.HistoryManager;
+import org.frizzlenpop.frizzlenEdit.operations.OperationManager;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.selection.SelectionManager;
+import org.frizzlenpop.frizzlenEdit.session.LocalSession;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives the selection, clipboard, history, brush and operation managers from many threads
+ * at once, and checks that nothing gets lost or mixed up between players. Each player gets a
+ * thread and an in-memory world of their own, and goes round the same loop as fast as the
+ * plugin lets them: select, copy, rotate and flip, share, paste, set, undo and redo, and set
+ * a brush and mask. Meanwhile another thread keeps reading everyone's state, the way the
+ * memory report does, and edits run on a real main thread through {@link ThreadedScheduler}.
+ *
+ * Every block a player copies comes from a pattern that belongs to them, with their signature
+ * block in the corner, so a clipboard or paste can always be checked against the pattern it
+ * came from, even after it was shared with someone else. The checks are:
+ * - Selections read back the positions that were just set
+ * - Clipboards hold exactly the blocks of one player's pattern, also after rotating four
+ *   times, flipping twice, sharing or loading a team clipboard
+ * - Pastes and sets write exactly what their history entry says
+ * - Undo restores the blocks from before the last edit, and redo puts them back
+ * - The undo history holds the most recent edits, newest first, and nothing else
+ * - Every edit that was submitted completes, and no messages report failures
+ *
+ * Prints the throughput of each kind of step, and exits with status 1 if any check failed.
+ *
+ * Options, as "--name value" or "--name=value":
+ * --players     Player threads (default 16)
+ * --iterations  Rounds of the loop per player (default 200)
+ * --size        Largest side of a copied region (default 8)
+ * --history     Undo history size (default 20)
+ * --timeout-s   Longest wait for an edit to complete, in seconds (default 30)
+ * --seed        Seed for the region sizes and share targets (default 1)
+ */
+public final class StressHarness {
+    // Where each player's pattern is, where they paste, and the area they set
+    private static final Vector3 SOURCE = new Vector3(100, 0, 100);
+    private static final Vector3 PASTE = new Vector3(0, 64, 0);
+    private static final Vector3 SET = new Vector3(-100, 0, -100);
+
+    // Stop printing violations after this many; they are still counted
+    private static final int MAX_REPORTED = 50;
+
+    private static final String[] COLORS = {
+        "WHITE", "ORANGE", "MAGENTA", "LIGHT_BLUE", "YELLOW", "LIME", "PINK", "GRAY",
+        "LIGHT_GRAY", "CYAN", "PURPLE", "BLUE", "BROWN", "GREEN", "RED", "BLACK"
+    };
+
+    private final FrizzlenEdit plugin;
+    private final ThreadedScheduler scheduler;
+    private final HeadlessWorld world;
+    private final int size;
+    private final int historySize;
+    private final long timeoutMillis;
+
+    // Blocks the patterns are made of, and the corner block that tells whose pattern it is
+    private final BlockData[] palette;
+    private final BlockData[] signatures;
+    private final BlockData[] markers;
+    private final BlockData air;
+
+    private final Map<UUID, Worker> workers = new ConcurrentHashMap<>();
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+    private final LongAdder violationCount = new LongAdder();
+    private volatile boolean running = true;
+
+    private StressHarness(FrizzlenEdit plugin, ThreadedScheduler scheduler, int size, int historySize, long timeoutMillis) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.world = new HeadlessWorld("stress");
+        this.size = size;
+        this.historySize = historySize;
+        this.timeoutMillis = timeoutMillis;
+
+        this.palette = new BlockData[] {
+            Headless.blockData(Material.STONE), Headless.blockData(Material.DIRT), Headless.blockData(Material.GRANITE),
+            Headless.blockData(Material.DIORITE), Headless.blockData(Material.ANDESITE), Headless.blockData(Material.OAK_PLANKS),
+            Headless.blockData(Material.GLASS), Headless.blockData(Material.AIR)
+        };
+        this.signatures = new BlockData[COLORS.length * 2];
+        this.markers = new BlockData[COLORS.length];
+        for (int i = 0; i < COLORS.length; i++) {
+            signatures[i] = Headless.blockData(Material.valueOf(COLORS[i] + "_WOOL"));
+            signatures[COLORS.length + i] = Headless.blockData(Material.valueOf(COLORS[i] + "_CONCRETE"));
+            markers[i] = Headless.blockData(Material.valueOf(COLORS[i] + "_TERRACOTTA"));
+        }
+        this.air = Headless.blockData(Material.AIR);
+
+        for (String name : new String[] { "select", "copy", "transform", "share", "paste", "set", "undo", "redo", "brush", "report" }) {
+            steps.put(name, new Step());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = RegressionGate.parseOptions(args);
+        int players = Integer.parseInt(options.getOrDefault("players", "16"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "200"));
+        int size = Integer.parseInt(options.getOrDefault("size", "8"));
+        int historySize = Integer.parseInt(options.getOrDefault("history", "20"));
+        long timeoutMillis = Long.parseLong(options.getOrDefault("timeout-s", "30")) * 1000L;
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        // Keep the plugin from refusing, queueing or logging edits, and from evicting sessions mid-run
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigManager.KEY_ADMISSION_ENABLED, false);
+        config.put(ConfigManager.KEY_SLOW_JOB_LOG_ENABLED, false);
+        config.put(ConfigManager.KEY_UNDO_HISTORY_SIZE, historySize);
+        config.put(ConfigManager.KEY_SESSION_IDLE_TIMEOUT_MINUTES, 0);
+
+        File dataFolder = Files.createTempDirectory("frizzlenedit-stress").toFile();
+        ThreadedScheduler scheduler = new ThreadedScheduler();
+        FrizzlenEdit plugin = HeadlessPlugin.create(dataFolder, scheduler, config);
+        StressHarness harness = new StressHarness(plugin, scheduler, size, historySize, timeoutMillis);
+
+        System.out.printf("Stressing with %d players, %d iterations each, regions up to %d^3%n", players, iterations, size);
+        long elapsed = harness.run(players, iterations, seed);
+        harness.report(elapsed);
+
+        HeadlessPlugin.shutdown(plugin);
+        scheduler.shutdown();
+        deleteRecursively(dataFolder);
+
+        if (harness.violationCount.sum() > 0) {
+            System.out.println("FAILED: " + harness.violationCount.sum() + " violation(s)");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Run every player's loop and the reader until the players are done.
+     * @return The time the players took, in nanoseconds
+     */
+    private long run(int players, int iterations, long seed) throws InterruptedException {
+        OperationManager operations = plugin.getOperationManager();
+        operations.addListener((operation, entry, profile) -> {
+            Worker worker = workers.get(operation.getPlayer().getUniqueId());
+            if (worker != null) {
+                worker.completed(entry);
+            }
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < players; i++) {
+            Worker worker = new Worker(i, players, iterations, new Random(seed * 31 + i));
+            workers.put(worker.player.getUniqueId(), worker);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run();
+                } catch (Throwable t) {
+                    violation(worker.player.getName() + " threw " + describe(t));
+                }
+            }, "Player " + i);
+            threads.add(thread);
+        }
+
+        Thread reader = new Thread(this::readContinuously, "Reader");
+        long started = System.nanoTime();
+        reader.start();
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        running = false;
+        reader.join();
+        checkFinalState();
+        return elapsed;
+    }
+
+    /**
+     * Check what should hold once every player is done.
+     */
+    private void checkFinalState() {
+        long submitted = 0;
+        long completed = 0;
+        for (Worker worker : workers.values()) {
+            submitted += worker.submitted;
+            completed += worker.entries.size();
+
+            int expected = Math.min(worker.entries.size(), historySize);
+            int actual = plugin.getHistoryManager().getUndoHistorySize(worker.player);
+            if (worker.finished && actual != expected) {
+                violation(worker.player.getName() + " has " + actual + " undo entries, expected " + expected);
+            }
+        }
+        if (completed != submitted) {
+            violation(submitted + " edits were submitted but " + completed + " completed");
+        }
+        for (Throwable failure : scheduler.getFailures()) {
+            violation("A main thread task threw " + describe(failure));
+        }
+    }
+
+    /**
+     * Keep reading every player's state from another thread until the players are done.
+     */
+    private void readContinuously() {
+        HistoryManager history = plugin.getHistoryManager();
+        ClipboardManager clipboards = plugin.getClipboardManager();
+        BrushManager brushes = plugin.getBrushManager();
+        while (running) {
+            long start = System.nanoTime();
+            try {
+                for (UUID uuid : history.getPlayers()) {
+                    history.getMemoryUsage(uuid);
+                }
+                for (UUID uuid : clipboards.getPlayers()) {
+                    clipboards.getMemoryUsage(uuid);
+                }
+                for (UUID uuid : brushes.getPlayers()) {
+                    brushes.getMemoryUsage(uuid);
+                }
+                clipboards.getTeamClipboardNames();
+                plugin.getSessionManager().getSessions().size();
+            } catch (Throwable t) {
+                violation("Reading state threw " + describe(t));
+            }
+            steps.get("report").record(System.nanoTime() - start);
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%-10s %10s %12s %12s%n", "step", "count", "ops/s", "mean ms");
+        for (Map.Entry<String, Step> entry : steps.entrySet()) {
+            Step step = entry.getValue();
+            long count = step.count.sum();
+            System.out.printf("%-10s %,10d %,12.0f %12.3f%n", entry.getKey(), count, count / seconds,
+                count == 0 ? 0 : step.nanos.sum() / 1e6 / count);
+        }
+        System.out.printf("Main thread ran %,d tasks in %.1f s%n", scheduler.getTasksRun(), seconds);
+
+        int shown = 0;
+        for (String violation : violations) {
+            if (shown++ == MAX_REPORTED) {
+                System.out.println("  ...");
+                break;
+            }
+            System.out.println("  " + violation);
+        }
+    }
+
+    private void violation(String message) {
+        violationCount.increment();
+        if (violations.size() < MAX_REPORTED + 1) {
+            violations.add(message);
+        }
+    }
+
+    /**
+     * The block at a position of a player's pattern.
+     * @param owner The player's number
+     * @param position The position
+     * @return The block data
+     */
+    private BlockData pattern(int owner, Vector3 position) {
+        int signature = owner % signatures.length;
+        if (position.equals(SOURCE)) {
+            return signatures[signature];
+        }
+        int hash = signature * 73_856_093 ^ position.getX() * 19_349_663 ^ position.getY() * 83_492_791 ^ position.getZ() * 50_331_653;
+        return palette[Math.floorMod(hash, palette.length)];
+    }
+
+    /**
+     * Find whose pattern a block in the signature position is.
+     * @param data The block data
+     * @return The player's number, or -1 if it isn't a signature
+     */
+    private int owner(BlockData data) {
+        for (int i = 0; data != null && i < signatures.length; i++) {
+            if (same(signatures[i], data)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean same(BlockData a, BlockData b) {
+        return a != null && b != null && a.getAsString().equals(b.getAsString());
+    }
+
+    private static String describe(Throwable t) {
+        StackTraceElement[] trace = t.getStackTrace();
+        return t + (trace.length > 0 ? " at " + trace[0] : "");
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Time spent on one kind of step, over every player.
+     */
+    private static final class Step {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+        }
+    }
+
+    /**
+     * One player and the loop they go round.
+     */
+    private final class Worker {
+        private final int index;
+        private final int players;
+        private final int iterations;
+        private final Random random;
+        private final Player player;
+        private final MemoryExtent extent;
+
+        // Released when one of this player's edits completes, or they are told a copy is done
+        private final Semaphore edits = new Semaphore(0);
+        private final Semaphore copies = new Semaphore(0);
+
+        // The history entries of this player's edits, in the order they completed
+        private final List<HistoryEntry> entries = Collections.synchronizedList(new ArrayList<>());
+        private volatile long submitted;
+        private volatile boolean finished;
+
+        private Worker(int index, int players, int iterations, Random random) {
+            this.index = index;
+            this.players = players;
+            this.iterations = iterations;
+            this.random = random;
+            this.player = world.createPlayer("stress" + index, this::message);
+            this.extent = new MemoryExtent("stress" + index);
+
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    for (int z = 0; z < size; z++) {
+                        Vector3 position = SOURCE.add(new Vector3(x, y, z));
+                        extent.setBlock(position, pattern(index, position));
+                    }
+                }
+            }
+            plugin.getOperationManager().setExtentOverride(player, extent);
+        }
+
+        private void message(String message) {
+            if (message.contains("Copied ")) {
+                copies.release();
+            } else if (message.contains("failed") || message.contains("Failed") || message.contains("Error")
+                       || message.contains("too large") || message.contains("Nothing to")) {
+                violation(player.getName() + " was told: " + message);
+            }
+        }
+
+        private void completed(HistoryEntry entry) {
+            if (entry == null) {
+                violation(player.getName() + " had an edit fail");
+            } else {
+                entries.add(entry);
+            }
+            edits.release();
+        }
+
+        private void run() throws Exception {
+            SelectionManager selections = plugin.getSelectionManager();
+            ClipboardManager clipboards = plugin.getClipboardManager();
+            HistoryManager history = plugin.getHistoryManager();
+            BrushManager brushes = plugin.getBrushManager();
+            OperationManager operations = plugin.getOperationManager();
+            BlockData previousMarker = air;
+
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                // Select a region of the pattern, starting at the signature block
+                long start = System.nanoTime();
+                Vector3 max = SOURCE.add(new Vector3(random.nextInt(size), random.nextInt(size), random.nextInt(size)));
+                selections.setPosition1(player, SOURCE);
+                selections.setPosition2(player, max);
+                Region selection = selections.getSelection(player);
+                steps.get("select").record(System.nanoTime() - start);
+                if (selection == null || !SOURCE.equals(selection.getPos1()) || !max.equals(selection.getPos2())) {
+                    violation(player.getName() + " lost their selection");
+                    continue;
+                }
+
+                // Copy it, and check the clipboard holds the pattern
+                start = System.nanoTime();
+                clipboards.copy(player, new Region(world.getWorld(), SOURCE, max), SOURCE);
+                if (!await(copies, "copy")) {
+                    return;
+                }
+                steps.get("copy").record(System.nanoTime() - start);
+                Clipboard clipboard = clipboards.getClipboard(player);
+                checkClipboard(clipboard, "after copying");
+
+                // Four quarter turns and two flips leave the blocks where they were
+                start = System.nanoTime();
+                int width = clipboard.getWidth();
+                int length = clipboard.getLength();
+                clipboard.rotate(90);
+                if (clipboard.getWidth() != length || clipboard.getLength() != width) {
+                    violation(player.getName() + "'s clipboard didn't swap its width and length when rotated");
+                }
+                clipboard.rotate(90);
+                clipboard.rotate(180);
+                char axis = "xyz".charAt(random.nextInt(3));
+                clipboard.flip(axis);
+                clipboard.flip(axis);
+                steps.get("transform").record(System.nanoTime() - start);
+                checkClipboard(clipboard, "after rotating and flipping");
+
+                // Offer someone else this clipboard, take whatever was offered to this player, and
+                // swap team clipboards with someone else
+                start = System.nanoTime();
+                Worker other = other();
+                if (iteration % 5 == 0 && other != null) {
+                    clipboards.share(player, other.player);
+                }
+                if (iteration % 5 == 2) {
+                    clipboards.acceptShare(player);
+                }
+                clipboards.saveTeamClipboard(player, "team" + index);
+                if (iteration % 3 == 0 && other != null && clipboards.getTeamClipboardNames().contains("team" + other.index)) {
+                    clipboards.loadTeamClipboard(player, "team" + other.index);
+                }
+                steps.get("share").record(System.nanoTime() - start);
+                checkClipboard(clipboards.getClipboard(player), "after sharing");
+
+                // Paste whatever the clipboard holds now, which may have come from someone else
+                start = System.nanoTime();
+                clipboards.paste(player, false);
+                if (!awaitEdit("paste")) {
+                    return;
+                }
+                steps.get("paste").record(System.nanoTime() - start);
+                checkPaste(last());
+
+                // Set an area, and check undo and redo go back and forth between the markers
+                BlockData marker = markers[iteration % markers.length];
+                Region area = new Region(world.getWorld(), SET, SET.add(new Vector3(size - 1, 0, size - 1)));
+                start = System.nanoTime();
+                operations.execute(player, operations.createSetOperation(player, area, marker.getAsString()));
+                if (!awaitEdit("set")) {
+                    return;
+                }
+                steps.get("set").record(System.nanoTime() - start);
+                checkArea(area, marker, "after setting it");
+
+                if (iteration % 2 == 0) {
+                    start = System.nanoTime();
+                    boolean undone = scheduler.<Boolean>call(() -> history.undo(player)).get(timeoutMillis, TimeUnit.MILLISECONDS);
+                    steps.get("undo").record(System.nanoTime() - start);
+                    checkArea(area, undone ? previousMarker : marker, "after undoing");
+
+                    start = System.nanoTime();
+                    boolean redone = scheduler.<Boolean>call(() -> history.redo(player)).get(timeoutMillis, TimeUnit.MILLISECONDS);
+                    steps.get("redo").record(System.nanoTime() - start);
+                    checkArea(area, marker, "after redoing");
+                    if (!undone || !redone) {
+                        violation(player.getName() + " couldn't undo and redo their last edit");
+                    }
+                }
+                previousMarker = marker;
+                checkHistory();
+
+                // Brushes and masks are plain session state, set from this thread
+                start = System.nanoTime();
+                int radius = 1 + random.nextInt(3);
+                brushes.createSphereBrush(player, marker.getAsString(), radius);
+                Brush brush = brushes.getBrush(player);
+                String mask = "stone_" + index + "_" + iteration;
+                brushes.setMask(player, mask);
+                String readMask = brushes.getMask(player);
+                steps.get("brush").record(System.nanoTime() - start);
+                if (!(brush instanceof SphereBrush)) {
+                    violation(player.getName() + " lost their brush");
+                }
+                if (!mask.equals(readMask)) {
+                    violation(player.getName() + " read back mask " + readMask + " instead of " + mask);
+                }
+            }
+            finished = true;
+        }
+
+        private Worker other() {
+            if (players < 2) {
+                return null;
+            }
+            int other = random.nextInt(players - 1);
+            int target = other >= index ? other + 1 : other;
+            for (Worker worker : workers.values()) {
+                if (worker.index == target) {
+                    return worker;
+                }
+            }
+            return null;
+        }
+
+        private boolean await(Semaphore semaphore, String what) throws InterruptedException {
+            if (!semaphore.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                violation(player.getName() + " timed out waiting for their " + what);
+                return false;
+            }
+            return true;
+        }
+
+        private boolean awaitEdit(String what) throws InterruptedException {
+            submitted++;
+            return await(edits, what);
+        }
+
+        private HistoryEntry last() {
+            synchronized (entries) {
+                return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+            }
+        }
+
+        /**
+         * Check a clipboard holds every block of one player's pattern, from the signature corner on.
+         */
+        private void checkClipboard(Clipboard clipboard, String when) {
+            if (clipboard == null) {
+                violation(player.getName() + " has no clipboard " + when);
+                return;
+            }
+            int owner = owner(clipboard.getBlock(new Vector3(0, 0, 0)));
+            if (owner < 0) {
+                violation(player.getName() + "'s clipboard has no signature in its corner " + when);
+                return;
+            }
+            for (int x = 0; x < clipboard.getWidth(); x++) {
+                for (int y = 0; y < clipboard.getHeight(); y++) {
+                    for (int z = 0; z < clipboard.getLength(); z++) {
+                        Vector3 relative = new Vector3(x, y, z);
+                        if (!same(clipboard.getBlock(relative), pattern(owner, SOURCE.add(relative)))) {
+                            violation(player.getName() + "'s clipboard has the wrong block at " + relative + " " + when);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Check a paste wrote one player's pattern, and that its history entry says what it wrote.
+         */
+        private void checkPaste(HistoryEntry entry) {
+            if (entry == null) {
+                return;
+            }
+            int owner = owner(entry.getNewBlocks().getOrDefault(PASTE, extent.getBlock(PASTE)));
+            if (owner < 0) {
+                violation(player.getName() + "'s paste has no signature in its corner");
+                return;
+            }
+            for (Map.Entry<Vector3, BlockData> block : entry.getNewBlocks().entrySet()) {
+                Vector3 position = block.getKey();
+                if (!same(extent.getBlock(position), block.getValue())) {
+                    violation(player.getName() + "'s paste history doesn't match the world at " + position);
+                    return;
+                }
+                if (!same(block.getValue(), pattern(owner, SOURCE.add(position.subtract(PASTE))))) {
+                    violation(player.getName() + "'s paste wrote the wrong block at " + position);
+                    return;
+                }
+            }
+        }
+
+        private void checkArea(Region area, BlockData expected, String when) {
+            for (Vector3 position : area) {
+                if (!same(extent.getBlock(position), expected)) {
+                    violation(player.getName() + "'s set area isn't " + expected.getAsString() + " " + when);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Check the undo history is the most recent edits, newest first.
+         */
+        private void checkHistory() {
+            LocalSession session = plugin.getSessionManager().getIfPresent(player.getUniqueId());
+            List<HistoryEntry> undo = session == null ? Collections.emptyList() : session.getUndoHistory();
+            List<HistoryEntry> expected;
+            synchronized (entries) {
+                expected = new ArrayList<>(entries.subList(Math.max(0, entries.size() - historySize), entries.size()));
+            }
+            Collections.reverse(expected);
+            if (undo.size() != expected.size()) {
+                violation(player.getName() + " has " + undo.size() + " undo entries, expected " + expected.size());
+                return;
+            }
+            for (int i = 0; i < undo.size(); i++) {
+                if (undo.get(i) != expected.get(i)) {
+                    violation(player.getName() + "'s undo history is out of order at entry " + i);
+                    return;
+                }
+            }
+        }
+    }
+}
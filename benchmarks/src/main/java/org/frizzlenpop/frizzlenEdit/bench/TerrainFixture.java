@@ -0,0 +1,227 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.utils.PerlinNoiseGenerator;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+
+import java.util.Random;
+
+/**
+ * Seeded terrain for benchmarks: hills of stone under dirt and grass, lakes below sea level,
+ * noise caves and a scattering of chests, furnaces and signs. The same seed and size always
+ * produce the same blocks, so results from different runs and machines can be compared.
+ *
+ * The terrain covers X and Z from 0 to size - 1 and Y from 0 to height - 1.
+ */
+public class TerrainFixture {
+    // Seed the benchmarks use, so their results stay comparable
+    public static final long DEFAULT_SEED = 0x5EED_F1A7L;
+
+    // Horizontal scale of the hills and the detail on top of them
+    private static final double HILL_SCALE = 0.025;
+    private static final double DETAIL_SCALE = 0.09;
+
+    // Scale of the cave noise, and how much of the underground becomes cave
+    private static final double CAVE_SCALE = 0.08;
+    private static final double DEFAULT_CAVE_THRESHOLD = 0.35;
+
+    // Chance of a block entity on each surface and cave floor column
+    private static final double DEFAULT_TILE_ENTITY_CHANCE = 0.01;
+
+    private final long seed;
+    private final int size;
+    private final int height;
+    private int seaLevel;
+    private double caveThreshold = DEFAULT_CAVE_THRESHOLD;
+    private double tileEntityChance = DEFAULT_TILE_ENTITY_CHANCE;
+
+    // Counts from the last fill
+    private int waterBlocks;
+    private int caveBlocks;
+    private int tileEntities;
+
+    /**
+     * Create a new terrain fixture.
+     * @param seed The seed for the noise and the block entity placement
+     * @param size The width and length of the terrain
+     * @param height The height of the terrain
+     */
+    public TerrainFixture(long seed, int size, int height) {
+        if (height < 8) {
+            throw new IllegalArgumentException("Terrain must be at least 8 blocks high");
+        }
+        this.seed = seed;
+        this.size = size;
+        this.height = height;
+        this.seaLevel = height * 2 / 5;
+    }
+
+    /**
+     * Set the Y coordinate water fills up to in low areas.
+     * @param seaLevel The sea level
+     * @return This fixture
+     */
+    public TerrainFixture seaLevel(int seaLevel) {
+        this.seaLevel = seaLevel;
+        return this;
+    }
+
+    /**
+     * Set how much of the underground becomes cave.
+     * @param caveThreshold The noise value above which blocks are carved, between -1 and 1; 1 disables caves
+     * @return This fixture
+     */
+    public TerrainFixture caveThreshold(double caveThreshold) {
+        this.caveThreshold = caveThreshold;
+        return this;
+    }
+
+    /**
+     * Set the chance of a block entity on each surface and cave floor column.
+     * @param tileEntityChance The chance, between 0 and 1
+     * @return This fixture
+     */
+    public TerrainFixture tileEntityChance(double tileEntityChance) {
+        this.tileEntityChance = tileEntityChance;
+        return this;
+    }
+
+    /**
+     * Generate the terrain into a new in-memory extent.
+     * @param name The name of the extent
+     * @return The extent
+     */
+    public MemoryExtent create(String name) {
+        Headless.init();
+        MemoryExtent extent = new MemoryExtent(name, 0, height);
+        fill(extent);
+        return extent;
+    }
+
+    /**
+     * Generate the terrain into an extent. Blocks above the surface are not touched.
+     * @param extent The extent
+     */
+    public void fill(Extent extent) {
+        Headless.init();
+        BlockData bedrock = Headless.blockData(Material.BEDROCK);
+        BlockData stone = Headless.blockData(Material.STONE);
+        BlockData dirt = Headless.blockData(Material.DIRT);
+        BlockData grass = Headless.blockData("minecraft:grass_block[snowy=false]");
+        BlockData sand = Headless.blockData(Material.SAND);
+        BlockData gravel = Headless.blockData(Material.GRAVEL);
+        BlockData water = Headless.blockData("minecraft:water[level=0]");
+        BlockData air = Headless.blockData(Material.AIR);
+        BlockData[] tiles = {
+            Headless.blockData("minecraft:chest[facing=north,type=single,waterlogged=false]"),
+            Headless.blockData("minecraft:furnace[facing=south,lit=false]"),
+            Headless.blockData("minecraft:oak_sign[rotation=4,waterlogged=false]"),
+            Headless.blockData("minecraft:barrel[facing=up,open=false]")
+        };
+
+        PerlinNoiseGenerator noise = new PerlinNoiseGenerator(seed);
+        Random random = new Random(seed);
+        waterBlocks = 0;
+        caveBlocks = 0;
+        tileEntities = 0;
+
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                int surface = surfaceHeight(noise, x, z);
+                boolean underwater = surface < seaLevel;
+
+                for (int y = 0; y <= surface; y++) {
+                    BlockData data;
+                    if (y == 0) {
+                        data = bedrock;
+                    } else if (y == surface) {
+                        data = underwater ? (y < seaLevel - 3 ? gravel : sand) : grass;
+                    } else if (y >= surface - 3) {
+                        data = underwater ? sand : dirt;
+                    } else if (isCave(noise, x, y, z)) {
+                        data = air;
+                        caveBlocks++;
+                    } else {
+                        data = stone;
+                    }
+                    extent.setBlock(x, y, z, data);
+                }
+
+                // Fill lakes up to sea level
+                for (int y = surface + 1; y <= seaLevel && y < height; y++) {
+                    extent.setBlock(x, y, z, water);
+                    waterBlocks++;
+                }
+
+                // Block entities on dry land, and on cave floors
+                if (!underwater && surface + 1 < height && random.nextDouble() < tileEntityChance) {
+                    extent.setBlock(x, surface + 1, z, tiles[random.nextInt(tiles.length)]);
+                    tileEntities++;
+                }
+                for (int y = 2; y < surface - 4; y++) {
+                    if (isCave(noise, x, y, z) && !isCave(noise, x, y - 1, z) && random.nextDouble() < tileEntityChance) {
+                        extent.setBlock(x, y, z, tiles[random.nextInt(tiles.length)]);
+                        tileEntities++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the corner with the lowest coordinates.
+     * @return The minimum corner
+     */
+    public Vector3 getMin() {
+        return new Vector3(0, 0, 0);
+    }
+
+    /**
+     * Get the corner with the highest coordinates.
+     * @return The maximum corner
+     */
+    public Vector3 getMax() {
+        return new Vector3(size - 1, height - 1, size - 1);
+    }
+
+    /**
+     * Get the number of water blocks placed by the last fill.
+     * @return The number of water blocks
+     */
+    public int getWaterBlocks() {
+        return waterBlocks;
+    }
+
+    /**
+     * Get the number of blocks carved out as caves by the last fill.
+     * @return The number of cave blocks
+     */
+    public int getCaveBlocks() {
+        return caveBlocks;
+    }
+
+    /**
+     * Get the number of block entities placed by the last fill.
+     * @return The number of block entities
+     */
+    public int getTileEntities() {
+        return tileEntities;
+    }
+
+    private int surfaceHeight(PerlinNoiseGenerator noise, int x, int z) {
+        // Two octaves: broad hills and valleys, with smaller bumps on top
+        double hills = noise.noise(x * HILL_SCALE, 0.5, z * HILL_SCALE);
+        double detail = noise.noise(x * DETAIL_SCALE, 10.5, z * DETAIL_SCALE);
+        double value = (hills * 0.8 + detail * 0.2 + 1) / 2;
+        int surface = 4 + (int) Math.round(value * (height - 8));
+        return Math.max(1, Math.min(height - 2, surface));
+    }
+
+    private boolean isCave(PerlinNoiseGenerator noise, int x, int y, int z) {
+        // Keep the bedrock floor and the layer above it solid
+        return y > 1 && noise.noise(x * CAVE_SCALE, y * CAVE_SCALE + 100, z * CAVE_SCALE) > caveThreshold;
+    }
+}
@@ -0,0 +1,136 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.scheduler.TaskScheduler;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A main thread that runs in real time: one thread that runs every task handed to it, with
+ * ticks of 50ms. Unlike {@link SimulatedScheduler}, it can be used from any number of threads
+ * at once, so the plugin's async code runs against it the way it does on a server.
+ */
+public class ThreadedScheduler implements TaskScheduler {
+    // Length of a tick on a server keeping up with 20 TPS
+    public static final long TICK_MILLIS = 50L;
+
+    private final ScheduledExecutorService executor;
+    private final AtomicLong tasksRun = new AtomicLong();
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+    private volatile Thread thread;
+
+    /**
+     * Create a new scheduler and start its thread.
+     */
+    public ThreadedScheduler() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread main = new Thread(runnable, "Server thread");
+            main.setDaemon(true);
+            thread = main;
+            return main;
+        });
+    }
+
+    @Override
+    public ScheduledTask runTask(Runnable task) {
+        return new Task(executor.schedule(wrap(task), 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public ScheduledTask runTaskLater(Runnable task, long delay) {
+        return new Task(executor.schedule(wrap(task), Math.max(0, delay) * TICK_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public ScheduledTask runTaskTimer(Runnable task, long delay, long period) {
+        return new Task(executor.scheduleAtFixedRate(wrap(task), Math.max(0, delay) * TICK_MILLIS,
+            Math.max(1, period) * TICK_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Run something on the main thread and get its result, the way a command would.
+     * @param action The action
+     * @param <T> The type of the result
+     * @return The result, completed exceptionally if the action throws
+     */
+    public <T> CompletableFuture<T> call(Supplier<T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(action.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Check if the current thread is the main thread.
+     * @return True on the main thread
+     */
+    public boolean isMainThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Get the number of tasks the main thread has run.
+     * @return The number of tasks
+     */
+    public long getTasksRun() {
+        return tasksRun.get();
+    }
+
+    /**
+     * Get what the tasks threw. A task that throws would otherwise fail silently, and a
+     * repeating one would stop repeating.
+     * @return The exceptions, in the order they were thrown
+     */
+    public List<Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Stop the main thread, dropping any tasks that haven't run yet.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Runnable wrap(Runnable task) {
+        return () -> {
+            tasksRun.incrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                failures.add(t);
+            }
+        };
+    }
+
+    private static final class Task implements ScheduledTask {
+        private final ScheduledFuture<?> future;
+
+        private Task(ScheduledFuture<?> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void cancel() {
+            future.cancel(false);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+    }
+}
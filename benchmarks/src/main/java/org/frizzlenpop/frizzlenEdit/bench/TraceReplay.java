@@ -0,0 +1,335 @@
+package org.frizzlenpop.frizzlenEdit.bench;
+
+import org.bukkit.Location;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.config.ConfigManager;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.operations.JobProfile;
+import org.frizzlenpop.frizzlenEdit.operations.Operation;
+import org.frizzlenpop.frizzlenEdit.operations.OperationListener;
+import org.frizzlenpop.frizzlenEdit.operations.OperationManager;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.trace.TraceEvent;
+import org.frizzlenpop.frizzlenEdit.trace.TraceFile;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a trace recorded with /fe trace, without a server or a real player. The plugin is
+ * built by {@link HeadlessPlugin}, the commands run as a synthetic player through the same
+ * executors the plugin registers, and every block is edited in a {@link MemoryExtent}.
+ * Snapshots in the trace are restored before the command that needs them, so the operations
+ * see the same blocks as when they were recorded.
+ *
+ * Commands run one at a time on the main thread of a {@link ThreadedScheduler}; the next one
+ * starts once the previous one's operations and async work are done. Prints the operations
+ * run, the blocks they changed, the main thread time and allocation they took, and the
+ * commands that failed, and exits with status 1 if the replay didn't finish.
+ *
+ * Options, as "--name value" or "--name=value":
+ * --trace      The trace file (required)
+ * --timeout-s  Longest time the whole replay may take, in seconds (default 600)
+ */
+public final class TraceReplay implements OperationListener {
+    // Stop printing failed commands after this many; they are still counted
+    private static final int MAX_REPORTED = 20;
+
+    // Ticks in a row with nothing running before the next command, so main thread work
+    // scheduled by async tasks, such as setting a copied clipboard, gets to run first
+    private static final int IDLE_TICKS = 2;
+
+    private final FrizzlenEdit plugin;
+    private final ThreadedScheduler scheduler;
+    private final List<TraceEvent> events;
+    private final HeadlessWorld world;
+    private final MemoryExtent extent;
+    private final Player player;
+    private final Map<String, String> labels;
+    private final Map<String, CommandExecutor> executors;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // Read by the player's location while a command runs, on the main thread
+    private volatile Location location;
+
+    private volatile ScheduledTask task;
+    private int next;
+    private int idle;
+    private final List<String> failures = new ArrayList<>();
+    private int failed;
+
+    // Totals over the operations the replay ran
+    private int operations;
+    private long blocksChanged;
+    private double tickMillis;
+    private long allocatedBytes;
+    private boolean allocationSupported = true;
+
+    private TraceReplay(FrizzlenEdit plugin, ThreadedScheduler scheduler, List<TraceEvent> events) throws IOException {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.events = events;
+        this.world = new HeadlessWorld("replay");
+        this.extent = new MemoryExtent("replay");
+        this.location = new Location(world.getWorld(), 0, 64, 0);
+        this.player = world.createPlayer("replay", this::message, () -> location);
+        this.labels = readLabels();
+        this.executors = plugin.createCommandExecutors();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = RegressionGate.parseOptions(args);
+        if (!options.containsKey("trace")) {
+            System.err.println("Usage: TraceReplay --trace <file> [--timeout-s <seconds>]");
+            System.exit(2);
+        }
+        File traceFile = new File(options.get("trace"));
+        long timeoutSeconds = Long.parseLong(options.getOrDefault("timeout-s", "600"));
+        List<TraceEvent> events = TraceFile.read(traceFile);
+
+        // Keep the plugin from refusing, queueing or logging edits, and from evicting the session mid-run
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigManager.KEY_ADMISSION_ENABLED, false);
+        config.put(ConfigManager.KEY_SLOW_JOB_LOG_ENABLED, false);
+        config.put(ConfigManager.KEY_SESSION_IDLE_TIMEOUT_MINUTES, 0);
+
+        File dataFolder = Files.createTempDirectory("frizzlenedit-replay").toFile();
+        ThreadedScheduler scheduler = new ThreadedScheduler();
+        FrizzlenEdit plugin = HeadlessPlugin.create(dataFolder, scheduler, config);
+        TraceReplay replay = new TraceReplay(plugin, scheduler, events);
+
+        System.out.printf("Replaying %d commands from %s%n", events.size(), traceFile.getName());
+        long started = System.nanoTime();
+        boolean completed = replay.run(timeoutSeconds);
+        replay.report(completed, System.nanoTime() - started);
+
+        HeadlessPlugin.shutdown(plugin);
+        scheduler.shutdown();
+        deleteRecursively(dataFolder);
+
+        if (!completed) {
+            System.out.println("FAILED: the replay did not finish within " + timeoutSeconds + "s");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run every command of the trace.
+     * @param timeoutSeconds Longest time to wait for the replay
+     * @return True if every command was run in time
+     */
+    private boolean run(long timeoutSeconds) throws InterruptedException {
+        OperationManager operationManager = plugin.getOperationManager();
+        operationManager.addListener(this);
+        operationManager.setExtentOverride(player, extent);
+        task = scheduler.runTaskTimer(this::tick, 1L, 1L);
+
+        boolean completed = done.await(timeoutSeconds, TimeUnit.SECONDS);
+        task.cancel();
+        operationManager.removeListener(this);
+        operationManager.clearExtentOverride(player);
+        return completed;
+    }
+
+    /**
+     * Run the next command once the previous one has finished. Runs on the main thread.
+     */
+    private void tick() {
+        // Operations run on later ticks and copies partly off the main thread, so wait for them
+        if (!isIdle()) {
+            idle = 0;
+            return;
+        }
+        if (++idle < IDLE_TICKS) {
+            return;
+        }
+        idle = 0;
+
+        if (next >= events.size()) {
+            task.cancel();
+            done.countDown();
+            return;
+        }
+
+        TraceEvent event = events.get(next++);
+        if (event.getSnapshot() != null) {
+            event.getSnapshot().restore(extent);
+        }
+
+        location = new Location(world.getWorld(), event.getPosition().getX() + 0.5, event.getPosition().getY(),
+            event.getPosition().getZ() + 0.5, event.getYaw(), event.getPitch());
+        if (event.getSelectionMin() != null) {
+            plugin.getSelectionManager().setPosition1(player, event.getSelectionMin());
+            plugin.getSelectionManager().setPosition2(player, event.getSelectionMax());
+        }
+
+        String[] words = event.getCommand().split(" ");
+        String label = words[0];
+        String[] commandArgs = Arrays.copyOfRange(words, 1, words.length);
+        String name = labels.get(stripNamespace(label).toLowerCase(Locale.ROOT));
+        CommandExecutor executor = name != null ? executors.get(name) : null;
+        if (executor == null) {
+            failure(event, "unknown command");
+            return;
+        }
+
+        try {
+            if (!executor.onCommand(player, command(name), label, commandArgs)) {
+                failure(event, "usage error");
+            }
+        } catch (RuntimeException e) {
+            failure(event, "threw " + e);
+        }
+    }
+
+    /**
+     * Check if nothing the previous command started is still running.
+     * @return True if no operation is running and the async threads are idle
+     */
+    private boolean isIdle() {
+        if (plugin.getOperationManager().getActiveOperations() > 0) {
+            return false;
+        }
+        return !(plugin.getAsyncExecutor() instanceof ForkJoinPool) || ((ForkJoinPool) plugin.getAsyncExecutor()).isQuiescent();
+    }
+
+    @Override
+    public void onOperationCompleted(Operation operation, HistoryEntry entry, JobProfile profile) {
+        if (operation.getPlayer() != player) {
+            return;
+        }
+
+        operations++;
+        tickMillis += profile.getTickMillis();
+        if (entry != null) {
+            blocksChanged += entry.getSize();
+        }
+        if (profile.getAllocatedBytes() >= 0) {
+            allocatedBytes += profile.getAllocatedBytes();
+        } else {
+            allocationSupported = false;
+        }
+    }
+
+    private void message(String message) {
+        if (message.contains("failed") || message.contains("Failed") || message.contains("Error")) {
+            synchronized (failures) {
+                failed++;
+                if (failures.size() < MAX_REPORTED) {
+                    failures.add("command " + next + " was told: " + message);
+                }
+            }
+        }
+    }
+
+    private void failure(TraceEvent event, String reason) {
+        synchronized (failures) {
+            failed++;
+            if (failures.size() < MAX_REPORTED) {
+                failures.add("command " + next + " (" + event.getCommand() + "): " + reason);
+            }
+        }
+    }
+
+    private void report(boolean completed, long elapsedNanos) {
+        double wallSeconds = elapsedNanos / 1e9;
+        double blocksPerSecond = tickMillis > 0 ? blocksChanged / (tickMillis / 1000.0) : 0;
+
+        System.out.printf("%s after %d/%d commands%n", completed ? "Replay finished" : "Replay stopped", next, events.size());
+        System.out.printf("%-20s %,14d%n", "operations", operations);
+        System.out.printf("%-20s %,14d%n", "blocks changed", blocksChanged);
+        System.out.printf("%-20s %,14.1f ms%n", "main thread time", tickMillis);
+        System.out.printf("%-20s %,14.0f blocks/s%n", "throughput", blocksPerSecond);
+        if (allocationSupported) {
+            System.out.printf("%-20s %14s%n", "allocated", MemoryEstimates.format(allocatedBytes));
+        }
+        System.out.printf("%-20s %,14.1f s%n", "wall time", wallSeconds);
+
+        synchronized (failures) {
+            System.out.printf("%-20s %,14d%n", "failed commands", failed);
+            for (String failure : failures) {
+                System.out.println("  " + failure);
+            }
+            if (failed > failures.size()) {
+                System.out.println("  ...");
+            }
+        }
+        for (Throwable failure : scheduler.getFailures()) {
+            System.out.println("  A main thread task threw " + failure);
+        }
+    }
+
+    /**
+     * Read the command names and aliases from plugin.yml, the way the server resolves them.
+     * @return The command name by lower-case label
+     */
+    private static Map<String, String> readLabels() throws IOException {
+        Map<String, String> labels = new HashMap<>();
+        try (InputStream in = FrizzlenEdit.class.getResourceAsStream("/plugin.yml")) {
+            if (in == null) {
+                throw new IOException("plugin.yml is not on the classpath");
+            }
+            YamlConfiguration yaml = YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+            ConfigurationSection commands = yaml.getConfigurationSection("commands");
+            if (commands == null) {
+                return labels;
+            }
+            for (String name : commands.getKeys(false)) {
+                labels.put(name.toLowerCase(Locale.ROOT), name);
+                for (String alias : commands.getStringList(name + ".aliases")) {
+                    labels.putIfAbsent(alias.toLowerCase(Locale.ROOT), name);
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Drop the plugin name of a label such as "frizzlenedit:set".
+     */
+    private static String stripNamespace(String label) {
+        int colon = label.indexOf(':');
+        return colon < 0 ? label : label.substring(colon + 1);
+    }
+
+    private static Command command(String name) {
+        // Executors only look at the sender, label and arguments
+        return new Command(name) {
+            @Override
+            public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+                return false;
+            }
+        };
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
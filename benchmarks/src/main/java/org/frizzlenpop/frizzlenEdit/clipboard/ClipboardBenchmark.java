@@ -0,0 +1,79 @@
+package org.frizzlenpop.frizzlenEdit.clipboard;
+
+import org.frizzlenpop.frizzlenEdit.bench.HeadlessWorld;
+import org.frizzlenpop.frizzlenEdit.bench.TerrainFixture;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying a region into a clipboard, and rotating and flipping the result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class ClipboardBenchmark {
+
+    @Param({ "16", "64" })
+    public int size;
+
+    private MemoryExtent terrain;
+    private Region region;
+    private Clipboard clipboard;
+
+    @Setup
+    public void setup() {
+        TerrainFixture fixture = new TerrainFixture(TerrainFixture.DEFAULT_SEED, size, size);
+        terrain = fixture.create("clipboard");
+        region = new Region(new HeadlessWorld("clipboard").getWorld(), fixture.getMin(), fixture.getMax());
+        clipboard = new Clipboard(region, region.getMinimumPoint());
+        clipboard.copy(region, terrain);
+    }
+
+    @Benchmark
+    public Clipboard copy() {
+        Clipboard copy = new Clipboard(region, region.getMinimumPoint());
+        copy.copy(region, terrain);
+        return copy;
+    }
+
+    @Benchmark
+    public Clipboard rotate90() {
+        // Rotating in place keeps the clipboard the same size, so no reset is needed
+        clipboard.rotate(90);
+        return clipboard;
+    }
+
+    @Benchmark
+    public Clipboard rotate180() {
+        clipboard.rotate(180);
+        return clipboard;
+    }
+
+    @Benchmark
+    public Clipboard flipX() {
+        clipboard.flip('x');
+        return clipboard;
+    }
+
+    @Benchmark
+    public Clipboard flipY() {
+        clipboard.flip('y');
+        return clipboard;
+    }
+}
@@ -0,0 +1,67 @@
+package org.frizzlenpop.frizzlenEdit.operations;
+
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.bench.HeadlessWorld;
+import org.frizzlenpop.frizzlenEdit.bench.TerrainFixture;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The smoothing kernel: one full {@link SmoothOperation} over fixture terrain, including
+ * the snapshot, the smoothing iterations and writing the result back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class SmoothOperationBenchmark {
+
+    @Param({ "16", "32" })
+    public int size;
+
+    @Param({ "1", "4" })
+    public int iterations;
+
+    private TerrainFixture fixture;
+    private Player player;
+    private Region region;
+    private MemoryExtent terrain;
+
+    @Setup(Level.Trial)
+    public void setupWorld() {
+        HeadlessWorld world = new HeadlessWorld("smooth");
+        fixture = new TerrainFixture(TerrainFixture.DEFAULT_SEED, size, size);
+        player = world.createPlayer("bench");
+        region = new Region(world.getWorld(), fixture.getMin(), fixture.getMax());
+    }
+
+    @Setup(Level.Invocation)
+    public void resetTerrain() {
+        // Smoothing changes the terrain, so every run starts from the same blocks
+        terrain = fixture.create("smooth");
+    }
+
+    @Benchmark
+    public HistoryEntry smooth() {
+        SmoothOperation operation = new SmoothOperation(player, region, iterations, 2.0, true, true, 0.0);
+        operation.setExtent(terrain);
+        return operation.execute();
+    }
+}
@@ -0,0 +1,80 @@
+package org.frizzlenpop.frizzlenEdit.operations;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.bench.Headless;
+import org.frizzlenpop.frizzlenEdit.bench.HeadlessWorld;
+import org.frizzlenpop.frizzlenEdit.bench.TerrainFixture;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.patterns.SingleBlockPattern;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.world.MemoryExtent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operations that only make sense on real terrain: naturalize, overlay and caves,
+ * each over a fresh copy of the same fixture terrain.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class TerrainOperationBenchmark {
+
+    @Param({ "32", "64" })
+    public int size;
+
+    private TerrainFixture fixture;
+    private Player player;
+    private Region region;
+    private MemoryExtent terrain;
+
+    @Setup(Level.Trial)
+    public void setupWorld() {
+        HeadlessWorld world = new HeadlessWorld("terrain");
+        fixture = new TerrainFixture(TerrainFixture.DEFAULT_SEED, size, size);
+        player = world.createPlayer("bench");
+        region = new Region(world.getWorld(), fixture.getMin(), fixture.getMax());
+    }
+
+    @Setup(Level.Invocation)
+    public void resetTerrain() {
+        // Every operation here changes the terrain, so each run starts from the same blocks
+        terrain = fixture.create("terrain");
+    }
+
+    @Benchmark
+    public HistoryEntry naturalize() {
+        return run(new NaturalizeOperation(player, region, true));
+    }
+
+    @Benchmark
+    public HistoryEntry overlay() {
+        return run(new OverlayOperation(player, region, new SingleBlockPattern(Headless.blockData(Material.MOSS_BLOCK)), false));
+    }
+
+    @Benchmark
+    public HistoryEntry caves() {
+        return run(new CavesOperation(player, region));
+    }
+
+    private HistoryEntry run(Operation operation) {
+        operation.setExtent(terrain);
+        return operation.execute();
+    }
+}
@@ -0,0 +1,64 @@
+package org.frizzlenpop.frizzlenEdit.patterns;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.frizzlenpop.frizzlenEdit.bench.Headless;
+import org.frizzlenpop.frizzlenEdit.bench.HeadlessWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking blocks from a weighted random pattern, as a fill with "stone,dirt,..." does for
+ * every block. Each invocation picks for one 16x16x16 section.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class RandomPatternBenchmark {
+    private static final Material[] MATERIALS = {
+        Material.STONE, Material.DIRT, Material.GRAVEL, Material.ANDESITE,
+        Material.DIORITE, Material.GRANITE, Material.COBBLESTONE, Material.TUFF
+    };
+
+    @Param({ "2", "8" })
+    public int entries;
+
+    private World world;
+    private RandomPattern pattern;
+
+    @Setup
+    public void setup() {
+        world = new HeadlessWorld("pattern").getWorld();
+        pattern = new RandomPattern();
+        for (int i = 0; i < entries; i++) {
+            pattern.add(new SingleBlockPattern(Headless.blockData(MATERIALS[i])), i + 1);
+        }
+    }
+
+    @Benchmark
+    public void section(Blackhole blackhole) {
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    blackhole.consume(pattern.getBlockData(new Location(world, x, y, z)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.bench.HeadlessWorld;
+import org.frizzlenpop.frizzlenEdit.bench.TerrainFixture;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.utils.NBTReader;
+import org.frizzlenpop.frizzlenEdit.utils.NBTUtils;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading Sponge schematics, and the raw NBT read underneath loading: the old
+ * tree reader next to a streaming pass that skips every tag. The parallel variants write
+ * and read the layout split into independently compressed sections; the sectioned variants
+ * use the native format, read whole or one 16x16x16 corner at a time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class SchematicBenchmark {
+
+    @Param({ "16", "64" })
+    public int size;
+
+    private Clipboard clipboard;
+    private File input;
+    private File parallelInput;
+    private File sectionedInput;
+    private File output;
+
+    @Setup
+    public void setup() throws IOException {
+        TerrainFixture fixture = new TerrainFixture(TerrainFixture.DEFAULT_SEED, size, size);
+        Region region = new Region(new HeadlessWorld("schematic").getWorld(), fixture.getMin(), fixture.getMax());
+        clipboard = new Clipboard(region, region.getMinimumPoint());
+        clipboard.copy(region, fixture.create("schematic"));
+
+        input = Files.createTempFile("frizzlenedit-bench", ".schem").toFile();
+        output = Files.createTempFile("frizzlenedit-bench", ".schem").toFile();
+        SchematicManager.SchematicFormat.save(clipboard, input);
+        parallelInput = Files.createTempFile("frizzlenedit-bench", ".schem").toFile();
+        SchematicManager.SchematicFormat.save(clipboard, parallelInput, 6, null, true);
+        sectionedInput = Files.createTempFile("frizzlenedit-bench", SectionedSchematic.EXTENSION).toFile();
+        SectionedSchematicWriter.write(clipboard, sectionedInput, 6, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        input.delete();
+        parallelInput.delete();
+        sectionedInput.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        SchematicManager.SchematicFormat.save(clipboard, output);
+        return output;
+    }
+
+    @Benchmark
+    public File saveParallel() throws IOException {
+        SchematicManager.SchematicFormat.save(clipboard, output, 6, null, true);
+        return output;
+    }
+
+    @Benchmark
+    public Clipboard load() throws IOException {
+        return SchematicManager.SchematicFormat.load(input);
+    }
+
+    @Benchmark
+    public Clipboard loadParallel() throws IOException {
+        return SchematicManager.SchematicFormat.load(parallelInput);
+    }
+
+    @Benchmark
+    public File saveSectioned() throws IOException {
+        SectionedSchematicWriter.write(clipboard, output, 6, null);
+        return output;
+    }
+
+    @Benchmark
+    public Clipboard loadSectioned() throws IOException {
+        try (SectionedSchematic schematic = SectionedSchematic.open(sectionedInput)) {
+            return schematic.read();
+        }
+    }
+
+    @Benchmark
+    public Clipboard loadSectionedCorner() throws IOException {
+        try (SectionedSchematic schematic = SectionedSchematic.open(sectionedInput)) {
+            return schematic.readRegion(new Vector3(0, 0, 0), new Vector3(15, 15, 15));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> readNbt() throws IOException {
+        return NBTUtils.readSchematic(input);
+    }
+
+    @Benchmark
+    public int streamNbt() throws IOException {
+        int tags = 0;
+        try (NBTReader reader = NBTReader.open(input)) {
+            reader.readRoot();
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                reader.skip(type);
+                tags++;
+            }
+        }
+        return tags;
+    }
+}
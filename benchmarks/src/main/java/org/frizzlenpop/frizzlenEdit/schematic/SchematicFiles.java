@@ -0,0 +1,36 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Gives harnesses outside this package access to the schematic format, which is
+ * package-private in the plugin.
+ */
+public final class SchematicFiles {
+
+    private SchematicFiles() {
+    }
+
+    /**
+     * Save a clipboard as a Sponge schematic.
+     * @param clipboard The clipboard
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public static void save(Clipboard clipboard, File file) throws IOException {
+        SchematicManager.SchematicFormat.save(clipboard, file);
+    }
+
+    /**
+     * Load a Sponge schematic into a clipboard.
+     * @param file The file
+     * @return The clipboard
+     * @throws IOException If the file can't be read
+     */
+    public static Clipboard load(File file) throws IOException {
+        return SchematicManager.SchematicFormat.load(file);
+    }
+}
@@ -0,0 +1,62 @@
+package org.frizzlenpop.frizzlenEdit.selection;
+
+import org.frizzlenpop.frizzlenEdit.bench.HeadlessWorld;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking every position of a region, which most operations do before touching a block.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class RegionIterationBenchmark {
+
+    @Param({ "16", "64" })
+    public int size;
+
+    private Region region;
+
+    @Setup
+    public void setup() {
+        HeadlessWorld world = new HeadlessWorld("region");
+        region = new Region(world.getWorld(), new Vector3(0, 0, 0), new Vector3(size - 1, size - 1, size - 1));
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Vector3 pos : region) {
+            sum += pos.getX() + pos.getY() + pos.getZ();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int contains() {
+        int count = 0;
+        for (int x = -1; x <= size; x++) {
+            for (int y = -1; y <= size; y++) {
+                if (region.contains(new Vector3(x, y, x))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
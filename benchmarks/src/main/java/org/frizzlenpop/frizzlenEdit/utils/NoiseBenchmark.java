@@ -0,0 +1,74 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sampling both noise generators over a 32x32x32 grid, the way the noise pattern and
+ * terrain operations use them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class NoiseBenchmark {
+    private static final int SIZE = 32;
+
+    private NoiseGenerator noise;
+    private PerlinNoiseGenerator perlin;
+
+    @Setup
+    public void setup() {
+        noise = new NoiseGenerator(1234L, 0.5, 0.05, 4);
+        perlin = new PerlinNoiseGenerator(1234L);
+    }
+
+    @Benchmark
+    public double noise2d() {
+        double sum = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                sum += noise.noise(x, z);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double noise3d() {
+        double sum = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    sum += noise.noise(x, y, z);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double perlin3d() {
+        double sum = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    sum += perlin.noise(x * 0.05, y * 0.05, z * 0.05);
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -1,26 +1,43 @@
 package org.frizzlenpop.frizzlenEdit;
 
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.frizzlenpop.frizzlenEdit.commands.*;
 import org.frizzlenpop.frizzlenEdit.config.ConfigManager;
 import org.frizzlenpop.frizzlenEdit.history.HistoryManager;
 import org.frizzlenpop.frizzlenEdit.selection.SelectionManager;
+import org.frizzlenpop.frizzlenEdit.session.SessionManager;
 import org.frizzlenpop.frizzlenEdit.clipboard.ClipboardManager;
 import org.frizzlenpop.frizzlenEdit.schematic.SchematicManager;
 import org.frizzlenpop.frizzlenEdit.operations.OperationManager;
+import org.frizzlenpop.frizzlenEdit.scheduler.BukkitTaskScheduler;
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+import org.frizzlenpop.frizzlenEdit.scheduler.SystemClock;
+import org.frizzlenpop.frizzlenEdit.scheduler.TaskScheduler;
 import org.frizzlenpop.frizzlenEdit.brushes.BrushManager;
+import org.frizzlenpop.frizzlenEdit.trace.TraceRecorder;
+import org.frizzlenpop.frizzlenEdit.utils.BudgetOverlay;
 import org.frizzlenpop.frizzlenEdit.utils.Logger;
 import org.frizzlenpop.frizzlenEdit.utils.ServerPerformanceMonitor;
 import org.frizzlenpop.frizzlenEdit.utils.CommandPreprocessor;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public final class FrizzlenEdit extends JavaPlugin {
     
+    // Longest time to wait for async tasks when the plugin is disabled
+    private static final long ASYNC_SHUTDOWN_TIMEOUT_SECONDS = 30;
+    
     private static FrizzlenEdit instance;
     private ConfigManager configManager;
+    private SessionManager sessionManager;
     private SelectionManager selectionManager;
     private ClipboardManager clipboardManager;
     private HistoryManager historyManager;
@@ -29,6 +46,10 @@ public final class FrizzlenEdit extends JavaPlugin {
     private BrushManager brushManager;
     private ExecutorService asyncExecutor;
     private CommandPreprocessor commandPreprocessor;
+    private TraceRecorder traceRecorder;
+    private BudgetOverlay budgetOverlay;
+    private TaskScheduler taskScheduler;
+    private Clock clock;
     
     @Override
     public void onEnable() {
@@ -43,14 +64,21 @@ public final class FrizzlenEdit extends JavaPlugin {
         asyncExecutor = Executors.newWorkStealingPool(threadCount);
         Logger.log(Level.INFO, "Created thread pool with " + threadCount + " threads");
         
+        // Main thread scheduling and time go through these, so they can be simulated
+        taskScheduler = new BukkitTaskScheduler(this);
+        clock = SystemClock.INSTANCE;
+        
         // Initialize managers
         configManager = new ConfigManager(this);
+        sessionManager = new SessionManager(this);
         selectionManager = new SelectionManager(this);
         clipboardManager = new ClipboardManager(this);
         historyManager = new HistoryManager(this);
         schematicManager = new SchematicManager(this);
         operationManager = new OperationManager(this);
         brushManager = new BrushManager(this);
+        traceRecorder = new TraceRecorder(this);
+        budgetOverlay = new BudgetOverlay(this);
         
         // Initialize pattern factory
         org.frizzlenpop.frizzlenEdit.patterns.PatternFactory.init(this);
@@ -62,9 +90,12 @@ public final class FrizzlenEdit extends JavaPlugin {
         commandPreprocessor = new CommandPreprocessor(this);
         
         // Register event listeners
+        getServer().getPluginManager().registerEvents(sessionManager, this);
         getServer().getPluginManager().registerEvents(selectionManager, this);
         getServer().getPluginManager().registerEvents(brushManager, this);
         getServer().getPluginManager().registerEvents(commandPreprocessor, this);
+        getServer().getPluginManager().registerEvents(traceRecorder, this);
+        getServer().getPluginManager().registerEvents(budgetOverlay, this);
         
         // Initialize server performance monitor
         ServerPerformanceMonitor.getInstance(this);
@@ -75,14 +106,22 @@ public final class FrizzlenEdit extends JavaPlugin {
         
         Logger.log(Level.INFO, "FrizzlenEdit has been enabled successfully!");
     }
-
+    
     @Override
     public void onDisable() {
         Logger.log(Level.INFO, "Shutting down FrizzlenEdit...");
         
-        // Shutdown async executor
+        // Shutdown async executor, and let the tasks already running finish first: sessions
+        // still being written for players who just left would otherwise be cut off
         if (asyncExecutor != null) {
             asyncExecutor.shutdown();
+            try {
+                if (!asyncExecutor.awaitTermination(ASYNC_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    Logger.warning("Async tasks still running after " + ASYNC_SHUTDOWN_TIMEOUT_SECONDS + "s, shutting down without them");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
         
         // Shutdown performance monitor
@@ -91,6 +130,26 @@ public final class FrizzlenEdit extends JavaPlugin {
             monitor.shutdown();
         }
         
+        // Hide the budget overlay
+        if (budgetOverlay != null) {
+            budgetOverlay.shutdown();
+        }
+        
+        // Finish any trace recordings
+        if (traceRecorder != null) {
+            traceRecorder.shutdown();
+        }
+        
+        // Stop queued operations and persist measured operation costs
+        if (operationManager != null) {
+            operationManager.shutdown();
+        }
+        
+        // Write player sessions to disk, so they survive the restart
+        if (sessionManager != null) {
+            sessionManager.shutdown();
+        }
+        
         // Save any necessary data
         if (configManager != null) {
             configManager.saveAll();
@@ -103,20 +162,27 @@ public final class FrizzlenEdit extends JavaPlugin {
         Logger.log(Level.INFO, "FrizzlenEdit has been disabled.");
     }
     
-    private void registerCommands() {
+    /**
+     * Create the executor of every command in plugin.yml. Runs without a server, so
+     * recorded traces can be replayed through the same commands outside of one.
+     * @return The executors by command name
+     */
+    public Map<String, CommandExecutor> createCommandExecutors() {
+        Map<String, CommandExecutor> executors = new LinkedHashMap<>();
+        
         // Main command handler that will dispatch to appropriate subcommands
         FrizzlenEditCommandHandler mainHandler = new FrizzlenEditCommandHandler(this);
         
         // Register the main command
-        getCommand("frizzlenedit").setExecutor(mainHandler);
+        executors.put("frizzlenedit", mainHandler);
         
         // Register selection commands
-        getCommand("wand").setExecutor(new SelectionCommands.WandCommand(this));
-        getCommand("pos1").setExecutor(new SelectionCommands.Pos1Command(this));
-        getCommand("pos2").setExecutor(new SelectionCommands.Pos2Command(this));
-        getCommand("expand").setExecutor(new SelectionCommands.ExpandCommand(this));
-        getCommand("contract").setExecutor(new SelectionCommands.ContractCommand(this));
-        getCommand("size").setExecutor(new SelectionCommands.SizeCommand(this));
+        executors.put("wand", new SelectionCommands.WandCommand(this));
+        executors.put("pos1", new SelectionCommands.Pos1Command(this));
+        executors.put("pos2", new SelectionCommands.Pos2Command(this));
+        executors.put("expand", new SelectionCommands.ExpandCommand(this));
+        executors.put("contract", new SelectionCommands.ContractCommand(this));
+        executors.put("size", new SelectionCommands.SizeCommand(this));
         
         // Register clipboard commands
         ClipboardCommands.CopyCommand copyCommand = new ClipboardCommands.CopyCommand(this);
@@ -126,35 +192,36 @@ public final class FrizzlenEdit extends JavaPlugin {
         ClipboardCommands.RotateCommand rotateCommand = new ClipboardCommands.RotateCommand(this);
         ClipboardCommands.FlipCommand flipCommand = new ClipboardCommands.FlipCommand(this);
         
-        getCommand("copy").setExecutor(copyCommand);
-        getCommand("cut").setExecutor(cutCommand);
-        getCommand("paste").setExecutor(pasteCommand);
-        getCommand("pastelarge").setExecutor(pasteLargeCommand);
-        getCommand("rotate").setExecutor(rotateCommand);
-        getCommand("flip").setExecutor(flipCommand);
+        executors.put("copy", copyCommand);
+        executors.put("cut", cutCommand);
+        executors.put("paste", pasteCommand);
+        executors.put("pastelarge", pasteLargeCommand);
+        executors.put("rotate", rotateCommand);
+        executors.put("flip", flipCommand);
+        executors.put("clipboard", new ClipboardCommands.ClipboardCommand(this));
         
         // Register block operation commands
-        getCommand("set").setExecutor(new BlockCommands.SetCommand(this));
-        getCommand("replace").setExecutor(new BlockCommands.ReplaceCommand(this));
-        getCommand("smooth").setExecutor(new BlockCommands.SmoothCommand(this));
-        getCommand("drain").setExecutor(new BlockCommands.DrainCommand(this));
-        getCommand("cyl").setExecutor(new BlockCommands.CylinderCommand(this));
-        getCommand("removenear").setExecutor(new BlockCommands.RemoveNearCommand(this));
-        getCommand("sphere").setExecutor(new SphereCommand(this));
-        getCommand("pyramid").setExecutor(new PyramidCommand(this));
-        getCommand("fill").setExecutor(new BlockCommands.FillCommand(this));
-        getCommand("walls").setExecutor(new BlockCommands.WallsCommand(this));
-        getCommand("outline").setExecutor(new BlockCommands.OutlineCommand(this));
-        getCommand("hollow").setExecutor(new BlockCommands.HollowCommand(this));
-        getCommand("naturalize").setExecutor(new BlockCommands.NaturalizeCommand(this));
-        getCommand("overlay").setExecutor(new BlockCommands.OverlayCommand(this));
-        getCommand("caves").setExecutor(new BlockCommands.CavesCommand(this));
-        getCommand("regen").setExecutor(new BlockCommands.RegenCommand(this));
-        getCommand("chunkinfo").setExecutor(new BlockCommands.ShowChunkInfoCommand(this));
+        executors.put("set", new BlockCommands.SetCommand(this));
+        executors.put("replace", new BlockCommands.ReplaceCommand(this));
+        executors.put("smooth", new BlockCommands.SmoothCommand(this));
+        executors.put("drain", new BlockCommands.DrainCommand(this));
+        executors.put("cyl", new BlockCommands.CylinderCommand(this));
+        executors.put("removenear", new BlockCommands.RemoveNearCommand(this));
+        executors.put("sphere", new SphereCommand(this));
+        executors.put("pyramid", new PyramidCommand(this));
+        executors.put("fill", new BlockCommands.FillCommand(this));
+        executors.put("walls", new BlockCommands.WallsCommand(this));
+        executors.put("outline", new BlockCommands.OutlineCommand(this));
+        executors.put("hollow", new BlockCommands.HollowCommand(this));
+        executors.put("naturalize", new BlockCommands.NaturalizeCommand(this));
+        executors.put("overlay", new BlockCommands.OverlayCommand(this));
+        executors.put("caves", new BlockCommands.CavesCommand(this));
+        executors.put("regen", new BlockCommands.RegenCommand(this));
+        executors.put("chunkinfo", new BlockCommands.ShowChunkInfoCommand(this));
         
         // Register history commands
-        getCommand("undo").setExecutor(new BlockCommands.UndoCommand(this));
-        getCommand("redo").setExecutor(new BlockCommands.RedoCommand(this));
+        executors.put("undo", new BlockCommands.UndoCommand(this));
+        executors.put("redo", new BlockCommands.RedoCommand(this));
         
         // Register brush commands
         BrushCommands.SphereBrushCommand sphereBrushCommand = new BrushCommands.SphereBrushCommand(this);
@@ -165,30 +232,45 @@ public final class FrizzlenEdit extends JavaPlugin {
         // Create a brush command handler that will delegate to the appropriate brush subcommand
         BrushCommandHandler brushHandler = new BrushCommandHandler(this, 
             sphereBrushCommand, cylinderBrushCommand, smoothBrushCommand, noneBrushCommand);
-        getCommand("brush").setExecutor(brushHandler);
+        executors.put("brush", brushHandler);
         
         // Register mask command
-        getCommand("mask").setExecutor(new BrushCommands.MaskCommand(this));
+        executors.put("mask", new BrushCommands.MaskCommand(this));
         
         // Register brush tool command
-        getCommand("brushtool").setExecutor(new BrushCommands.BrushToolCommand(this));
+        executors.put("brushtool", new BrushCommands.BrushToolCommand(this));
         
         // Register schematic commands
         SchematicCommands.SaveCommand saveCommand = new SchematicCommands.SaveCommand(this);
         SchematicCommands.LoadCommand loadCommand = new SchematicCommands.LoadCommand(this);
         SchematicCommands.DeleteCommand deleteCommand = new SchematicCommands.DeleteCommand(this);
         SchematicCommands.ListCommand listCommand = new SchematicCommands.ListCommand(this);
+        SchematicCommands.SearchCommand searchCommand = new SchematicCommands.SearchCommand(this);
         SchematicCommands.FormatsCommand formatsCommand = new SchematicCommands.FormatsCommand(this);
         SchematicCommands.PasteCommand schemPasteCommand = new SchematicCommands.PasteCommand(this);
         SchematicCommands.PasteLargeCommand schemPasteLargeCommand = new SchematicCommands.PasteLargeCommand(this);
         SchematicCommands.AdaptivePasteCommand adaptivePasteCommand = new SchematicCommands.AdaptivePasteCommand(this);
         
         SchematicCommandHandler schematicCommandHandler = new SchematicCommandHandler(
-            this, saveCommand, loadCommand, deleteCommand, listCommand, formatsCommand, 
+            this, saveCommand, loadCommand, deleteCommand, listCommand, searchCommand, formatsCommand, 
             schemPasteCommand, schemPasteLargeCommand, adaptivePasteCommand
         );
         
-        getCommand("schematic").setExecutor(schematicCommandHandler);
+        executors.put("schematic", schematicCommandHandler);
+        
+        return executors;
+    }
+    
+    private void registerCommands() {
+        for (Map.Entry<String, CommandExecutor> entry : createCommandExecutors().entrySet()) {
+            PluginCommand command = getCommand(entry.getKey());
+            command.setExecutor(entry.getValue());
+            // The schematic command completes schematic names
+            if (entry.getValue() instanceof TabCompleter) {
+                command.setTabCompleter((TabCompleter) entry.getValue());
+            }
+        }
+        
         
         Logger.info("Registered all commands");
     }
@@ -208,6 +290,14 @@ public final class FrizzlenEdit extends JavaPlugin {
         return configManager;
     }
     
+    /**
+     * Get the store of player sessions.
+     * @return The session manager
+     */
+    public SessionManager getSessionManager() {
+        return sessionManager;
+    }
+    
     public SelectionManager getSelectionManager() {
         return selectionManager;
     }
@@ -244,6 +334,38 @@ public final class FrizzlenEdit extends JavaPlugin {
         return commandPreprocessor;
     }
     
+    /**
+     * Get the trace recorder.
+     * @return The trace recorder
+     */
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+    
+    /**
+     * Get the tick budget overlay.
+     * @return The budget overlay
+     */
+    public BudgetOverlay getBudgetOverlay() {
+        return budgetOverlay;
+    }
+    
+    /**
+     * Get the scheduler for main thread tasks.
+     * @return The task scheduler
+     */
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+    
+    /**
+     * Get the clock used to time work.
+     * @return The clock
+     */
+    public Clock getClock() {
+        return clock;
+    }
+    
     /**
      * Get the server performance monitor.
      * @return The server performance monitor
@@ -251,4 +373,4 @@ public final class FrizzlenEdit extends JavaPlugin {
     public ServerPerformanceMonitor getServerPerformanceMonitor() {
         return ServerPerformanceMonitor.getInstance();
     }
-}
+} 
\ No newline at end of file
@@ -1,7 +1,9 @@
 package org.frizzlenpop.frizzlenEdit.brushes;
 
 import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * Represents a brush tool that can be used to modify blocks.
@@ -10,10 +12,11 @@ public interface Brush {
     /**
      * Use this brush at a position.
      * @param player The player using the brush
+     * @param extent The extent to change blocks in
      * @param position The position to use the brush at
      * @param mask The mask to apply, or null for no mask
      */
-    void use(Player player, Vector3 position, String mask);
+    void use(Player player, Extent extent, Vector3 position, String mask);
     
     /**
      * Get the radius of this brush.
@@ -26,4 +29,21 @@ public interface Brush {
      * @return The description
      */
     String getDescription();
+    
+    /**
+     * Get the settings this brush was made with, as read by {@link BrushManager#fromSettings},
+     * so it can be made again when a session is read back from disk.
+     * @return The settings, or null if the brush can't be made again
+     */
+    default String getSettings() {
+        return null;
+    }
+    
+    /**
+     * Estimate the memory held by this brush's state.
+     * @return The estimated size in bytes
+     */
+    default long estimateMemoryBytes() {
+        return MemoryEstimates.BRUSH;
+    }
 } 
\ No newline at end of file
@@ -10,10 +10,12 @@ import org.bukkit.event.block.Action;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.ItemStack;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.session.LocalSession;
+import org.frizzlenpop.frizzlenEdit.session.SessionManager;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -21,8 +23,7 @@ import java.util.UUID;
  */
 public class BrushManager implements Listener {
     private final FrizzlenEdit plugin;
-    private final Map<UUID, Brush> brushes = new HashMap<>();
-    private final Map<UUID, String> masks = new HashMap<>();
+    private final SessionManager sessions;
     
     // The brush tool material
     private static final Material BRUSH_MATERIAL = Material.BLAZE_ROD;
@@ -33,6 +34,7 @@ public class BrushManager implements Listener {
      */
     public BrushManager(FrizzlenEdit plugin) {
         this.plugin = plugin;
+        this.sessions = plugin.getSessionManager();
     }
     
     /**
@@ -41,7 +43,7 @@ public class BrushManager implements Listener {
      * @return True if the player has a brush
      */
     public boolean hasBrush(Player player) {
-        return brushes.containsKey(player.getUniqueId());
+        return getBrush(player) != null;
     }
     
     /**
@@ -50,16 +52,17 @@ public class BrushManager implements Listener {
      * @return The player's brush, or null if they don't have one
      */
     public Brush getBrush(Player player) {
-        return brushes.get(player.getUniqueId());
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        return session == null ? null : session.getBrush();
     }
     
     /**
-     * Set a player's brush.
+     * Set a player's brush, once their session is back if it is being read from disk.
      * @param player The player
      * @param brush The brush
      */
     public void setBrush(Player player, Brush brush) {
-        brushes.put(player.getUniqueId(), brush);
+        sessions.getSession(player).thenAccept(session -> session.setBrush(brush));
     }
     
     /**
@@ -67,16 +70,19 @@ public class BrushManager implements Listener {
      * @param player The player
      */
     public void removeBrush(Player player) {
-        brushes.remove(player.getUniqueId());
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        if (session != null) {
+            session.setBrush(null);
+        }
     }
     
     /**
-     * Set a player's brush mask.
+     * Set a player's brush mask, once their session is back if it is being read from disk.
      * @param player The player
      * @param mask The mask
      */
     public void setMask(Player player, String mask) {
-        masks.put(player.getUniqueId(), mask);
+        sessions.getSession(player).thenAccept(session -> session.setMask(mask));
     }
     
     /**
@@ -85,7 +91,8 @@ public class BrushManager implements Listener {
      * @return The player's mask, or null if they don't have one
      */
     public String getMask(Player player) {
-        return masks.get(player.getUniqueId());
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        return session == null ? null : session.getMask();
     }
     
     /**
@@ -93,7 +100,47 @@ public class BrushManager implements Listener {
      * @param player The player
      */
     public void removeMask(Player player) {
-        masks.remove(player.getUniqueId());
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        if (session != null) {
+            session.setMask(null);
+        }
+    }
+    
+    /**
+     * Make a brush again from the settings it was made with.
+     * @param plugin The plugin instance
+     * @param settings The settings, from {@link Brush#getSettings()}
+     * @return The brush
+     * @throws IllegalArgumentException If the settings are not those of a known brush
+     */
+    public static Brush fromSettings(FrizzlenEdit plugin, String settings) throws IllegalArgumentException {
+        String[] parts = settings.split(" ");
+        try {
+            switch (parts[0]) {
+                case "sphere":
+                    if (parts.length == 3) {
+                        return new SphereBrush(plugin, parts[1], Integer.parseInt(parts[2]));
+                    }
+                    break;
+                case "cylinder":
+                    if (parts.length == 4) {
+                        return new CylinderBrush(plugin, parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                    }
+                    break;
+                case "smooth":
+                    if (parts.length == 7) {
+                        return new SmoothBrush(plugin, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), 
+                                               Double.parseDouble(parts[3]), Boolean.parseBoolean(parts[4]), 
+                                               Boolean.parseBoolean(parts[5]), Double.parseDouble(parts[6]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid brush settings: " + settings);
+        }
+        throw new IllegalArgumentException("Invalid brush settings: " + settings);
     }
     
     /**
@@ -223,6 +270,11 @@ public class BrushManager implements Listener {
             return;
         }
         
+        // Their brush isn't known until their session is back
+        if (!sessions.checkLoaded(player)) {
+            return;
+        }
+        
         // Check if the player has a brush
         if (!hasBrush(player)) {
             player.sendMessage(ChatColor.RED + "You don't have a brush. Use //brush to create one.");
@@ -264,6 +316,31 @@ public class BrushManager implements Listener {
                           position.getX() + ", " + position.getY() + ", " + position.getZ() + ")");
         
         // Use the brush
-        brush.use(player, position, mask);
+        brush.use(player, plugin.getOperationManager().getExtent(player), position, mask);
+    }
+    
+    /**
+     * Get the players that currently have a brush.
+     * @return The UUIDs of the players
+     */
+    public Set<UUID> getPlayers() {
+        Set<UUID> players = new HashSet<>();
+        for (LocalSession session : sessions.getSessions()) {
+            if (session.getBrush() != null) {
+                players.add(session.getUniqueId());
+            }
+        }
+        return players;
+    }
+    
+    /**
+     * Estimate the memory held by a player's brush.
+     * @param uuid The player's UUID
+     * @return The estimated size in bytes
+     */
+    public long getMemoryUsage(UUID uuid) {
+        LocalSession session = sessions.getIfPresent(uuid);
+        Brush brush = session == null ? null : session.getBrush();
+        return brush == null ? 0 : brush.estimateMemoryBytes();
     }
 } 
\ No newline at end of file
@@ -3,13 +3,12 @@ package org.frizzlenpop.frizzlenEdit.brushes;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * A brush that creates cylinders.
@@ -35,11 +34,10 @@ public class CylinderBrush implements Brush {
     }
     
     @Override
-    public void use(Player player, Vector3 position, String mask) {
-        World world = player.getWorld();
+    public void use(Player player, Extent extent, Vector3 position, String mask) {
         
         // Create a history entry
-        HistoryEntry entry = new HistoryEntry(player, world, "Cylinder brush: " + blockData.getAsString());
+        HistoryEntry entry = new HistoryEntry(player, extent, "Cylinder brush: " + blockData.getAsString());
         
         // Calculate the bounds of the cylinder
         int radiusSquared = radius * radius;
@@ -61,24 +59,20 @@ public class CylinderBrush implements Brush {
                     Vector3 blockPos = position.add(new Vector3(x, y, z));
                     
                     // Get the block
-                    Block block = blockPos.toBlock(world);
+                    BlockData oldData = extent.getBlock(blockPos);
                     
                     // Check the mask
                     if (mask != null) {
                         Material maskMaterial = Material.matchMaterial(mask);
-                        if (maskMaterial != null && block.getType() != maskMaterial) {
+                        if (maskMaterial != null && oldData.getMaterial() != maskMaterial) {
                             continue;
                         }
                     }
                     
-                    // Save the previous state for undo
-                    entry.addBlockState(blockPos, block.getState(), null);
-                    
-                    // Set the block
-                    block.setBlockData(blockData);
-                    
-                    // Save the new state for redo
-                    entry.addBlockState(blockPos, null, block.getState());
+                    // Set the block and record it for undo
+                    if (extent.setBlock(blockPos, blockData)) {
+                        entry.addBlock(blockPos, oldData, blockData);
+                    }
                 }
             }
         }
@@ -98,4 +92,9 @@ public class CylinderBrush implements Brush {
     public String getDescription() {
         return "Cylinder brush: " + blockData.getAsString() + ", radius " + radius + ", height " + height;
     }
+    
+    @Override
+    public String getSettings() {
+        return "cylinder " + blockData.getAsString() + " " + radius + " " + height;
+    }
 } 
\ No newline at end of file
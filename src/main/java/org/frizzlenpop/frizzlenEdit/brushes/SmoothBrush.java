@@ -2,13 +2,12 @@ package org.frizzlenpop.frizzlenEdit.brushes;
 
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.*;
 
@@ -179,11 +178,9 @@ public class SmoothBrush implements Brush {
     }
     
     @Override
-    public void use(Player player, Vector3 position, String mask) {
-        World world = player.getWorld();
-        
+    public void use(Player player, Extent extent, Vector3 position, String mask) {
         // Create a history entry
-        HistoryEntry entry = new HistoryEntry(player, world, "Enhanced smooth brush");
+        HistoryEntry entry = new HistoryEntry(player, extent, "Enhanced smooth brush");
         
         // Calculate the bounds of the sphere
         int radiusSquared = radius * radius;
@@ -212,18 +209,17 @@ public class SmoothBrush implements Brush {
                     Vector3 blockPos = position.add(new Vector3(x, y, z));
                     
                     // Get the block
-                    Block block = blockPos.toBlock(world);
+                    BlockData blockData = extent.getBlock(blockPos);
                     
                     // Check the mask
                     if (mask != null) {
                         Material maskMaterial = Material.matchMaterial(mask);
-                        if (maskMaterial != null && block.getType() != maskMaterial) {
+                        if (maskMaterial != null && blockData.getMaterial() != maskMaterial) {
                             continue;
                         }
                     }
                     
                     // Store the original block data
-                    BlockData blockData = block.getBlockData();
                     originalBlocks.put(blockPos, blockData);
                     currentBlocks.put(blockPos, blockData);
                     
@@ -307,7 +303,6 @@ public class SmoothBrush implements Brush {
                 
                 // Preserve the top layer material
                 Material originalTopMaterial = entry2.getValue();
-                Block block = topPos.toBlock(world);
                 if (SURFACE_MATERIALS.contains(originalTopMaterial)) {
                     currentBlocks.put(topPos, originalTopMaterial.createBlockData());
                 }
@@ -317,7 +312,6 @@ public class SmoothBrush implements Brush {
         // Apply the changes
         for (Map.Entry<Vector3, BlockData> entry2 : currentBlocks.entrySet()) {
             Vector3 blockPos = entry2.getKey();
-            Block block = blockPos.toBlock(world);
             BlockData originalData = originalBlocks.get(blockPos);
             BlockData newData = entry2.getValue();
             
@@ -326,14 +320,10 @@ public class SmoothBrush implements Brush {
                 continue;
             }
             
-            // Save the previous state for undo
-            entry.addBlockState(blockPos, block.getState(), null);
-            
-            // Set the block
-            block.setBlockData(newData);
-            
-            // Save the new state for redo
-            entry.addBlockState(blockPos, null, block.getState());
+            // Set the block and record it for undo
+            if (extent.setBlock(blockPos, newData)) {
+                entry.addBlock(blockPos, originalData, newData);
+            }
         }
         
         // Add the entry to the history
@@ -558,4 +548,10 @@ public class SmoothBrush implements Brush {
                (erodeSteepSlopes ? ", with erosion" : "") + 
                (preserveTopLayer ? ", preserving surface" : "");
     }
+    
+    @Override
+    public String getSettings() {
+        return "smooth " + radius + " " + iterations + " " + heightFactor + " " + erodeSteepSlopes + " " + 
+               preserveTopLayer + " " + naturalVariation;
+    }
 } 
\ No newline at end of file
@@ -3,13 +3,12 @@ package org.frizzlenpop.frizzlenEdit.brushes;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * A brush that creates spheres.
@@ -32,11 +31,10 @@ public class SphereBrush implements Brush {
     }
     
     @Override
-    public void use(Player player, Vector3 position, String mask) {
-        World world = player.getWorld();
+    public void use(Player player, Extent extent, Vector3 position, String mask) {
         
         // Create a history entry
-        HistoryEntry entry = new HistoryEntry(player, world, "Sphere brush: " + blockData.getAsString());
+        HistoryEntry entry = new HistoryEntry(player, extent, "Sphere brush: " + blockData.getAsString());
         
         // Calculate the bounds of the sphere
         int radiusSquared = radius * radius;
@@ -57,24 +55,20 @@ public class SphereBrush implements Brush {
                     Vector3 blockPos = position.add(new Vector3(x, y, z));
                     
                     // Get the block
-                    Block block = blockPos.toBlock(world);
+                    BlockData oldData = extent.getBlock(blockPos);
                     
                     // Check the mask
                     if (mask != null) {
                         Material maskMaterial = Material.matchMaterial(mask);
-                        if (maskMaterial != null && block.getType() != maskMaterial) {
+                        if (maskMaterial != null && oldData.getMaterial() != maskMaterial) {
                             continue;
                         }
                     }
                     
-                    // Save the previous state for undo
-                    entry.addBlockState(blockPos, block.getState(), null);
-                    
-                    // Set the block
-                    block.setBlockData(blockData);
-                    
-                    // Save the new state for redo
-                    entry.addBlockState(blockPos, null, block.getState());
+                    // Set the block and record it for undo
+                    if (extent.setBlock(blockPos, blockData)) {
+                        entry.addBlock(blockPos, oldData, blockData);
+                    }
                 }
             }
         }
@@ -94,4 +88,9 @@ public class SphereBrush implements Brush {
     public String getDescription() {
         return "Sphere brush: " + blockData.getAsString() + ", radius " + radius;
     }
+    
+    @Override
+    public String getSettings() {
+        return "sphere " + blockData.getAsString() + " " + radius;
+    }
 } 
\ No newline at end of file
@@ -1,28 +1,43 @@
 package org.frizzlenpop.frizzlenEdit.clipboard;
 
-import org.bukkit.World;
-import org.bukkit.block.Block;
+import java.util.Set;
 import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.EntityData;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
 
 /**
  * Represents a clipboard that can store a copied region of blocks.
+ *
+ * A clipboard either owns its blocks, or reads them from a {@link ClipboardBuffer} it may
+ * share with other clipboards. Rotating, flipping and sharing only record a transform over
+ * the buffer; the blocks are copied the first time a block is set afterwards.
+ *
+ * Block entities and entities are kept as NBT beside the blocks, only for the positions
+ * that have them, and are pasted in a pass of their own once the blocks are in place.
+ *
+ * Clipboards are read from other threads, by async copies, saves and memory reports, so
+ * the blocks, how they are seen, the dimensions and the NBT are replaced as one
+ * {@link Contents} rather than changed field by field. Changes that read the contents
+ * before replacing them are synchronized, so two of them can't lose one another's work.
  */
 public class Clipboard {
     // Origin point from where the copy was made
     private final Vector3 origin;
     
-    // Dimensions of the clipboard
-    private int width;
-    private int height;
-    private int length;
-    
-    // Stored blocks (relative coordinates -> block data)
-    private final Map<Vector3, BlockData> blocks = new HashMap<>();
+    // The blocks, owned or shared, the transform they are seen through, the dimensions and the NBT
+    private volatile Contents contents;
     
     /**
      * Create a new clipboard from a region.
@@ -35,9 +50,8 @@ public class Clipboard {
         Vector3 min = region.getMinimumPoint();
         Vector3 max = region.getMaximumPoint();
         
-        this.width = max.getX() - min.getX() + 1;
-        this.height = max.getY() - min.getY() + 1;
-        this.length = max.getZ() - min.getZ() + 1;
+        this.contents = Contents.owned(new HashMap<>(), max.getX() - min.getX() + 1, max.getY() - min.getY() + 1, 
+                                       max.getZ() - min.getZ() + 1);
     }
     
     /**
@@ -51,9 +65,17 @@ public class Clipboard {
      */
     public Clipboard(Vector3 origin, int width, int height, int length) {
         this.origin = origin;
-        this.width = width;
-        this.height = height;
-        this.length = length;
+        this.contents = Contents.owned(new HashMap<>(), width, height, length);
+    }
+    
+    /**
+     * Create a clipboard that reads from a shared buffer.
+     * @param origin The origin point
+     * @param contents The contents, reading from the buffer
+     */
+    private Clipboard(Vector3 origin, Contents contents) {
+        this.origin = origin;
+        this.contents = contents;
     }
     
     /**
@@ -69,7 +91,7 @@ public class Clipboard {
      * @return The width
      */
     public int getWidth() {
-        return width;
+        return contents.width;
     }
     
     /**
@@ -77,7 +99,7 @@ public class Clipboard {
      * @return The height
      */
     public int getHeight() {
-        return height;
+        return contents.height;
     }
     
     /**
@@ -85,7 +107,7 @@ public class Clipboard {
      * @return The length
      */
     public int getLength() {
-        return length;
+        return contents.length;
     }
     
     /**
@@ -93,7 +115,8 @@ public class Clipboard {
      * @return The volume
      */
     public int getVolume() {
-        return width * height * length;
+        Contents current = contents;
+        return current.width * current.height * current.length;
     }
     
     /**
@@ -102,7 +125,7 @@ public class Clipboard {
      * @param data The block data
      */
     public void setBlock(Vector3 position, BlockData data) {
-        blocks.put(position, data);
+        makeWritable().put(position, data);
     }
     
     /**
@@ -111,7 +134,8 @@ public class Clipboard {
      * @return The block data, or null if no block exists at that position
      */
     public BlockData getBlock(Vector3 position) {
-        return blocks.get(position);
+        Contents current = contents;
+        return current.blocks != null ? current.blocks.get(position) : current.buffer.getBlock(current.inverse.apply(position));
     }
     
     /**
@@ -120,22 +144,116 @@ public class Clipboard {
      * @return True if a block exists at the position
      */
     public boolean containsBlock(Vector3 position) {
-        return blocks.containsKey(position);
+        return getBlock(position) != null;
     }
     
     /**
-     * Get all blocks in this clipboard.
+     * Get all blocks in this clipboard. A rotated or flipped clipboard has to copy its blocks
+     * into a new map for this; use {@link #forEachBlock} to go through them without copying.
      * @return A map of positions to block data
      */
     public Map<Vector3, BlockData> getBlocks() {
-        return blocks;
+        Contents current = contents;
+        if (current.blocks != null) {
+            return current.blocks;
+        }
+        if (current.transform.isIdentity()) {
+            return current.buffer.getBlocks();
+        }
+        
+        Map<Vector3, BlockData> transformed = new HashMap<>((int) (current.buffer.size() / 0.75f) + 1);
+        current.forEachBlock(transformed::put);
+        return Collections.unmodifiableMap(transformed);
+    }
+    
+    /**
+     * Go through every block in this clipboard.
+     * @param action Called with the position and data of each block
+     */
+    public void forEachBlock(BiConsumer<Vector3, BlockData> action) {
+        contents.forEachBlock(action);
+    }
+    
+    /**
+     * Get the number of blocks stored in this clipboard.
+     * @param ignoreAir Whether to leave out air blocks
+     * @return The number of blocks
+     */
+    public int countBlocks(boolean ignoreAir) {
+        Contents current = contents;
+        Map<Vector3, BlockData> source = current.blocks != null ? current.blocks : current.buffer.getBlocks();
+        if (!ignoreAir) {
+            return source.size();
+        }
+        
+        int count = 0;
+        for (BlockData data : source.values()) {
+            if (!data.getMaterial().isAir()) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Create another clipboard with the same blocks, without copying them. Both clipboards
+     * can be rotated and flipped on their own; setting a block in either gives it a private
+     * copy first.
+     * @return The new clipboard
+     */
+    public Clipboard share() {
+        return new Clipboard(origin, freeze());
+    }
+    
+    /**
+     * Check if this clipboard reads its blocks from a buffer other clipboards may share.
+     * @return True if the blocks are shared
+     */
+    public boolean isShared() {
+        return contents.buffer != null;
+    }
+    
+    /**
+     * Turn the blocks this clipboard owns into a buffer that can be shared.
+     * @return The contents, reading from a buffer
+     */
+    private synchronized Contents freeze() {
+        Contents current = contents;
+        if (current.blocks != null) {
+            current = current.withBuffer(new ClipboardBuffer(current.blocks), ClipboardTransform.IDENTITY);
+            contents = current;
+        }
+        return current;
+    }
+    
+    /**
+     * Give this clipboard its own copy of its blocks, so they can be changed.
+     * @return The blocks, which this clipboard owns
+     */
+    private Map<Vector3, BlockData> makeWritable() {
+        // Setting blocks one by one takes this path for every block, so it doesn't lock
+        Contents current = contents;
+        if (current.blocks != null) {
+            return current.blocks;
+        }
+        
+        synchronized (this) {
+            current = contents;
+            if (current.blocks == null) {
+                Map<Vector3, BlockData> copy = new HashMap<>((int) (current.buffer.size() / 0.75f) + 1);
+                current.forEachBlock(copy::put);
+                current = current.withBlocks(copy);
+                contents = current;
+            }
+            return current.blocks;
+        }
     }
     
     /**
      * Rotate the clipboard around the Y axis.
      * @param degrees The degrees to rotate (must be a multiple of 90)
      */
-    public void rotate(int degrees) {
+    public synchronized void rotate(int degrees) {
         // Normalize degrees to 0, 90, 180, or 270
         degrees = ((degrees % 360) + 360) % 360;
         if (degrees % 90 != 0) {
@@ -147,132 +265,350 @@ public class Clipboard {
             return;
         }
         
-        Map<Vector3, BlockData> rotatedBlocks = new HashMap<>();
-        
-        for (Map.Entry<Vector3, BlockData> entry : blocks.entrySet()) {
-            Vector3 oldPos = entry.getKey();
-            BlockData data = entry.getValue();
-            
-            // Calculate the new position after rotation
-            Vector3 newPos;
-            switch (degrees) {
-                case 90:
-                    newPos = new Vector3(length - 1 - oldPos.getZ(), oldPos.getY(), oldPos.getX());
-                    break;
-                case 180:
-                    newPos = new Vector3(width - 1 - oldPos.getX(), oldPos.getY(), length - 1 - oldPos.getZ());
-                    break;
-                case 270:
-                    newPos = new Vector3(oldPos.getZ(), oldPos.getY(), width - 1 - oldPos.getX());
-                    break;
-                default:
-                    // Should never happen
-                    newPos = oldPos;
-            }
-            
-            // TODO: Rotate the block data as well
-            // This requires handling block-specific rotation which we'll implement later
-            
-            rotatedBlocks.put(newPos, data);
-        }
-        
-        // Clear the old blocks and add the rotated ones
-        blocks.clear();
-        blocks.putAll(rotatedBlocks);
+        // Only the transform changes; the blocks stay where they are
+        // TODO: Rotate the block data as well
+        // This requires handling block-specific rotation which we'll implement later
+        Contents frozen = freeze();
+        ClipboardTransform rotation = ClipboardTransform.rotateY(degrees, frozen.width, frozen.length);
         
         // Update dimensions if needed (90 or 270 degrees)
-        if (degrees == 90 || degrees == 270) {
-            // width and length are swapped
-            int temp = width;
-            width = length;
-            length = temp;
-        }
+        boolean swap = degrees == 90 || degrees == 270;
+        int width = swap ? frozen.length : frozen.width;
+        int length = swap ? frozen.width : frozen.length;
+        contents = transform(frozen, rotation, width, length);
     }
     
     /**
      * Flip the clipboard along an axis.
      * @param direction The direction to flip (x, y, or z)
      */
-    public void flip(char direction) {
-        Map<Vector3, BlockData> flippedBlocks = new HashMap<>();
-        
-        for (Map.Entry<Vector3, BlockData> entry : blocks.entrySet()) {
-            Vector3 oldPos = entry.getKey();
-            BlockData data = entry.getValue();
-            
-            // Calculate the new position after flipping
-            Vector3 newPos;
-            switch (Character.toLowerCase(direction)) {
-                case 'x':
-                    newPos = new Vector3(width - 1 - oldPos.getX(), oldPos.getY(), oldPos.getZ());
-                    break;
-                case 'y':
-                    newPos = new Vector3(oldPos.getX(), height - 1 - oldPos.getY(), oldPos.getZ());
-                    break;
-                case 'z':
-                    newPos = new Vector3(oldPos.getX(), oldPos.getY(), length - 1 - oldPos.getZ());
-                    break;
-                default:
-                    throw new IllegalArgumentException("Direction must be x, y, or z");
+    public synchronized void flip(char direction) {
+        // Only the transform changes; the blocks stay where they are
+        // TODO: Flip the block data as well
+        // This requires handling block-specific flipping which we'll implement later
+        Contents frozen = freeze();
+        ClipboardTransform flip = ClipboardTransform.flip(direction, frozen.width, frozen.height, frozen.length);
+        contents = transform(frozen, flip, frozen.width, frozen.length);
+    }
+    
+    /**
+     * Add a rotation or flip to frozen contents. The block entities and entities are few, so
+     * they are moved right away rather than seen through the transform.
+     * @param frozen The contents, reading from a buffer
+     * @param step The rotation or flip
+     * @param newWidth The width after it
+     * @param newLength The length after it
+     * @return The new contents
+     */
+    private static Contents transform(Contents frozen, ClipboardTransform step, int newWidth, int newLength) {
+        Map<Integer, byte[]> blockEntities = frozen.blockEntities;
+        if (!blockEntities.isEmpty()) {
+            Map<Integer, byte[]> moved = new HashMap<>();
+            blockEntities.forEach((index, nbt) -> {
+                Vector3 position = step.apply(frozen.positionOf(index));
+                moved.put((position.getY() * newLength + position.getZ()) * newWidth + position.getX(), nbt);
+            });
+            blockEntities = Collections.unmodifiableMap(moved);
+        }
+        List<EntityData> entities = frozen.entities;
+        if (!entities.isEmpty()) {
+            List<EntityData> moved = new ArrayList<>(entities.size());
+            for (EntityData entity : entities) {
+                double[] position = step.apply(entity.getX(), entity.getY(), entity.getZ());
+                moved.add(entity.withPosition(position[0], position[1], position[2]));
             }
-            
-            // TODO: Flip the block data as well
-            // This requires handling block-specific flipping which we'll implement later
-            
-            flippedBlocks.put(newPos, data);
+            entities = Collections.unmodifiableList(moved);
         }
-        
-        // Clear the old blocks and add the flipped ones
-        blocks.clear();
-        blocks.putAll(flippedBlocks);
+        return new Contents(null, frozen.buffer, frozen.transform.then(step), newWidth, frozen.height, newLength, 
+                            blockEntities, entities);
+    }
+    
+    /**
+     * Get the packed index of a position: the position's place in y, z, x order, as in schematics.
+     * @param x The X coordinate, relative to the minimum corner
+     * @param y The Y coordinate, relative to the minimum corner
+     * @param z The Z coordinate, relative to the minimum corner
+     * @return The index
+     */
+    public int indexOf(int x, int y, int z) {
+        return contents.indexOf(x, y, z);
     }
     
     /**
-     * Copy blocks from a region to this clipboard.
+     * Get the position a packed index stands for.
+     * @param index The index
+     * @return The position, relative to the minimum corner
+     */
+    public Vector3 positionOf(int index) {
+        return contents.positionOf(index);
+    }
+    
+    /**
+     * Get the block entities in this clipboard.
+     * @return An unmodifiable map of packed indices to NBT; see {@link Extent#getBlockEntities}
+     */
+    public Map<Integer, byte[]> getBlockEntities() {
+        return contents.blockEntities;
+    }
+    
+    /**
+     * Set the block entities in this clipboard.
+     * @param blockEntities The NBT by packed index, which the clipboard takes over
+     */
+    public synchronized void setBlockEntities(Map<Integer, byte[]> blockEntities) {
+        Contents current = contents;
+        contents = new Contents(current.blocks, current.buffer, current.transform, current.width, current.height, 
+                                current.length, blockEntities.isEmpty() ? Collections.emptyMap() : 
+                                Collections.unmodifiableMap(blockEntities), current.entities);
+    }
+    
+    /**
+     * Get the entities in this clipboard.
+     * @return An unmodifiable list of entities, positioned relative to the minimum corner
+     */
+    public List<EntityData> getEntities() {
+        return contents.entities;
+    }
+    
+    /**
+     * Set the entities in this clipboard.
+     * @param entities The entities, positioned relative to the minimum corner, which the clipboard takes over
+     */
+    public synchronized void setEntities(List<EntityData> entities) {
+        Contents current = contents;
+        contents = new Contents(current.blocks, current.buffer, current.transform, current.width, current.height, 
+                                current.length, current.blockEntities, 
+                                entities.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(entities));
+    }
+    
+    /**
+     * Copy blocks, block entities and entities from a region to this clipboard.
+     * @param region The region to copy
+     * @param extent The extent to copy from
+     */
+    public void copy(Region region, Extent extent) {
+        copy(region, extent, true);
+    }
+    
+    /**
+     * Copy blocks and block entities from a region to this clipboard.
      * @param region The region to copy
-     * @param world The world
+     * @param extent The extent to copy from
+     * @param includeEntities Whether to copy the entities in the region as well
      */
-    public void copy(Region region, World world) {
+    public void copy(Region region, Extent extent, boolean includeEntities) {
         Vector3 min = region.getMinimumPoint();
+        Vector3 max = region.getMaximumPoint();
         
-        // Clear existing blocks
-        blocks.clear();
+        // Start over with blocks of its own, filled in before anyone can see them
+        Map<Vector3, BlockData> copied = new HashMap<>();
         
         // Copy each block
         for (Vector3 pos : region) {
-            // Get the block at this world position
-            Block block = pos.toBlock(world);
-            
             // Calculate the relative position
             Vector3 relativePos = pos.subtract(min);
             
             // Store the block data
-            blocks.put(relativePos, block.getBlockData().clone());
+            copied.put(relativePos, extent.getBlock(pos).clone());
+        }
+        synchronized (this) {
+            contents = contents.withBlocks(copied);
         }
+        
+        // Only the positions that have a block entity are stored
+        Map<Integer, byte[]> copiedBlockEntities = new HashMap<>();
+        extent.getBlockEntities(min, max).forEach((position, nbt) -> {
+            if (region.contains(position)) {
+                Vector3 relativePos = position.subtract(min);
+                copiedBlockEntities.put(indexOf(relativePos.getX(), relativePos.getY(), relativePos.getZ()), nbt);
+            }
+        });
+        setBlockEntities(copiedBlockEntities);
+        
+        List<EntityData> copiedEntities = new ArrayList<>();
+        if (includeEntities) {
+            for (EntityData entity : extent.getEntities(min, max)) {
+                Vector3 block = new Vector3((int) Math.floor(entity.getX()), (int) Math.floor(entity.getY()), 
+                                            (int) Math.floor(entity.getZ()));
+                if (region.contains(block)) {
+                    copiedEntities.add(entity.withPosition(entity.getX() - min.getX(), entity.getY() - min.getY(), 
+                                                           entity.getZ() - min.getZ()));
+                }
+            }
+        }
+        setEntities(copiedEntities);
     }
     
     /**
      * Paste this clipboard at a location.
      * @param position The position to paste at
-     * @param world The world
+     * @param extent The extent to paste into
      * @param ignoreAir Whether to ignore air blocks
      */
-    public void paste(Vector3 position, World world, boolean ignoreAir) {
-        for (Map.Entry<Vector3, BlockData> entry : blocks.entrySet()) {
-            Vector3 relPos = entry.getKey();
-            BlockData data = entry.getValue();
-            
+    public void paste(Vector3 position, Extent extent, boolean ignoreAir) {
+        forEachBlock((relPos, data) -> {
             // Skip air blocks if requested
             if (ignoreAir && data.getMaterial().isAir()) {
-                continue;
+                return;
             }
             
             // Calculate the world position
             Vector3 worldPos = position.add(relPos);
             
             // Set the block
-            Block block = worldPos.toBlock(world);
-            block.setBlockData(data);
+            extent.setBlock(worldPos, data);
+        });
+        pasteNbt(position, extent);
+    }
+    
+    /**
+     * Paste the block entities and entities of this clipboard, after its blocks have been
+     * pasted at the same position.
+     * @param position The position the blocks were pasted at
+     * @param extent The extent they were pasted into
+     * @return The number of block entities and entities placed
+     */
+    public int pasteNbt(Vector3 position, Extent extent) {
+        return pasteNbt(position, extent, null);
+    }
+    
+    /**
+     * Paste the block entities and entities of this clipboard, after its blocks have been
+     * pasted at the same position, recording them for undo and redo.
+     * @param position The position the blocks were pasted at
+     * @param extent The extent they were pasted into
+     * @param history The history entry of the paste, or null
+     * @return The number of block entities and entities placed
+     */
+    public int pasteNbt(Vector3 position, Extent extent, HistoryEntry history) {
+        Contents current = contents;
+        int placed = 0;
+        for (Map.Entry<Integer, byte[]> entry : current.blockEntities.entrySet()) {
+            Vector3 blockPosition = position.add(current.positionOf(entry.getKey()));
+            if (extent.setBlockEntity(blockPosition, entry.getValue())) {
+                placed++;
+                if (history != null) {
+                    history.addBlockEntity(blockPosition, entry.getValue());
+                }
+            }
+        }
+        for (EntityData entity : current.entities) {
+            EntityData placedEntity = entity.withPosition(position.getX() + entity.getX(), position.getY() + entity.getY(), 
+                                                          position.getZ() + entity.getZ());
+            UUID id = extent.addEntity(placedEntity);
+            if (id != null) {
+                placed++;
+                if (history != null) {
+                    history.addEntity(id, placedEntity);
+                }
+            }
+        }
+        return placed;
+    }
+    
+    /**
+     * Estimate the memory held by this clipboard. A shared buffer is counted in full.
+     * @return The estimated size in bytes
+     */
+    public long estimateMemoryBytes() {
+        return estimateMemoryBytes(null);
+    }
+    
+    /**
+     * Estimate the memory held by this clipboard, counting a shared buffer only if no
+     * clipboard counted before it holds the same one.
+     * @param counted The buffers already counted, which this clipboard's buffer is added to, or null to count it in full
+     * @return The estimated size in bytes
+     */
+    public long estimateMemoryBytes(Set<ClipboardBuffer> counted) {
+        // Memory reports read this from other threads, so the contents are only read once
+        Contents current = contents;
+        long nbtBytes = 0;
+        for (byte[] nbt : current.blockEntities.values()) {
+            nbtBytes += MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.ARRAY + nbt.length;
+        }
+        for (EntityData entity : current.entities) {
+            nbtBytes += MemoryEstimates.VECTOR3 + MemoryEstimates.ARRAY + entity.getNbt().length;
+        }
+        
+        if (current.blocks != null) {
+            return nbtBytes + current.blocks.size() * (MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.VECTOR3 + MemoryEstimates.BLOCK_DATA);
+        }
+        if (counted != null && !counted.add(current.buffer)) {
+            return nbtBytes;
+        }
+        return nbtBytes + current.buffer.estimateMemoryBytes();
+    }
+    
+    /**
+     * Everything a clipboard holds: its blocks, either a map it owns or a buffer it may share
+     * with other clipboards and the transform it sees the buffer through, its dimensions as
+     * seen through that transform, and its block entities and entities. Never changed once
+     * published, except for the owned map while the clipboard is being filled.
+     */
+    private static final class Contents {
+        // Owned blocks (relative coordinates -> block data), or null when reading from the buffer
+        private final Map<Vector3, BlockData> blocks;
+        private final ClipboardBuffer buffer;
+        private final ClipboardTransform transform;
+        private final ClipboardTransform inverse;
+        private final int width;
+        private final int height;
+        private final int length;
+        
+        // Block entity NBT by packed index, and entities relative to the minimum corner;
+        // clipboards sharing blocks share these too
+        private final Map<Integer, byte[]> blockEntities;
+        private final List<EntityData> entities;
+        
+        private Contents(Map<Vector3, BlockData> blocks, ClipboardBuffer buffer, ClipboardTransform transform, 
+                         int width, int height, int length, Map<Integer, byte[]> blockEntities, List<EntityData> entities) {
+            this.blocks = blocks;
+            this.buffer = buffer;
+            this.transform = transform;
+            this.inverse = transform.inverse();
+            this.width = width;
+            this.height = height;
+            this.length = length;
+            this.blockEntities = blockEntities;
+            this.entities = entities;
+        }
+        
+        static Contents owned(Map<Vector3, BlockData> blocks, int width, int height, int length) {
+            return new Contents(blocks, null, ClipboardTransform.IDENTITY, width, height, length, 
+                                Collections.emptyMap(), Collections.emptyList());
+        }
+        
+        /**
+         * Get the same contents with blocks of their own instead.
+         */
+        Contents withBlocks(Map<Vector3, BlockData> owned) {
+            return new Contents(owned, null, ClipboardTransform.IDENTITY, width, height, length, blockEntities, entities);
+        }
+        
+        /**
+         * Get the same contents reading their blocks from a buffer instead.
+         */
+        Contents withBuffer(ClipboardBuffer shared, ClipboardTransform seenThrough) {
+            return new Contents(null, shared, seenThrough, width, height, length, blockEntities, entities);
+        }
+        
+        int indexOf(int x, int y, int z) {
+            return (y * length + z) * width + x;
+        }
+        
+        Vector3 positionOf(int index) {
+            return new Vector3(index % width, index / (width * length), (index / width) % length);
+        }
+        
+        void forEachBlock(BiConsumer<Vector3, BlockData> action) {
+            if (blocks != null) {
+                blocks.forEach(action);
+            } else if (transform.isIdentity()) {
+                buffer.getBlocks().forEach(action);
+            } else {
+                buffer.getBlocks().forEach((position, data) -> action.accept(transform.apply(position), data));
+            }
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,57 @@
+package org.frizzlenpop.frizzlenEdit.clipboard;
+
+import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The blocks of a clipboard once they can no longer change. Any number of clipboards can
+ * read from the same buffer, each through its own rotation and flips, without copying it.
+ */
+public final class ClipboardBuffer {
+    private final Map<Vector3, BlockData> blocks;
+    
+    /**
+     * Create a buffer that takes over a map of blocks. The map must not be changed afterwards.
+     * @param blocks The blocks, by position relative to the minimum corner
+     */
+    ClipboardBuffer(Map<Vector3, BlockData> blocks) {
+        this.blocks = Collections.unmodifiableMap(blocks);
+    }
+    
+    /**
+     * Get a block.
+     * @param position The position
+     * @return The block data, or null if no block exists at that position
+     */
+    public BlockData getBlock(Vector3 position) {
+        return blocks.get(position);
+    }
+    
+    /**
+     * Get all blocks.
+     * @return An unmodifiable map of positions to block data
+     */
+    public Map<Vector3, BlockData> getBlocks() {
+        return blocks;
+    }
+    
+    /**
+     * Get the number of blocks.
+     * @return The number of blocks
+     */
+    public int size() {
+        return blocks.size();
+    }
+    
+    /**
+     * Estimate the memory held by this buffer.
+     * @return The estimated size in bytes
+     */
+    public long estimateMemoryBytes() {
+        return blocks.size() * (MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.VECTOR3 + MemoryEstimates.BLOCK_DATA);
+    }
+} 
\ No newline at end of file
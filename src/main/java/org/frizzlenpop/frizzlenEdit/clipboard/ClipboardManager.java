@@ -1,5 +1,6 @@
 package org.frizzlenpop.frizzlenEdit.clipboard;
 
+import java.util.concurrent.CompletableFuture;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
@@ -7,23 +8,52 @@ import org.frizzlenpop.frizzlenEdit.operations.Operation;
 import org.frizzlenpop.frizzlenEdit.operations.PasteOperation;
 import org.frizzlenpop.frizzlenEdit.operations.BatchPasteOperation;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.session.LocalSession;
+import org.frizzlenpop.frizzlenEdit.session.SessionFile;
+import org.frizzlenpop.frizzlenEdit.session.SessionManager;
 import org.frizzlenpop.frizzlenEdit.utils.Logger;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 
 /**
  * Manages player clipboards.
  */
 public class ClipboardManager {
+    // How long a shared clipboard waits for the player it was shared with to accept it
+    private static final long SHARE_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+    
+    // Letters, digits, underscores and dashes, as team clipboard names are file names too
+    private static final String TEAM_NAME_PATTERN = "[A-Za-z0-9_-]+";
+    
     private final FrizzlenEdit plugin;
-    private final Map<UUID, Clipboard> clipboards = new HashMap<>();
+    private final SessionManager sessions;
+    private final File teamDirectory;
+    
+    // Named clipboards for teams, by lower-case name; each one shares its blocks with whoever loads it
+    private final ConcurrentMap<String, TeamClipboard> teamClipboards = new ConcurrentHashMap<>();
+    
+    // Held while a team clipboard file is written or deleted
+    private final Object teamFileLock = new Object();
+    
+    // Clipboards shared with a player that they haven't accepted yet, by the player's UUID
+    private final ConcurrentMap<UUID, PendingShare> pendingShares = new ConcurrentHashMap<>();
     
     public ClipboardManager(FrizzlenEdit plugin) {
         this.plugin = plugin;
+        this.sessions = plugin.getSessionManager();
+        this.teamDirectory = new File(plugin.getDataFolder(), "team-clipboards");
+        plugin.runAsync(this::loadTeamClipboards);
     }
     
     /**
@@ -32,7 +62,7 @@ public class ClipboardManager {
      * @return True if the player has a clipboard
      */
     public boolean hasClipboard(Player player) {
-        return clipboards.containsKey(player.getUniqueId());
+        return getClipboard(player) != null;
     }
     
     /**
@@ -41,16 +71,17 @@ public class ClipboardManager {
      * @return The player's clipboard, or null if they don't have one
      */
     public Clipboard getClipboard(Player player) {
-        return clipboards.get(player.getUniqueId());
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        return session == null ? null : session.getClipboard();
     }
     
     /**
-     * Set a player's clipboard.
+     * Set a player's clipboard, once their session is back if it is being read from disk.
      * @param player The player
      * @param clipboard The clipboard
      */
     public void setClipboard(Player player, Clipboard clipboard) {
-        clipboards.put(player.getUniqueId(), clipboard);
+        sessions.getSession(player).thenAccept(session -> session.setClipboard(clipboard));
     }
     
     /**
@@ -76,18 +107,19 @@ public class ClipboardManager {
         plugin.runAsync(() -> {
             try {
                 Logger.info("Player " + player.getName() + " copying " + volume + " blocks");
-                clipboard.copy(region, region.getWorld());
+                clipboard.copy(region, plugin.getOperationManager().getExtent(player), 
+                              plugin.getConfigManager().isClipboardCopyEntities());
                 
-                // Store the clipboard on the main thread
-                plugin.getServer().getScheduler().runTask(plugin, () -> {
-                    setClipboard(player, clipboard);
+                // The session publishes the clipboard safely, so it can be stored from here
+                setClipboard(player, clipboard);
+                plugin.getTaskScheduler().runTask(() -> {
                     player.sendMessage(ChatColor.GREEN + "Copied " + volume + " blocks to clipboard.");
                 });
             } catch (Exception e) {
                 Logger.severe("Error copying blocks: " + e.getMessage());
                 e.printStackTrace();
                 
-                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                plugin.getTaskScheduler().runTask(() -> {
                     player.sendMessage(ChatColor.RED + "Error copying blocks: " + e.getMessage());
                 });
             }
@@ -107,7 +139,7 @@ public class ClipboardManager {
         // Then create an operation to set the region to air
         Operation setAirOperation = plugin.getOperationManager().createSetOperation(
             player, region, "minecraft:air");
-            
+        
         // Execute the operation
         plugin.getOperationManager().execute(player, setAirOperation);
     }
@@ -201,4 +233,284 @@ public class ClipboardManager {
             player.sendMessage(ChatColor.RED + e.getMessage());
         }
     }
+    
+    /**
+     * Offer another player a copy of a player's clipboard. It only replaces their clipboard
+     * once they accept it with {@link #acceptShare}; the blocks are shared, not copied, until
+     * one of them changes a block.
+     * @param player The player sharing their clipboard
+     * @param target The player receiving it
+     */
+    public void share(Player player, Player target) {
+        Clipboard clipboard = getClipboard(player);
+        if (clipboard == null) {
+            player.sendMessage(ChatColor.RED + "You don't have a clipboard.");
+            return;
+        }
+        
+        long now = plugin.getClock().currentTimeMillis();
+        pendingShares.values().removeIf(share -> share.expiresAt <= now);
+        pendingShares.put(target.getUniqueId(), new PendingShare(player.getName(), clipboard.share(), now + SHARE_TIMEOUT_MILLIS));
+        player.sendMessage(ChatColor.GREEN + "Offered your clipboard to " + target.getName() + ".");
+        target.sendMessage(ChatColor.GREEN + player.getName() + " wants to share their clipboard with you (" + 
+                          clipboard.getWidth() + "x" + clipboard.getHeight() + "x" + clipboard.getLength() + "). " + 
+                          "Use //clipboard accept within " + (SHARE_TIMEOUT_MILLIS / 60000) + " minutes to replace your clipboard with it.");
+    }
+    
+    /**
+     * Replace a player's clipboard with the last one shared with them, if it hasn't expired.
+     * @param player The player
+     */
+    public void acceptShare(Player player) {
+        PendingShare share = pendingShares.remove(player.getUniqueId());
+        if (share == null || share.expiresAt <= plugin.getClock().currentTimeMillis()) {
+            player.sendMessage(ChatColor.RED + "No one has offered you their clipboard.");
+            return;
+        }
+        
+        setClipboard(player, share.clipboard);
+        player.sendMessage(ChatColor.GREEN + "Your clipboard is now the one " + share.from + " shared with you.");
+    }
+    
+    /**
+     * Save a player's clipboard as a team clipboard. A team clipboard with the same name is
+     * only replaced if the player saved it, or may manage every team clipboard.
+     * @param player The player
+     * @param name The name of the team clipboard
+     */
+    public void saveTeamClipboard(Player player, String name) {
+        Clipboard clipboard = getClipboard(player);
+        if (clipboard == null) {
+            player.sendMessage(ChatColor.RED + "You don't have a clipboard.");
+            return;
+        }
+        if (!name.matches(TEAM_NAME_PATTERN)) {
+            player.sendMessage(ChatColor.RED + "Invalid team clipboard name: " + name);
+            return;
+        }
+        
+        String key = name.toLowerCase(Locale.ROOT);
+        TeamClipboard[] refused = new TeamClipboard[1];
+        teamClipboards.compute(key, (k, existing) -> {
+            if (existing != null && !mayManage(player, existing)) {
+                refused[0] = existing;
+                return existing;
+            }
+            // An administrator replacing someone's team clipboard leaves it theirs
+            UUID owner = existing != null ? existing.getOwner() : player.getUniqueId();
+            String ownerName = existing != null ? existing.getOwnerName() : player.getName();
+            return new TeamClipboard(name, owner, ownerName, clipboard.share());
+        });
+        if (refused[0] != null) {
+            player.sendMessage(ChatColor.RED + "Team clipboard '" + refused[0].getName() + "' belongs to " + 
+                              refused[0].getOwnerName() + ".");
+            return;
+        }
+        
+        plugin.runAsync(() -> persistTeamClipboard(key));
+        player.sendMessage(ChatColor.GREEN + "Saved your clipboard as team clipboard '" + name + "'.");
+        Logger.info("Player " + player.getName() + " saved team clipboard " + name);
+    }
+    
+    /**
+     * Load a team clipboard into a player's clipboard.
+     * @param player The player
+     * @param name The name of the team clipboard
+     */
+    public void loadTeamClipboard(Player player, String name) {
+        TeamClipboard team = teamClipboards.get(name.toLowerCase(Locale.ROOT));
+        if (team == null) {
+            player.sendMessage(ChatColor.RED + "There is no team clipboard named '" + name + "'.");
+            return;
+        }
+        
+        setClipboard(player, team.getClipboard().share());
+        player.sendMessage(ChatColor.GREEN + "Loaded team clipboard '" + team.getName() + "'.");
+    }
+    
+    /**
+     * Remove a team clipboard, if the player saved it or may manage every team clipboard.
+     * Players who loaded it keep their clipboard.
+     * @param player The player
+     * @param name The name of the team clipboard
+     */
+    public void removeTeamClipboard(Player player, String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        TeamClipboard team = teamClipboards.get(key);
+        if (team == null) {
+            player.sendMessage(ChatColor.RED + "There is no team clipboard named '" + name + "'.");
+            return;
+        }
+        if (!mayManage(player, team)) {
+            player.sendMessage(ChatColor.RED + "Team clipboard '" + team.getName() + "' belongs to " + team.getOwnerName() + ".");
+            return;
+        }
+        
+        // Only removed if it wasn't replaced in the meantime
+        if (!teamClipboards.remove(key, team)) {
+            player.sendMessage(ChatColor.RED + "Team clipboard '" + team.getName() + "' was just replaced; try again.");
+            return;
+        }
+        plugin.runAsync(() -> persistTeamClipboard(key));
+        player.sendMessage(ChatColor.GREEN + "Removed team clipboard '" + team.getName() + "'.");
+    }
+    
+    /**
+     * Get a team clipboard.
+     * @param name The name, in any case
+     * @return The team clipboard, or null if there is none with that name
+     */
+    public TeamClipboard getTeamClipboard(String name) {
+        return teamClipboards.get(name.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Get the names of the team clipboards.
+     * @return The names, sorted
+     */
+    public Set<String> getTeamClipboardNames() {
+        return new TreeSet<>(teamClipboards.keySet());
+    }
+    
+    /**
+     * Check if a player may replace or remove a team clipboard.
+     * @param player The player
+     * @param team The team clipboard
+     * @return True for its owner and for players who may manage every team clipboard
+     */
+    private boolean mayManage(Player player, TeamClipboard team) {
+        return team.getOwner().equals(player.getUniqueId()) || player.hasPermission("frizzlenedit.admin.teamclipboards");
+    }
+    
+    /**
+     * Read the team clipboards saved by earlier runs.
+     */
+    private void loadTeamClipboards() {
+        File[] files = teamDirectory.listFiles((dir, fileName) -> fileName.endsWith(SessionFile.EXTENSION));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            try {
+                TeamClipboard team = SessionFile.readTeamClipboard(file);
+                // One saved while they were being read is newer
+                teamClipboards.putIfAbsent(team.getName().toLowerCase(Locale.ROOT), team);
+            } catch (IOException e) {
+                Logger.warning("Could not read team clipboard " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        Logger.info("Loaded " + teamClipboards.size() + " team clipboards");
+    }
+    
+    /**
+     * Bring a team clipboard's file up to date: write it if the team clipboard exists, and
+     * delete it if not. Writes whatever the team clipboard is by then, so the file ends up
+     * matching however the saves and removals were ordered.
+     * @param key The lower-case name
+     */
+    private void persistTeamClipboard(String key) {
+        synchronized (teamFileLock) {
+            File file = new File(teamDirectory, key + SessionFile.EXTENSION);
+            TeamClipboard team = teamClipboards.get(key);
+            try {
+                if (team == null) {
+                    Files.deleteIfExists(file.toPath());
+                } else {
+                    Files.createDirectories(teamDirectory.toPath());
+                    SessionFile.writeTeamClipboard(team, file);
+                }
+            } catch (IOException e) {
+                Logger.warning("Could not save team clipboard " + key + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Get the players that currently have a clipboard.
+     * @return The UUIDs of the players
+     */
+    public Set<UUID> getPlayers() {
+        Set<UUID> players = new HashSet<>();
+        for (LocalSession session : sessions.getSessions()) {
+            if (session.getClipboard() != null) {
+                players.add(session.getUniqueId());
+            }
+        }
+        return players;
+    }
+    
+    /**
+     * Estimate the memory held by a player's clipboard.
+     * @param uuid The player's UUID
+     * @return The estimated size in bytes
+     */
+    public long getMemoryUsage(UUID uuid) {
+        return getMemoryUsage(uuid, null);
+    }
+    
+    /**
+     * Estimate the memory used by a player's clipboard, leaving out blocks it shares with a
+     * clipboard already counted.
+     * @param uuid The player's UUID
+     * @param counted The shared blocks already counted, added to, or null to count them in full
+     * @return The estimated size in bytes
+     */
+    public long getMemoryUsage(UUID uuid, Set<ClipboardBuffer> counted) {
+        LocalSession session = sessions.getIfPresent(uuid);
+        Clipboard clipboard = session == null ? null : session.getClipboard();
+        return clipboard == null ? 0 : clipboard.estimateMemoryBytes(counted);
+    }
+    
+    /**
+     * Estimate the memory used by the team clipboards, leaving out blocks already counted.
+     * @param counted The shared blocks already counted, added to
+     * @return The estimated size in bytes
+     */
+    public long getTeamMemoryUsage(Set<ClipboardBuffer> counted) {
+        long total = 0;
+        for (TeamClipboard team : teamClipboards.values()) {
+            total += team.getClipboard().estimateMemoryBytes(counted);
+        }
+        return total;
+    }
+    
+    /**
+     * Get the number of team clipboards.
+     * @return The number of team clipboards
+     */
+    public int getTeamClipboardCount() {
+        return teamClipboards.size();
+    }
+    
+    /**
+     * Remove a player's clipboard, reading their session back first if it is on disk.
+     * @param uuid The player's UUID
+     * @return The estimated number of bytes freed, or -1 if the player has no clipboard
+     */
+    public CompletableFuture<Long> clearClipboard(UUID uuid) {
+        return sessions.getExisting(uuid).thenApply(session -> {
+            Clipboard clipboard = session == null ? null : session.getClipboard();
+            if (clipboard == null) {
+                return -1L;
+            }
+            
+            session.setClipboard(null);
+            return clipboard.estimateMemoryBytes();
+        });
+    }
+    
+    /**
+     * A clipboard shared with a player, waiting for them to accept it.
+     */
+    private static final class PendingShare {
+        final String from;
+        final Clipboard clipboard;
+        final long expiresAt;
+        
+        PendingShare(String from, Clipboard clipboard, long expiresAt) {
+            this.from = from;
+            this.clipboard = clipboard;
+            this.expiresAt = expiresAt;
+        }
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,151 @@
+package org.frizzlenpop.frizzlenEdit.clipboard;
+
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+
+/**
+ * A combination of quarter turns around the Y axis and flips, as applied by
+ * {@link Clipboard#rotate(int)} and {@link Clipboard#flip(char)}. Maps positions in a
+ * clipboard's blocks to positions in the rotated and flipped clipboard. Immutable.
+ */
+public final class ClipboardTransform {
+    // The transform that leaves every position where it is
+    public static final ClipboardTransform IDENTITY = new ClipboardTransform(
+        new int[] { 1, 0, 0, 0, 1, 0, 0, 0, 1 }, new int[] { 0, 0, 0 });
+    
+    // Row-major 3x3 matrix of -1, 0 and 1, and the offset added after it
+    private final int[] matrix;
+    private final int[] offset;
+    
+    private ClipboardTransform(int[] matrix, int[] offset) {
+        this.matrix = matrix;
+        this.offset = offset;
+    }
+    
+    /**
+     * Create a rotation around the Y axis of a clipboard, keeping its blocks at non-negative positions.
+     * @param degrees The degrees to rotate (0, 90, 180 or 270)
+     * @param width The width of the clipboard before rotating
+     * @param length The length of the clipboard before rotating
+     * @return The transform
+     */
+    public static ClipboardTransform rotateY(int degrees, int width, int length) {
+        switch (degrees) {
+            case 0:
+                return IDENTITY;
+            case 90:
+                return new ClipboardTransform(new int[] { 0, 0, -1, 0, 1, 0, 1, 0, 0 }, new int[] { length - 1, 0, 0 });
+            case 180:
+                return new ClipboardTransform(new int[] { -1, 0, 0, 0, 1, 0, 0, 0, -1 }, new int[] { width - 1, 0, length - 1 });
+            case 270:
+                return new ClipboardTransform(new int[] { 0, 0, 1, 0, 1, 0, -1, 0, 0 }, new int[] { 0, 0, width - 1 });
+            default:
+                throw new IllegalArgumentException("Rotation must be a multiple of 90 degrees");
+        }
+    }
+    
+    /**
+     * Create a flip of a clipboard along an axis.
+     * @param direction The axis (x, y or z)
+     * @param width The width of the clipboard
+     * @param height The height of the clipboard
+     * @param length The length of the clipboard
+     * @return The transform
+     */
+    public static ClipboardTransform flip(char direction, int width, int height, int length) {
+        switch (Character.toLowerCase(direction)) {
+            case 'x':
+                return new ClipboardTransform(new int[] { -1, 0, 0, 0, 1, 0, 0, 0, 1 }, new int[] { width - 1, 0, 0 });
+            case 'y':
+                return new ClipboardTransform(new int[] { 1, 0, 0, 0, -1, 0, 0, 0, 1 }, new int[] { 0, height - 1, 0 });
+            case 'z':
+                return new ClipboardTransform(new int[] { 1, 0, 0, 0, 1, 0, 0, 0, -1 }, new int[] { 0, 0, length - 1 });
+            default:
+                throw new IllegalArgumentException("Direction must be x, y, or z");
+        }
+    }
+    
+    /**
+     * Apply this transform and then another.
+     * @param next The transform to apply after this one
+     * @return The combined transform
+     */
+    public ClipboardTransform then(ClipboardTransform next) {
+        int[] m = new int[9];
+        int[] t = new int[3];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                int sum = 0;
+                for (int k = 0; k < 3; k++) {
+                    sum += next.matrix[row * 3 + k] * matrix[k * 3 + col];
+                }
+                m[row * 3 + col] = sum;
+            }
+            t[row] = next.matrix[row * 3] * offset[0] + next.matrix[row * 3 + 1] * offset[1]
+                + next.matrix[row * 3 + 2] * offset[2] + next.offset[row];
+        }
+        return new ClipboardTransform(m, t);
+    }
+    
+    /**
+     * Get the transform that undoes this one.
+     * @return The inverse transform
+     */
+    public ClipboardTransform inverse() {
+        // The matrix only swaps and negates axes, so its inverse is its transpose
+        int[] m = new int[9];
+        int[] t = new int[3];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                m[row * 3 + col] = matrix[col * 3 + row];
+            }
+        }
+        for (int row = 0; row < 3; row++) {
+            t[row] = -(m[row * 3] * offset[0] + m[row * 3 + 1] * offset[1] + m[row * 3 + 2] * offset[2]);
+        }
+        return new ClipboardTransform(m, t);
+    }
+    
+    /**
+     * Transform a position.
+     * @param position The position
+     * @return The transformed position
+     */
+    public Vector3 apply(Vector3 position) {
+        int x = position.getX();
+        int y = position.getY();
+        int z = position.getZ();
+        return new Vector3(
+            matrix[0] * x + matrix[1] * y + matrix[2] * z + offset[0],
+            matrix[3] * x + matrix[4] * y + matrix[5] * z + offset[1],
+            matrix[6] * x + matrix[7] * y + matrix[8] * z + offset[2]);
+    }
+    
+    /**
+     * Transform a point that can be anywhere within a block, such as where an entity stands.
+     * The point moves with its block as {@link #apply(Vector3)} moves it, and keeps its place
+     * within the block, turned the same way.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The transformed x, y and z
+     */
+    public double[] apply(double x, double y, double z) {
+        // Blocks turn about their centres
+        double cx = x - 0.5;
+        double cy = y - 0.5;
+        double cz = z - 0.5;
+        return new double[] {
+            matrix[0] * cx + matrix[1] * cy + matrix[2] * cz + offset[0] + 0.5,
+            matrix[3] * cx + matrix[4] * cy + matrix[5] * cz + offset[1] + 0.5,
+            matrix[6] * cx + matrix[7] * cy + matrix[8] * cz + offset[2] + 0.5 };
+    }
+    
+    /**
+     * Check if this transform leaves every position where it is.
+     * @return True if this is the identity
+     */
+    public boolean isIdentity() {
+        return this == IDENTITY || (matrix[0] == 1 && matrix[4] == 1 && matrix[8] == 1
+            && offset[0] == 0 && offset[1] == 0 && offset[2] == 0);
+    }
+} 
\ No newline at end of file
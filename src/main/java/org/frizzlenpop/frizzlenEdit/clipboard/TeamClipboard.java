@@ -0,0 +1,60 @@
+package org.frizzlenpop.frizzlenEdit.clipboard;
+
+import java.util.UUID;
+
+/**
+ * A named clipboard saved for a team, and the player who saved it. Only the owner, or a
+ * player allowed to manage every team clipboard, can replace or remove it.
+ */
+public final class TeamClipboard {
+    private final String name;
+    private final UUID owner;
+    private final String ownerName;
+    private final Clipboard clipboard;
+    
+    /**
+     * Create a new team clipboard.
+     * @param name The name, as it was given
+     * @param owner The UUID of the player who saved it
+     * @param ownerName The name of the player who saved it
+     * @param clipboard The clipboard, which is only ever shared from
+     */
+    public TeamClipboard(String name, UUID owner, String ownerName, Clipboard clipboard) {
+        this.name = name;
+        this.owner = owner;
+        this.ownerName = ownerName;
+        this.clipboard = clipboard;
+    }
+    
+    /**
+     * Get the name of the team clipboard.
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Get the player who saved the team clipboard.
+     * @return The owner's UUID
+     */
+    public UUID getOwner() {
+        return owner;
+    }
+    
+    /**
+     * Get the name of the player who saved the team clipboard.
+     * @return The owner's name
+     */
+    public String getOwnerName() {
+        return ownerName;
+    }
+    
+    /**
+     * Get the clipboard. Hand out {@link Clipboard#share()} of it, never the clipboard itself.
+     * @return The clipboard
+     */
+    public Clipboard getClipboard() {
+        return clipboard;
+    }
+} 
\ No newline at end of file
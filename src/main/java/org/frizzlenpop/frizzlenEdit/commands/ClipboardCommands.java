@@ -12,6 +12,8 @@ import org.frizzlenpop.frizzlenEdit.operations.PasteOperation;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
 
+import java.util.Set;
+
 /**
  * Handles clipboard-related commands.
  */
@@ -309,4 +311,142 @@ public class ClipboardCommands {
             return true;
         }
     }
+    
+    /**
+     * Command handler for the clipboard command, which shares clipboards between players.
+     */
+    public static class ClipboardCommand implements CommandExecutor {
+        private final FrizzlenEdit plugin;
+        
+        public ClipboardCommand(FrizzlenEdit plugin) {
+            this.plugin = plugin;
+        }
+        
+        @Override
+        public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(ChatColor.RED + "This command can only be used by players.");
+                return true;
+            }
+            
+            Player player = (Player) sender;
+            
+            if (args.length < 1) {
+                sendUsage(player);
+                return true;
+            }
+            
+            switch (args[0].toLowerCase()) {
+                case "share":
+                    return handleShare(player, args);
+                case "accept":
+                    plugin.getClipboardManager().acceptShare(player);
+                    return true;
+                case "team":
+                    return handleTeam(player, args);
+                case "info":
+                    return handleInfo(player);
+                default:
+                    sendUsage(player);
+                    return true;
+            }
+        }
+        
+        private boolean handleShare(Player player, String[] args) {
+            if (!player.hasPermission("frizzlenedit.clipboard.share")) {
+                player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                return true;
+            }
+            
+            if (args.length < 2) {
+                player.sendMessage(ChatColor.RED + "Usage: //clipboard share <player>");
+                return true;
+            }
+            
+            Player target = plugin.getServer().getPlayerExact(args[1]);
+            if (target == null) {
+                player.sendMessage(ChatColor.RED + "Player not found: " + args[1]);
+                return true;
+            }
+            if (target.equals(player)) {
+                player.sendMessage(ChatColor.RED + "You already have your clipboard.");
+                return true;
+            }
+            
+            plugin.getClipboardManager().share(player, target);
+            return true;
+        }
+        
+        private boolean handleTeam(Player player, String[] args) {
+            if (!player.hasPermission("frizzlenedit.clipboard.team")) {
+                player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                return true;
+            }
+            
+            if (args.length < 2) {
+                player.sendMessage(ChatColor.RED + "Usage: //clipboard team <save|load|remove|list> [name]");
+                return true;
+            }
+            
+            String action = args[1].toLowerCase();
+            if (action.equals("list")) {
+                Set<String> names = plugin.getClipboardManager().getTeamClipboardNames();
+                if (names.isEmpty()) {
+                    player.sendMessage(ChatColor.YELLOW + "There are no team clipboards.");
+                } else {
+                    player.sendMessage(ChatColor.GREEN + "Team clipboards: " + ChatColor.WHITE + String.join(", ", names));
+                }
+                return true;
+            }
+            
+            if (args.length < 3) {
+                player.sendMessage(ChatColor.RED + "Usage: //clipboard team " + action + " <name>");
+                return true;
+            }
+            
+            String name = args[2];
+            switch (action) {
+                case "save":
+                    plugin.getClipboardManager().saveTeamClipboard(player, name);
+                    break;
+                case "load":
+                    plugin.getClipboardManager().loadTeamClipboard(player, name);
+                    break;
+                case "remove":
+                    plugin.getClipboardManager().removeTeamClipboard(player, name);
+                    break;
+                default:
+                    player.sendMessage(ChatColor.RED + "Usage: //clipboard team <save|load|remove|list> [name]");
+                    break;
+            }
+            return true;
+        }
+        
+        private boolean handleInfo(Player player) {
+            Clipboard clipboard = plugin.getClipboardManager().getClipboard(player);
+            if (clipboard == null) {
+                player.sendMessage(ChatColor.RED + "Your clipboard is empty.");
+                return true;
+            }
+            
+            player.sendMessage(ChatColor.GREEN + "Clipboard: " + ChatColor.WHITE + 
+                              clipboard.getWidth() + "x" + clipboard.getHeight() + "x" + clipboard.getLength() + 
+                              " (" + clipboard.countBlocks(false) + " blocks)");
+            player.sendMessage(ChatColor.GRAY + (clipboard.isShared() 
+                ? "Blocks are shared; they are copied the first time you change one." 
+                : "Blocks are your own."));
+            return true;
+        }
+        
+        private void sendUsage(Player player) {
+            player.sendMessage(ChatColor.GOLD + "Clipboard commands:");
+            player.sendMessage(ChatColor.YELLOW + "//clipboard share <player>" + ChatColor.WHITE + " - Offer a player a copy of your clipboard");
+            player.sendMessage(ChatColor.YELLOW + "//clipboard accept" + ChatColor.WHITE + " - Take the clipboard someone offered you");
+            player.sendMessage(ChatColor.YELLOW + "//clipboard team save <name>" + ChatColor.WHITE + " - Save your clipboard for your team");
+            player.sendMessage(ChatColor.YELLOW + "//clipboard team load <name>" + ChatColor.WHITE + " - Load a team clipboard");
+            player.sendMessage(ChatColor.YELLOW + "//clipboard team remove <name>" + ChatColor.WHITE + " - Remove a team clipboard you saved");
+            player.sendMessage(ChatColor.YELLOW + "//clipboard team list" + ChatColor.WHITE + " - List team clipboards");
+            player.sendMessage(ChatColor.YELLOW + "//clipboard info" + ChatColor.WHITE + " - Show your clipboard's size");
+        }
+    }
 } 
\ No newline at end of file
@@ -1,11 +1,31 @@
 package org.frizzlenpop.frizzlenEdit.commands;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.clipboard.ClipboardBuffer;
+import org.frizzlenpop.frizzlenEdit.operations.JobProfile;
+import org.frizzlenpop.frizzlenEdit.operations.OperationStats;
+import org.frizzlenpop.frizzlenEdit.schematic.SchematicCache;
+import org.frizzlenpop.frizzlenEdit.trace.TraceRecorder;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Handles the main plugin command.
@@ -57,6 +77,47 @@ public class FrizzlenEditCommandHandler implements CommandExecutor {
                 String prefix = plugin.getConfigManager().getCommandPrefix();
                 sender.sendMessage(ChatColor.GREEN + "Current command prefix is: " + prefix);
                 break;
+            case "memory":
+                if (!sender.hasPermission("frizzlenedit.admin.memory")) {
+                    sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                    return true;
+                }
+                
+                handleMemory(sender, args);
+                break;
+            case "trace":
+                if (!sender.hasPermission("frizzlenedit.admin.trace")) {
+                    sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                    return true;
+                }
+                
+                handleTrace(sender, args);
+                break;
+            case "overlay":
+                if (!sender.hasPermission("frizzlenedit.admin.overlay")) {
+                    sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                    return true;
+                }
+                
+                if (!(sender instanceof Player)) {
+                    sender.sendMessage(ChatColor.RED + "Only players can use the overlay.");
+                    return true;
+                }
+                
+                if (plugin.getBudgetOverlay().toggle((Player) sender)) {
+                    sender.sendMessage(ChatColor.GREEN + "Tick budget overlay enabled.");
+                } else {
+                    sender.sendMessage(ChatColor.YELLOW + "Tick budget overlay disabled.");
+                }
+                break;
+            case "stats":
+                if (!sender.hasPermission("frizzlenedit.admin.stats")) {
+                    sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                    return true;
+                }
+                
+                handleStats(sender, args);
+                break;
             default:
                 sender.sendMessage(ChatColor.RED + "Unknown command. Type /fe help for help.");
                 break;
@@ -65,6 +126,317 @@ public class FrizzlenEditCommandHandler implements CommandExecutor {
         return true;
     }
     
+    /**
+     * Handle the memory subcommand.
+     * @param sender The command sender
+     * @param args The command arguments, starting with "memory"
+     */
+    private void handleMemory(CommandSender sender, String[] args) {
+        String action = args.length > 1 ? args[1].toLowerCase() : "top";
+        
+        switch (action) {
+            case "top": {
+                int count = 10;
+                if (args.length > 2) {
+                    try {
+                        count = Math.max(1, Integer.parseInt(args[2]));
+                    } catch (NumberFormatException e) {
+                        sender.sendMessage(ChatColor.RED + "Invalid count: " + args[2]);
+                        return;
+                    }
+                }
+                showTopMemory(sender, count);
+                break;
+            }
+            case "clearclipboard": {
+                UUID uuid = resolvePlayer(sender, args, 2);
+                if (uuid == null) {
+                    return;
+                }
+                
+                String name = args[2];
+                plugin.getClipboardManager().clearClipboard(uuid).whenComplete((freed, error) -> reportMemoryAction(sender, uuid, error, () -> {
+                    if (freed < 0) {
+                        sender.sendMessage(ChatColor.YELLOW + name + " has no clipboard.");
+                    } else {
+                        sender.sendMessage(ChatColor.GREEN + "Cleared clipboard of " + name + ", freed about " + MemoryEstimates.format(freed) + ".");
+                    }
+                }));
+                break;
+            }
+            case "trimhistory": {
+                UUID uuid = resolvePlayer(sender, args, 2);
+                if (uuid == null) {
+                    return;
+                }
+                
+                int keep = 0;
+                if (args.length > 3) {
+                    try {
+                        keep = Math.max(0, Integer.parseInt(args[3]));
+                    } catch (NumberFormatException e) {
+                        sender.sendMessage(ChatColor.RED + "Invalid count: " + args[3]);
+                        return;
+                    }
+                }
+                
+                String name = args[2];
+                int kept = keep;
+                plugin.getHistoryManager().trimHistory(uuid, keep).whenComplete((freed, error) -> reportMemoryAction(sender, uuid, error, () -> {
+                    if (freed < 0) {
+                        sender.sendMessage(ChatColor.YELLOW + name + " has no history.");
+                    } else {
+                        sender.sendMessage(ChatColor.GREEN + "Trimmed history of " + name + " to " + kept + " entries, freed about " + MemoryEstimates.format(freed) + ".");
+                    }
+                }));
+                break;
+            }
+            case "spill": {
+                UUID uuid = resolvePlayer(sender, args, 2);
+                if (uuid == null) {
+                    return;
+                }
+                
+                // Written on the async thread, since the history may be large
+                String name = args[2];
+                long bytes = plugin.getClipboardManager().getMemoryUsage(uuid) + plugin.getHistoryManager().getMemoryUsage(uuid);
+                plugin.runAsync(() -> {
+                    boolean evicted = plugin.getSessionManager().evict(uuid);
+                    plugin.getTaskScheduler().runTask(() -> {
+                        if (evicted) {
+                            sender.sendMessage(ChatColor.GREEN + "Moved the session of " + name + " to disk, freed about " + MemoryEstimates.format(bytes) + ". It is read back when next used.");
+                        } else if (plugin.getSessionManager().isLoading(uuid)) {
+                            sender.sendMessage(ChatColor.YELLOW + "The session of " + name + " is already on disk.");
+                        } else {
+                            sender.sendMessage(ChatColor.YELLOW + "The session of " + name + " is in use or has nothing to store, it was left in memory.");
+                        }
+                    });
+                });
+                break;
+            }
+            default: {
+                // Treat anything else as a player name
+                UUID uuid = resolvePlayer(sender, args, 1);
+                if (uuid == null) {
+                    return;
+                }
+                
+                sender.sendMessage(ChatColor.GREEN + "=== Memory used by " + args[1] + " ===");
+                if (plugin.getSessionManager().isLoading(uuid)) {
+                    sender.sendMessage(ChatColor.GRAY + "Clipboard and history are on disk.");
+                }
+                sendMemoryLine(sender, "Clipboard", plugin.getClipboardManager().getMemoryUsage(uuid));
+                sendMemoryLine(sender, "History", plugin.getHistoryManager().getMemoryUsage(uuid));
+                sendMemoryLine(sender, "Brush", plugin.getBrushManager().getMemoryUsage(uuid));
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Report the outcome of a memory action on the main thread, and write the player's
+     * session back to disk if it was read back only for the action.
+     * @param sender The command sender
+     * @param uuid The player's UUID
+     * @param error The error the action failed with, or null
+     * @param report Sends the outcome
+     */
+    private void reportMemoryAction(CommandSender sender, UUID uuid, Throwable error, Runnable report) {
+        plugin.getTaskScheduler().runTask(() -> {
+            if (error != null) {
+                Logger.warning("Memory action on " + uuid + " failed: " + error.getMessage());
+                sender.sendMessage(ChatColor.RED + "Failed to read the session back: " + error.getMessage());
+                return;
+            }
+            report.run();
+            if (Bukkit.getPlayer(uuid) == null) {
+                plugin.runAsync(() -> plugin.getSessionManager().evict(uuid));
+            }
+        });
+    }
+    
+    /**
+     * Show the players whose clipboards, history and brushes use the most memory.
+     * Blocks shared through a team clipboard are counted once, under team clipboards,
+     * and blocks shared between players are counted for the first player only.
+     * @param sender The command sender
+     * @param count The number of players to show
+     */
+    private void showTopMemory(CommandSender sender, int count) {
+        Set<UUID> players = new HashSet<>();
+        players.addAll(plugin.getClipboardManager().getPlayers());
+        players.addAll(plugin.getHistoryManager().getPlayers());
+        players.addAll(plugin.getBrushManager().getPlayers());
+        
+        Set<ClipboardBuffer> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        long teams = plugin.getClipboardManager().getTeamMemoryUsage(counted);
+        
+        List<long[]> usage = new ArrayList<>();
+        List<UUID> order = new ArrayList<>();
+        long total = teams;
+        for (UUID uuid : players) {
+            long clipboard = plugin.getClipboardManager().getMemoryUsage(uuid, counted);
+            long history = plugin.getHistoryManager().getMemoryUsage(uuid);
+            long brush = plugin.getBrushManager().getMemoryUsage(uuid);
+            usage.add(new long[] {clipboard + history + brush, clipboard, history, brush, order.size()});
+            order.add(uuid);
+            total += clipboard + history + brush;
+        }
+        
+        // Largest consumers first
+        usage.sort((a, b) -> Long.compare(b[0], a[0]));
+        
+        sender.sendMessage(ChatColor.GREEN + "=== Memory by player (" + players.size() + " players, " + MemoryEstimates.format(total) + " total) ===");
+        for (int i = 0; i < Math.min(count, usage.size()); i++) {
+            long[] row = usage.get(i);
+            OfflinePlayer player = Bukkit.getOfflinePlayer(order.get((int) row[4]));
+            String name = player.getName() != null ? player.getName() : player.getUniqueId().toString();
+            
+            sender.sendMessage(ChatColor.GRAY.toString() + (i + 1) + ". " + ChatColor.WHITE + name + ChatColor.GRAY + ": " + 
+                              ChatColor.YELLOW + MemoryEstimates.format(row[0]) + ChatColor.GRAY + 
+                              " (clipboard " + MemoryEstimates.format(row[1]) + 
+                              ", history " + MemoryEstimates.format(row[2]) + 
+                              ", brush " + MemoryEstimates.format(row[3]) + ")");
+        }
+        sender.sendMessage(ChatColor.GRAY + "Team clipboards: " + ChatColor.WHITE + plugin.getClipboardManager().getTeamClipboardCount() + 
+                          ", " + MemoryEstimates.format(teams));
+        
+        SchematicCache cache = plugin.getSchematicManager().getCache();
+        sender.sendMessage(ChatColor.GRAY + "Schematic cache: " + ChatColor.WHITE + cache.size() + " schematics, " + 
+                          MemoryEstimates.format(cache.getMemoryUsage()) + ChatColor.GRAY + " of " + 
+                          MemoryEstimates.format(cache.getMaxBytes()) + " (" + cache.getHits() + " hits, " + 
+                          cache.getMisses() + " misses)");
+    }
+    
+    /**
+     * Handle the stats subcommand.
+     * @param sender The command sender
+     * @param args The command arguments, starting with "stats"
+     */
+    private void handleStats(CommandSender sender, String[] args) {
+        OperationStats stats = plugin.getOperationManager().getStats();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            stats.reset();
+            sender.sendMessage(ChatColor.GREEN + "Operation stats reset.");
+            return;
+        }
+        
+        if (!plugin.getConfigManager().isProfilingEnabled()) {
+            sender.sendMessage(ChatColor.YELLOW + "Profiling is off. Set profiling.enabled to true in the config and reload to measure operations.");
+        }
+        
+        List<OperationStats.Summary> summaries = stats.getSummaries();
+        if (summaries.isEmpty()) {
+            sender.sendMessage(ChatColor.YELLOW + "No operations have been measured yet.");
+            return;
+        }
+        
+        // Most allocation-heavy first, with the plan and apply phases broken out
+        sender.sendMessage(ChatColor.GREEN + "=== Operation stats (per block / CPU-ms per 1k blocks) ===");
+        for (OperationStats.Summary summary : summaries) {
+            sender.sendMessage(ChatColor.WHITE + summary.getType() + ChatColor.GRAY + " (" + summary.getJobs() + " jobs, " + 
+                              summary.getBlocks() + " blocks): " + 
+                              ChatColor.YELLOW + String.format("%.0f B, %.2f ms", summary.getBytesPerBlock(), summary.getCpuMillisPerThousand()) + 
+                              ChatColor.GRAY + String.format(" [plan %.0f B, %.2f ms; apply %.0f B, %.2f ms]", 
+                                  summary.getBytesPerBlock(JobProfile.Phase.PLAN), summary.getCpuMillisPerThousand(JobProfile.Phase.PLAN), 
+                                  summary.getBytesPerBlock(JobProfile.Phase.APPLY), summary.getCpuMillisPerThousand(JobProfile.Phase.APPLY)));
+        }
+    }
+    
+    /**
+     * Handle the trace subcommand.
+     * @param sender The command sender
+     * @param args The command arguments, starting with "trace"
+     */
+    private void handleTrace(CommandSender sender, String[] args) {
+        TraceRecorder recorder = plugin.getTraceRecorder();
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+        
+        if (action.equals("list")) {
+            List<String> traces = recorder.listTraces();
+            if (traces.isEmpty()) {
+                sender.sendMessage(ChatColor.YELLOW + "No traces have been recorded.");
+            } else {
+                sender.sendMessage(ChatColor.GREEN + "Traces: " + ChatColor.WHITE + String.join(", ", traces));
+            }
+            return;
+        }
+        
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(ChatColor.RED + "Only players can record traces.");
+            return;
+        }
+        Player player = (Player) sender;
+        
+        switch (action) {
+            case "start": {
+                String name = args.length > 2 ? args[2] : player.getName() + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+                if (!name.matches("[A-Za-z0-9_.-]+")) {
+                    player.sendMessage(ChatColor.RED + "Invalid trace name: " + name);
+                    return;
+                }
+                
+                try {
+                    recorder.start(player, name);
+                    player.sendMessage(ChatColor.GREEN + "Recording your edit commands to trace " + name + ". Use /fe trace stop to finish.");
+                } catch (IOException e) {
+                    player.sendMessage(ChatColor.RED + "Failed to start recording: " + e.getMessage());
+                }
+                break;
+            }
+            case "stop": {
+                int events = recorder.stop(player);
+                if (events < 0) {
+                    player.sendMessage(ChatColor.RED + "You are not recording a trace.");
+                } else {
+                    player.sendMessage(ChatColor.GREEN + "Recording stopped, " + events + " commands recorded.");
+                }
+                break;
+            }
+            default:
+                player.sendMessage(ChatColor.RED + "Usage: /fe trace <start [name]|stop|list>");
+                break;
+        }
+    }
+    
+    /**
+     * Send a single line of a memory breakdown.
+     * @param sender The command sender
+     * @param label The label of the line
+     * @param bytes The estimated size in bytes
+     */
+    private void sendMemoryLine(CommandSender sender, String label, long bytes) {
+        sender.sendMessage(ChatColor.GRAY + label + ": " + ChatColor.YELLOW + MemoryEstimates.format(bytes));
+    }
+    
+    /**
+     * Look up the player named in a command argument.
+     * @param sender The command sender, told if the player can't be found
+     * @param args The command arguments
+     * @param index The index of the player name
+     * @return The player's UUID, or null if there is no such player
+     */
+    private UUID resolvePlayer(CommandSender sender, String[] args, int index) {
+        if (args.length <= index) {
+            sender.sendMessage(ChatColor.RED + "Please specify a player.");
+            return null;
+        }
+        
+        Player online = Bukkit.getPlayerExact(args[index]);
+        if (online != null) {
+            return online.getUniqueId();
+        }
+        
+        // Data is kept for players who have logged off, so fall back to players the server
+        // knows, without asking the profile service
+        OfflinePlayer offline = Bukkit.getOfflinePlayerIfCached(args[index]);
+        if (offline == null) {
+            sender.sendMessage(ChatColor.RED + "Unknown player: " + args[index]);
+            return null;
+        }
+        return offline.getUniqueId();
+    }
+    
     /**
      * Show help to a command sender.
      * @param sender The command sender
@@ -75,6 +447,21 @@ public class FrizzlenEditCommandHandler implements CommandExecutor {
         sender.sendMessage(ChatColor.GRAY + "/fe reload" + ChatColor.WHITE + " - Reload the configuration");
         sender.sendMessage(ChatColor.GRAY + "/fe version" + ChatColor.WHITE + " - Show the plugin version");
         sender.sendMessage(ChatColor.GRAY + "/fe prefix" + ChatColor.WHITE + " - Show current command prefix");
+        if (sender.hasPermission("frizzlenedit.admin.memory")) {
+            sender.sendMessage(ChatColor.GRAY + "/fe memory [top <count>|<player>]" + ChatColor.WHITE + " - Show memory used by player data");
+            sender.sendMessage(ChatColor.GRAY + "/fe memory clearclipboard <player>" + ChatColor.WHITE + " - Free a player's clipboard");
+            sender.sendMessage(ChatColor.GRAY + "/fe memory trimhistory <player> [keep]" + ChatColor.WHITE + " - Trim a player's history");
+            sender.sendMessage(ChatColor.GRAY + "/fe memory spill <player>" + ChatColor.WHITE + " - Move a player's clipboard and history to disk");
+        }
+        if (sender.hasPermission("frizzlenedit.admin.overlay")) {
+            sender.sendMessage(ChatColor.GRAY + "/fe overlay" + ChatColor.WHITE + " - Toggle the tick budget overlay");
+        }
+        if (sender.hasPermission("frizzlenedit.admin.stats")) {
+            sender.sendMessage(ChatColor.GRAY + "/fe stats [reset]" + ChatColor.WHITE + " - Show the allocation and CPU time of each operation type");
+        }
+        if (sender.hasPermission("frizzlenedit.admin.trace")) {
+            sender.sendMessage(ChatColor.GRAY + "/fe trace <start [name]|stop|list>" + ChatColor.WHITE + " - Record your edit commands");
+        }
         
         if (sender instanceof Player) {
             sender.sendMessage(ChatColor.GREEN + "=== Selection Commands ===");
@@ -4,18 +4,39 @@ import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Handles the main schematic command and delegates to appropriate subcommands.
+ * Schematic names are tab completed from the schematic index, without touching the folder.
  */
-public class SchematicCommandHandler implements CommandExecutor {
+public class SchematicCommandHandler implements CommandExecutor, TabCompleter {
+    // Subcommands, in the order they are completed
+    private static final List<String> SUBCOMMANDS = Arrays.asList(
+        "save", "load", "delete", "list", "search", "formats", "paste", "pastelarge", "adaptivepaste"
+    );
+    
+    // Subcommands whose first argument is an existing schematic
+    private static final List<String> NAMED_SUBCOMMANDS = Arrays.asList(
+        "load", "delete", "paste", "pastelarge", "adaptivepaste"
+    );
+    
+    // Most schematic names offered at once
+    private static final int MAX_COMPLETIONS = 50;
+    
     private final FrizzlenEdit plugin;
     private final SchematicCommands.SaveCommand saveCommand;
     private final SchematicCommands.LoadCommand loadCommand;
     private final SchematicCommands.DeleteCommand deleteCommand;
     private final SchematicCommands.ListCommand listCommand;
+    private final SchematicCommands.SearchCommand searchCommand;
     private final SchematicCommands.FormatsCommand formatsCommand;
     private final SchematicCommands.PasteCommand pasteCommand;
     private final SchematicCommands.PasteLargeCommand pasteLargeCommand;
@@ -28,6 +49,7 @@ public class SchematicCommandHandler implements CommandExecutor {
      * @param loadCommand The load command
      * @param deleteCommand The delete command
      * @param listCommand The list command
+     * @param searchCommand The search command
      * @param formatsCommand The formats command
      * @param pasteCommand The paste command
      * @param pasteLargeCommand The pastelarge command
@@ -38,6 +60,7 @@ public class SchematicCommandHandler implements CommandExecutor {
                                   SchematicCommands.LoadCommand loadCommand,
                                   SchematicCommands.DeleteCommand deleteCommand,
                                   SchematicCommands.ListCommand listCommand,
+                                  SchematicCommands.SearchCommand searchCommand,
                                   SchematicCommands.FormatsCommand formatsCommand,
                                   SchematicCommands.PasteCommand pasteCommand,
                                   SchematicCommands.PasteLargeCommand pasteLargeCommand,
@@ -47,6 +70,7 @@ public class SchematicCommandHandler implements CommandExecutor {
         this.loadCommand = loadCommand;
         this.deleteCommand = deleteCommand;
         this.listCommand = listCommand;
+        this.searchCommand = searchCommand;
         this.formatsCommand = formatsCommand;
         this.pasteCommand = pasteCommand;
         this.pasteLargeCommand = pasteLargeCommand;
@@ -81,6 +105,8 @@ public class SchematicCommandHandler implements CommandExecutor {
                     return deleteCommand.onCommand(sender, command, label, subArgs);
                 case "list":
                     return listCommand.onCommand(sender, command, label, subArgs);
+                case "search":
+                    return searchCommand.onCommand(sender, command, label, subArgs);
                 case "formats":
                     return formatsCommand.onCommand(sender, command, label, subArgs);
                 case "paste":
@@ -101,19 +127,43 @@ public class SchematicCommandHandler implements CommandExecutor {
         return true;
     }
     
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (!sender.hasPermission("frizzlenedit.schematic")) {
+            return Collections.emptyList();
+        }
+        
+        if (args.length == 1) {
+            List<String> result = new ArrayList<>();
+            for (String subCommand : SUBCOMMANDS) {
+                if (subCommand.startsWith(args[0].toLowerCase())) {
+                    result.add(subCommand);
+                }
+            }
+            return result;
+        }
+        
+        if (args.length == 2 && NAMED_SUBCOMMANDS.contains(args[0].toLowerCase())) {
+            return plugin.getSchematicManager().getIndex().complete(args[1], MAX_COMPLETIONS);
+        }
+        
+        return Collections.emptyList();
+    }
+    
     /**
      * Show help for the schematic command.
      * @param player The player to show help to
      */
     private void showHelp(Player player) {
         player.sendMessage(ChatColor.YELLOW + "=== Schematic Commands ===");
-        player.sendMessage(ChatColor.GOLD + "/schematic save <name>" + ChatColor.WHITE + " - Save your selection as a schematic");
-        player.sendMessage(ChatColor.GOLD + "/schematic load <name>" + ChatColor.WHITE + " - Load a schematic to your clipboard");
+        player.sendMessage(ChatColor.GOLD + "/schematic save <name> [export|sponge|sectioned|deduplicated]" + ChatColor.WHITE + " - Save your selection as a schematic");
+        player.sendMessage(ChatColor.GOLD + "/schematic load <name> [x1 y1 z1 x2 y2 z2]" + ChatColor.WHITE + " - Load a schematic, or a box of it, to your clipboard");
         player.sendMessage(ChatColor.GOLD + "/schematic delete <name>" + ChatColor.WHITE + " - Delete a schematic");
-        player.sendMessage(ChatColor.GOLD + "/schematic list" + ChatColor.WHITE + " - List available schematics");
+        player.sendMessage(ChatColor.GOLD + "/schematic list [page]" + ChatColor.WHITE + " - List available schematics");
+        player.sendMessage(ChatColor.GOLD + "/schematic search <text> [page]" + ChatColor.WHITE + " - Find schematics by name or author");
         player.sendMessage(ChatColor.GOLD + "/schematic formats" + ChatColor.WHITE + " - List supported schematic formats");
         player.sendMessage(ChatColor.GOLD + "/schematic paste <name> [noair]" + ChatColor.WHITE + " - Paste a schematic at your location");
-        player.sendMessage(ChatColor.GOLD + "/schematic pastelarge <name> [noair] [batch <size>] [delay <ticks>] [noadaptive]" + 
+        player.sendMessage(ChatColor.GOLD + "/schematic pastelarge <name> [noair] [stream] [batch <size>] [delay <ticks>] [noadaptive]" + 
                             ChatColor.WHITE + " - Paste a large schematic with optimized performance");
         player.sendMessage(ChatColor.GOLD + "/schematic adaptivepaste <name> [noair]" + 
                             ChatColor.WHITE + " - Paste with automatic performance optimization");
@@ -42,7 +42,7 @@ public class SchematicCommands {
             }
             
             if (args.length < 1) {
-                player.sendMessage(ChatColor.RED + "Usage: //schematic save <name>");
+                player.sendMessage(ChatColor.RED + "Usage: //schematic save <name> [export|sponge|sectioned|deduplicated]");
                 return true;
             }
             
@@ -57,8 +57,30 @@ public class SchematicCommands {
             // Get the selection
             Region region = plugin.getSelectionManager().getSelection(player);
             
+            // "export" writes a single gzip stream for other tools; "sponge", "sectioned" and
+            // "deduplicated" override the configured format
+            boolean export = false;
+            boolean deduplicated = plugin.getConfigManager().isSchematicDeduplicatedFormat();
+            boolean sectioned = deduplicated || plugin.getConfigManager().isSchematicSectionedFormat();
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equalsIgnoreCase("export")) {
+                    export = true;
+                    sectioned = false;
+                    deduplicated = false;
+                } else if (args[i].equalsIgnoreCase("sponge")) {
+                    sectioned = false;
+                    deduplicated = false;
+                } else if (args[i].equalsIgnoreCase("sectioned")) {
+                    sectioned = true;
+                    deduplicated = false;
+                } else if (args[i].equalsIgnoreCase("deduplicated")) {
+                    sectioned = true;
+                    deduplicated = true;
+                }
+            }
+            
             // Save the schematic
-            plugin.getSchematicManager().saveSchematic(player, region, name);
+            plugin.getSchematicManager().saveSchematic(player, region, name, export, sectioned, deduplicated);
             return true;
         }
     }
@@ -88,12 +110,28 @@ public class SchematicCommands {
             }
             
             if (args.length < 1) {
-                player.sendMessage(ChatColor.RED + "Usage: //schematic load <name>");
+                player.sendMessage(ChatColor.RED + "Usage: //schematic load <name> [<x1> <y1> <z1> <x2> <y2> <z2>]");
                 return true;
             }
             
             String name = args[0];
             
+            // Load only a box of the schematic, given relative to its minimum corner
+            if (args.length >= 7) {
+                int[] corners = new int[6];
+                for (int i = 0; i < corners.length; i++) {
+                    try {
+                        corners[i] = Integer.parseInt(args[i + 1]);
+                    } catch (NumberFormatException e) {
+                        player.sendMessage(ChatColor.RED + "Invalid coordinate: " + args[i + 1]);
+                        return true;
+                    }
+                }
+                plugin.getSchematicManager().loadSchematic(player, name, 
+                    new Vector3(corners[0], corners[1], corners[2]), new Vector3(corners[3], corners[4], corners[5]));
+                return true;
+            }
+            
             // Load the schematic
             plugin.getSchematicManager().loadSchematic(player, name);
             return true;
@@ -161,8 +199,63 @@ public class SchematicCommands {
                 return true;
             }
             
+            int page = 1;
+            if (args.length > 0) {
+                try {
+                    page = Integer.parseInt(args[0]);
+                } catch (NumberFormatException e) {
+                    player.sendMessage(ChatColor.RED + "Invalid page: " + args[0]);
+                    return true;
+                }
+            }
+            
             // List the schematics
-            plugin.getSchematicManager().listSchematics(player);
+            plugin.getSchematicManager().listSchematics(player, page);
+            return true;
+        }
+    }
+    
+    /**
+     * Command handler for the schematic search command.
+     */
+    public static class SearchCommand implements CommandExecutor {
+        private final FrizzlenEdit plugin;
+        
+        public SearchCommand(FrizzlenEdit plugin) {
+            this.plugin = plugin;
+        }
+        
+        @Override
+        public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(ChatColor.RED + "This command can only be used by players.");
+                return true;
+            }
+            
+            Player player = (Player) sender;
+            
+            if (!player.hasPermission("frizzlenedit.schematic.list")) {
+                player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                return true;
+            }
+            
+            if (args.length < 1) {
+                player.sendMessage(ChatColor.RED + "Usage: //schematic search <text> [page]");
+                return true;
+            }
+            
+            int page = 1;
+            if (args.length > 1) {
+                try {
+                    page = Integer.parseInt(args[1]);
+                } catch (NumberFormatException e) {
+                    player.sendMessage(ChatColor.RED + "Invalid page: " + args[1]);
+                    return true;
+                }
+            }
+            
+            // Search the schematic names and authors
+            plugin.getSchematicManager().searchSchematics(player, args[0], page);
             return true;
         }
     }
@@ -192,7 +285,8 @@ public class SchematicCommands {
             }
             
             // List the supported formats
-            player.sendMessage(ChatColor.GREEN + "Supported schematic formats: .schem");
+            player.sendMessage(ChatColor.GREEN + "Supported schematic formats: .schem (Sponge), .fesch (sectioned), " + 
+                              ".femanifest (deduplicated), .schematic (MCEdit, imported) and .litematic (Litematica, imported)");
             return true;
         }
     }
@@ -268,7 +362,7 @@ public class SchematicCommands {
             }
             
             if (args.length < 1) {
-                player.sendMessage(ChatColor.RED + "Usage: //schematic pastelarge <name> [noair] [batch <size>] [delay <ticks>] [noadaptive]");
+                player.sendMessage(ChatColor.RED + "Usage: //schematic pastelarge <name> [noair] [stream] [batch <size>] [delay <ticks>] [noadaptive]");
                 return true;
             }
             
@@ -277,11 +371,14 @@ public class SchematicCommands {
             int batchSize = plugin.getConfig().getInt("paste.batch-size", 500);
             int delay = plugin.getConfig().getInt("paste.delay", 1);
             boolean useAdaptive = true;
+            boolean stream = false;
             
             // Parse additional arguments
             for (int i = 1; i < args.length; i++) {
                 if (args[i].equalsIgnoreCase("noair")) {
                     noAir = true;
+                } else if (args[i].equalsIgnoreCase("stream")) {
+                    stream = true;
                 } else if (args[i].equalsIgnoreCase("batch") && i + 1 < args.length) {
                     try {
                         batchSize = Integer.parseInt(args[i + 1]);
@@ -306,7 +403,12 @@ public class SchematicCommands {
             // Now we'll use the optimized paste system regardless of whether adaptive is enabled
             // The optimization includes chunk-based processing, deferred physics, progressive adaptive sizing,
             // multi-threaded block processing, and block type prioritization
-            plugin.getSchematicManager().optimizedPasteSchematic(player, name, noAir, batchSize, delay);
+            if (stream) {
+                // Reads the file as it pastes instead of loading it whole
+                plugin.getSchematicManager().streamPasteSchematic(player, name, noAir, batchSize, delay);
+            } else {
+                plugin.getSchematicManager().optimizedPasteSchematic(player, name, noAir, batchSize, delay);
+            }
             
             return true;
         }
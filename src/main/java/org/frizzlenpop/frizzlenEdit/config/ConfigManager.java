@@ -22,21 +22,63 @@ public class ConfigManager {
     private static final int DEFAULT_UNDO_HISTORY_SIZE = 25;
     private static final int DEFAULT_MAX_BRUSH_SIZE = 30;
     private static final int DEFAULT_CLIPBOARD_SIZE_LIMIT = 1000000; // 1 million blocks
+    private static final boolean DEFAULT_CLIPBOARD_COPY_ENTITIES = true;
     private static final int DEFAULT_BATCH_PASTE_SIZE = 1000; // 1000 blocks per batch
     private static final int DEFAULT_BATCH_PASTE_DELAY = 1; // 1 tick delay between batches
+    private static final int DEFAULT_BATCH_PASTE_TICK_BUDGET_MS = 20; // Less than half of a 50ms tick
     private static final boolean DEFAULT_DEBUG_MODE = false;
     private static final String DEFAULT_COMMAND_PREFIX = "//";
+    private static final boolean DEFAULT_ADMISSION_ENABLED = true;
+    private static final int DEFAULT_ADMISSION_MAX_TICK_MS = 500; // Half a second of main thread time
+    private static final String DEFAULT_ADMISSION_OVER_LIMIT_ACTION = "queue";
+    private static final String DEFAULT_ADMISSION_OFF_PEAK_HOURS = "2-6";
+    private static final boolean DEFAULT_SLOW_JOB_LOG_ENABLED = true;
+    private static final int DEFAULT_SLOW_JOB_MIN_DURATION_MS = 1000;
+    private static final int DEFAULT_SLOW_JOB_MIN_TICK_MS = 100; // Two ticks of main thread time
+    private static final int DEFAULT_SLOW_JOB_MAX_FILE_SIZE_KB = 1024;
+    private static final int DEFAULT_SLOW_JOB_MAX_FILES = 5;
+    private static final int DEFAULT_TRACE_MAX_SNAPSHOT_BLOCKS = 32768; // A 32^3 area, read within a few ms
+    private static final boolean DEFAULT_SESSION_SPILL_ON_QUIT = true;
+    private static final int DEFAULT_SESSION_IDLE_TIMEOUT_MINUTES = 30;
+    private static final int DEFAULT_SESSION_RETENTION_DAYS = 7;
+    private static final boolean DEFAULT_PROFILING_ENABLED = false;
+    private static final int DEFAULT_SCHEMATIC_COMPRESSION_LEVEL = 6; // The usual balance of gzip speed and size
+    private static final int DEFAULT_SCHEMATIC_CACHE_SIZE_MB = 128;
+    private static final boolean DEFAULT_SCHEMATIC_PARALLEL_COMPRESSION = true;
+    private static final int DEFAULT_SCHEMATIC_PARALLEL_MIN_BLOCKS = 1000000; // About a megabyte of block data
+    private static final String DEFAULT_SCHEMATIC_FORMAT = "sponge"; // Readable by other tools
     
     // Config keys
     public static final String KEY_MAX_SELECTION_BLOCKS = "max-selection-blocks";
     public static final String KEY_UNDO_HISTORY_SIZE = "undo-history-size";
     public static final String KEY_MAX_BRUSH_SIZE = "max-brush-size";
     public static final String KEY_CLIPBOARD_SIZE_LIMIT = "clipboard-size-limit";
+    public static final String KEY_CLIPBOARD_COPY_ENTITIES = "clipboard-copy-entities";
     public static final String KEY_STORAGE_TYPE = "storage-type"; // "file" or "mysql"
     public static final String KEY_BATCH_PASTE_SIZE = "batch-paste-size";
     public static final String KEY_BATCH_PASTE_DELAY = "batch-paste-delay";
+    public static final String KEY_BATCH_PASTE_TICK_BUDGET_MS = "batch-paste-tick-budget-ms";
     public static final String KEY_DEBUG_MODE = "debug-mode";
     public static final String KEY_COMMAND_PREFIX = "commands.prefix";
+    public static final String KEY_ADMISSION_ENABLED = "admission.enabled";
+    public static final String KEY_ADMISSION_MAX_TICK_MS = "admission.max-tick-ms";
+    public static final String KEY_ADMISSION_OVER_LIMIT_ACTION = "admission.over-limit-action"; // "queue" or "refuse"
+    public static final String KEY_ADMISSION_OFF_PEAK_HOURS = "admission.off-peak-hours";
+    public static final String KEY_SLOW_JOB_LOG_ENABLED = "slow-job-log.enabled";
+    public static final String KEY_SLOW_JOB_MIN_DURATION_MS = "slow-job-log.min-duration-ms";
+    public static final String KEY_SLOW_JOB_MIN_TICK_MS = "slow-job-log.min-tick-ms";
+    public static final String KEY_SLOW_JOB_MAX_FILE_SIZE_KB = "slow-job-log.max-file-size-kb";
+    public static final String KEY_SLOW_JOB_MAX_FILES = "slow-job-log.max-files";
+    public static final String KEY_TRACE_MAX_SNAPSHOT_BLOCKS = "trace.max-snapshot-blocks";
+    public static final String KEY_SESSION_SPILL_ON_QUIT = "sessions.spill-on-quit";
+    public static final String KEY_SESSION_IDLE_TIMEOUT_MINUTES = "sessions.idle-timeout-minutes";
+    public static final String KEY_SESSION_RETENTION_DAYS = "sessions.retention-days";
+    public static final String KEY_PROFILING_ENABLED = "profiling.enabled";
+    public static final String KEY_SCHEMATIC_COMPRESSION_LEVEL = "schematics.compression-level";
+    public static final String KEY_SCHEMATIC_CACHE_SIZE_MB = "schematics.cache-size-mb";
+    public static final String KEY_SCHEMATIC_PARALLEL_COMPRESSION = "schematics.parallel-compression";
+    public static final String KEY_SCHEMATIC_PARALLEL_MIN_BLOCKS = "schematics.parallel-min-blocks";
+    public static final String KEY_SCHEMATIC_FORMAT = "schematics.format";
     
     public ConfigManager(FrizzlenEdit plugin) {
         this.plugin = plugin;
@@ -82,6 +124,10 @@ public class ConfigManager {
             config.set(KEY_CLIPBOARD_SIZE_LIMIT, DEFAULT_CLIPBOARD_SIZE_LIMIT);
         }
         
+        if (!config.contains(KEY_CLIPBOARD_COPY_ENTITIES)) {
+            config.set(KEY_CLIPBOARD_COPY_ENTITIES, DEFAULT_CLIPBOARD_COPY_ENTITIES);
+        }
+        
         if (!config.contains(KEY_STORAGE_TYPE)) {
             config.set(KEY_STORAGE_TYPE, "file");
         }
@@ -94,6 +140,10 @@ public class ConfigManager {
             config.set(KEY_BATCH_PASTE_DELAY, DEFAULT_BATCH_PASTE_DELAY);
         }
         
+        if (!config.contains(KEY_BATCH_PASTE_TICK_BUDGET_MS)) {
+            config.set(KEY_BATCH_PASTE_TICK_BUDGET_MS, DEFAULT_BATCH_PASTE_TICK_BUDGET_MS);
+        }
+        
         if (!config.contains(KEY_DEBUG_MODE)) {
             config.set(KEY_DEBUG_MODE, DEFAULT_DEBUG_MODE);
         }
@@ -101,6 +151,82 @@ public class ConfigManager {
         if (!config.contains(KEY_COMMAND_PREFIX)) {
             config.set(KEY_COMMAND_PREFIX, DEFAULT_COMMAND_PREFIX);
         }
+        
+        if (!config.contains(KEY_ADMISSION_ENABLED)) {
+            config.set(KEY_ADMISSION_ENABLED, DEFAULT_ADMISSION_ENABLED);
+        }
+        
+        if (!config.contains(KEY_ADMISSION_MAX_TICK_MS)) {
+            config.set(KEY_ADMISSION_MAX_TICK_MS, DEFAULT_ADMISSION_MAX_TICK_MS);
+        }
+        
+        if (!config.contains(KEY_ADMISSION_OVER_LIMIT_ACTION)) {
+            config.set(KEY_ADMISSION_OVER_LIMIT_ACTION, DEFAULT_ADMISSION_OVER_LIMIT_ACTION);
+        }
+        
+        if (!config.contains(KEY_ADMISSION_OFF_PEAK_HOURS)) {
+            config.set(KEY_ADMISSION_OFF_PEAK_HOURS, DEFAULT_ADMISSION_OFF_PEAK_HOURS);
+        }
+        
+        if (!config.contains(KEY_SLOW_JOB_LOG_ENABLED)) {
+            config.set(KEY_SLOW_JOB_LOG_ENABLED, DEFAULT_SLOW_JOB_LOG_ENABLED);
+        }
+        
+        if (!config.contains(KEY_SLOW_JOB_MIN_DURATION_MS)) {
+            config.set(KEY_SLOW_JOB_MIN_DURATION_MS, DEFAULT_SLOW_JOB_MIN_DURATION_MS);
+        }
+        
+        if (!config.contains(KEY_SLOW_JOB_MIN_TICK_MS)) {
+            config.set(KEY_SLOW_JOB_MIN_TICK_MS, DEFAULT_SLOW_JOB_MIN_TICK_MS);
+        }
+        
+        if (!config.contains(KEY_SLOW_JOB_MAX_FILE_SIZE_KB)) {
+            config.set(KEY_SLOW_JOB_MAX_FILE_SIZE_KB, DEFAULT_SLOW_JOB_MAX_FILE_SIZE_KB);
+        }
+        
+        if (!config.contains(KEY_SLOW_JOB_MAX_FILES)) {
+            config.set(KEY_SLOW_JOB_MAX_FILES, DEFAULT_SLOW_JOB_MAX_FILES);
+        }
+        
+        if (!config.contains(KEY_TRACE_MAX_SNAPSHOT_BLOCKS)) {
+            config.set(KEY_TRACE_MAX_SNAPSHOT_BLOCKS, DEFAULT_TRACE_MAX_SNAPSHOT_BLOCKS);
+        }
+        
+        if (!config.contains(KEY_SESSION_SPILL_ON_QUIT)) {
+            config.set(KEY_SESSION_SPILL_ON_QUIT, DEFAULT_SESSION_SPILL_ON_QUIT);
+        }
+        
+        if (!config.contains(KEY_SESSION_IDLE_TIMEOUT_MINUTES)) {
+            config.set(KEY_SESSION_IDLE_TIMEOUT_MINUTES, DEFAULT_SESSION_IDLE_TIMEOUT_MINUTES);
+        }
+        
+        if (!config.contains(KEY_SESSION_RETENTION_DAYS)) {
+            config.set(KEY_SESSION_RETENTION_DAYS, DEFAULT_SESSION_RETENTION_DAYS);
+        }
+        
+        if (!config.contains(KEY_PROFILING_ENABLED)) {
+            config.set(KEY_PROFILING_ENABLED, DEFAULT_PROFILING_ENABLED);
+        }
+        
+        if (!config.contains(KEY_SCHEMATIC_COMPRESSION_LEVEL)) {
+            config.set(KEY_SCHEMATIC_COMPRESSION_LEVEL, DEFAULT_SCHEMATIC_COMPRESSION_LEVEL);
+        }
+        
+        if (!config.contains(KEY_SCHEMATIC_CACHE_SIZE_MB)) {
+            config.set(KEY_SCHEMATIC_CACHE_SIZE_MB, DEFAULT_SCHEMATIC_CACHE_SIZE_MB);
+        }
+        
+        if (!config.contains(KEY_SCHEMATIC_PARALLEL_COMPRESSION)) {
+            config.set(KEY_SCHEMATIC_PARALLEL_COMPRESSION, DEFAULT_SCHEMATIC_PARALLEL_COMPRESSION);
+        }
+        
+        if (!config.contains(KEY_SCHEMATIC_PARALLEL_MIN_BLOCKS)) {
+            config.set(KEY_SCHEMATIC_PARALLEL_MIN_BLOCKS, DEFAULT_SCHEMATIC_PARALLEL_MIN_BLOCKS);
+        }
+        
+        if (!config.contains(KEY_SCHEMATIC_FORMAT)) {
+            config.set(KEY_SCHEMATIC_FORMAT, DEFAULT_SCHEMATIC_FORMAT);
+        }
     }
     
     /**
@@ -142,6 +268,15 @@ public class ConfigManager {
         return config.getInt(KEY_CLIPBOARD_SIZE_LIMIT, DEFAULT_CLIPBOARD_SIZE_LIMIT);
     }
     
+    /**
+     * Check if copies and saved schematics include the entities in the region, such as mobs,
+     * item frames and armor stands. Block entities are always included.
+     * @return True if entities are copied
+     */
+    public boolean isClipboardCopyEntities() {
+        return config.getBoolean(KEY_CLIPBOARD_COPY_ENTITIES, DEFAULT_CLIPBOARD_COPY_ENTITIES);
+    }
+    
     /**
      * Get the storage type for schematics and history.
      * @return The storage type (file or mysql)
@@ -166,6 +301,14 @@ public class ConfigManager {
         return config.getInt(KEY_BATCH_PASTE_DELAY, DEFAULT_BATCH_PASTE_DELAY);
     }
     
+    /**
+     * Get the most main thread time a batch paste may use in one tick.
+     * @return The budget in milliseconds, or 0 for no limit
+     */
+    public int getBatchPasteTickBudgetMs() {
+        return config.getInt(KEY_BATCH_PASTE_TICK_BUDGET_MS, DEFAULT_BATCH_PASTE_TICK_BUDGET_MS);
+    }
+    
     /**
      * Check if debug mode is enabled.
      * @return True if debug mode is enabled, false otherwise
@@ -181,4 +324,167 @@ public class ConfigManager {
     public String getCommandPrefix() {
         return config.getString(KEY_COMMAND_PREFIX, DEFAULT_COMMAND_PREFIX);
     }
+    
+    /**
+     * Check if cost-based admission control is enabled.
+     * @return True if operations are checked against the tick budget before running
+     */
+    public boolean isAdmissionEnabled() {
+        return config.getBoolean(KEY_ADMISSION_ENABLED, DEFAULT_ADMISSION_ENABLED);
+    }
+    
+    /**
+     * Get the longest predicted time a single operation may hold the main thread.
+     * @return The limit in milliseconds
+     */
+    public int getAdmissionMaxTickMs() {
+        return config.getInt(KEY_ADMISSION_MAX_TICK_MS, DEFAULT_ADMISSION_MAX_TICK_MS);
+    }
+    
+    /**
+     * Check whether operations over the tick budget are queued for off-peak hours.
+     * @return True to queue them, false to refuse them
+     */
+    public boolean isAdmissionQueueEnabled() {
+        return !"refuse".equalsIgnoreCase(config.getString(KEY_ADMISSION_OVER_LIMIT_ACTION, DEFAULT_ADMISSION_OVER_LIMIT_ACTION));
+    }
+    
+    /**
+     * Get the off-peak hours during which queued operations are run.
+     * @return The hour range in the form "start-end" (server local time, end exclusive)
+     */
+    public String getAdmissionOffPeakHours() {
+        return config.getString(KEY_ADMISSION_OFF_PEAK_HOURS, DEFAULT_ADMISSION_OFF_PEAK_HOURS);
+    }
+    
+    /**
+     * Check if slow jobs are written to the slow job log.
+     * @return True if the slow job log is enabled
+     */
+    public boolean isSlowJobLogEnabled() {
+        return config.getBoolean(KEY_SLOW_JOB_LOG_ENABLED, DEFAULT_SLOW_JOB_LOG_ENABLED);
+    }
+    
+    /**
+     * Get the total duration above which a job is logged as slow.
+     * @return The threshold in milliseconds
+     */
+    public int getSlowJobMinDurationMs() {
+        return config.getInt(KEY_SLOW_JOB_MIN_DURATION_MS, DEFAULT_SLOW_JOB_MIN_DURATION_MS);
+    }
+    
+    /**
+     * Get the main thread time above which a job is logged as slow.
+     * @return The threshold in milliseconds
+     */
+    public int getSlowJobMinTickMs() {
+        return config.getInt(KEY_SLOW_JOB_MIN_TICK_MS, DEFAULT_SLOW_JOB_MIN_TICK_MS);
+    }
+    
+    /**
+     * Get the size at which the slow job log is rotated.
+     * @return The size in kilobytes
+     */
+    public int getSlowJobMaxFileSizeKb() {
+        return config.getInt(KEY_SLOW_JOB_MAX_FILE_SIZE_KB, DEFAULT_SLOW_JOB_MAX_FILE_SIZE_KB);
+    }
+    
+    /**
+     * Get the number of slow job log files to keep.
+     * @return The number of files
+     */
+    public int getSlowJobMaxFiles() {
+        return config.getInt(KEY_SLOW_JOB_MAX_FILES, DEFAULT_SLOW_JOB_MAX_FILES);
+    }
+    
+    /**
+     * Get the largest selection whose blocks are captured in a trace. The blocks are read on the
+     * main thread before the command runs, so this bounds the time recording adds to that tick.
+     * @return The maximum number of blocks
+     */
+    public int getTraceMaxSnapshotBlocks() {
+        return config.getInt(KEY_TRACE_MAX_SNAPSHOT_BLOCKS, DEFAULT_TRACE_MAX_SNAPSHOT_BLOCKS);
+    }
+    
+    /**
+     * Check if sessions are written to disk when their player leaves.
+     * @return True if sessions are spilled on quit
+     */
+    public boolean isSessionSpillOnQuit() {
+        return config.getBoolean(KEY_SESSION_SPILL_ON_QUIT, DEFAULT_SESSION_SPILL_ON_QUIT);
+    }
+    
+    /**
+     * Get how long a session may go unused before it is written to disk.
+     * @return The timeout in minutes, or 0 to keep idle sessions in memory
+     */
+    public int getSessionIdleTimeoutMinutes() {
+        return config.getInt(KEY_SESSION_IDLE_TIMEOUT_MINUTES, DEFAULT_SESSION_IDLE_TIMEOUT_MINUTES);
+    }
+    
+    /**
+     * Get how long session files of players who don't return are kept.
+     * @return The retention in days
+     */
+    public int getSessionRetentionDays() {
+        return config.getInt(KEY_SESSION_RETENTION_DAYS, DEFAULT_SESSION_RETENTION_DAYS);
+    }
+    
+    /**
+     * Check if operations should be measured for allocation and CPU time.
+     * @return True if profiling is enabled
+     */
+    public boolean isProfilingEnabled() {
+        return config.getBoolean(KEY_PROFILING_ENABLED, DEFAULT_PROFILING_ENABLED);
+    }
+    
+    /**
+     * Get the deflate level schematics are saved with.
+     * @return The level, from 0 (no compression) to 9 (smallest files)
+     */
+    public int getSchematicCompressionLevel() {
+        int level = config.getInt(KEY_SCHEMATIC_COMPRESSION_LEVEL, DEFAULT_SCHEMATIC_COMPRESSION_LEVEL);
+        return Math.max(0, Math.min(9, level));
+    }
+    
+    /**
+     * Get the memory decoded schematics may be kept in for pasting again.
+     * @return The size in megabytes, or 0 to read schematics from disk every time
+     */
+    public int getSchematicCacheSizeMb() {
+        return Math.max(0, config.getInt(KEY_SCHEMATIC_CACHE_SIZE_MB, DEFAULT_SCHEMATIC_CACHE_SIZE_MB));
+    }
+    
+    /**
+     * Check if large schematics are saved in sections compressed in parallel.
+     * @return True if parallel compression is enabled
+     */
+    public boolean isSchematicParallelCompression() {
+        return config.getBoolean(KEY_SCHEMATIC_PARALLEL_COMPRESSION, DEFAULT_SCHEMATIC_PARALLEL_COMPRESSION);
+    }
+    
+    /**
+     * Get the smallest schematic saved with parallel compression.
+     * @return The minimum number of blocks
+     */
+    public int getSchematicParallelMinBlocks() {
+        return config.getInt(KEY_SCHEMATIC_PARALLEL_MIN_BLOCKS, DEFAULT_SCHEMATIC_PARALLEL_MIN_BLOCKS);
+    }
+    
+    /**
+     * Check if schematics are saved in the sectioned format rather than as Sponge schematics.
+     * @return True if the format is "sectioned"
+     */
+    public boolean isSchematicSectionedFormat() {
+        return "sectioned".equalsIgnoreCase(config.getString(KEY_SCHEMATIC_FORMAT, DEFAULT_SCHEMATIC_FORMAT));
+    }
+    
+    /**
+     * Check if schematics are saved deduplicated, as manifests of sections kept once in the
+     * section store.
+     * @return True if the format is "deduplicated"
+     */
+    public boolean isSchematicDeduplicatedFormat() {
+        return "deduplicated".equalsIgnoreCase(config.getString(KEY_SCHEMATIC_FORMAT, DEFAULT_SCHEMATIC_FORMAT));
+    }
 } 
\ No newline at end of file
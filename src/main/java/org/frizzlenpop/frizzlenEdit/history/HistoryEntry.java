@@ -1,42 +1,61 @@
 package org.frizzlenpop.frizzlenEdit.history;
 
 import org.bukkit.World;
-import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.EntityData;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Represents a single entry in the history, containing information needed to undo/redo an operation.
+ * Besides the blocks, the entry keeps the block entities of the changed positions, such as
+ * chest contents and sign text, and gives them back once the blocks are in place, and the
+ * entities the operation added, which undo removes again.
  */
 public class HistoryEntry {
     // The player who performed the operation
     private final Player player;
     
-    // The world the operation was performed in
-    private final World world;
+    // The extent the operation was performed in
+    private final Extent extent;
     
     // A description of the operation
     private final String description;
     
-    // The previous block states (for undo)
-    private final Map<Vector3, BlockState> previousStates = new HashMap<>();
+    // The previous block data (for undo)
+    private final Map<Vector3, BlockData> previousBlocks = new HashMap<>();
     
-    // The new block states (for redo)
-    private final Map<Vector3, BlockState> newStates = new HashMap<>();
+    // The new block data (for redo)
+    private final Map<Vector3, BlockData> newBlocks = new HashMap<>();
+    
+    // The block entity NBT of the changed positions before and after the operation
+    private final Map<Vector3, byte[]> previousBlockEntities = new HashMap<>();
+    private final Map<Vector3, byte[]> newBlockEntities = new HashMap<>();
+    
+    // The entities the operation added, by the id they have in the world
+    private Map<UUID, EntityData> addedEntities = new LinkedHashMap<>();
     
     /**
      * Create a new history entry.
      * @param player The player who performed the operation
-     * @param world The world the operation was performed in
+     * @param extent The extent the operation was performed in
      * @param description A description of the operation
      */
-    public HistoryEntry(Player player, World world, String description) {
+    public HistoryEntry(Player player, Extent extent, String description) {
         this.player = player;
-        this.world = world;
+        this.extent = extent;
         this.description = description;
+        
+        // The operation writes through this extent, so it can keep what it overwrites
+        extent.keepReplacedBlockEntities();
     }
     
     /**
@@ -49,10 +68,18 @@ public class HistoryEntry {
     
     /**
      * Get the world this operation was performed in.
-     * @return The world
+     * @return The world, or null if it was performed in an extent without one
      */
     public World getWorld() {
-        return world;
+        return extent.getWorld();
+    }
+    
+    /**
+     * Get the extent this operation was performed in.
+     * @return The extent
+     */
+    public Extent getExtent() {
+        return extent;
     }
     
     /**
@@ -64,30 +91,88 @@ public class HistoryEntry {
     }
     
     /**
-     * Add a block state to this history entry.
+     * Add a changed block to this history entry. If the block was already changed earlier
+     * in the same operation, its original data is kept.
      * @param position The position of the block
-     * @param oldState The previous state of the block
-     * @param newState The new state of the block
+     * @param oldData The previous block data
+     * @param newData The new block data
+     */
+    public void addBlock(Vector3 position, BlockData oldData, BlockData newData) {
+        previousBlocks.putIfAbsent(position, oldData);
+        newBlocks.put(position, newData);
+        
+        byte[] replaced = extent.takeReplacedBlockEntity(position);
+        if (replaced != null) {
+            previousBlockEntities.putIfAbsent(position, replaced);
+        }
+    }
+    
+    /**
+     * Add the block entity a changed block was given, such as a pasted chest's contents.
+     * @param position The position of the block
+     * @param nbt The block entity NBT
+     */
+    public void addBlockEntity(Vector3 position, byte[] nbt) {
+        newBlockEntities.put(position, nbt);
+    }
+    
+    /**
+     * Add the block entity a changed block had before the operation, when it wasn't kept
+     * as the block was set, such as when history is read back from disk.
+     * @param position The position of the block
+     * @param nbt The block entity NBT
+     */
+    public void addPreviousBlockEntity(Vector3 position, byte[] nbt) {
+        previousBlockEntities.putIfAbsent(position, nbt);
+    }
+    
+    /**
+     * Add an entity the operation added.
+     * @param id The id it has in the world
+     * @param entity The entity
+     */
+    public void addEntity(UUID id, EntityData entity) {
+        addedEntities.put(id, entity);
+    }
+    
+    /**
+     * Get the map of previous block data.
+     * @return The previous block data
+     */
+    public Map<Vector3, BlockData> getPreviousBlocks() {
+        return previousBlocks;
+    }
+    
+    /**
+     * Get the map of new block data.
+     * @return The new block data
      */
-    public void addBlockState(Vector3 position, BlockState oldState, BlockState newState) {
-        previousStates.put(position, oldState);
-        newStates.put(position, newState);
+    public Map<Vector3, BlockData> getNewBlocks() {
+        return newBlocks;
     }
     
     /**
-     * Get the map of previous block states.
-     * @return The previous block states
+     * Get the block entities the changed positions had before the operation.
+     * @return The block entity NBT by position
      */
-    public Map<Vector3, BlockState> getPreviousStates() {
-        return previousStates;
+    public Map<Vector3, byte[]> getPreviousBlockEntities() {
+        return previousBlockEntities;
     }
     
     /**
-     * Get the map of new block states.
-     * @return The new block states
+     * Get the block entities the operation gave the changed positions.
+     * @return The block entity NBT by position
      */
-    public Map<Vector3, BlockState> getNewStates() {
-        return newStates;
+    public Map<Vector3, byte[]> getNewBlockEntities() {
+        return newBlockEntities;
+    }
+    
+    /**
+     * Get the entities the operation added.
+     * @return The entities by the id they have in the world
+     */
+    public Map<UUID, EntityData> getAddedEntities() {
+        return addedEntities;
     }
     
     /**
@@ -95,7 +180,26 @@ public class HistoryEntry {
      * @return The number of blocks
      */
     public int getSize() {
-        return previousStates.size();
+        return previousBlocks.size();
+    }
+    
+    /**
+     * Estimate the memory held by this entry.
+     * @return The estimated size in bytes
+     */
+    public long estimateMemoryBytes() {
+        long perBlock = MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.VECTOR3 + MemoryEstimates.BLOCK_DATA;
+        long bytes = (previousBlocks.size() + newBlocks.size()) * perBlock;
+        for (byte[] nbt : previousBlockEntities.values()) {
+            bytes += MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.ARRAY + nbt.length;
+        }
+        for (byte[] nbt : newBlockEntities.values()) {
+            bytes += MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.ARRAY + nbt.length;
+        }
+        for (EntityData entity : addedEntities.values()) {
+            bytes += MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.ARRAY + entity.getNbt().length;
+        }
+        return bytes;
     }
     
     /**
@@ -103,19 +207,11 @@ public class HistoryEntry {
      * @return True if the undo was successful
      */
     public boolean undo() {
-        try {
-            for (Map.Entry<Vector3, BlockState> entry : previousStates.entrySet()) {
-                Vector3 pos = entry.getKey();
-                BlockState state = entry.getValue();
-                
-                // Restore the previous state
-                state.update(true, false);
-            }
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+        Extent target = getTarget();
+        for (UUID id : addedEntities.keySet()) {
+            target.removeEntity(id);
         }
+        return apply(target, previousBlocks, previousBlockEntities);
     }
     
     /**
@@ -123,13 +219,46 @@ public class HistoryEntry {
      * @return True if the redo was successful
      */
     public boolean redo() {
+        Extent target = getTarget();
+        boolean applied = apply(target, newBlocks, newBlockEntities);
+        
+        // The entities come back as new ones, with new ids
+        Map<UUID, EntityData> readded = new LinkedHashMap<>();
+        for (EntityData entity : addedEntities.values()) {
+            UUID id = target.addEntity(entity);
+            if (id != null) {
+                readded.put(id, entity);
+            }
+        }
+        addedEntities = readded;
+        return applied;
+    }
+    
+    /**
+     * Get the extent undo and redo write to: the world without physics, so undone blocks
+     * don't fall or flow, or the extent itself if it has no world.
+     * @return The extent
+     */
+    private Extent getTarget() {
+        return extent.getWorld() != null ? new BukkitExtent(extent.getWorld(), false) : extent;
+    }
+    
+    /**
+     * Write a set of blocks back into the extent.
+     * @param target The extent to write to
+     * @param blocks The blocks to write
+     * @param blockEntities The block entities to give them
+     * @return True if the blocks were written
+     */
+    private boolean apply(Extent target, Map<Vector3, BlockData> blocks, Map<Vector3, byte[]> blockEntities) {
         try {
-            for (Map.Entry<Vector3, BlockState> entry : newStates.entrySet()) {
-                Vector3 pos = entry.getKey();
-                BlockState state = entry.getValue();
-                
-                // Restore the new state
-                state.update(true, false);
+            for (Map.Entry<Vector3, BlockData> entry : blocks.entrySet()) {
+                target.setBlock(entry.getKey(), entry.getValue());
+            }
+            
+            // Block entities only once every block they belong to is back
+            for (Map.Entry<Vector3, byte[]> entry : blockEntities.entrySet()) {
+                target.setBlockEntity(entry.getKey(), entry.getValue());
             }
             return true;
         } catch (Exception e) {
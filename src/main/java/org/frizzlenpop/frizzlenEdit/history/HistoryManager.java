@@ -1,14 +1,15 @@
 package org.frizzlenpop.frizzlenEdit.history;
 
+import java.util.concurrent.CompletableFuture;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.session.LocalSession;
+import org.frizzlenpop.frizzlenEdit.session.SessionManager;
 import org.frizzlenpop.frizzlenEdit.utils.Logger;
 
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -17,11 +18,8 @@ import java.util.UUID;
 public class HistoryManager {
     private final FrizzlenEdit plugin;
     
-    // Maps player UUIDs to their undo history
-    private final Map<UUID, Deque<HistoryEntry>> undoHistory = new HashMap<>();
-    
-    // Maps player UUIDs to their redo history
-    private final Map<UUID, Deque<HistoryEntry>> redoHistory = new HashMap<>();
+    // Each player's undo and redo history lives in their session
+    private final SessionManager sessions;
     
     /**
      * Create a new history manager.
@@ -29,32 +27,22 @@ public class HistoryManager {
      */
     public HistoryManager(FrizzlenEdit plugin) {
         this.plugin = plugin;
+        this.sessions = plugin.getSessionManager();
     }
     
     /**
-     * Add an entry to a player's history.
+     * Add an entry to a player's history. If their session is still being read from disk,
+     * the entry is added once it is back.
      * @param entry The history entry
      */
     public void addEntry(HistoryEntry entry) {
         Player player = entry.getPlayer();
-        UUID uuid = player.getUniqueId();
-        
-        // Get or create the player's undo history
-        Deque<HistoryEntry> history = undoHistory.computeIfAbsent(uuid, k -> new LinkedList<>());
         
-        // Add the entry to the history
-        history.addFirst(entry);
-        
-        // Limit the history size
+        // Add the entry, limit the history size and clear the redo history in one step
         int maxSize = plugin.getConfigManager().getUndoHistorySize();
-        while (history.size() > maxSize) {
-            history.removeLast();
-        }
+        sessions.getSession(player).thenAccept(session -> session.remember(entry, maxSize));
         
-        // Clear the redo history
-        redoHistory.computeIfAbsent(uuid, k -> new LinkedList<>()).clear();
-        
-        Logger.info("Added history entry for " + player.getName() + ": " + entry.getDescription() + " (" + entry.getSize() + " blocks)");
+        Logger.debug("Added history entry for " + player.getName() + ": " + entry.getDescription() + " (" + entry.getSize() + " blocks)");
     }
     
     /**
@@ -63,24 +51,20 @@ public class HistoryManager {
      * @return True if an operation was undone
      */
     public boolean undo(Player player) {
-        UUID uuid = player.getUniqueId();
-        
-        // Get the player's undo history
-        Deque<HistoryEntry> history = undoHistory.get(uuid);
-        if (history == null || history.isEmpty()) {
+        // Get the last entry
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        HistoryEntry entry = session == null ? null : session.popUndo();
+        if (entry == null) {
             player.sendMessage(ChatColor.RED + "Nothing to undo.");
             return false;
         }
         
-        // Get the last entry
-        HistoryEntry entry = history.removeFirst();
-        
         // Undo the operation
         boolean success = entry.undo();
         
         if (success) {
             // Add the entry to the redo history
-            redoHistory.computeIfAbsent(uuid, k -> new LinkedList<>()).addFirst(entry);
+            session.pushRedo(entry);
             
             player.sendMessage(ChatColor.GREEN + "Undone: " + entry.getDescription());
             Logger.info("Player " + player.getName() + " undid " + entry.getDescription());
@@ -98,24 +82,20 @@ public class HistoryManager {
      * @return True if an operation was redone
      */
     public boolean redo(Player player) {
-        UUID uuid = player.getUniqueId();
-        
-        // Get the player's redo history
-        Deque<HistoryEntry> history = redoHistory.get(uuid);
-        if (history == null || history.isEmpty()) {
+        // Get the last undone entry
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        HistoryEntry entry = session == null ? null : session.popRedo();
+        if (entry == null) {
             player.sendMessage(ChatColor.RED + "Nothing to redo.");
             return false;
         }
         
-        // Get the last entry
-        HistoryEntry entry = history.removeFirst();
-        
         // Redo the operation
         boolean success = entry.redo();
         
         if (success) {
             // Add the entry back to the undo history
-            undoHistory.computeIfAbsent(uuid, k -> new LinkedList<>()).addFirst(entry);
+            session.pushUndo(entry);
             
             player.sendMessage(ChatColor.GREEN + "Redone: " + entry.getDescription());
             Logger.info("Player " + player.getName() + " redid " + entry.getDescription());
@@ -132,9 +112,10 @@ public class HistoryManager {
      * @param player The player
      */
     public void clearHistory(Player player) {
-        UUID uuid = player.getUniqueId();
-        undoHistory.remove(uuid);
-        redoHistory.remove(uuid);
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        if (session != null) {
+            session.clearHistory();
+        }
     }
     
     /**
@@ -143,9 +124,8 @@ public class HistoryManager {
      * @return The number of operations
      */
     public int getUndoHistorySize(Player player) {
-        UUID uuid = player.getUniqueId();
-        Deque<HistoryEntry> history = undoHistory.get(uuid);
-        return history == null ? 0 : history.size();
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        return session == null ? 0 : session.getUndoSize();
     }
     
     /**
@@ -154,8 +134,43 @@ public class HistoryManager {
      * @return The number of operations
      */
     public int getRedoHistorySize(Player player) {
-        UUID uuid = player.getUniqueId();
-        Deque<HistoryEntry> history = redoHistory.get(uuid);
-        return history == null ? 0 : history.size();
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        return session == null ? 0 : session.getRedoSize();
+    }
+    
+    /**
+     * Get the players that currently have undo or redo history.
+     * @return The UUIDs of the players
+     */
+    public Set<UUID> getPlayers() {
+        Set<UUID> players = new HashSet<>();
+        for (LocalSession session : sessions.getSessions()) {
+            if (session.hasHistory()) {
+                players.add(session.getUniqueId());
+            }
+        }
+        return players;
+    }
+    
+    /**
+     * Estimate the memory held by a player's undo and redo history.
+     * @param uuid The player's UUID
+     * @return The estimated size in bytes
+     */
+    public long getMemoryUsage(UUID uuid) {
+        LocalSession session = sessions.getIfPresent(uuid);
+        return session == null ? 0 : session.estimateHistoryBytes();
+    }
+    
+    /**
+     * Trim a player's history down to their most recent operations.
+     * The redo history is dropped entirely, since it is the least likely to be used.
+     * @param uuid The player's UUID
+     * @param keep The number of undo entries to keep
+     * @return The estimated number of bytes freed, or -1 if the player has no session
+     */
+    public CompletableFuture<Long> trimHistory(UUID uuid, int keep) {
+        // Read back first if it is on disk, or the trim would be lost when it is
+        return sessions.getExisting(uuid).thenApply(session -> session == null ? -1L : session.trimHistory(keep));
     }
 } 
\ No newline at end of file
@@ -3,6 +3,8 @@ package org.frizzlenpop.frizzlenEdit.masks;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -21,8 +23,8 @@ public class AirMask implements Mask {
     }
     
     @Override
-    public boolean matches(Block block) {
-        return AIR_MATERIALS.contains(block.getType());
+    public boolean matches(Extent extent, Vector3 position) {
+        return AIR_MATERIALS.contains(extent.getBlock(position).getMaterial());
     }
     
     @Override
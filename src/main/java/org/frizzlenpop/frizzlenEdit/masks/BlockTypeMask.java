@@ -1,7 +1,8 @@
 package org.frizzlenpop.frizzlenEdit.masks;
 
 import org.bukkit.Material;
-import org.bukkit.block.Block;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -64,8 +65,8 @@ public class BlockTypeMask implements Mask {
     }
     
     @Override
-    public boolean matches(Block block) {
-        return materials.contains(block.getType());
+    public boolean matches(Extent extent, Vector3 position) {
+        return materials.contains(extent.getBlock(position).getMaterial());
     }
     
     @Override
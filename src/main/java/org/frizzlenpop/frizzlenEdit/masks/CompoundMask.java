@@ -1,6 +1,7 @@
 package org.frizzlenpop.frizzlenEdit.masks;
 
-import org.bukkit.block.Block;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -68,7 +69,7 @@ public class CompoundMask implements Mask {
     }
     
     @Override
-    public boolean matches(Block block) {
+    public boolean matches(Extent extent, Vector3 position) {
         if (masks.isEmpty()) {
             return false;
         }
@@ -77,7 +78,7 @@ public class CompoundMask implements Mask {
             case AND:
                 // All masks must match
                 for (Mask mask : masks) {
-                    if (!mask.matches(block)) {
+                    if (!mask.matches(extent, position)) {
                         return false;
                     }
                 }
@@ -86,7 +87,7 @@ public class CompoundMask implements Mask {
             case OR:
                 // At least one mask must match
                 for (Mask mask : masks) {
-                    if (mask.matches(block)) {
+                    if (mask.matches(extent, position)) {
                         return true;
                     }
                 }
@@ -96,7 +97,7 @@ public class CompoundMask implements Mask {
                 // Exactly one mask must match
                 int matches = 0;
                 for (Mask mask : masks) {
-                    if (mask.matches(block)) {
+                    if (mask.matches(extent, position)) {
                         matches++;
                     }
                 }
@@ -1,6 +1,7 @@
 package org.frizzlenpop.frizzlenEdit.masks;
 
-import org.bukkit.block.Block;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * A mask that inverts another mask.
@@ -18,8 +19,8 @@ public class InverseMask implements Mask {
     }
     
     @Override
-    public boolean matches(Block block) {
-        return !mask.matches(block);
+    public boolean matches(Extent extent, Vector3 position) {
+        return !mask.matches(extent, position);
     }
     
     @Override
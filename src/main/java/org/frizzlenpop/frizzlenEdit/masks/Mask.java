@@ -1,6 +1,7 @@
 package org.frizzlenpop.frizzlenEdit.masks;
 
-import org.bukkit.block.Block;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * Represents a mask that can be used to filter blocks in operations.
@@ -10,10 +11,11 @@ public interface Mask {
     
     /**
      * Check if a block matches this mask.
-     * @param block The block to check
+     * @param extent The extent the block is in
+     * @param position The position of the block
      * @return True if the block matches the mask, false otherwise
      */
-    boolean matches(Block block);
+    boolean matches(Extent extent, Vector3 position);
     
     /**
      * Get a descriptive string for this mask.
@@ -1,6 +1,7 @@
 package org.frizzlenpop.frizzlenEdit.masks;
 
-import org.bukkit.block.Block;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * A mask that matches solid (non-air) blocks.
@@ -8,8 +9,8 @@ import org.bukkit.block.Block;
 public class SolidMask implements Mask {
     
     @Override
-    public boolean matches(Block block) {
-        return !AirMask.isAir(block);
+    public boolean matches(Extent extent, Vector3 position) {
+        return !AirMask.isAir(extent.getBlock(position));
     }
     
     @Override
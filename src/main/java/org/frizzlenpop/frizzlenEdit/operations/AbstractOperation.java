@@ -1,10 +1,12 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.masks.Mask;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * Base class for operations with common functionality.
@@ -12,6 +14,7 @@ import org.frizzlenpop.frizzlenEdit.masks.Mask;
 public abstract class AbstractOperation implements Operation {
     protected final Player player;
     protected Mask mask;
+    private Extent extent;
     
     /**
      * Create a new operation.
@@ -37,6 +40,26 @@ public abstract class AbstractOperation implements Operation {
         return player;
     }
     
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
+    
+    /**
+     * Get the extent this operation works in.
+     * @param world The world to use if no extent was set
+     * @return The extent
+     */
+    protected Extent getExtent(World world) {
+        return extent != null ? extent : new BukkitExtent(world);
+    }
+    
+    @Override
+    public String getCostKey() {
+        // A mask is tested against every block, so its kind changes the cost per block
+        return OperationCostModel.key(getClass().getSimpleName(), mask != null ? mask.getClass().getSimpleName() : "nomask");
+    }
+    
     /**
      * Set the mask for this operation.
      * @param mask The mask to set
@@ -55,26 +78,27 @@ public abstract class AbstractOperation implements Operation {
     
     /**
      * Check if a block matches the mask for this operation.
-     * @param block The block to check
+     * @param extent The extent the block is in
+     * @param position The position of the block
      * @return True if the block should be affected by this operation
      */
-    protected boolean matchesMask(Block block) {
+    protected boolean matchesMask(Extent extent, Vector3 position) {
         // If no mask is set, all blocks match
         if (mask == null) {
             return true;
         }
         
         // Otherwise, check the mask
-        return mask.matches(block);
+        return mask.matches(extent, position);
     }
     
     /**
      * Create a history entry for this operation.
-     * @param world The world in which the operation is being executed
+     * @param extent The extent in which the operation is being executed
      * @return The history entry
      */
-    protected HistoryEntry createHistoryEntry(World world) {
-        return new HistoryEntry(player, world, getDescription());
+    protected HistoryEntry createHistoryEntry(Extent extent) {
+        return new HistoryEntry(player, extent, getDescription());
     }
     
     /**
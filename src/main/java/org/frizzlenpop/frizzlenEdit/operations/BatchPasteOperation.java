@@ -2,41 +2,51 @@ package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.ChatColor;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
 import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.scheduler.TaskScheduler;
+import org.frizzlenpop.frizzlenEdit.utils.EditMetrics;
 import org.frizzlenpop.frizzlenEdit.utils.Logger;
 import org.frizzlenpop.frizzlenEdit.utils.ServerPerformanceMonitor;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * An operation that pastes blocks from a clipboard in batches to minimize performance impact.
  * Uses adaptive batch sizing based on server performance.
  */
 public class BatchPasteOperation implements Operation {
-    private final FrizzlenEdit plugin;
+    private final TaskScheduler scheduler;
+    private final Clock clock;
+    private final ServerPerformanceMonitor monitor;
+    private final Consumer<HistoryEntry> onComplete;
+    private final CompletableFuture<HistoryEntry> completion = new CompletableFuture<>();
     private final Player player;
     private final Vector3 position;
     private final Clipboard clipboard;
     private final boolean ignoreAir;
     private final World world;
+    private Extent extent;
     
     // Batch processing settings
     private final int baseBatchSize;
     private final int baseTickDelay;
+    private final long tickBudgetNanos;
     private final String operationName;
     
     // Adaptive settings
@@ -51,7 +61,7 @@ public class BatchPasteOperation implements Operation {
     private static final int PERFORMANCE_CHECK_INTERVAL = 5;
     
     /**
-     * Create a new batch paste operation.
+     * Create a new batch paste operation. The operation manager adds it to the history once every block is placed.
      * @param plugin The plugin instance
      * @param player The player
      * @param position The position to paste at
@@ -63,7 +73,33 @@ public class BatchPasteOperation implements Operation {
      */
     public BatchPasteOperation(FrizzlenEdit plugin, Player player, Vector3 position, Clipboard clipboard, 
                                boolean ignoreAir, int batchSize, int tickDelay, String operationName) {
-        this.plugin = plugin;
+        this(plugin.getTaskScheduler(), plugin.getClock(), ServerPerformanceMonitor.getInstance(), player, position, 
+             clipboard, ignoreAir, batchSize, tickDelay, plugin.getConfigManager().getBatchPasteTickBudgetMs(), 
+             operationName, null);
+    }
+    
+    /**
+     * Create a new batch paste operation that runs on a given scheduler and clock.
+     * @param scheduler The scheduler the batches run on
+     * @param clock The clock the batches are timed with
+     * @param monitor The performance monitor the batch size adapts to, or null for a fixed size
+     * @param player The player
+     * @param position The position to paste at
+     * @param clipboard The clipboard to paste from
+     * @param ignoreAir Whether to ignore air blocks
+     * @param batchSize The number of blocks to process per batch
+     * @param tickDelay The number of ticks to wait between batches
+     * @param tickBudgetMs The most time a batch may take, in milliseconds, or 0 for no limit
+     * @param operationName The name of the operation
+     * @param onComplete Called with the history entry once every block is placed, or null
+     */
+    public BatchPasteOperation(TaskScheduler scheduler, Clock clock, ServerPerformanceMonitor monitor, Player player, 
+                               Vector3 position, Clipboard clipboard, boolean ignoreAir, int batchSize, int tickDelay, 
+                               int tickBudgetMs, String operationName, Consumer<HistoryEntry> onComplete) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.monitor = monitor;
+        this.onComplete = onComplete;
         this.player = player;
         this.position = position;
         this.clipboard = clipboard;
@@ -71,10 +107,10 @@ public class BatchPasteOperation implements Operation {
         this.world = player.getWorld();
         this.baseBatchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
         this.baseTickDelay = tickDelay > 0 ? tickDelay : DEFAULT_TICK_DELAY;
+        this.tickBudgetNanos = Math.max(0, tickBudgetMs) * 1_000_000L;
         this.operationName = operationName != null ? operationName : "Batch Paste";
         
         // Initialize adaptive settings
-        ServerPerformanceMonitor monitor = ServerPerformanceMonitor.getInstance();
         if (monitor != null) {
             this.currentBatchSize = monitor.getAdaptiveBatchSize(this.baseBatchSize);
             this.currentTickDelay = monitor.getAdaptiveTickDelay(this.baseTickDelay);
@@ -104,8 +140,11 @@ public class BatchPasteOperation implements Operation {
         // Filter air blocks if needed and optimize the block list
         List<Map.Entry<Vector3, BlockData>> blocksList = optimizeBlockList(blocks);
         
+        // Physics is off for better performance
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(world, false);
+        
         // Create a history entry
-        HistoryEntry entry = new HistoryEntry(player, world, operationName);
+        HistoryEntry entry = new HistoryEntry(player, extent, operationName);
         
         // Send initial message
         int totalBlocks = blocksList.size();
@@ -113,7 +152,7 @@ public class BatchPasteOperation implements Operation {
         player.sendMessage(ChatColor.YELLOW + "Initial batch size: " + currentBatchSize + ", delay: " + currentTickDelay + " tick(s)");
         
         // Process blocks in batches
-        processBatches(blocksList, entry, totalBlocks);
+        processBatches(extent, blocksList, entry, totalBlocks);
         
         return entry;
     }
@@ -157,14 +196,15 @@ public class BatchPasteOperation implements Operation {
     /**
      * Process blocks in batches with adaptive sizing based on server performance.
      * 
+     * @param extent The extent to paste into
      * @param blocksList The list of blocks to process
      * @param entry The history entry
      * @param totalBlocks The total number of blocks
      */
-    private void processBatches(List<Map.Entry<Vector3, BlockData>> blocksList, HistoryEntry entry, int totalBlocks) {
+    private void processBatches(Extent extent, List<Map.Entry<Vector3, BlockData>> blocksList, HistoryEntry entry, int totalBlocks) {
         final Iterator<Map.Entry<Vector3, BlockData>> iterator = blocksList.iterator();
         final AtomicInteger blocksProcessed = new AtomicInteger(0);
-        final long startTime = System.currentTimeMillis();
+        final long startTime = clock.currentTimeMillis();
         
         // Batch counter for progress reporting and performance adjustment
         final AtomicInteger batchCounter = new AtomicInteger(0);
@@ -174,99 +214,105 @@ public class BatchPasteOperation implements Operation {
         final int progressReportInterval = Math.max(1, initialTotalBatches / 10);
         
         // Performance monitoring
-        final AtomicLong lastPerformanceCheckTime = new AtomicLong(System.currentTimeMillis());
+        final AtomicLong lastPerformanceCheckTime = new AtomicLong(clock.currentTimeMillis());
         
-        // Create a map to cache block states before setting them to reduce object creation
-        final Map<Vector3, BlockState> blockStateCache = new HashMap<>();
+        final ScheduledTask[] taskRef = new ScheduledTask[1];
         
-        final BukkitTask[] taskRef = new BukkitTask[1];
-        
-        taskRef[0] = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            // Adjust batch size based on server performance periodically
-            int batchCount = batchCounter.get();
-            if (batchCount % PERFORMANCE_CHECK_INTERVAL == 0) {
-                adjustBatchSettings(lastPerformanceCheckTime);
-            }
-            
-            // Process a batch of blocks
-            int count = 0;
-            int maxCount = currentBatchSize;
-            
-            while (iterator.hasNext() && count < maxCount) {
-                Map.Entry<Vector3, BlockData> blockEntry = iterator.next();
-                Vector3 relPos = blockEntry.getKey();
-                BlockData data = blockEntry.getValue();
-                
-                // Calculate the world position
-                Vector3 worldPos = position.add(relPos);
-                
-                // Get the block
-                Block block = worldPos.toBlock(world);
-                
-                // Save the previous state for undo
-                // Reuse existing BlockState objects when possible to reduce garbage collection
-                BlockState oldState = blockStateCache.computeIfAbsent(worldPos, pos -> block.getState());
-                
-                // Set the new block data
-                block.setBlockData(data, false);  // false means don't apply physics for better performance
-                
-                // Save the new state for redo
-                BlockState newState = block.getState();
-                
-                // Add to history
-                entry.addBlockState(worldPos, oldState, newState);
-                
-                count++;
-                blocksProcessed.incrementAndGet();
-            }
-            
-            // Clear cache if it's getting too large to prevent memory issues
-            if (blockStateCache.size() > 10000) {
-                blockStateCache.clear();
-            }
-            
-            // Update batch counter
-            int currentBatch = batchCounter.incrementAndGet();
-            
-            // Report progress at intervals
-            if (currentBatch % progressReportInterval == 0 || !iterator.hasNext()) {
-                int percent = (int) ((double) blocksProcessed.get() / totalBlocks * 100);
-                
-                // Get current TPS for progress report
-                double currentTps = 20.0;
-                ServerPerformanceMonitor monitor = ServerPerformanceMonitor.getInstance();
-                if (monitor != null) {
-                    currentTps = monitor.getCurrentTps();
+        taskRef[0] = scheduler.runTaskTimer(() -> {
+            try {
+                // Adjust batch size based on server performance periodically
+                int batchCount = batchCounter.get();
+                if (batchCount % PERFORMANCE_CHECK_INTERVAL == 0) {
+                    adjustBatchSettings(lastPerformanceCheckTime);
                 }
                 
-                player.sendMessage(ChatColor.AQUA + "Batch paste progress: " + 
-                                  percent + "% (" + blocksProcessed.get() + "/" + totalBlocks + 
-                                  " blocks) - TPS: " + String.format("%.1f", currentTps));
-            }
-            
-            // If all blocks are processed, cancel the task and report completion
-            if (!iterator.hasNext()) {
-                long duration = System.currentTimeMillis() - startTime;
-                double seconds = duration / 1000.0;
+                // Process a batch of blocks
+                long batchStart = clock.nanoTime();
+                int count = 0;
+                int maxCount = currentBatchSize;
                 
-                player.sendMessage(ChatColor.GREEN + "Batch paste completed: " + 
-                                  blocksProcessed.get() + " blocks in " + String.format("%.2f", seconds) + " seconds");
+                while (iterator.hasNext() && count < maxCount) {
+                    Map.Entry<Vector3, BlockData> blockEntry = iterator.next();
+                    Vector3 relPos = blockEntry.getKey();
+                    BlockData data = blockEntry.getValue();
+                    
+                    // Calculate the world position
+                    Vector3 worldPos = position.add(relPos);
+                    
+                    // Save the previous data for undo
+                    BlockData oldData = extent.getBlock(worldPos);
+                    
+                    // Set the new block data
+                    extent.setBlock(worldPos, data);
+                    
+                    // Add to history
+                    entry.addBlock(worldPos, oldData, data);
+                    
+                    count++;
+                    blocksProcessed.incrementAndGet();
+                    
+                    // Stop early once the batch has used up its share of the tick
+                    if (tickBudgetNanos > 0 && clock.nanoTime() - batchStart >= tickBudgetNanos) {
+                        break;
+                    }
+                }
                 
-                // Calculate and report the blocks per second
-                double blocksPerSecond = seconds > 0 ? blocksProcessed.get() / seconds : blocksProcessed.get();
-                player.sendMessage(ChatColor.GREEN + "Performance: " + String.format("%.1f", blocksPerSecond) + 
-                                  " blocks/second");
+                // Publish the batch for the budget overlay
+                EditMetrics.getInstance().recordWork(clock.nanoTime() - batchStart, count);
+                EditMetrics.getInstance().recordBatchSize(maxCount);
                 
-                // Save the history entry
-                plugin.getHistoryManager().addEntry(entry);
+                // Update batch counter
+                int currentBatch = batchCounter.incrementAndGet();
                 
-                // Clear the cache
-                blockStateCache.clear();
+                // Report progress at intervals
+                if (currentBatch % progressReportInterval == 0 || !iterator.hasNext()) {
+                    int percent = (int) ((double) blocksProcessed.get() / totalBlocks * 100);
+                    
+                    // Get current TPS for progress report
+                    double currentTps = 20.0;
+                    if (monitor != null) {
+                        currentTps = monitor.getCurrentTps();
+                    }
+                    
+                    player.sendMessage(ChatColor.AQUA + "Batch paste progress: " + 
+                                      percent + "% (" + blocksProcessed.get() + "/" + totalBlocks + 
+                                      " blocks) - TPS: " + String.format("%.1f", currentTps));
+                }
                 
-                // Cancel this task
+                // If all blocks are processed, cancel the task and report completion
+                if (!iterator.hasNext()) {
+                    long duration = clock.currentTimeMillis() - startTime;
+                    double seconds = duration / 1000.0;
+                    
+                    player.sendMessage(ChatColor.GREEN + "Batch paste completed: " + 
+                                      blocksProcessed.get() + " blocks in " + String.format("%.2f", seconds) + " seconds");
+                    
+                    // Calculate and report the blocks per second
+                    double blocksPerSecond = seconds > 0 ? blocksProcessed.get() / seconds : blocksProcessed.get();
+                    player.sendMessage(ChatColor.GREEN + "Performance: " + String.format("%.1f", blocksPerSecond) + 
+                                      " blocks/second");
+                    
+                    // Block entities and entities once every block is in place
+                    clipboard.pasteNbt(position, extent, entry);
+                    
+                    // Save the history entry
+                    if (onComplete != null) {
+                        onComplete.accept(entry);
+                    }
+                    
+                    // Cancel this task
+                    if (taskRef[0] != null) {
+                        taskRef[0].cancel();
+                    }
+                    completion.complete(entry);
+                }
+            } catch (RuntimeException e) {
+                // Stop pasting instead of failing again every tick
+                Logger.severe("Error in batch paste: " + e.getMessage());
                 if (taskRef[0] != null) {
                     taskRef[0].cancel();
                 }
+                completion.completeExceptionally(e);
             }
         }, 0L, currentTickDelay);
     }
@@ -277,13 +323,12 @@ public class BatchPasteOperation implements Operation {
      * @param lastPerformanceCheckTime Atomic reference to the last time performance was checked
      */
     private void adjustBatchSettings(AtomicLong lastPerformanceCheckTime) {
-        ServerPerformanceMonitor monitor = ServerPerformanceMonitor.getInstance();
         if (monitor == null) {
             return;
         }
         
         // Only adjust if some time has passed since the last check
-        long now = System.currentTimeMillis();
+        long now = clock.currentTimeMillis();
         if (now - lastPerformanceCheckTime.get() < 500) {
             return;
         }
@@ -320,19 +365,28 @@ public class BatchPasteOperation implements Operation {
         return operationName;
     }
     
+    @Override
+    public boolean isSpreadOverTicks() {
+        return true;
+    }
+    
+    @Override
+    public CompletableFuture<HistoryEntry> getCompletion() {
+        return completion;
+    }
+    
     @Override
     public int getVolume() {
         if (ignoreAir) {
             // Count non-air blocks
-            int count = 0;
-            for (BlockData data : clipboard.getBlocks().values()) {
-                if (!data.getMaterial().isAir()) {
-                    count++;
-                }
-            }
-            return count;
+            return clipboard.countBlocks(true);
         } else {
             return clipboard.getVolume();
         }
     }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
@@ -1,9 +1,6 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
@@ -12,6 +9,7 @@ import org.frizzlenpop.frizzlenEdit.masks.Mask;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.NoiseGenerator;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.Random;
 
@@ -84,8 +82,8 @@ public class CavesOperation extends AbstractOperation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = createHistoryEntry(world);
+        Extent extent = getExtent(player.getWorld());
+        HistoryEntry entry = createHistoryEntry(extent);
         int affected = 0;
         
         // Get region bounds
@@ -108,15 +106,15 @@ public class CavesOperation extends AbstractOperation {
         for (int x = min.getX(); x <= max.getX(); x++) {
             for (int z = min.getZ(); z <= max.getZ(); z++) {
                 for (int y = min.getY(); y <= max.getY(); y++) {
-                    Block block = world.getBlockAt(x, y, z);
+                    Vector3 pos = new Vector3(x, y, z);
                     
                     // Skip if block doesn't match mask
-                    if (!matchesMask(block)) {
+                    if (!matchesMask(extent, pos)) {
                         continue;
                     }
                     
                     // Skip air blocks
-                    if (airMask.matches(block)) {
+                    if (airMask.matches(extent, pos)) {
                         continue;
                     }
                     
@@ -129,18 +127,11 @@ public class CavesOperation extends AbstractOperation {
                     
                     // Create a cave where noise exceeds threshold
                     if (noise > threshold) {
-                        BlockState oldState = block.getState();
+                        BlockData oldData = extent.getBlock(pos);
                         
-                        Vector3 pos = new Vector3(x, y, z);
-                        
-                        // Save the old state for undo
-                        entry.addBlockState(pos, oldState, null);
-                        
-                        // Set the block to air
-                        block.setBlockData(airData);
-                        
-                        // Save the new state for redo
-                        entry.addBlockState(pos, null, block.getState());
+                        // Set the block to air and record it for undo
+                        extent.setBlock(pos, airData);
+                        entry.addBlock(pos, oldData, airData);
                         
                         affected++;
                         
@@ -176,35 +167,28 @@ public class CavesOperation extends AbstractOperation {
                         int worldY = y + min.getY();
                         int worldZ = z + min.getZ();
                         
-                        Block block = world.getBlockAt(worldX, worldY, worldZ);
+                        Vector3 pos = new Vector3(worldX, worldY, worldZ);
                         
                         // Skip if block doesn't match mask
-                        if (!matchesMask(block)) {
+                        if (!matchesMask(extent, pos)) {
                             continue;
                         }
                         
                         // Skip air blocks
-                        if (airMask.matches(block)) {
+                        if (airMask.matches(extent, pos)) {
                             continue;
                         }
                         
                         // Determine if this block should be an ore
                         double oreNoise = noiseGen.noise(worldX * 0.1, worldY * 0.1, worldZ * 0.1);
                         if (oreNoise > (1.0 - oreFrequency)) {
-                            BlockState oldState = block.getState();
+                            BlockData oldData = extent.getBlock(pos);
                             Material oreMaterial = selectOreMaterial(worldY, min.getY(), max.getY());
                             BlockData oreData = oreMaterial.createBlockData();
                             
-                            Vector3 pos = new Vector3(worldX, worldY, worldZ);
-                            
-                            // Save the old state for undo
-                            entry.addBlockState(pos, oldState, null);
-                            
-                            // Set the block to the ore
-                            block.setBlockData(oreData);
-                            
-                            // Save the new state for redo
-                            entry.addBlockState(pos, null, block.getState());
+                            // Set the block to the ore and record it for undo
+                            extent.setBlock(pos, oreData);
+                            entry.addBlock(pos, oldData, oreData);
                             
                             oresAdded++;
                         }
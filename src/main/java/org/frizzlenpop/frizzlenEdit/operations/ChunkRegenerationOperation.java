@@ -1,9 +1,9 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Chunk;
+import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
@@ -11,6 +11,8 @@ import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Logger;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -69,7 +71,9 @@ public class ChunkRegenerationOperation extends AbstractOperation {
         // Creating a history entry for this operation is complicated since 
         // chunk regeneration affects a very large number of blocks.
         // We'll create a limited history entry capturing just the surface blocks.
-        HistoryEntry entry = createHistoryEntry(world);
+        // Regeneration always works on the real world, so the entry does too.
+        Extent extent = new BukkitExtent(world);
+        HistoryEntry entry = createHistoryEntry(extent);
         
         // Capture surface states of important blocks
         captureSurfaceBlocks(world, chunkCoords, entry);
@@ -114,6 +118,11 @@ public class ChunkRegenerationOperation extends AbstractOperation {
             }
         }
         
+        // Record what the captured blocks became, for redo
+        for (Vector3 pos : entry.getPreviousBlocks().keySet()) {
+            entry.getNewBlocks().put(pos, extent.getBlock(pos));
+        }
+        
         sendMessage("Regenerated " + regenerated + " chunks.");
         
         return entry;
@@ -148,15 +157,14 @@ public class ChunkRegenerationOperation extends AbstractOperation {
                     
                     // Capture a few blocks below the surface
                     for (int y = maxY; y > maxY - 5 && y > 0; y--) {
-                        Block block = world.getBlockAt(x, y, z);
+                        BlockData oldData = world.getBlockData(x, y, z);
                         
                         // Only capture important blocks to avoid overloading the history
-                        if (isImportantBlock(block)) {
-                            BlockState oldState = block.getState();
+                        if (isImportantBlock(oldData.getMaterial())) {
                             Vector3 pos = new Vector3(x, y, z);
                             
-                            // Save the old state for undo
-                            entry.addBlockState(pos, oldState, null);
+                            // Save the old data for undo; the new data is filled in after regeneration
+                            entry.addBlock(pos, oldData, oldData);
                             
                             capturedBlocks++;
                             
@@ -175,11 +183,11 @@ public class ChunkRegenerationOperation extends AbstractOperation {
     
     /**
      * Check if a block is important for the player.
-     * @param block The block to check
+     * @param material The material of the block
      * @return True if the block is important
      */
-    private boolean isImportantBlock(Block block) {
-        switch (block.getType()) {
+    private boolean isImportantBlock(Material material) {
+        switch (material) {
             case CHEST:
             case TRAPPED_CHEST:
             case ENDER_CHEST:
@@ -1,12 +1,12 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * An operation that creates a cylinder of blocks.
@@ -18,6 +18,7 @@ public class CylinderOperation implements Operation {
     private final int radius;
     private final int height;
     private final boolean hollow;
+    private Extent extent;
     
     /**
      * Create a new cylinder operation.
@@ -39,8 +40,8 @@ public class CylinderOperation implements Operation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = new HistoryEntry(player, world, getDescription());
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(player.getWorld());
+        HistoryEntry entry = new HistoryEntry(player, extent, getDescription());
         
         // Create block data for the material
         BlockData blockData = material.createBlockData();
@@ -75,21 +76,17 @@ public class CylinderOperation implements Operation {
                     Vector3 pos = center.add(new Vector3(x, y, z));
                     
                     // Get the block
-                    Block block = pos.toBlock(world);
+                    BlockData oldData = extent.getBlock(pos);
                     
                     // Skip air blocks if we're not changing anything
-                    if (block.getType() == material) {
+                    if (oldData.getMaterial() == material) {
                         continue;
                     }
                     
-                    // Save the previous state for undo
-                    entry.addBlockState(pos, block.getState(), null);
-                    
-                    // Set the block
-                    block.setBlockData(blockData);
-                    
-                    // Save the new state for redo
-                    entry.addBlockState(pos, null, block.getState());
+                    // Set the block and record it for undo
+                    if (extent.setBlock(pos, blockData)) {
+                        entry.addBlock(pos, oldData, blockData);
+                    }
                 }
             }
         }
@@ -121,4 +118,9 @@ public class CylinderOperation implements Operation {
             return (int)(Math.PI * radius * radius * height);
         }
     }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
@@ -1,13 +1,13 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -20,6 +20,7 @@ public class DrainOperation implements Operation {
     private final Region region;
     private final int radius;
     private final boolean removeAllLiquids;
+    private Extent extent;
     
     // Materials that are considered liquids
     private static final Set<Material> LIQUID_MATERIALS = new HashSet<>();
@@ -62,27 +63,22 @@ public class DrainOperation implements Operation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = new HistoryEntry(player, world, getDescription());
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(player.getWorld());
+        HistoryEntry entry = new HistoryEntry(player, extent, getDescription());
+        BlockData air = Material.AIR.createBlockData();
         
         // Iterate through all blocks in the region
         for (Vector3 pos : region) {
-            Block block = pos.toBlock(world);
-            Material material = block.getType();
+            BlockData oldData = extent.getBlock(pos);
             
             // Skip if not a liquid
-            if (!isLiquid(material)) {
+            if (!isLiquid(oldData.getMaterial())) {
                 continue;
             }
             
-            // Save the previous state for undo
-            entry.addBlockState(pos, block.getState(), null);
-            
-            // Set to air
-            block.setType(Material.AIR);
-            
-            // Save the new state for redo
-            entry.addBlockState(pos, null, block.getState());
+            // Set to air and record it for undo
+            extent.setBlock(pos, air);
+            entry.addBlock(pos, oldData, air);
         }
         
         return entry;
@@ -119,4 +115,9 @@ public class DrainOperation implements Operation {
     public int getVolume() {
         return region.getVolume();
     }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
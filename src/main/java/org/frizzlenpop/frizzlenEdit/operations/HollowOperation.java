@@ -1,9 +1,6 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
@@ -11,6 +8,7 @@ import org.frizzlenpop.frizzlenEdit.masks.Mask;
 import org.frizzlenpop.frizzlenEdit.patterns.Pattern;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * Operation that makes a region hollow by setting inner blocks to air and keeping the outer shell.
@@ -73,8 +71,8 @@ public class HollowOperation extends AbstractOperation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = createHistoryEntry(world);
+        Extent extent = getExtent(player.getWorld());
+        HistoryEntry entry = createHistoryEntry(extent);
         int affected = 0;
         
         // Get region bounds
@@ -98,10 +96,10 @@ public class HollowOperation extends AbstractOperation {
         for (int x = min.getX(); x <= max.getX(); x++) {
             for (int z = min.getZ(); z <= max.getZ(); z++) {
                 for (int y = min.getY(); y <= max.getY(); y++) {
-                    Block block = world.getBlockAt(x, y, z);
+                    Vector3 pos = new Vector3(x, y, z);
                     
                     // Check if the block matches the mask
-                    if (!matchesMask(block)) {
+                    if (!matchesMask(extent, pos)) {
                         continue;
                     }
                     
@@ -111,13 +109,13 @@ public class HollowOperation extends AbstractOperation {
                             y < min.getY() + thickness || y > max.getY() - thickness ||
                             z < min.getZ() + thickness || z > max.getZ() - thickness;
                     
-                    BlockState oldState = block.getState();
+                    BlockData oldData = extent.getBlock(pos);
                     BlockData newData;
                     
                     if (isShell) {
                         // If it's part of the shell and we have a pattern, use it
                         if (shellPattern != null) {
-                            newData = shellPattern.getBlockData(block.getLocation());
+                            newData = shellPattern.getBlockData(pos.toLocation(extent.getWorld()));
                         } else {
                             // Keep original block for shell if no pattern is specified
                             continue;
@@ -127,17 +125,10 @@ public class HollowOperation extends AbstractOperation {
                         newData = airData;
                     }
                     
-                    if (newData != null && !oldState.getBlockData().equals(newData)) {
-                        Vector3 pos = new Vector3(x, y, z);
-                        
-                        // Save the old state for undo
-                        entry.addBlockState(pos, oldState, null);
-                        
-                        // Set the new block data
-                        block.setBlockData(newData);
-                        
-                        // Save the new state for redo
-                        entry.addBlockState(pos, null, block.getState());
+                    if (newData != null && !oldData.equals(newData)) {
+                        // Set the new block data and record it for undo
+                        extent.setBlock(pos, newData);
+                        entry.addBlock(pos, oldData, newData);
                         
                         affected++;
                     }
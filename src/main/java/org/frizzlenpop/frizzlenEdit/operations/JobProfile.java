@@ -0,0 +1,277 @@
+package org.frizzlenpop.frizzlenEdit.operations;
+
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Records how long a running job spends in each of its phases.
+ * The profile of the job running on the current thread can be marked from anywhere
+ * in an operation through {@link #enter(Phase)}, so operations don't need to carry it around.
+ *
+ * A profile created for sampling also measures the bytes allocated and the CPU time used
+ * in each phase. That reads the thread's counters at every phase change, so it is only done
+ * when profiling is enabled.
+ */
+public class JobProfile {
+    /**
+     * The phases a job goes through.
+     */
+    public enum Phase {
+        // Reading the blocks the job depends on
+        SNAPSHOT,
+        // Working out what to change
+        PLAN,
+        // Changing blocks in the world
+        APPLY,
+        // Recording the change for undo/redo
+        HISTORY
+    }
+    
+    // The profile of the job running on each thread
+    private static final ThreadLocal<JobProfile> CURRENT = new ThreadLocal<>();
+    
+    // Per-thread allocation counters, only available on HotSpot-based JVMs
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+    
+    // Per-thread CPU time, available on most JVMs
+    private static final ThreadMXBean CPU = getCpuBean();
+    
+    private final Clock clock;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final boolean sampling;
+    private final long[] phaseBytes = new long[Phase.values().length];
+    private final long[] phaseCpuNanos = new long[Phase.values().length];
+    private long phaseBytesStart;
+    private long phaseCpuStart;
+    private final long submittedAt;
+    private Phase phase;
+    private long phaseStart;
+    private long finishedAt;
+    private long allocatedAtBegin = -1;
+    private long allocatedBytes = -1;
+    
+    /**
+     * Create a new profile for a job that was just submitted.
+     * @param clock The clock to time the job with
+     * @param sampling Whether to measure the allocation and CPU time of each phase
+     */
+    public JobProfile(Clock clock, boolean sampling) {
+        this.clock = clock;
+        this.submittedAt = clock.nanoTime();
+        this.sampling = sampling;
+    }
+    
+    /**
+     * Start timing on the current thread. Work is counted as {@link Phase#APPLY} until an operation says otherwise.
+     */
+    public void begin() {
+        CURRENT.set(this);
+        allocatedAtBegin = getAllocatedOnThread();
+        switchTo(Phase.APPLY);
+    }
+    
+    /**
+     * Stop timing on the current thread.
+     */
+    public void end() {
+        switchTo(null);
+        finishedAt = clock.nanoTime();
+        
+        long allocatedAtEnd = getAllocatedOnThread();
+        if (allocatedAtBegin >= 0 && allocatedAtEnd >= 0) {
+            allocatedBytes = allocatedAtEnd - allocatedAtBegin;
+        }
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+    
+    /**
+     * Mark a job as finished whose work went on after {@link #end()}, such as one spread over ticks.
+     * Its duration runs until now, while its tick time stays what was measured before it ended.
+     */
+    public void finish() {
+        finishedAt = clock.nanoTime();
+    }
+    
+    /**
+     * Mark the start of a phase of the job running on the current thread.
+     * Does nothing if no job is being profiled.
+     * @param phase The phase that is starting
+     */
+    public static void enter(Phase phase) {
+        JobProfile profile = CURRENT.get();
+        if (profile != null) {
+            profile.switchTo(phase);
+        }
+    }
+    
+    /**
+     * Close the current phase and start another one.
+     * @param next The next phase, or null to stop timing
+     */
+    private void switchTo(Phase next) {
+        long now = clock.nanoTime();
+        if (phase != null) {
+            phaseNanos[phase.ordinal()] += now - phaseStart;
+        }
+        
+        if (sampling) {
+            long bytes = getAllocatedOnThread();
+            long cpu = getCpuTimeOnThread();
+            if (phase != null) {
+                phaseBytes[phase.ordinal()] += Math.max(0, bytes - phaseBytesStart);
+                phaseCpuNanos[phase.ordinal()] += Math.max(0, cpu - phaseCpuStart);
+            }
+            phaseBytesStart = bytes;
+            phaseCpuStart = cpu;
+        }
+        phase = next;
+        phaseStart = now;
+    }
+    
+    /**
+     * Get the time spent in a phase.
+     * @param phase The phase
+     * @return The time in milliseconds
+     */
+    public double getPhaseMillis(Phase phase) {
+        return phaseNanos[phase.ordinal()] / 1_000_000.0;
+    }
+    
+    /**
+     * Get the time spent in each phase.
+     * @return The time in milliseconds per phase
+     */
+    public Map<Phase, Double> getPhases() {
+        Map<Phase, Double> phases = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, getPhaseMillis(phase));
+        }
+        return phases;
+    }
+    
+    /**
+     * Get the time the job held the thread it ran on, i.e. its cost to the server tick.
+     * @return The time in milliseconds
+     */
+    public double getTickMillis() {
+        return getTickNanos() / 1_000_000.0;
+    }
+    
+    /**
+     * Get the time the job held the thread it ran on.
+     * @return The time in nanoseconds
+     */
+    public long getTickNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+    
+    /**
+     * Get the number of bytes the job allocated on the thread it ran on.
+     * @return The number of bytes, or -1 if the JVM doesn't support allocation tracking
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+    
+    /**
+     * Check if this profile measures the allocation and CPU time of each phase.
+     * @return True if it samples
+     */
+    public boolean isSampling() {
+        return sampling;
+    }
+    
+    /**
+     * Get the number of bytes allocated in a phase. Only measured when sampling.
+     * @param phase The phase
+     * @return The number of bytes
+     */
+    public long getPhaseAllocatedBytes(Phase phase) {
+        return phaseBytes[phase.ordinal()];
+    }
+    
+    /**
+     * Get the CPU time used in a phase. Only measured when sampling.
+     * @param phase The phase
+     * @return The CPU time in nanoseconds
+     */
+    public long getPhaseCpuNanos(Phase phase) {
+        return phaseCpuNanos[phase.ordinal()];
+    }
+    
+    /**
+     * Get the number of bytes allocated so far by the current thread.
+     * @return The number of bytes, or -1 if not supported
+     */
+    public static long getAllocatedOnThread() {
+        if (THREADS == null) {
+            return -1;
+        }
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+    
+    /**
+     * Get the CPU time used so far by the current thread.
+     * @return The CPU time in nanoseconds, or -1 if not supported
+     */
+    public static long getCpuTimeOnThread() {
+        if (CPU == null) {
+            return -1;
+        }
+        return CPU.getCurrentThreadCpuTime();
+    }
+    
+    /**
+     * Get the thread bean with CPU time measurement enabled.
+     * @return The thread bean, or null if the JVM can't measure the CPU time of a thread
+     */
+    private static ThreadMXBean getCpuBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!bean.isCurrentThreadCpuTimeSupported()) {
+            return null;
+        }
+        if (!bean.isThreadCpuTimeEnabled()) {
+            bean.setThreadCpuTimeEnabled(true);
+        }
+        return bean;
+    }
+    
+    /**
+     * Get the thread bean with allocation tracking enabled.
+     * @return The thread bean, or null if the JVM doesn't support allocation tracking
+     */
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        return threads;
+    }
+    
+    /**
+     * Get the time from submitting the job until it finished, including time spent waiting to be run.
+     * @return The time in milliseconds
+     */
+    public double getDurationMillis() {
+        long end = finishedAt != 0 ? finishedAt : clock.nanoTime();
+        return (end - submittedAt) / 1_000_000.0;
+    }
+} 
\ No newline at end of file
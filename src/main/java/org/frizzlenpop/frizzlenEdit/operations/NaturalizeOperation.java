@@ -1,9 +1,6 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
@@ -11,8 +8,11 @@ import org.frizzlenpop.frizzlenEdit.masks.Mask;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.NoiseGenerator;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -93,8 +93,8 @@ public class NaturalizeOperation extends AbstractOperation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = createHistoryEntry(world);
+        Extent extent = getExtent(player.getWorld());
+        HistoryEntry entry = createHistoryEntry(extent);
         int affected = 0;
         
         // Get region bounds
@@ -102,6 +102,7 @@ public class NaturalizeOperation extends AbstractOperation {
         Vector3 max = region.getMaximumPoint();
         
         // First pass: Identify surface blocks for each x,z column
+        JobProfile.enter(JobProfile.Phase.SNAPSHOT);
         Map<Vector3, Material> topBlocks = new HashMap<>();
         Map<Vector3, Integer> columnHeights = new HashMap<>();
         
@@ -110,13 +111,13 @@ public class NaturalizeOperation extends AbstractOperation {
                 // Find the highest solid block
                 boolean foundTop = false;
                 for (int y = max.getY(); y >= min.getY() && !foundTop; y--) {
-                    Block block = world.getBlockAt(x, y, z);
+                    Vector3 pos = new Vector3(x, y, z);
                     
-                    if (!matchesMask(block)) {
+                    if (!matchesMask(extent, pos)) {
                         continue;
                     }
                     
-                    Material mat = block.getType();
+                    Material mat = extent.getBlock(pos).getMaterial();
                     
                     // Skip air and water if preserving water
                     if (mat == Material.AIR || 
@@ -133,7 +134,11 @@ public class NaturalizeOperation extends AbstractOperation {
             }
         }
         
-        // Second pass: Apply naturalization to each column
+        // Second pass: Work out the naturalization of each column
+        JobProfile.enter(JobProfile.Phase.PLAN);
+        List<Vector3> positions = new ArrayList<>();
+        List<BlockData> oldBlocks = new ArrayList<>();
+        List<BlockData> newBlocks = new ArrayList<>();
         for (Map.Entry<Vector3, Material> entry2 : topBlocks.entrySet()) {
             Vector3 columnKey = entry2.getKey();
             Material topMaterial = entry2.getValue();
@@ -153,13 +158,13 @@ public class NaturalizeOperation extends AbstractOperation {
             
             // Process the column from top to bottom
             for (int y = topY; y >= min.getY(); y--) {
-                Block block = world.getBlockAt(x, y, z);
+                Vector3 pos = new Vector3(x, y, z);
                 
-                if (!matchesMask(block)) {
+                if (!matchesMask(extent, pos)) {
                     continue;
                 }
                 
-                BlockState oldState = block.getState();
+                BlockData oldData = extent.getBlock(pos);
                 Material newMaterial;
                 
                 int depth = topY - y;
@@ -179,28 +184,30 @@ public class NaturalizeOperation extends AbstractOperation {
                 }
                 
                 // Skip if the material is already correct
-                if (block.getType() == newMaterial) {
+                if (oldData.getMaterial() == newMaterial) {
                     continue;
                 }
                 
                 // Get block data for the new material
-                BlockData newData = newMaterial.createBlockData();
-                
-                Vector3 pos = new Vector3(x, y, z);
-                
-                // Save the old state for undo
-                entry.addBlockState(pos, oldState, null);
-                
-                // Set the new block data
-                block.setBlockData(newData);
-                
-                // Save the new state for redo
-                entry.addBlockState(pos, null, block.getState());
-                
-                affected++;
+                positions.add(pos);
+                oldBlocks.add(oldData);
+                newBlocks.add(newMaterial.createBlockData());
             }
         }
         
+        // Set the new block data
+        JobProfile.enter(JobProfile.Phase.APPLY);
+        for (int i = 0; i < positions.size(); i++) {
+            extent.setBlock(positions.get(i), newBlocks.get(i));
+        }
+        
+        // Record it for undo
+        JobProfile.enter(JobProfile.Phase.HISTORY);
+        for (int i = 0; i < positions.size(); i++) {
+            entry.addBlock(positions.get(i), oldBlocks.get(i), newBlocks.get(i));
+        }
+        affected = positions.size();
+        
         sendMessage("Naturalized terrain with " + affected + " blocks affected.");
         return entry;
     }
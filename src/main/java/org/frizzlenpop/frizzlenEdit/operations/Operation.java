@@ -2,6 +2,9 @@ package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents an operation that can be executed and undone.
@@ -30,4 +33,48 @@ public interface Operation {
      * @return The volume
      */
     int getVolume();
+    
+    /**
+     * Make this operation read and write blocks through an extent instead of the world it
+     * would normally use. Must be called before the operation is executed.
+     * @param extent The extent
+     */
+    void setExtent(Extent extent);
+    
+    /**
+     * Get the key this operation's measured cost is grouped under.
+     * Operations whose cost depends strongly on their parameters should include them,
+     * through {@link OperationCostModel#key}. The key must not contain dots.
+     * @return The cost key
+     */
+    default String getCostKey() {
+        return getClass().getSimpleName();
+    }
+    
+    /**
+     * Check if this operation spreads its block changes over several ticks
+     * instead of applying them all within the tick it is executed in.
+     * @return True if the work is scheduled across ticks
+     */
+    default boolean isSpreadOverTicks() {
+        return false;
+    }
+    
+    /**
+     * Check if the operation's history entry should be added to the player's undo history.
+     * Operations that don't keep the blocks they replace, to bound their memory, can't be undone.
+     * @return True if the operation can be undone
+     */
+    default boolean isUndoable() {
+        return true;
+    }
+    
+    /**
+     * Get the future that completes once an operation spread over ticks has placed its last block.
+     * Operations that finish within {@link #execute()} don't need to override this.
+     * @return The future, completed with the finished history entry
+     */
+    default CompletableFuture<HistoryEntry> getCompletion() {
+        return CompletableFuture.completedFuture(null);
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,243 @@
+package org.frizzlenpop.frizzlenEdit.operations;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps track of how expensive each kind of operation has been in practice.
+ * Measured costs are stored per block of the operation's bounding box, so a
+ * large but cheap operation (e.g. a replace on a mostly-air region) is not
+ * treated the same as a small but expensive one (e.g. a multi-pass smooth).
+ *
+ * Costs are kept per cost key, which names the operation and the parameters its cost
+ * depends on: the block a replace matches, the mask an operation tests every block
+ * against, the iterations of a smooth. A replace of stone and a replace of air are
+ * measured apart, as they change very different shares of the same box.
+ */
+public class OperationCostModel {
+    // Weight given to a new sample in the moving average
+    private static final double SMOOTHING = 0.3;
+    
+    // Milliseconds per server tick
+    private static final double MS_PER_TICK = 50.0;
+    
+    private final File file;
+    private final Map<String, CostSample> samples = new ConcurrentHashMap<>();
+    
+    // Set when a sample is recorded, cleared when the samples are saved
+    private final AtomicBoolean changed = new AtomicBoolean();
+    
+    /**
+     * Create a new cost model backed by a file.
+     * @param file The file used to persist measured costs between restarts
+     */
+    public OperationCostModel(File file) {
+        this.file = file;
+        load();
+    }
+    
+    /**
+     * Build a cost key from an operation's name and the parameters its cost depends on.
+     * Characters that can't be part of a key are replaced.
+     * @param operation The name of the operation
+     * @param parameters The parameters
+     * @return The cost key
+     */
+    public static String key(String operation, String... parameters) {
+        StringBuilder key = new StringBuilder(operation);
+        for (String parameter : parameters) {
+            key.append('-').append(parameter);
+        }
+        return key.toString().replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+    
+    /**
+     * Record the measured cost of an executed operation.
+     * @param key The cost key of the operation
+     * @param blocks The number of blocks the operation covered
+     * @param nanos The wall time the operation took, in nanoseconds
+     */
+    public void record(String key, int blocks, long nanos) {
+        if (blocks <= 0 || nanos <= 0) {
+            return;
+        }
+        
+        double nanosPerBlock = (double) nanos / blocks;
+        samples.compute(key, (k, sample) -> {
+            if (sample == null) {
+                return new CostSample(nanosPerBlock, 1);
+            }
+            double average = sample.nanosPerBlock + SMOOTHING * (nanosPerBlock - sample.nanosPerBlock);
+            return new CostSample(average, sample.count + 1);
+        });
+        changed.set(true);
+    }
+    
+    /**
+     * Estimate the cost of an operation before it runs.
+     * @param operation The operation
+     * @return The estimate, or null if this kind of operation has never been measured
+     */
+    public Estimate estimate(Operation operation) {
+        CostSample sample = samples.get(operation.getCostKey());
+        if (sample == null) {
+            return null;
+        }
+        
+        double millis = sample.nanosPerBlock * operation.getVolume() / 1_000_000.0;
+        return new Estimate(millis, operation.isSpreadOverTicks(), sample.count);
+    }
+    
+    /**
+     * Load previously measured costs from disk.
+     */
+    public void load() {
+        samples.clear();
+        if (!file.exists()) {
+            return;
+        }
+        
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+        ConfigurationSection section = yaml.getConfigurationSection("costs");
+        if (section == null) {
+            return;
+        }
+        
+        for (String key : section.getKeys(false)) {
+            double nanosPerBlock = section.getDouble(key + ".nanos-per-block", -1);
+            int count = section.getInt(key + ".samples", 0);
+            if (nanosPerBlock > 0) {
+                samples.put(key, new CostSample(nanosPerBlock, count));
+            }
+        }
+        
+        Logger.debug("Loaded " + samples.size() + " operation cost samples");
+    }
+    
+    /**
+     * Save the measured costs to disk if any were recorded since they were last saved.
+     * Safe to call from any thread.
+     */
+    public void saveIfChanged() {
+        if (changed.get()) {
+            save();
+        }
+    }
+    
+    /**
+     * Save the measured costs to disk. The file is written next to the old one and moved
+     * over it, so a crash while saving leaves the old costs in place.
+     */
+    public synchronized void save() {
+        // Cleared first, so a sample recorded while saving is saved next time
+        changed.set(false);
+        YamlConfiguration yaml = new YamlConfiguration();
+        for (Map.Entry<String, CostSample> entry : samples.entrySet()) {
+            yaml.set("costs." + entry.getKey() + ".nanos-per-block", entry.getValue().nanosPerBlock);
+            yaml.set("costs." + entry.getKey() + ".samples", entry.getValue().count);
+        }
+        
+        Path temp = null;
+        try {
+            file.getParentFile().mkdirs();
+            temp = Files.createTempFile(file.getParentFile().toPath(), file.getName() + ".", ".tmp");
+            Files.write(temp, yaml.saveToString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            changed.set(true);
+            Logger.warning("Failed to save operation cost model: " + e.getMessage());
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+    
+    /**
+     * A moving average of the cost per block for one kind of operation.
+     */
+    private static class CostSample {
+        final double nanosPerBlock;
+        final int count;
+        
+        CostSample(double nanosPerBlock, int count) {
+            this.nanosPerBlock = nanosPerBlock;
+            this.count = count;
+        }
+    }
+    
+    /**
+     * A predicted cost for an operation that has not started yet.
+     */
+    public static class Estimate {
+        private final double millis;
+        private final boolean spreadOverTicks;
+        private final int samples;
+        
+        Estimate(double millis, boolean spreadOverTicks, int samples) {
+            this.millis = millis;
+            this.spreadOverTicks = spreadOverTicks;
+            this.samples = samples;
+        }
+        
+        /**
+         * Get the predicted wall time.
+         * @return The predicted time in milliseconds
+         */
+        public double getMillis() {
+            return millis;
+        }
+        
+        /**
+         * Get the predicted time the operation will hold a single server tick.
+         * Operations that spread their work over several ticks are bounded by their batch size instead.
+         * @return The predicted tick impact in milliseconds
+         */
+        public double getTickImpactMillis() {
+            return spreadOverTicks ? 0 : millis;
+        }
+        
+        /**
+         * Get the predicted number of ticks the server would lag behind.
+         * @return The number of ticks
+         */
+        public int getTicksLost() {
+            return (int) Math.floor(getTickImpactMillis() / MS_PER_TICK);
+        }
+        
+        /**
+         * Get the number of measurements this estimate is based on.
+         * @return The sample count
+         */
+        public int getSamples() {
+            return samples;
+        }
+        
+        /**
+         * Format this estimate for display to a player.
+         * @return The formatted estimate
+         */
+        public String format() {
+            String time = millis >= 1000 ? String.format("%.1fs", millis / 1000.0) : String.format("%.0fms", millis);
+            if (spreadOverTicks) {
+                return time + " spread over several ticks";
+            }
+            return time + " (~" + getTicksLost() + " ticks of lag)";
+        }
+    }
+} 
\ No newline at end of file
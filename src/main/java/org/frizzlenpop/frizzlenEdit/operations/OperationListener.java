@@ -0,0 +1,16 @@
+package org.frizzlenpop.frizzlenEdit.operations;
+
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+
+/**
+ * Notified by the operation manager when an operation has finished on the main thread.
+ */
+public interface OperationListener {
+    /**
+     * Called after an operation has finished.
+     * @param operation The operation
+     * @param entry The history entry, or null if the operation failed
+     * @param profile The timing profile of the operation
+     */
+    void onOperationCompleted(Operation operation, HistoryEntry entry, JobProfile profile);
+} 
\ No newline at end of file
@@ -4,14 +4,32 @@ import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.config.ConfigManager;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.utils.EditMetrics;
 import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.SlowJobLog;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
 import org.frizzlenpop.frizzlenEdit.patterns.Pattern;
 import org.frizzlenpop.frizzlenEdit.masks.Mask;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
@@ -24,42 +42,119 @@ public class OperationManager {
     // Counter for tracking active operations
     private final AtomicInteger activeOperations = new AtomicInteger(0);
     
+    // Measured cost per block of each operation type, used for admission control
+    private final OperationCostModel costModel;
+    
+    // Operations over the tick budget waiting for off-peak hours
+    private final Queue<QueuedOperation> offPeakQueue = new ConcurrentLinkedQueue<>();
+    private ScheduledTask offPeakTask;
+    private ScheduledTask costSaveTask;
+    
+    // Allocation and CPU time of each operation type, while profiling is enabled
+    private final OperationStats stats = new OperationStats();
+    
+    // Structured log of operations that went over the configured duration or tick cost
+    private final SlowJobLog slowJobLog;
+    
+    // Listeners notified when an operation finishes
+    private final List<OperationListener> listeners = new CopyOnWriteArrayList<>();
+    
+    // Extents that replace a player's world, such as the in-memory extent of a trace replay
+    private final Map<UUID, Extent> extentOverrides = new ConcurrentHashMap<>();
+    
+    // How often the off-peak queue is checked (10 seconds)
+    private static final long OFF_PEAK_CHECK_INTERVAL = 200L;
+    
+    // How often new cost samples are saved, so a crash loses at most this much (5 minutes)
+    private static final long COST_SAVE_INTERVAL = 6000L;
+    
     /**
      * Create a new operation manager.
      * @param plugin The plugin instance
      */
     public OperationManager(FrizzlenEdit plugin) {
         this.plugin = plugin;
+        this.costModel = new OperationCostModel(new File(plugin.getDataFolder(), "cost-model.yml"));
+        this.offPeakTask = plugin.getTaskScheduler().runTaskTimer(
+            this::runQueuedOperation, OFF_PEAK_CHECK_INTERVAL, OFF_PEAK_CHECK_INTERVAL);
+        this.costSaveTask = plugin.getTaskScheduler().runTaskTimer(
+            () -> plugin.runAsync(costModel::saveIfChanged), COST_SAVE_INTERVAL, COST_SAVE_INTERVAL);
+        this.slowJobLog = new SlowJobLog(new File(plugin.getDataFolder(), "logs"), "slow-jobs",
+            plugin.getConfigManager().getSlowJobMaxFileSizeKb() * 1024L, plugin.getConfigManager().getSlowJobMaxFiles());
     }
     
     /**
      * Execute an operation.
      * @param player The player
      * @param operation The operation to execute
+     * @return True if the operation was run or queued, false if it was refused
      */
-    public void execute(Player player, Operation operation) {
+    public boolean execute(Player player, Operation operation) {
         // Check if the operation is too large
         int volume = operation.getVolume();
         int maxSize = plugin.getConfigManager().getMaxSelectionBlocks();
         
         if (volume > maxSize) {
             player.sendMessage(ChatColor.RED + "Operation too large: " + volume + " blocks. Maximum is " + maxSize + ".");
-            return;
+            return false;
         }
         
+        // Predict the cost from previous runs of the same kind of operation
+        OperationCostModel.Estimate estimate = costModel.estimate(operation);
+        if (estimate != null) {
+            player.sendMessage(ChatColor.GRAY + "Estimated time: " + estimate.format());
+            
+            if (isOverTickBudget(estimate) && !isOffPeak()) {
+                int maxTickMs = plugin.getConfigManager().getAdmissionMaxTickMs();
+                
+                if (!plugin.getConfigManager().isAdmissionQueueEnabled()) {
+                    player.sendMessage(ChatColor.RED + "Operation refused: it would hold the server for about " + 
+                                      estimate.format() + ". Limit is " + maxTickMs + "ms.");
+                    return false;
+                }
+                
+                offPeakQueue.add(new QueuedOperation(player, operation));
+                player.sendMessage(ChatColor.YELLOW + "Operation queued: it would hold the server for about " + 
+                                  estimate.format() + ". It will run during off-peak hours (" + 
+                                  plugin.getConfigManager().getAdmissionOffPeakHours() + ").");
+                return true;
+            }
+        }
+        
+        run(player, operation);
+        return true;
+    }
+    
+    /**
+     * Run an operation that has passed admission control.
+     * @param player The player
+     * @param operation The operation to run
+     */
+    private void run(Player player, Operation operation) {
         // Increment active operations counter
         activeOperations.incrementAndGet();
         
+        // Edit the player's override extent instead of the world if one is set
+        Extent override = extentOverrides.get(player.getUniqueId());
+        if (override != null) {
+            operation.setExtent(override);
+        }
+        
         // Show a progress message
         player.sendMessage(ChatColor.YELLOW + "Executing " + operation.getDescription() + " operation...");
         
+        // Time the job from submission so waiting for the main thread shows up in the slow job log
+        JobProfile profile = new JobProfile(plugin.getClock(), plugin.getConfigManager().isProfilingEnabled());
+        
         // Pre-process data async, but execute block changes on the main thread
         CompletableFuture.runAsync(() -> {
             try {
                 // Run the actual block changes on the main server thread
                 // This ensures we don't get "Asynchronous block modification" errors
-                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                plugin.getTaskScheduler().runTask(() -> {
                     HistoryEntry entry = null;
+                    long start = plugin.getClock().nanoTime();
+                    profile.begin();
                     try {
                         entry = operation.execute();
                     } catch (Exception e) {
@@ -67,8 +162,22 @@ public class OperationManager {
                         e.printStackTrace();
                     }
                     
+                    // Only work done within this tick says anything about the tick cost
+                    if (entry != null && !operation.isSpreadOverTicks()) {
+                        costModel.record(operation.getCostKey(), operation.getVolume(), plugin.getClock().nanoTime() - start);
+                    }
+                    
+                    // The entry of an operation spread over ticks fills up as its batches run,
+                    // so its result is only handled once the last batch has been placed
+                    if (entry != null && operation.isSpreadOverTicks()) {
+                        profile.end();
+                        operation.getCompletion().whenComplete((finished, error) -> 
+                            handleOperationResult(player, operation, error == null ? finished : null, profile));
+                        return;
+                    }
+                    
                     // Process the result
-                    handleOperationResult(player, operation, entry);
+                    handleOperationResult(player, operation, entry, profile);
                 });
             } catch (Exception e) {
                 Logger.severe("Error scheduling operation: " + e.getMessage());
@@ -79,25 +188,274 @@ public class OperationManager {
     }
     
     /**
-     * Handle the result of an operation.
+     * Check if an estimated operation would hold the main thread longer than allowed.
+     * @param estimate The estimate
+     * @return True if the operation is over the tick budget
+     */
+    private boolean isOverTickBudget(OperationCostModel.Estimate estimate) {
+        if (!plugin.getConfigManager().isAdmissionEnabled()) {
+            return false;
+        }
+        return estimate.getTickImpactMillis() > plugin.getConfigManager().getAdmissionMaxTickMs();
+    }
+    
+    /**
+     * Check if the server is currently within the configured off-peak hours.
+     * @return True if it is off-peak
+     */
+    public boolean isOffPeak() {
+        String range = plugin.getConfigManager().getAdmissionOffPeakHours();
+        String[] parts = range.split("-");
+        if (parts.length != 2) {
+            return false;
+        }
+        
+        try {
+            int start = Integer.parseInt(parts[0].trim());
+            int end = Integer.parseInt(parts[1].trim());
+            int hour = LocalTime.now().getHour();
+            
+            if (start <= end) {
+                return hour >= start && hour < end;
+            }
+            // The range wraps around midnight, e.g. 22-4
+            return hour >= start || hour < end;
+        } catch (NumberFormatException e) {
+            Logger.debug("Invalid off-peak hours: " + range);
+            return false;
+        }
+    }
+    
+    /**
+     * Run the next queued operation if it is off-peak and nothing else is running.
+     * Only one queued operation is started per check so they don't pile up in the same tick.
+     */
+    private void runQueuedOperation() {
+        if (offPeakQueue.isEmpty() || activeOperations.get() > 0 || !isOffPeak()) {
+            return;
+        }
+        
+        QueuedOperation queued;
+        while ((queued = offPeakQueue.poll()) != null) {
+            if (queued.player.isOnline()) {
+                queued.player.sendMessage(ChatColor.GREEN + "Running your queued operation: " + queued.operation.getDescription());
+                run(queued.player, queued.operation);
+                return;
+            }
+            Logger.debug("Dropping queued operation for offline player " + queued.player.getName());
+        }
+    }
+    
+    /**
+     * Get the cost model used for admission control.
+     * @return The cost model
+     */
+    public OperationCostModel getCostModel() {
+        return costModel;
+    }
+    
+    /**
+     * Get the allocation and CPU time measured for each operation type.
+     * @return The operation stats
+     */
+    public OperationStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Get the number of operations waiting for off-peak hours.
+     * @return The number of queued operations
+     */
+    public int getQueuedOperations() {
+        return offPeakQueue.size();
+    }
+    
+    /**
+     * Get the extent a player's edits go to.
+     * @param player The player
+     * @return The player's override extent, or their world
+     */
+    public Extent getExtent(Player player) {
+        Extent override = extentOverrides.get(player.getUniqueId());
+        return override != null ? override : new BukkitExtent(player.getWorld());
+    }
+    
+    /**
+     * Send a player's edits to an extent instead of their world.
+     * @param player The player
+     * @param extent The extent
+     */
+    public void setExtentOverride(Player player, Extent extent) {
+        extentOverrides.put(player.getUniqueId(), extent);
+    }
+    
+    /**
+     * Send a player's edits to their world again.
+     * @param player The player
+     */
+    public void clearExtentOverride(Player player) {
+        extentOverrides.remove(player.getUniqueId());
+    }
+    
+    /**
+     * Register a listener to be notified when operations finish.
+     * @param listener The listener
+     */
+    public void addListener(OperationListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregister an operation listener.
+     * @param listener The listener
+     */
+    public void removeListener(OperationListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Stop the off-peak queue and persist the cost model.
+     */
+    public void shutdown() {
+        if (offPeakTask != null) {
+            offPeakTask.cancel();
+            offPeakTask = null;
+        }
+        if (costSaveTask != null) {
+            costSaveTask.cancel();
+            costSaveTask = null;
+        }
+        costModel.save();
+        
+        if (slowJobLog != null) {
+            slowJobLog.close();
+        }
+    }
+    
+    /**
+     * Handle the result of an operation once it has finished, on the main thread.
      * @param player The player
      * @param operation The operation
      * @param entry The history entry, or null if the operation failed
+     * @param profile The timing profile of the operation
      */
-    private void handleOperationResult(Player player, Operation operation, HistoryEntry entry) {
+    private void handleOperationResult(Player player, Operation operation, HistoryEntry entry, JobProfile profile) {
         // Decrement active operations counter
         activeOperations.decrementAndGet();
         
         if (entry != null) {
             // Add the entry to the history
-            plugin.getHistoryManager().addEntry(entry);
+            JobProfile.enter(JobProfile.Phase.HISTORY);
+            if (operation.isUndoable()) {
+                plugin.getHistoryManager().addEntry(entry);
+            }
+            finish(operation, profile);
+            logIfSlow(operation, entry, profile);
+            
+            // Like the cost model, only work done within this tick is measured
+            if (!operation.isSpreadOverTicks()) {
+                stats.record(operation.getCostKey(), profile, operation.getVolume());
+            }
             
             // Show a success message
             player.sendMessage(ChatColor.GREEN + "Operation completed: " + operation.getDescription());
         } else {
+            finish(operation, profile);
+            
             // Show a failure message
             player.sendMessage(ChatColor.RED + "Operation failed: " + operation.getDescription());
         }
+        
+        // Operations spread over ticks count their blocks per batch as they go
+        int blocks = entry != null && !operation.isSpreadOverTicks() ? entry.getSize() : 0;
+        EditMetrics.getInstance().recordWork(profile.getTickNanos(), blocks);
+        
+        for (OperationListener listener : listeners) {
+            try {
+                listener.onOperationCompleted(operation, entry, profile);
+            } catch (Exception e) {
+                Logger.warning("Operation listener failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Stop the profile of a finished operation.
+     * @param operation The operation
+     * @param profile The timing profile of the operation
+     */
+    private void finish(Operation operation, JobProfile profile) {
+        // An operation spread over ticks stopped timing its tick when it handed off to its batches
+        if (operation.isSpreadOverTicks()) {
+            profile.finish();
+        } else {
+            profile.end();
+        }
+    }
+    
+    /**
+     * Write an operation to the slow job log if it went over the configured duration or tick cost.
+     * @param operation The operation
+     * @param entry The history entry of the operation
+     * @param profile The timing profile of the operation
+     */
+    private void logIfSlow(Operation operation, HistoryEntry entry, JobProfile profile) {
+        ConfigManager config = plugin.getConfigManager();
+        if (slowJobLog == null || !config.isSlowJobLogEnabled()) {
+            return;
+        }
+        
+        double duration = profile.getDurationMillis();
+        double tick = profile.getTickMillis();
+        if (duration < config.getSlowJobMinDurationMs() && tick < config.getSlowJobMinTickMs()) {
+            return;
+        }
+        
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (Map.Entry<JobProfile.Phase, Double> phase : profile.getPhases().entrySet()) {
+            phases.put(phase.getKey().name().toLowerCase(), round(phase.getValue()));
+        }
+        
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("time", Instant.now().toString());
+        record.put("operation", operation.getCostKey());
+        record.put("description", operation.getDescription());
+        record.put("player", entry.getPlayer().getName());
+        record.put("world", entry.getWorld() != null ? entry.getWorld().getName() : null);
+        record.put("duration_ms", round(duration));
+        record.put("tick_ms", round(tick));
+        record.put("phases_ms", phases);
+        record.put("chunks", 0);
+        record.put("blocks_changed", entry.getSize());
+        record.put("volume", operation.getVolume());
+        
+        // Copy the chunk of every changed block here, on the main thread, so the log's thread
+        // never reads the entry; sorting out the distinct chunks is left to it
+        long[] chunkKeys = new long[entry.getPreviousBlocks().size()];
+        int i = 0;
+        for (Vector3 pos : entry.getPreviousBlocks().keySet()) {
+            chunkKeys[i++] = ((long) (pos.getX() >> 4) << 32) | ((pos.getZ() >> 4) & 0xFFFFFFFFL);
+        }
+        slowJobLog.log(() -> {
+            Arrays.sort(chunkKeys);
+            int chunks = 0;
+            for (int k = 0; k < chunkKeys.length; k++) {
+                if (k == 0 || chunkKeys[k] != chunkKeys[k - 1]) {
+                    chunks++;
+                }
+            }
+            record.put("chunks", chunks);
+            return record;
+        });
+    }
+    
+    /**
+     * Round a time to two decimal places for logging.
+     * @param millis The time in milliseconds
+     * @return The rounded time
+     */
+    private static double round(double millis) {
+        return Math.round(millis * 100.0) / 100.0;
     }
     
     /**
@@ -700,4 +1058,17 @@ public class OperationManager {
     public int getActiveOperations() {
         return activeOperations.get();
     }
+    
+    /**
+     * An operation waiting for off-peak hours.
+     */
+    private static class QueuedOperation {
+        final Player player;
+        final Operation operation;
+        
+        QueuedOperation(Player player, Operation operation) {
+            this.player = player;
+            this.operation = operation;
+        }
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,199 @@
+package org.frizzlenpop.frizzlenEdit.operations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adds up the memory allocated and the CPU time used by each type of operation, per phase,
+ * while profiling is enabled. Costs are kept per block, so operations of different sizes
+ * can be compared; see {@link JobProfile} for how the phases are measured.
+ */
+public class OperationStats {
+    private final Map<String, Totals> totals = new ConcurrentHashMap<>();
+    
+    /**
+     * Record a job that was profiled with sampling.
+     * @param type The type of operation
+     * @param profile The profile of the job
+     * @param blocks The number of blocks the job covered
+     */
+    public void record(String type, JobProfile profile, long blocks) {
+        if (!profile.isSampling() || blocks <= 0) {
+            return;
+        }
+        
+        Totals total = totals.computeIfAbsent(type, key -> new Totals());
+        synchronized (total) {
+            total.jobs++;
+            for (JobProfile.Phase phase : JobProfile.Phase.values()) {
+                total.add(phase, blocks, profile.getPhaseAllocatedBytes(phase), profile.getPhaseCpuNanos(phase));
+            }
+        }
+    }
+    
+    /**
+     * Record one phase of work done outside of a job profile, such as a batch of a paste
+     * that runs on its own threads.
+     * @param type The type of operation
+     * @param phase The phase
+     * @param blocks The number of blocks the work covered
+     * @param bytes The bytes allocated
+     * @param cpuNanos The CPU time used, in nanoseconds
+     */
+    public void record(String type, JobProfile.Phase phase, long blocks, long bytes, long cpuNanos) {
+        if (blocks <= 0) {
+            return;
+        }
+        
+        Totals total = totals.computeIfAbsent(type, key -> new Totals());
+        synchronized (total) {
+            total.add(phase, blocks, Math.max(0, bytes), Math.max(0, cpuNanos));
+        }
+    }
+    
+    /**
+     * Count a finished job of an operation whose phases were recorded separately.
+     * @param type The type of operation
+     */
+    public void countJob(String type) {
+        Totals total = totals.computeIfAbsent(type, key -> new Totals());
+        synchronized (total) {
+            total.jobs++;
+        }
+    }
+    
+    /**
+     * Get the measured costs of every type of operation, the most allocation-heavy first.
+     * @return The costs
+     */
+    public List<Summary> getSummaries() {
+        List<Summary> summaries = new ArrayList<>();
+        for (Map.Entry<String, Totals> entry : totals.entrySet()) {
+            Totals total = entry.getValue();
+            synchronized (total) {
+                summaries.add(new Summary(entry.getKey(), total));
+            }
+        }
+        summaries.sort((a, b) -> Double.compare(b.getBytesPerBlock(), a.getBytesPerBlock()));
+        return Collections.unmodifiableList(summaries);
+    }
+    
+    /**
+     * Forget everything measured so far.
+     */
+    public void reset() {
+        totals.clear();
+    }
+    
+    /**
+     * Running totals of one type of operation. Guarded by its own lock.
+     */
+    private static class Totals {
+        private long jobs;
+        private final long[] blocks = new long[JobProfile.Phase.values().length];
+        private final long[] bytes = new long[JobProfile.Phase.values().length];
+        private final long[] cpuNanos = new long[JobProfile.Phase.values().length];
+        
+        private void add(JobProfile.Phase phase, long phaseBlocks, long phaseBytes, long phaseCpuNanos) {
+            blocks[phase.ordinal()] += phaseBlocks;
+            bytes[phase.ordinal()] += phaseBytes;
+            cpuNanos[phase.ordinal()] += phaseCpuNanos;
+        }
+    }
+    
+    /**
+     * The measured cost of one type of operation.
+     */
+    public static class Summary {
+        private final String type;
+        private final long jobs;
+        private final long blocks;
+        private final double[] bytesPerBlock = new double[JobProfile.Phase.values().length];
+        private final double[] cpuNanosPerBlock = new double[JobProfile.Phase.values().length];
+        
+        private Summary(String type, Totals total) {
+            this.type = type;
+            this.jobs = total.jobs;
+            
+            long most = 0;
+            for (JobProfile.Phase phase : JobProfile.Phase.values()) {
+                int i = phase.ordinal();
+                most = Math.max(most, total.blocks[i]);
+                if (total.blocks[i] > 0) {
+                    bytesPerBlock[i] = (double) total.bytes[i] / total.blocks[i];
+                    cpuNanosPerBlock[i] = (double) total.cpuNanos[i] / total.blocks[i];
+                }
+            }
+            this.blocks = most;
+        }
+        
+        /**
+         * Get the type of operation.
+         * @return The type
+         */
+        public String getType() {
+            return type;
+        }
+        
+        /**
+         * Get the number of jobs measured.
+         * @return The number of jobs
+         */
+        public long getJobs() {
+            return jobs;
+        }
+        
+        /**
+         * Get the number of blocks measured.
+         * @return The number of blocks
+         */
+        public long getBlocks() {
+            return blocks;
+        }
+        
+        /**
+         * Get the bytes allocated per block in a phase.
+         * @param phase The phase
+         * @return The bytes per block
+         */
+        public double getBytesPerBlock(JobProfile.Phase phase) {
+            return bytesPerBlock[phase.ordinal()];
+        }
+        
+        /**
+         * Get the bytes allocated per block over every phase, since each block goes through all of them.
+         * @return The bytes per block
+         */
+        public double getBytesPerBlock() {
+            double total = 0;
+            for (double bytes : bytesPerBlock) {
+                total += bytes;
+            }
+            return total;
+        }
+        
+        /**
+         * Get the CPU time used per thousand blocks in a phase.
+         * @param phase The phase
+         * @return The CPU time in milliseconds
+         */
+        public double getCpuMillisPerThousand(JobProfile.Phase phase) {
+            return cpuNanosPerBlock[phase.ordinal()] / 1_000.0;
+        }
+        
+        /**
+         * Get the CPU time used per thousand blocks over every phase.
+         * @return The CPU time in milliseconds
+         */
+        public double getCpuMillisPerThousand() {
+            double total = 0;
+            for (double nanos : cpuNanosPerBlock) {
+                total += nanos;
+            }
+            return total / 1_000.0;
+        }
+    }
+} 
\ No newline at end of file
@@ -1,9 +1,6 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
@@ -12,8 +9,11 @@ import org.frizzlenpop.frizzlenEdit.masks.Mask;
 import org.frizzlenpop.frizzlenEdit.patterns.Pattern;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -83,8 +83,8 @@ public class OverlayOperation extends AbstractOperation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = createHistoryEntry(world);
+        Extent extent = getExtent(player.getWorld());
+        HistoryEntry entry = createHistoryEntry(extent);
         int affected = 0;
         
         // Get region bounds
@@ -95,22 +95,23 @@ public class OverlayOperation extends AbstractOperation {
         AirMask airMask = new AirMask();
         
         // First pass: Find the highest non-air block for each x,z column
+        JobProfile.enter(JobProfile.Phase.SNAPSHOT);
         Map<Vector3, Integer> topYCoordinates = new HashMap<>();
         
         for (int x = min.getX(); x <= max.getX(); x++) {
             for (int z = min.getZ(); z <= max.getZ(); z++) {
                 // Find the highest non-air block
                 for (int y = max.getY(); y >= min.getY(); y--) {
-                    Block block = world.getBlockAt(x, y, z);
+                    Vector3 pos = new Vector3(x, y, z);
                     
-                    if (!matchesMask(block)) {
+                    if (!matchesMask(extent, pos)) {
                         continue;
                     }
                     
-                    Material material = block.getType();
+                    Material material = extent.getBlock(pos).getMaterial();
                     
                     // Skip air blocks
-                    if (airMask.matches(block)) {
+                    if (airMask.matches(extent, pos)) {
                         continue;
                     }
                     
@@ -126,7 +127,11 @@ public class OverlayOperation extends AbstractOperation {
             }
         }
         
-        // Second pass: Add the overlay
+        // Second pass: Work out the overlay
+        JobProfile.enter(JobProfile.Phase.PLAN);
+        List<Vector3> positions = new ArrayList<>();
+        List<BlockData> oldBlocks = new ArrayList<>();
+        List<BlockData> newBlocks = new ArrayList<>();
         for (Map.Entry<Vector3, Integer> entry2 : topYCoordinates.entrySet()) {
             Vector3 columnKey = entry2.getKey();
             int topY = entry2.getValue();
@@ -143,38 +148,42 @@ public class OverlayOperation extends AbstractOperation {
                     continue;
                 }
                 
-                Block block = world.getBlockAt(x, y, z);
+                Vector3 pos = new Vector3(x, y, z);
                 
                 // Only replace air blocks
-                if (!airMask.matches(block)) {
+                if (!airMask.matches(extent, pos)) {
                     continue;
                 }
                 
                 // Check if the block matches the mask
-                if (!matchesMask(block)) {
+                if (!matchesMask(extent, pos)) {
                     continue;
                 }
                 
-                BlockState oldState = block.getState();
-                BlockData newData = pattern.getBlockData(block.getLocation());
+                BlockData oldData = extent.getBlock(pos);
+                BlockData newData = pattern.getBlockData(pos.toLocation(extent.getWorld()));
                 
-                if (newData != null && !oldState.getBlockData().equals(newData)) {
-                    Vector3 pos = new Vector3(x, y, z);
-                    
-                    // Save the old state for undo
-                    entry.addBlockState(pos, oldState, null);
-                    
-                    // Set the new block data
-                    block.setBlockData(newData);
-                    
-                    // Save the new state for redo
-                    entry.addBlockState(pos, null, block.getState());
-                    
-                    affected++;
+                if (newData != null && !oldData.equals(newData)) {
+                    positions.add(pos);
+                    oldBlocks.add(oldData);
+                    newBlocks.add(newData);
                 }
             }
         }
         
+        // Set the new block data
+        JobProfile.enter(JobProfile.Phase.APPLY);
+        for (int i = 0; i < positions.size(); i++) {
+            extent.setBlock(positions.get(i), newBlocks.get(i));
+        }
+        
+        // Record it for undo
+        JobProfile.enter(JobProfile.Phase.HISTORY);
+        for (int i = 0; i < positions.size(); i++) {
+            entry.addBlock(positions.get(i), oldBlocks.get(i), newBlocks.get(i));
+        }
+        affected = positions.size();
+        
         sendMessage("Added overlay with " + affected + " blocks.");
         return entry;
     }
@@ -193,6 +202,12 @@ public class OverlayOperation extends AbstractOperation {
         return desc;
     }
     
+    @Override
+    public String getCostKey() {
+        return OperationCostModel.key("OverlayOperation", pattern.getClass().getSimpleName(), "t" + thickness, 
+                                      mask != null ? mask.getClass().getSimpleName() : "nomask");
+    }
+    
     @Override
     public int getVolume() {
         // Conservative estimate: assume 1/4 of the region's columns will be affected
@@ -1,15 +1,16 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An operation that pastes blocks from a clipboard.
@@ -20,6 +21,7 @@ public class PasteOperation implements Operation {
     private final Clipboard clipboard;
     private final boolean ignoreAir;
     private final World world;
+    private Extent extent;
     
     /**
      * Create a new paste operation.
@@ -38,39 +40,50 @@ public class PasteOperation implements Operation {
     
     @Override
     public HistoryEntry execute() {
-        // Create a history entry
-        HistoryEntry entry = new HistoryEntry(player, world, "Paste");
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(world);
         
-        // Get the blocks from the clipboard
-        Map<Vector3, BlockData> blocks = clipboard.getBlocks();
+        // Create a history entry
+        HistoryEntry entry = new HistoryEntry(player, extent, "Paste");
         
-        // Paste each block
-        for (Map.Entry<Vector3, BlockData> blockEntry : blocks.entrySet()) {
-            Vector3 relPos = blockEntry.getKey();
-            BlockData data = blockEntry.getValue();
-            
+        // Work out each block to paste, straight from the clipboard even if it is rotated or shared
+        JobProfile.enter(JobProfile.Phase.PLAN);
+        List<Vector3> positions = new ArrayList<>();
+        List<BlockData> blocks = new ArrayList<>();
+        clipboard.forEachBlock((relPos, data) -> {
             // Skip air blocks if requested
             if (ignoreAir && data.getMaterial().isAir()) {
-                continue;
+                return;
             }
             
             // Calculate the world position
-            Vector3 worldPos = position.add(relPos);
-            
-            // Get the block
-            Block block = worldPos.toBlock(world);
-            
-            // Save the previous state for undo
-            BlockState oldState = block.getState();
-            
-            // Set the new block data
-            block.setBlockData(data);
-            
-            // Save the new state for redo
-            BlockState newState = block.getState();
-            
-            // Add to history
-            entry.addBlockState(worldPos, oldState, newState);
+            positions.add(position.add(relPos));
+            blocks.add(data);
+        });
+        
+        // Save the previous data for undo
+        JobProfile.enter(JobProfile.Phase.SNAPSHOT);
+        BlockData[] oldData = new BlockData[positions.size()];
+        for (int i = 0; i < oldData.length; i++) {
+            oldData[i] = extent.getBlock(positions.get(i));
+        }
+        
+        // Set the new block data, forgetting the blocks that could not be set
+        JobProfile.enter(JobProfile.Phase.APPLY);
+        for (int i = 0; i < oldData.length; i++) {
+            if (!extent.setBlock(positions.get(i), blocks.get(i))) {
+                oldData[i] = null;
+            }
+        }
+        
+        // Block entities and entities once their blocks are in place
+        clipboard.pasteNbt(position, extent, entry);
+        
+        // Add to history
+        JobProfile.enter(JobProfile.Phase.HISTORY);
+        for (int i = 0; i < oldData.length; i++) {
+            if (oldData[i] != null) {
+                entry.addBlock(positions.get(i), oldData[i], blocks.get(i));
+            }
         }
         
         return entry;
@@ -90,15 +103,14 @@ public class PasteOperation implements Operation {
     public int getVolume() {
         if (ignoreAir) {
             // Count non-air blocks
-            int count = 0;
-            for (BlockData data : clipboard.getBlocks().values()) {
-                if (!data.getMaterial().isAir()) {
-                    count++;
-                }
-            }
-            return count;
+            return clipboard.countBlocks(true);
         } else {
             return clipboard.getVolume();
         }
     }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
@@ -3,12 +3,13 @@ package org.frizzlenpop.frizzlenEdit.operations;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -23,6 +24,7 @@ public class RemoveNearOperation implements Operation {
     private final int radius;
     private final Material material;
     private final boolean useHandItem;
+    private Extent extent;
     
     /**
      * Create a new remove near operation using a specific material.
@@ -52,6 +54,7 @@ public class RemoveNearOperation implements Operation {
     @Override
     public HistoryEntry execute() {
         World world = player.getWorld();
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(world);
         Location playerLoc = player.getLocation();
         Material targetMaterial;
         
@@ -73,18 +76,18 @@ public class RemoveNearOperation implements Operation {
         }
         
         // Create the history entry with description
-        HistoryEntry entry = new HistoryEntry(player, world, "Remove near for " + materialDescription + " in radius " + radius);
+        HistoryEntry entry = new HistoryEntry(player, extent, "Remove near for " + materialDescription + " in radius " + radius);
         
         // Calculate bounding box to search
         int minX = playerLoc.getBlockX() - radius;
         int minY = Math.max(playerLoc.getBlockY() - radius, 0);
         int minZ = playerLoc.getBlockZ() - radius;
         int maxX = playerLoc.getBlockX() + radius;
-        int maxY = Math.min(playerLoc.getBlockY() + radius, world.getMaxHeight() - 1);
+        int maxY = Math.min(playerLoc.getBlockY() + radius, extent.getMaxY() - 1);
         int maxZ = playerLoc.getBlockZ() + radius;
         
         int count = 0;
-        List<Block> blocksToRemove = new ArrayList<>();
+        List<Vector3> blocksToRemove = new ArrayList<>();
         
         // First, find all blocks to remove
         for (int x = minX; x <= maxX; x++) {
@@ -95,11 +98,11 @@ public class RemoveNearOperation implements Operation {
                     // Calculate distance from player
                     double distanceSquared = loc.distanceSquared(playerLoc);
                     if (distanceSquared <= radius * radius) {
-                        Block block = world.getBlockAt(loc);
+                        Vector3 pos = new Vector3(x, y, z);
                         
                         // Check if the block matches the target material
-                        if (block.getType() == targetMaterial) {
-                            blocksToRemove.add(block);
+                        if (extent.getBlock(pos).getMaterial() == targetMaterial) {
+                            blocksToRemove.add(pos);
                             count++;
                         }
                     }
@@ -108,20 +111,16 @@ public class RemoveNearOperation implements Operation {
         }
         
         // Now remove the blocks (set to air)
-        for (Block block : blocksToRemove) {
-            Vector3 pos = Vector3.fromLocation(block.getLocation());
-            
-            // Save the previous state for undo
-            BlockState oldState = block.getState();
+        BlockData air = Material.AIR.createBlockData();
+        for (Vector3 pos : blocksToRemove) {
+            // Save the previous data for undo
+            BlockData oldData = extent.getBlock(pos);
             
             // Set the block to air
-            block.setType(Material.AIR);
-            
-            // Save the new state for redo
-            BlockState newState = block.getState();
+            extent.setBlock(pos, air);
             
             // Add to history
-            entry.addBlockState(pos, oldState, newState);
+            entry.addBlock(pos, oldData, air);
         }
         
         player.sendMessage("Removed " + count + " blocks of " + materialDescription);
@@ -147,4 +146,9 @@ public class RemoveNearOperation implements Operation {
         // Estimate the maximum volume as a sphere
         return (int) (4.0/3.0 * Math.PI * radius * radius * radius);
     }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
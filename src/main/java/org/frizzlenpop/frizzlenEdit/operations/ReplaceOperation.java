@@ -1,14 +1,13 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Bukkit;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * An operation that replaces blocks of one type with another.
@@ -18,6 +17,7 @@ public class ReplaceOperation implements Operation {
     private final Region region;
     private final BlockData fromData;
     private final BlockData toData;
+    private Extent extent;
     
     /**
      * Create a new replace operation.
@@ -46,30 +46,43 @@ public class ReplaceOperation implements Operation {
     
     @Override
     public HistoryEntry execute() {
-        World world = region.getWorld();
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(region.getWorld());
         
         // Create a history entry
-        HistoryEntry entry = new HistoryEntry(player, world, "Replace " + fromData.getAsString() + " with " + toData.getAsString());
+        HistoryEntry entry = new HistoryEntry(player, extent, "Replace " + fromData.getAsString() + " with " + toData.getAsString());
         
-        // Replace each matching block in the region
+        // Get the blocks, in the order the region is walked
+        JobProfile.enter(JobProfile.Phase.SNAPSHOT);
+        BlockData[] currentData = new BlockData[region.getVolume()];
+        int index = 0;
         for (Vector3 pos : region) {
-            // Get the block
-            Block block = pos.toBlock(world);
-            BlockData currentData = block.getBlockData();
-            
-            // Check if the block matches the from type
-            if (currentData.getMaterial() == fromData.getMaterial()) {
-                // Save the previous state for undo
-                BlockState oldState = block.getState();
-                
-                // Set the new block data
-                block.setBlockData(toData);
-                
-                // Save the new state for redo
-                BlockState newState = block.getState();
-                
-                // Add to history
-                entry.addBlockState(pos, oldState, newState);
+            currentData[index++] = extent.getBlock(pos);
+        }
+        
+        // Keep only the blocks that match the from type
+        JobProfile.enter(JobProfile.Phase.PLAN);
+        for (int i = 0; i < currentData.length; i++) {
+            if (currentData[i].getMaterial() != fromData.getMaterial()) {
+                currentData[i] = null;
+            }
+        }
+        
+        // Set the new block data
+        JobProfile.enter(JobProfile.Phase.APPLY);
+        index = 0;
+        for (Vector3 pos : region) {
+            if (currentData[index++] != null) {
+                extent.setBlock(pos, toData);
+            }
+        }
+        
+        // Add to history
+        JobProfile.enter(JobProfile.Phase.HISTORY);
+        index = 0;
+        for (Vector3 pos : region) {
+            BlockData old = currentData[index++];
+            if (old != null) {
+                entry.addBlock(pos, old, toData);
             }
         }
         
@@ -91,4 +104,15 @@ public class ReplaceOperation implements Operation {
         // This is an estimate, as we don't know exactly how many blocks will match
         return region.getVolume();
     }
+    
+    @Override
+    public String getCostKey() {
+        // How much of the box matches, and so is written, depends on the block replaced
+        return OperationCostModel.key("ReplaceOperation", fromData.getMaterial().name(), toData.getMaterial().name());
+    }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
@@ -1,14 +1,13 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Bukkit;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * An operation that sets all blocks in a region to a specific type.
@@ -17,6 +16,7 @@ public class SetOperation implements Operation {
     private final Player player;
     private final Region region;
     private final BlockData blockData;
+    private Extent extent;
     
     /**
      * Create a new set operation.
@@ -38,27 +38,44 @@ public class SetOperation implements Operation {
     
     @Override
     public HistoryEntry execute() {
-        World world = region.getWorld();
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(region.getWorld());
         
         // Create a history entry
-        HistoryEntry entry = new HistoryEntry(player, world, "Set " + blockData.getAsString());
+        HistoryEntry entry = new HistoryEntry(player, extent, "Set " + blockData.getAsString());
+        
+        // Save the previous data for undo, in the order the region is walked
+        JobProfile.enter(JobProfile.Phase.SNAPSHOT);
+        BlockData[] oldData = new BlockData[region.getVolume()];
+        int index = 0;
+        for (Vector3 pos : region) {
+            oldData[index++] = extent.getBlock(pos);
+        }
+        
+        // Leave out the blocks that are already set
+        JobProfile.enter(JobProfile.Phase.PLAN);
+        for (int i = 0; i < oldData.length; i++) {
+            if (blockData.equals(oldData[i])) {
+                oldData[i] = null;
+            }
+        }
         
         // Set each block in the region
+        JobProfile.enter(JobProfile.Phase.APPLY);
+        index = 0;
+        for (Vector3 pos : region) {
+            if (oldData[index++] != null) {
+                extent.setBlock(pos, blockData);
+            }
+        }
+        
+        // Add to history
+        JobProfile.enter(JobProfile.Phase.HISTORY);
+        index = 0;
         for (Vector3 pos : region) {
-            // Get the block
-            Block block = pos.toBlock(world);
-            
-            // Save the previous state for undo
-            BlockState oldState = block.getState();
-            
-            // Set the new block data
-            block.setBlockData(blockData);
-            
-            // Save the new state for redo
-            BlockState newState = block.getState();
-            
-            // Add to history
-            entry.addBlockState(pos, oldState, newState);
+            BlockData old = oldData[index++];
+            if (old != null) {
+                entry.addBlock(pos, old, blockData);
+            }
         }
         
         return entry;
@@ -78,4 +95,15 @@ public class SetOperation implements Operation {
     public int getVolume() {
         return region.getVolume();
     }
+    
+    @Override
+    public String getCostKey() {
+        // Blocks with block entities or physics cost more to place
+        return OperationCostModel.key("SetOperation", blockData.getMaterial().name());
+    }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
@@ -1,13 +1,13 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 import java.util.*;
 
@@ -22,6 +22,7 @@ public class SmoothOperation implements Operation {
     private final boolean erodeSteepSlopes;
     private final boolean preserveTopLayer;
     private final double naturalVariation;
+    private Extent extent;
     
     // Materials that should be considered as air or non-terrain (fluids, plants, etc.)
     private static final Set<Material> AIR_MATERIALS = new HashSet<>();
@@ -183,10 +184,11 @@ public class SmoothOperation implements Operation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = new HistoryEntry(player, world, getDescription());
+        Extent extent = this.extent != null ? this.extent : new BukkitExtent(player.getWorld());
+        HistoryEntry entry = new HistoryEntry(player, extent, getDescription());
         
         // First pass: collect all blocks in the region
+        JobProfile.enter(JobProfile.Phase.SNAPSHOT);
         Map<Vector3, BlockData> originalBlocks = new HashMap<>();
         Map<Vector3, BlockData> currentBlocks = new HashMap<>();
         Map<Vector3, Material> topLayerMaterials = new HashMap<>(); // For preserving top layer
@@ -198,12 +200,17 @@ public class SmoothOperation implements Operation {
         Vector3 max = region.getMaximumPoint();
         
         // Collect all blocks in the region plus a 2-block border for neighborhood calculations
-        for (int x = min.getX() - 2; x <= max.getX() + 2; x++) {
-            for (int y = min.getY() - 2; y <= max.getY() + 2; y++) {
-                for (int z = min.getZ() - 2; z <= max.getZ() + 2; z++) {
+        Vector3 from = min.subtract(new Vector3(2, 2, 2));
+        Vector3 to = max.add(new Vector3(2, 2, 2));
+        BlockData[] snapshot = extent.getBlocks(from, to);
+        int width = to.getX() - from.getX() + 1;
+        int length = to.getZ() - from.getZ() + 1;
+        
+        for (int x = from.getX(); x <= to.getX(); x++) {
+            for (int y = from.getY(); y <= to.getY(); y++) {
+                for (int z = from.getZ(); z <= to.getZ(); z++) {
                     Vector3 pos = new Vector3(x, y, z);
-                    Block block = pos.toBlock(world);
-                    BlockData blockData = block.getBlockData();
+                    BlockData blockData = snapshot[((y - from.getY()) * length + (z - from.getZ())) * width + (x - from.getX())];
                     
                     // Store all blocks including those outside the region (for neighborhood calculations)
                     currentBlocks.put(pos, blockData);
@@ -236,6 +243,7 @@ public class SmoothOperation implements Operation {
         }
         
         // Execute multiple smoothing iterations
+        JobProfile.enter(JobProfile.Phase.PLAN);
         for (int iter = 0; iter < iterations; iter++) {
             Map<Vector3, BlockData> newBlocks = new HashMap<>();
             
@@ -302,8 +310,8 @@ public class SmoothOperation implements Operation {
         }
         
         // Apply the changes and record history
+        JobProfile.enter(JobProfile.Phase.APPLY);
         for (Vector3 pos : originalBlocks.keySet()) {
-            Block block = pos.toBlock(world);
             BlockData originalData = originalBlocks.get(pos);
             BlockData newData = currentBlocks.get(pos);
             
@@ -312,14 +320,9 @@ public class SmoothOperation implements Operation {
                 continue;
             }
             
-            // Save the previous state for undo
-            entry.addBlockState(pos, block.getState(), null);
-            
-            // Set the block
-            block.setBlockData(newData);
-            
-            // Save the new state for redo
-            entry.addBlockState(pos, null, block.getState());
+            // Set the block and record it for undo
+            extent.setBlock(pos, newData);
+            entry.addBlock(pos, originalData, newData);
         }
         
         return entry;
@@ -549,4 +552,15 @@ public class SmoothOperation implements Operation {
     public int getVolume() {
         return region.getVolume();
     }
+    
+    @Override
+    public String getCostKey() {
+        // Every iteration revisits the whole region, so cost scales with the iteration count
+        return "SmoothOperation-i" + iterations;
+    }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
 } 
\ No newline at end of file
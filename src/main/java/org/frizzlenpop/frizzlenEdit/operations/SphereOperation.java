@@ -1,14 +1,12 @@
 package org.frizzlenpop.frizzlenEdit.operations;
 
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
 import org.frizzlenpop.frizzlenEdit.masks.Mask;
 import org.frizzlenpop.frizzlenEdit.patterns.Pattern;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
 
 /**
  * Operation that creates a sphere of blocks.
@@ -54,8 +52,8 @@ public class SphereOperation extends AbstractOperation {
     
     @Override
     public HistoryEntry execute() {
-        World world = player.getWorld();
-        HistoryEntry entry = createHistoryEntry(world);
+        Extent extent = getExtent(player.getWorld());
+        HistoryEntry entry = createHistoryEntry(extent);
         int affected = 0;
         
         // Create a bounding box to iterate over
@@ -76,25 +74,19 @@ public class SphereOperation extends AbstractOperation {
                         // For hollow spheres, only points at the edge are included
                         if (!hollow || distanceSquared >= hollowRadiusSquared) {
                             Vector3 pos = new Vector3(x, y, z);
-                            Block block = world.getBlockAt(x, y, z);
                             
                             // Check if the block matches the mask
-                            if (!matchesMask(block)) {
+                            if (!matchesMask(extent, pos)) {
                                 continue;
                             }
                             
-                            BlockState oldState = block.getState();
-                            BlockData newData = pattern.getBlockData(block.getLocation());
+                            BlockData oldData = extent.getBlock(pos);
+                            BlockData newData = pattern.getBlockData(pos.toLocation(extent.getWorld()));
                             
-                            if (newData != null && !oldState.getBlockData().equals(newData)) {
-                                // Save the old state for undo
-                                entry.addBlockState(pos, oldState, null);
-                                
-                                // Set the new block data
-                                block.setBlockData(newData);
-                                
-                                // Save the new state for redo
-                                entry.addBlockState(pos, null, block.getState());
+                            if (newData != null && !oldData.equals(newData)) {
+                                // Set the new block data and record it for undo
+                                extent.setBlock(pos, newData);
+                                entry.addBlock(pos, oldData, newData);
                                 
                                 affected++;
                             }
@@ -0,0 +1,48 @@
+package org.frizzlenpop.frizzlenEdit.scheduler;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * The real scheduler, backed by the Bukkit scheduler of the server.
+ */
+public class BukkitTaskScheduler implements TaskScheduler {
+    private final Plugin plugin;
+    
+    /**
+     * Create a new Bukkit task scheduler.
+     * @param plugin The plugin the tasks belong to
+     */
+    public BukkitTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @Override
+    public ScheduledTask runTask(Runnable task) {
+        return wrap(plugin.getServer().getScheduler().runTask(plugin, task));
+    }
+    
+    @Override
+    public ScheduledTask runTaskLater(Runnable task, long delay) {
+        return wrap(plugin.getServer().getScheduler().runTaskLater(plugin, task, delay));
+    }
+    
+    @Override
+    public ScheduledTask runTaskTimer(Runnable task, long delay, long period) {
+        return wrap(plugin.getServer().getScheduler().runTaskTimer(plugin, task, delay, period));
+    }
+    
+    private static ScheduledTask wrap(BukkitTask task) {
+        return new ScheduledTask() {
+            @Override
+            public void cancel() {
+                task.cancel();
+            }
+            
+            @Override
+            public boolean isCancelled() {
+                return task.isCancelled();
+            }
+        };
+    }
+} 
\ No newline at end of file
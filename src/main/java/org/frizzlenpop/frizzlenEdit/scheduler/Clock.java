@@ -0,0 +1,20 @@
+package org.frizzlenpop.frizzlenEdit.scheduler;
+
+/**
+ * A source of time. Code that measures how long work takes reads the time from here
+ * instead of from {@link System}, so it can be run against virtual time.
+ */
+public interface Clock {
+    
+    /**
+     * Get the current value of a monotonic timer, for measuring elapsed time.
+     * @return The time in nanoseconds
+     */
+    long nanoTime();
+    
+    /**
+     * Get the current wall clock time.
+     * @return The time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+} 
\ No newline at end of file
@@ -0,0 +1,18 @@
+package org.frizzlenpop.frizzlenEdit.scheduler;
+
+/**
+ * A task handed to a {@link TaskScheduler}.
+ */
+public interface ScheduledTask {
+    
+    /**
+     * Stop the task from running again.
+     */
+    void cancel();
+    
+    /**
+     * Check if the task has been cancelled.
+     * @return True if the task is cancelled
+     */
+    boolean isCancelled();
+} 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package org.frizzlenpop.frizzlenEdit.scheduler;
+
+/**
+ * The real clock, backed by {@link System}.
+ */
+public final class SystemClock implements Clock {
+    public static final SystemClock INSTANCE = new SystemClock();
+    
+    private SystemClock() {
+    }
+    
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+    
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+} 
\ No newline at end of file
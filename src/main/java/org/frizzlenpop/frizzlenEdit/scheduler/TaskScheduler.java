@@ -0,0 +1,33 @@
+package org.frizzlenpop.frizzlenEdit.scheduler;
+
+/**
+ * Runs tasks on the main thread, counted in server ticks. Work that is spread over ticks
+ * is scheduled through this instead of the Bukkit scheduler, so it can also be driven by
+ * a simulated server.
+ */
+public interface TaskScheduler {
+    
+    /**
+     * Run a task on the next tick.
+     * @param task The task
+     * @return The scheduled task
+     */
+    ScheduledTask runTask(Runnable task);
+    
+    /**
+     * Run a task once after a delay.
+     * @param task The task
+     * @param delay The delay in ticks
+     * @return The scheduled task
+     */
+    ScheduledTask runTaskLater(Runnable task, long delay);
+    
+    /**
+     * Run a task repeatedly until it is cancelled.
+     * @param task The task
+     * @param delay The delay before the first run, in ticks
+     * @param period The ticks between runs
+     * @return The scheduled task
+     */
+    ScheduledTask runTaskTimer(Runnable task, long delay, long period);
+} 
\ No newline at end of file
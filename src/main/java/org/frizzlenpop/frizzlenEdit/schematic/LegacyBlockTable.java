@@ -0,0 +1,119 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.bukkit.Bukkit;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps pre-1.13 block ids and data values to modern block states, from the table in
+ * legacy-blocks.txt. Each id and data value is resolved once, the first time it is asked for.
+ */
+final class LegacyBlockTable {
+    // Legacy ids go up to 4095 with the AddBlocks extension; 16 data values each
+    static final int KEYS = 4096 * 16;
+    static final String AIR = "minecraft:air";
+    
+    private static final String RESOURCE = "/legacy-blocks.txt";
+    private static volatile LegacyBlockTable instance;
+    
+    // Candidate states by key (id << 4 | data), or by id with data -1 for the id's default
+    private final String[] exact = new String[KEYS];
+    private final String[] defaults = new String[4096];
+    
+    // States resolved so far, by key
+    private final String[] resolved = new String[KEYS];
+    
+    private LegacyBlockTable() throws IOException {
+        InputStream in = LegacyBlockTable.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IOException("Missing " + RESOURCE);
+        }
+        
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                String key = line.substring(0, space);
+                String states = line.substring(space + 1).trim();
+                
+                int colon = key.indexOf(':');
+                if (colon < 0) {
+                    defaults[Integer.parseInt(key)] = states;
+                } else {
+                    int id = Integer.parseInt(key.substring(0, colon));
+                    int data = Integer.parseInt(key.substring(colon + 1));
+                    exact[id << 4 | data] = states;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the table, reading it on first use.
+     * @return The table
+     * @throws IOException If the table can't be read
+     */
+    static LegacyBlockTable get() throws IOException {
+        LegacyBlockTable table = instance;
+        if (table == null) {
+            synchronized (LegacyBlockTable.class) {
+                table = instance;
+                if (table == null) {
+                    table = new LegacyBlockTable();
+                    instance = table;
+                }
+            }
+        }
+        return table;
+    }
+    
+    /**
+     * Get the modern block state of a legacy block.
+     * @param id The legacy id, from 0 to 4095
+     * @param data The data value, from 0 to 15
+     * @return The block state, or null if the table has nothing for the id
+     */
+    String resolve(int id, int data) {
+        int key = id << 4 | data;
+        String state = resolved[key];
+        if (state == null) {
+            String candidates = exact[key] != null ? exact[key] : defaults[id];
+            if (candidates == null) {
+                return null;
+            }
+            state = pick(candidates);
+            resolved[key] = state;
+        }
+        return state;
+    }
+    
+    /**
+     * Pick the first of a "|"-separated list of states that the server knows.
+     */
+    private static String pick(String candidates) {
+        String[] states = candidates.split("\\|");
+        for (String state : states) {
+            try {
+                Bukkit.createBlockData(state);
+                return state;
+            } catch (IllegalArgumentException e) {
+                // Named differently on this version; try the next one
+            } catch (RuntimeException e) {
+                // No server to check against, as in benchmarks; trust the first
+                return states[0];
+            }
+        }
+        Logger.debug("No known block state among " + Arrays.toString(states));
+        return states[states.length - 1];
+    }
+} 
\ No newline at end of file
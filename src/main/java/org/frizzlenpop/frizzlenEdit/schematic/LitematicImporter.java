@@ -0,0 +1,452 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.utils.NBTReader;
+import org.frizzlenpop.frizzlenEdit.world.EntityData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Converts Litematica schematics (.litematic) to the sectioned format.
+ *
+ * Every region of the file is read tag by tag and kept as its bit-packed block states, which
+ * are unpacked only as the sections are written. The regions are placed in the box that
+ * encloses all of them; where they overlap, the later region wins. Block entities and
+ * entities are kept as they are, as Litematica already writes them as modern NBT.
+ */
+final class LitematicImporter {
+    private LitematicImporter() {
+    }
+    
+    /**
+     * One region of a Litematica schematic.
+     */
+    private static final class Region {
+        // Offset of the region's minimum corner within the enclosing box, once known
+        int minX;
+        int minY;
+        int minZ;
+        int[] position;
+        int[] size;
+        int sizeX;
+        int sizeY;
+        int sizeZ;
+        int[] paletteIds;
+        long[] states;
+        int bits;
+        long mask;
+        // Block entities, relative to the region's minimum corner, and their NBT
+        final List<int[]> blockEntityPositions = new ArrayList<>();
+        final List<byte[]> blockEntityNbt = new ArrayList<>();
+        // Entities, relative to the region's position, and their NBT
+        final List<double[]> entityPositions = new ArrayList<>();
+        final List<byte[]> entityNbt = new ArrayList<>();
+        
+        /**
+         * Check if a position of the enclosing box is inside this region.
+         */
+        boolean contains(int x, int y, int z) {
+            int rx = x - minX;
+            int ry = y - minY;
+            int rz = z - minZ;
+            return rx >= 0 && ry >= 0 && rz >= 0 && rx < sizeX && ry < sizeY && rz < sizeZ;
+        }
+        
+        /**
+         * Get the palette index of a block, relative to the region's minimum corner.
+         */
+        int get(int x, int y, int z) {
+            long index = ((long) y * sizeZ + z) * sizeX + x;
+            long bit = index * bits;
+            int start = (int) (bit >> 6);
+            int end = (int) ((bit + bits - 1) >> 6);
+            int offset = (int) (bit & 63);
+            if (start >= states.length || end >= states.length) {
+                return 0;
+            }
+            long value = states[start] >>> offset;
+            if (start != end) {
+                // The entry runs over into the next long
+                value |= states[end] << (64 - offset);
+            }
+            return (int) (value & mask);
+        }
+    }
+    
+    /**
+     * Convert a Litematica schematic.
+     * @param source The .litematic file
+     * @param target The sectioned file to write
+     * @param compressionLevel The deflate level of the sections
+     * @throws IOException If the source can't be read or is not a Litematica schematic
+     */
+    static void convert(File source, File target, int compressionLevel) throws IOException {
+        List<Region> regions = new ArrayList<>();
+        List<String> palette = new ArrayList<>();
+        palette.add(LegacyBlockTable.AIR);
+        Map<String, Integer> ids = new HashMap<>();
+        ids.put(LegacyBlockTable.AIR, 0);
+        String author = null;
+        long created = 0;
+        
+        try (NBTReader reader = NBTReader.open(source)) {
+            reader.readRoot();
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                if (reader.getName().equals("Regions") && type == NBTReader.TAG_COMPOUND) {
+                    byte regionType;
+                    while ((regionType = reader.nextTag()) != NBTReader.TAG_END) {
+                        if (regionType != NBTReader.TAG_COMPOUND) {
+                            reader.skip(regionType);
+                            continue;
+                        }
+                        regions.add(readRegion(reader, palette, ids));
+                    }
+                } else if (reader.getName().equals("Metadata") && type == NBTReader.TAG_COMPOUND) {
+                    byte entryType;
+                    while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+                        if (reader.getName().equals("Author") && entryType == NBTReader.TAG_STRING) {
+                            author = reader.readString();
+                        } else if (reader.getName().equals("TimeCreated") && entryType == NBTReader.TAG_LONG) {
+                            created = reader.readLong(entryType);
+                        } else {
+                            reader.skip(entryType);
+                        }
+                    }
+                } else {
+                    reader.skip(type);
+                }
+            }
+        }
+        if (regions.isEmpty()) {
+            throw new IOException("Invalid litematic file: No regions");
+        }
+        
+        // The box enclosing every region; a negative size grows the region from its position down
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (Region region : regions) {
+            int[] min = new int[3];
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = region.position[axis] + (region.size[axis] < 0 ? region.size[axis] + 1 : 0);
+            }
+            region.minX = min[0];
+            region.minY = min[1];
+            region.minZ = min[2];
+            minX = Math.min(minX, min[0]);
+            minY = Math.min(minY, min[1]);
+            minZ = Math.min(minZ, min[2]);
+            maxX = Math.max(maxX, min[0] + region.sizeX - 1);
+            maxY = Math.max(maxY, min[1] + region.sizeY - 1);
+            maxZ = Math.max(maxZ, min[2] + region.sizeZ - 1);
+        }
+        for (Region region : regions) {
+            region.minX -= minX;
+            region.minY -= minY;
+            region.minZ -= minZ;
+        }
+        
+        Region[] all = regions.toArray(new Region[0]);
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        int length = maxZ - minZ + 1;
+        
+        // A block entity only counts if no later region covers its block
+        Map<Integer, byte[]> blockEntities = new HashMap<>();
+        for (int i = 0; i < all.length; i++) {
+            Region region = all[i];
+            for (int j = 0; j < region.blockEntityPositions.size(); j++) {
+                int[] position = region.blockEntityPositions.get(j);
+                int x = region.minX + position[0];
+                int y = region.minY + position[1];
+                int z = region.minZ + position[2];
+                if (!region.contains(x, y, z)) {
+                    continue;
+                }
+                boolean covered = false;
+                for (int k = i + 1; k < all.length && !covered; k++) {
+                    covered = all[k].contains(x, y, z);
+                }
+                if (!covered) {
+                    blockEntities.put((y * length + z) * width + x, region.blockEntityNbt.get(j));
+                }
+            }
+        }
+        
+        // Entities are relative to the corner the region was selected from, which is its
+        // maximum corner on the axes where its size is negative
+        List<EntityData> entities = new ArrayList<>();
+        for (Region region : all) {
+            double originX = region.minX - (region.size[0] < 0 ? region.size[0] + 1 : 0);
+            double originY = region.minY - (region.size[1] < 0 ? region.size[1] + 1 : 0);
+            double originZ = region.minZ - (region.size[2] < 0 ? region.size[2] + 1 : 0);
+            for (int i = 0; i < region.entityPositions.size(); i++) {
+                double[] position = region.entityPositions.get(i);
+                entities.add(new EntityData(originX + position[0], originY + position[1], originZ + position[2], 
+                        region.entityNbt.get(i)));
+            }
+        }
+        
+        if (created == 0) {
+            created = SchematicManager.SchematicFormat.getCreationTime(source, source.lastModified());
+        }
+        SectionedSchematicWriter.write(width, height, length, palette, (x, y, z) -> {
+            for (int i = all.length - 1; i >= 0; i--) {
+                Region region = all[i];
+                int rx = x - region.minX;
+                int ry = y - region.minY;
+                int rz = z - region.minZ;
+                if (rx >= 0 && ry >= 0 && rz >= 0 && rx < region.sizeX && ry < region.sizeY && rz < region.sizeZ) {
+                    int local = region.get(rx, ry, rz);
+                    return local < region.paletteIds.length ? region.paletteIds[local] : 0;
+                }
+            }
+            return 0;
+        }, blockEntities, entities, null, target, compressionLevel, author, created);
+    }
+    
+    /**
+     * Read what the metadata of a Litematica schematic says about it, without reading its
+     * regions. Litematica writes the metadata first, so only the start of the file is read.
+     * @param source The .litematic file
+     * @param name The name of the schematic
+     * @return The info, with the palette size left unknown until the file is converted
+     * @throws IOException If the source can't be read or has no metadata
+     */
+    static SchematicInfo readInfo(File source, String name) throws IOException {
+        int[] size = null;
+        long blocks = -1;
+        String author = null;
+        long created = 0;
+        
+        try (NBTReader reader = NBTReader.open(source)) {
+            reader.readRoot();
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                if (!reader.getName().equals("Metadata") || type != NBTReader.TAG_COMPOUND) {
+                    reader.skip(type);
+                    continue;
+                }
+                byte entryType;
+                while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+                    switch (reader.getName()) {
+                        case "EnclosingSize":
+                            size = readVector(reader, entryType);
+                            break;
+                        case "TotalBlocks":
+                            blocks = reader.readLong(entryType);
+                            break;
+                        case "Author":
+                            if (entryType == NBTReader.TAG_STRING) {
+                                author = reader.readString();
+                            } else {
+                                reader.skip(entryType);
+                            }
+                            break;
+                        case "TimeCreated":
+                            created = reader.readLong(entryType);
+                            break;
+                        default:
+                            reader.skip(entryType);
+                            break;
+                    }
+                }
+                break;
+            }
+        }
+        
+        if (size == null) {
+            throw new IOException("Invalid litematic file: No enclosing size in the metadata");
+        }
+        long modified = source.lastModified();
+        if (created == 0) {
+            created = SchematicManager.SchematicFormat.getCreationTime(source, modified);
+        }
+        return new SchematicInfo(name, Math.abs(size[0]), Math.abs(size[1]), Math.abs(size[2]), -1, blocks, 0, 
+                source.length(), author, created, modified);
+    }
+    
+    /**
+     * Read one region compound, adding its block states to the shared palette.
+     */
+    private static Region readRegion(NBTReader reader, List<String> palette, Map<String, Integer> ids) throws IOException {
+        Region region = new Region();
+        byte type;
+        while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+            switch (reader.getName()) {
+                case "Position":
+                    region.position = readVector(reader, type);
+                    break;
+                case "Size":
+                    region.size = readVector(reader, type);
+                    break;
+                case "BlockStatePalette":
+                    region.paletteIds = readPalette(reader, type, palette, ids);
+                    break;
+                case "BlockStates":
+                    if (type != NBTReader.TAG_LONG_ARRAY) {
+                        throw new IOException("Invalid litematic file: BlockStates is not a long array");
+                    }
+                    region.states = reader.readLongs(reader.readArrayLength());
+                    break;
+                case "TileEntities":
+                    readBlockEntities(reader, type, region);
+                    break;
+                case "Entities":
+                    SchematicManager.SchematicFormat.readNbtList(reader, type, region.entityPositions, region.entityNbt);
+                    break;
+                default:
+                    reader.skip(type);
+                    break;
+            }
+        }
+        
+        if (region.position == null || region.size == null || region.paletteIds == null || region.states == null) {
+            throw new IOException("Invalid litematic file: Region is missing its position, size, palette or blocks");
+        }
+        region.sizeX = Math.abs(region.size[0]);
+        region.sizeY = Math.abs(region.size[1]);
+        region.sizeZ = Math.abs(region.size[2]);
+        if (region.sizeX == 0 || region.sizeY == 0 || region.sizeZ == 0) {
+            throw new IOException("Invalid litematic file: Empty region");
+        }
+        
+        // Litematica packs entries back to back across longs, at least 2 bits each
+        region.bits = Math.max(2, 32 - Integer.numberOfLeadingZeros(region.paletteIds.length - 1));
+        region.mask = (1L << region.bits) - 1;
+        return region;
+    }
+    
+    /**
+     * Read a region's block entities: compounds with the position of their block in x, y
+     * and z, and otherwise the block entity's own NBT, which is copied as it is.
+     */
+    private static void readBlockEntities(NBTReader reader, byte type, Region region) throws IOException {
+        if (type != NBTReader.TAG_LIST) {
+            reader.skip(type);
+            return;
+        }
+        byte elementType = reader.readListType();
+        int count = reader.readArrayLength();
+        for (int i = 0; i < count; i++) {
+            if (elementType != NBTReader.TAG_COMPOUND) {
+                reader.skip(elementType);
+                continue;
+            }
+            
+            int[] position = new int[3];
+            int found = 0;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            byte entryType;
+            while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+                String name = reader.getName();
+                if (name.length() == 1 && name.charAt(0) >= 'x' && name.charAt(0) <= 'z' && entryType == NBTReader.TAG_INT) {
+                    position[name.charAt(0) - 'x'] = reader.readInt(entryType);
+                    found++;
+                } else {
+                    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(entryType);
+                    out.writeShort(nameBytes.length);
+                    out.write(nameBytes);
+                    reader.copy(entryType, out);
+                }
+            }
+            out.writeByte(NBTReader.TAG_END);
+            
+            if (found == 3) {
+                region.blockEntityPositions.add(position);
+                region.blockEntityNbt.add(bytes.toByteArray());
+            }
+        }
+    }
+    
+    private static int[] readVector(NBTReader reader, byte type) throws IOException {
+        if (type != NBTReader.TAG_COMPOUND) {
+            throw new IOException("Invalid litematic file: " + reader.getName() + " is not a compound");
+        }
+        int[] vector = new int[3];
+        byte entryType;
+        while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+            String axis = reader.getName();
+            if (axis.length() == 1 && axis.charAt(0) >= 'x' && axis.charAt(0) <= 'z') {
+                vector[axis.charAt(0) - 'x'] = reader.readInt(entryType);
+            } else {
+                reader.skip(entryType);
+            }
+        }
+        return vector;
+    }
+    
+    /**
+     * Read a region's palette, mapping each entry to its id in the shared palette.
+     */
+    private static int[] readPalette(NBTReader reader, byte type, List<String> palette, Map<String, Integer> ids) throws IOException {
+        if (type != NBTReader.TAG_LIST) {
+            throw new IOException("Invalid litematic file: BlockStatePalette is not a list");
+        }
+        byte elementType = reader.readListType();
+        int count = reader.readArrayLength();
+        if (count > 0 && elementType != NBTReader.TAG_COMPOUND) {
+            throw new IOException("Invalid litematic file: BlockStatePalette entries are not compounds");
+        }
+        
+        int[] paletteIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            String name = LegacyBlockTable.AIR;
+            // Sorted, so equal states written in a different order share an id
+            Map<String, String> properties = new TreeMap<>();
+            byte entryType;
+            while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+                if (reader.getName().equals("Name") && entryType == NBTReader.TAG_STRING) {
+                    name = reader.readString();
+                } else if (reader.getName().equals("Properties") && entryType == NBTReader.TAG_COMPOUND) {
+                    byte propertyType;
+                    while ((propertyType = reader.nextTag()) != NBTReader.TAG_END) {
+                        if (propertyType == NBTReader.TAG_STRING) {
+                            properties.put(reader.getName(), reader.readString());
+                        } else {
+                            reader.skip(propertyType);
+                        }
+                    }
+                } else {
+                    reader.skip(entryType);
+                }
+            }
+            
+            StringBuilder state = new StringBuilder(name);
+            if (!properties.isEmpty()) {
+                state.append('[');
+                for (Map.Entry<String, String> property : properties.entrySet()) {
+                    if (state.charAt(state.length() - 1) != '[') {
+                        state.append(',');
+                    }
+                    state.append(property.getKey()).append('=').append(property.getValue());
+                }
+                state.append(']');
+            }
+            
+            String key = state.toString();
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = palette.size();
+                palette.add(key);
+                ids.put(key, id);
+            }
+            paletteIds[i] = id;
+        }
+        return paletteIds;
+    }
+} 
\ No newline at end of file
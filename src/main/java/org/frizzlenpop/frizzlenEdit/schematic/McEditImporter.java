@@ -0,0 +1,229 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.NBTReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Converts legacy MCEdit schematics (.schematic, before 1.13) to the sectioned format.
+ *
+ * The file is read tag by tag; only the Blocks, AddBlocks and Data arrays are kept, as they
+ * are in the file, and the ids are turned into block states through {@link LegacyBlockTable}
+ * as the sections are written. Block entities and entities are left out: their NBT is in the
+ * pre-1.13 format, which would need the server's data fixers to upgrade, so they are only
+ * counted and reported.
+ */
+final class McEditImporter {
+    private McEditImporter() {
+    }
+    
+    /**
+     * Convert a legacy schematic.
+     * @param source The .schematic file
+     * @param target The sectioned file to write
+     * @param compressionLevel The deflate level of the sections
+     * @throws IOException If the source can't be read or is not a legacy schematic
+     */
+    static void convert(File source, File target, int compressionLevel) throws IOException {
+        int width = -1;
+        int height = -1;
+        int length = -1;
+        byte[] blocks = null;
+        byte[] add = null;
+        byte[] data = null;
+        int blockEntities = 0;
+        int entities = 0;
+        
+        try (NBTReader reader = NBTReader.open(source)) {
+            if (!reader.readRoot().equals("Schematic")) {
+                throw new IOException("Invalid schematic file: Root tag name is not 'Schematic'");
+            }
+            
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                switch (reader.getName()) {
+                    case "Width":
+                        width = reader.readInt(type);
+                        break;
+                    case "Height":
+                        height = reader.readInt(type);
+                        break;
+                    case "Length":
+                        length = reader.readInt(type);
+                        break;
+                    case "Materials":
+                        String materials = reader.readString();
+                        if (!materials.equals("Alpha")) {
+                            throw new IOException("Unsupported schematic materials: " + materials);
+                        }
+                        break;
+                    case "Blocks":
+                        blocks = readBytes(reader, type);
+                        break;
+                    case "AddBlocks":
+                        add = readBytes(reader, type);
+                        break;
+                    case "Data":
+                        data = readBytes(reader, type);
+                        break;
+                    case "TileEntities":
+                        blockEntities = skipList(reader, type);
+                        break;
+                    case "Entities":
+                        entities = skipList(reader, type);
+                        break;
+                    default:
+                        reader.skip(type);
+                        break;
+                }
+            }
+        }
+        
+        if (width <= 0 || height <= 0 || length <= 0) {
+            throw new IOException("Invalid schematic file: Missing or invalid dimensions");
+        }
+        if (blocks == null || data == null) {
+            throw new IOException("Invalid schematic file: Missing Blocks or Data");
+        }
+        long volume = (long) width * height * length;
+        if (blocks.length < volume || data.length < volume) {
+            throw new IOException("Invalid schematic file: Block data is shorter than the dimensions");
+        }
+        
+        // Give every id and data value in use a palette entry; air is always 0
+        LegacyBlockTable table = LegacyBlockTable.get();
+        List<String> palette = new ArrayList<>();
+        palette.add(LegacyBlockTable.AIR);
+        Map<String, Integer> ids = new HashMap<>();
+        ids.put(LegacyBlockTable.AIR, 0);
+        int[] keyIds = new int[LegacyBlockTable.KEYS];
+        Arrays.fill(keyIds, -1);
+        TreeSet<Integer> unknown = new TreeSet<>();
+        
+        for (int index = 0; index < volume; index++) {
+            int key = key(blocks, add, data, index);
+            if (keyIds[key] >= 0) {
+                continue;
+            }
+            String state = table.resolve(key >> 4, key & 15);
+            if (state == null) {
+                unknown.add(key >> 4);
+                state = LegacyBlockTable.AIR;
+            }
+            Integer id = ids.get(state);
+            if (id == null) {
+                id = palette.size();
+                palette.add(state);
+                ids.put(state, id);
+            }
+            keyIds[key] = id;
+        }
+        if (!unknown.isEmpty()) {
+            Logger.warning("Legacy block ids " + unknown + " in " + source.getName() + " have no modern block; imported as air");
+        }
+        if (blockEntities > 0 || entities > 0) {
+            Logger.warning("Dropped " + blockEntities + " block entities and " + entities + " entities from " + source.getName() + 
+                    "; legacy NBT can't be imported, so containers, signs and the like are empty");
+        }
+        
+        byte[] blockBytes = blocks;
+        byte[] addBytes = add;
+        byte[] dataBytes = data;
+        int w = width;
+        int l = length;
+        long created = SchematicManager.SchematicFormat.getCreationTime(source, source.lastModified());
+        SectionedSchematicWriter.write(width, height, length, palette,
+            (x, y, z) -> keyIds[key(blockBytes, addBytes, dataBytes, (y * l + z) * w + x)],
+            target, compressionLevel, null, created);
+    }
+    
+    /**
+     * Read the dimensions of a legacy schematic, stopping as soon as they are known. The block
+     * counts aren't in the header, so they are left unknown until the file is converted.
+     * @param source The .schematic file
+     * @param name The name of the schematic
+     * @return The info
+     * @throws IOException If the source can't be read or is not a legacy schematic
+     */
+    static SchematicInfo readInfo(File source, String name) throws IOException {
+        int width = -1;
+        int height = -1;
+        int length = -1;
+        
+        try (NBTReader reader = NBTReader.open(source)) {
+            if (!reader.readRoot().equals("Schematic")) {
+                throw new IOException("Invalid schematic file: Root tag name is not 'Schematic'");
+            }
+            
+            byte type;
+            while ((width < 0 || height < 0 || length < 0) && (type = reader.nextTag()) != NBTReader.TAG_END) {
+                switch (reader.getName()) {
+                    case "Width":
+                        width = reader.readInt(type);
+                        break;
+                    case "Height":
+                        height = reader.readInt(type);
+                        break;
+                    case "Length":
+                        length = reader.readInt(type);
+                        break;
+                    default:
+                        reader.skip(type);
+                        break;
+                }
+            }
+        }
+        
+        if (width <= 0 || height <= 0 || length <= 0) {
+            throw new IOException("Invalid schematic file: Missing or invalid dimensions");
+        }
+        long modified = source.lastModified();
+        return new SchematicInfo(name, width, height, length, -1, -1, 0, source.length(), null,
+                SchematicManager.SchematicFormat.getCreationTime(source, modified), modified);
+    }
+    
+    /**
+     * Get the legacy id and data value of a block, packed as id << 4 | data.
+     */
+    private static int key(byte[] blocks, byte[] add, byte[] data, int index) {
+        int id = blocks[index] & 0xFF;
+        if (add != null && (index >> 1) < add.length) {
+            // Two ids share each byte of AddBlocks, the first in the low nibble
+            int nibble = (index & 1) == 0 ? add[index >> 1] & 0x0F : (add[index >> 1] & 0xF0) >> 4;
+            id |= nibble << 8;
+        }
+        return id << 4 | (data[index] & 0x0F);
+    }
+    
+    private static byte[] readBytes(NBTReader reader, byte type) throws IOException {
+        if (type != NBTReader.TAG_BYTE_ARRAY) {
+            throw new IOException("Invalid schematic file: " + reader.getName() + " is not a byte array");
+        }
+        return reader.readBytes(reader.readArrayLength());
+    }
+    
+    /**
+     * Skip a list of compounds, counting them.
+     * @return The number of elements, or 0 if the tag is not a list
+     */
+    private static int skipList(NBTReader reader, byte type) throws IOException {
+        if (type != NBTReader.TAG_LIST) {
+            reader.skip(type);
+            return 0;
+        }
+        byte elementType = reader.readListType();
+        int count = reader.readArrayLength();
+        for (int i = 0; i < count; i++) {
+            reader.skip(elementType);
+        }
+        return count;
+    }
+} 
\ No newline at end of file
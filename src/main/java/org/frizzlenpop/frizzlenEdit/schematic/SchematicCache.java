@@ -0,0 +1,265 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Keeps recently used schematics decoded in memory, so pasting the same schematic again
+ * doesn't read and decode its file again. Entries are evicted least recently used first
+ * once their estimated size goes over the limit.
+ *
+ * Cached clipboards are never handed out themselves: every caller gets a shared copy
+ * ({@link Clipboard#share()}), which it may rotate or change without affecting the cache.
+ * An entry is only used while its file has the modification time and size it was read
+ * with, and the schematics folder is watched so changed files are dropped right away.
+ */
+public class SchematicCache {
+    private final long maxBytes;
+    
+    // Entries by file, least recently used first; guarded by this
+    private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    
+    private WatchService watchService;
+    private Thread watchThread;
+    private Consumer<File> changeListener;
+    
+    /**
+     * Create a new schematic cache.
+     * @param maxBytes The estimated size the cache may hold, or 0 to cache nothing
+     */
+    public SchematicCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+    
+    /**
+     * Get a schematic, reading it from its file if it isn't cached or the file has changed.
+     * @param file The schematic file
+     * @return A clipboard of the schematic, which the caller may change
+     * @throws IOException If the file can't be read
+     */
+    public Clipboard get(File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        long modified = key.lastModified();
+        long length = key.length();
+        
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.modified == modified && entry.length == length) {
+                hits++;
+                return entry.clipboard.share();
+            }
+            misses++;
+        }
+        
+        // Decode outside the lock, so other schematics can be served meanwhile
+        Clipboard clipboard = SchematicManager.SchematicFormat.load(key);
+        if (maxBytes == 0) {
+            return clipboard;
+        }
+        
+        // Frozen before it is published, so the threads sharing it only ever read it
+        Clipboard cached = clipboard.share();
+        long bytes = cached.estimateMemoryBytes();
+        if (bytes <= maxBytes) {
+            synchronized (this) {
+                remove(key);
+                entries.put(key, new Entry(cached, modified, length, bytes));
+                totalBytes += bytes;
+                evict();
+            }
+        }
+        return clipboard;
+    }
+    
+    /**
+     * Drop a schematic from the cache, after its file was saved over or deleted.
+     * @param file The schematic file
+     */
+    public synchronized void invalidate(File file) {
+        remove(file.getAbsoluteFile());
+    }
+    
+    /**
+     * Drop every schematic from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+    
+    /**
+     * Get the number of schematics cached.
+     * @return The number of schematics
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Get the estimated memory held by the cache.
+     * @return The estimated size in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        return totalBytes;
+    }
+    
+    /**
+     * Get the estimated size the cache may hold.
+     * @return The limit in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    /**
+     * Get the number of times a schematic was served from the cache.
+     * @return The number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Get the number of times a schematic had to be read from its file.
+     * @return The number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Start watching a folder, dropping the schematics in it that are changed or deleted
+     * by anything other than this plugin.
+     * @param directory The schematics folder
+     * @param listener Also told about every changed file, on the watcher thread; null when
+     *                 changes were lost and everything may have changed
+     */
+    public synchronized void watch(File directory, Consumer<File> listener) {
+        if (watchService != null) {
+            return;
+        }
+        changeListener = listener;
+        
+        try {
+            WatchService service = directory.toPath().getFileSystem().newWatchService();
+            directory.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = service;
+        } catch (IOException | UnsupportedOperationException e) {
+            // Modification times are still checked on every read
+            Logger.warning("Could not watch the schematics folder for changes: " + e.getMessage());
+            return;
+        }
+        
+        WatchService service = watchService;
+        watchThread = new Thread(() -> runWatcher(service, directory), "FrizzlenEdit-SchematicWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+    
+    /**
+     * Stop watching and drop every schematic from the cache.
+     */
+    public void shutdown() {
+        WatchService service;
+        synchronized (this) {
+            service = watchService;
+            watchService = null;
+            watchThread = null;
+            clear();
+        }
+        
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                Logger.warning("Error closing the schematics folder watcher: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void runWatcher(WatchService service, File directory) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // Overflow loses the names of changed files, so drop them all
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        clear();
+                        notifyListener(null);
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    File file = new File(directory, name.toString());
+                    invalidate(file);
+                    notifyListener(file);
+                }
+                if (!key.reset()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shut down
+        }
+    }
+    
+    private void notifyListener(File file) {
+        Consumer<File> listener;
+        synchronized (this) {
+            listener = changeListener;
+        }
+        if (listener != null) {
+            listener.accept(file);
+        }
+    }
+    
+    private void remove(File key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.bytes;
+        }
+    }
+    
+    private void evict() {
+        Iterator<Map.Entry<File, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            totalBytes -= iterator.next().getValue().bytes;
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * A decoded schematic and the state of the file it was read from.
+     */
+    private static class Entry {
+        private final Clipboard clipboard;
+        private final long modified;
+        private final long length;
+        private final long bytes;
+        
+        private Entry(Clipboard clipboard, long modified, long length, long bytes) {
+            this.clipboard = clipboard;
+            this.modified = modified;
+            this.length = length;
+            this.bytes = bytes;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,126 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Imports schematics from other tools: legacy MCEdit .schematic and Litematica .litematic.
+ *
+ * Converting one of these is far slower than reading a native file, so each is converted
+ * once to the sectioned format and kept in the converted folder, next to the other plugin
+ * data. The copy is used for as long as the source file keeps the same modification time.
+ */
+public final class SchematicImporter {
+    // Extensions of the files that are imported
+    public static final String MCEDIT_EXTENSION = ".schematic";
+    public static final String LITEMATIC_EXTENSION = ".litematic";
+    
+    // Deflate level of converted files when there is no config to read it from
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    
+    // One lock per source, so the same file is never converted twice at once
+    private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+    
+    private SchematicImporter() {
+    }
+    
+    /**
+     * Check if a file is in a format that is imported.
+     * @param file The file
+     * @return True for .schematic and .litematic files
+     */
+    public static boolean isImported(File file) {
+        String name = file.getName();
+        return name.endsWith(MCEDIT_EXTENSION) || name.endsWith(LITEMATIC_EXTENSION);
+    }
+    
+    /**
+     * Get the sectioned copy of an imported file, converting it if there is no up to date
+     * copy yet. Reads and writes files, so must not run on the main thread.
+     * @param source The .schematic or .litematic file
+     * @return The sectioned file
+     * @throws IOException If the source can't be read or converted
+     */
+    public static File convert(File source) throws IOException {
+        File converted = convertedFile(source);
+        synchronized (locks.computeIfAbsent(converted.getAbsolutePath(), path -> new Object())) {
+            if (converted.isFile() && converted.lastModified() == source.lastModified()) {
+                return converted;
+            }
+            
+            long start = System.currentTimeMillis();
+            converted.getParentFile().mkdirs();
+            int level = compressionLevel();
+            if (source.getName().endsWith(LITEMATIC_EXTENSION)) {
+                LitematicImporter.convert(source, converted, level);
+            } else {
+                McEditImporter.convert(source, converted, level);
+            }
+            
+            // Tie the copy to this version of the source
+            converted.setLastModified(source.lastModified());
+            Logger.info("Converted " + source.getName() + " to the sectioned format in " +
+                       (System.currentTimeMillis() - start) + "ms");
+            return converted;
+        }
+    }
+    
+    /**
+     * Describe an imported file for the schematic index. The converted copy is read when it is
+     * up to date; otherwise only the source's header is, and converting is left until the
+     * schematic is first loaded.
+     * @param source The .schematic or .litematic file
+     * @return The info, with what the header doesn't say left unknown
+     * @throws IOException If the file can't be read
+     */
+    public static SchematicInfo readInfo(File source) throws IOException {
+        String name = SchematicIndex.nameOf(source);
+        if (isConverted(source)) {
+            try (SectionedSchematic schematic = SectionedSchematic.open(convertedFile(source))) {
+                return schematic.getInfo(name, source);
+            }
+        }
+        if (source.getName().endsWith(LITEMATIC_EXTENSION)) {
+            return LitematicImporter.readInfo(source, name);
+        }
+        return McEditImporter.readInfo(source, name);
+    }
+    
+    /**
+     * Check if an imported file has an up to date converted copy.
+     * @param source The .schematic or .litematic file
+     * @return True if loading it won't have to convert it
+     */
+    public static boolean isConverted(File source) {
+        File converted = convertedFile(source);
+        return converted.isFile() && converted.lastModified() == source.lastModified();
+    }
+    
+    /**
+     * Drop the converted copy of a file, after the source was deleted.
+     * @param source The .schematic or .litematic file
+     */
+    public static void invalidate(File source) {
+        File converted = convertedFile(source);
+        if (converted.exists() && !converted.delete()) {
+            Logger.debug("Could not delete converted schematic " + converted.getName());
+        }
+    }
+    
+    private static File convertedFile(File source) {
+        FrizzlenEdit plugin = FrizzlenEdit.getInstance();
+        File directory = plugin != null ? new File(plugin.getDataFolder(), "converted")
+                                        : new File(source.getAbsoluteFile().getParentFile(), ".converted");
+        return new File(directory, source.getName() + SectionedSchematic.EXTENSION);
+    }
+    
+    private static int compressionLevel() {
+        FrizzlenEdit plugin = FrizzlenEdit.getInstance();
+        return plugin != null ? plugin.getConfigManager().getSchematicCompressionLevel() : DEFAULT_COMPRESSION_LEVEL;
+    }
+} 
\ No newline at end of file
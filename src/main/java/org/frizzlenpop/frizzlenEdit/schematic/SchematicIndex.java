@@ -0,0 +1,333 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A persistent index of the schematics folder, so listing, searching and tab completion
+ * never touch the files themselves. The index is read from disk at startup, brought up to
+ * date in the background, and then kept current one file at a time as schematics are saved,
+ * deleted or changed.
+ *
+ * Entries are sorted by name and can be read from any thread. Everything that reads
+ * schematic files runs off the main thread.
+ */
+public class SchematicIndex {
+    // Extensions of the files that are indexed, native formats first
+    public static final List<String> EXTENSIONS = Arrays.asList(".schem", SectionedSchematic.EXTENSION, 
+        SectionStore.MANIFEST_EXTENSION, SchematicImporter.MCEDIT_EXTENSION, SchematicImporter.LITEMATIC_EXTENSION);
+    
+    // "FESI"
+    private static final int MAGIC = 0x46455349;
+    private static final int VERSION = 1;
+    
+    private final File directory;
+    private final File indexFile;
+    
+    // Entries by lower-case name
+    private final ConcurrentSkipListMap<String, SchematicInfo> entries = new ConcurrentSkipListMap<>();
+    private volatile boolean ready;
+    private boolean dirty;
+    
+    /**
+     * Create a new schematic index.
+     * @param directory The schematics folder
+     * @param indexFile The file the index is kept in
+     */
+    public SchematicIndex(File directory, File indexFile) {
+        this.directory = directory;
+        this.indexFile = indexFile;
+    }
+    
+    /**
+     * Read the index saved by the last run. Entries may be out of date until {@link #rebuild()}.
+     */
+    public void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(indexFile), 65536)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Logger.warning("Ignoring schematic index of an unknown version; it will be rebuilt.");
+                return;
+            }
+            
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                SchematicInfo info = new SchematicInfo(in.readUTF(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readLong(), in.readInt(), in.readLong(),
+                        in.readBoolean() ? in.readUTF() : null, in.readLong(), in.readLong());
+                entries.put(key(info.getName()), info);
+            }
+        } catch (IOException e) {
+            Logger.warning("Could not read the schematic index, it will be rebuilt: " + e.getMessage());
+            entries.clear();
+        }
+    }
+    
+    /**
+     * Bring the whole index up to date with the folder: index new and changed schematics and
+     * drop the ones that are gone. Reads files, so must not run on the main thread.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        int indexed = 0;
+        
+        File[] files = directory.listFiles((dir, name) -> isSchematic(name));
+        Set<String> present = new HashSet<>();
+        if (files != null) {
+            for (File file : files) {
+                present.add(key(nameOf(file)));
+                if (refresh(file)) {
+                    indexed++;
+                }
+            }
+        }
+        
+        for (String key : entries.keySet()) {
+            if (!present.contains(key)) {
+                entries.remove(key);
+                markDirty();
+            }
+        }
+        
+        ready = true;
+        save();
+        Logger.info("Indexed " + entries.size() + " schematics (" + indexed + " read) in " +
+                   (System.currentTimeMillis() - start) + "ms");
+    }
+    
+    /**
+     * Bring one schematic up to date, after one of its files was saved, changed or deleted.
+     * A name can have files in several formats; the entry describes the one {@link #resolve}
+     * picks, and is only dropped once none are left. Reads the file if it changed since it
+     * was indexed, so must not run on the main thread.
+     * @param file The schematic file
+     * @return True if the file was read
+     */
+    public boolean refresh(File file) {
+        if (!isSchematic(file.getName())) {
+            return false;
+        }
+        
+        String key = key(nameOf(file));
+        file = resolve(nameOf(file));
+        if (file == null) {
+            if (entries.remove(key) != null) {
+                markDirty();
+            }
+            return false;
+        }
+        
+        // Imported files are described from their header until they are converted on first load
+        SchematicInfo current = entries.get(key);
+        if (current != null && current.getModified() == file.lastModified() && current.getFileSize() == file.length() && 
+            !(current.getPaletteSize() < 0 && SchematicImporter.isConverted(file))) {
+            return false;
+        }
+        
+        try {
+            entries.put(key, SchematicManager.SchematicFormat.readInfo(file));
+            markDirty();
+            return true;
+        } catch (IOException e) {
+            // Often a file that is still being written; it is read again when it changes next
+            Logger.debug("Could not index schematic " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Find the file of a schematic, in whichever format it was saved. When a name has files
+     * in several formats, the first of {@link #EXTENSIONS} wins.
+     * @param name The name of the schematic
+     * @return The file, or null if there is no such schematic
+     */
+    public File resolve(String name) {
+        for (String extension : EXTENSIONS) {
+            File file = new File(directory, name + extension);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Drop a schematic from the index.
+     * @param name The name of the schematic
+     */
+    public void remove(String name) {
+        if (entries.remove(key(name)) != null) {
+            markDirty();
+        }
+    }
+    
+    /**
+     * Get a schematic by name.
+     * @param name The name, in any case
+     * @return The info, or null if it isn't indexed
+     */
+    public SchematicInfo get(String name) {
+        return entries.get(key(name));
+    }
+    
+    /**
+     * Get every schematic, sorted by name.
+     * @return The schematics
+     */
+    public List<SchematicInfo> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+    
+    /**
+     * Find the schematics whose name or author contains some text, sorted by name.
+     * @param query The text, in any case
+     * @return The matching schematics
+     */
+    public List<SchematicInfo> search(String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<SchematicInfo> result = new ArrayList<>();
+        for (SchematicInfo info : entries.values()) {
+            if (info.getName().toLowerCase(Locale.ROOT).contains(needle) ||
+                (info.getAuthor() != null && info.getAuthor().toLowerCase(Locale.ROOT).contains(needle))) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Get the names of the schematics that start with some text, for tab completion.
+     * @param prefix The start of the name, in any case
+     * @param limit The most names to return
+     * @return The names, sorted
+     */
+    public List<String> complete(String prefix, int limit) {
+        String start = key(prefix);
+        List<String> result = new ArrayList<>();
+        // Keys are sorted, so the matches are the entries from the prefix on until one doesn't match
+        for (SchematicInfo info : entries.tailMap(start, true).values()) {
+            if (result.size() >= limit || !key(info.getName()).startsWith(start)) {
+                break;
+            }
+            result.add(info.getName());
+        }
+        return result;
+    }
+    
+    /**
+     * Get the number of schematics indexed.
+     * @return The number of schematics
+     */
+    public int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Check if the index has been brought up to date with the folder since startup.
+     * @return True once the first rebuild is done
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Write the index to disk if it changed since it was last written.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(temp), 65536)))) {
+                List<SchematicInfo> all = getAll();
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(all.size());
+                for (SchematicInfo info : all) {
+                    out.writeUTF(info.getName());
+                    out.writeInt(info.getWidth());
+                    out.writeInt(info.getHeight());
+                    out.writeInt(info.getLength());
+                    out.writeInt(info.getPaletteSize());
+                    out.writeLong(info.getNonAirBlocks());
+                    out.writeInt(info.getDataVersion());
+                    out.writeLong(info.getFileSize());
+                    out.writeBoolean(info.getAuthor() != null);
+                    if (info.getAuthor() != null) {
+                        out.writeUTF(info.getAuthor());
+                    }
+                    out.writeLong(info.getCreated());
+                    out.writeLong(info.getModified());
+                }
+            }
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Logger.warning("Could not write the schematic index: " + e.getMessage());
+            markDirty();
+        }
+    }
+    
+    private synchronized void markDirty() {
+        dirty = true;
+    }
+    
+    /**
+     * Check if a file name has one of the schematic extensions.
+     * @param fileName The file name
+     * @return True if it is a schematic
+     */
+    static boolean isSchematic(String fileName) {
+        for (String extension : EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Get the name of a schematic from its file.
+     * @param file The file
+     * @return The file name without its extension
+     */
+    static String nameOf(File file) {
+        String name = file.getName();
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return name.substring(0, name.length() - extension.length());
+            }
+        }
+        return name;
+    }
+    
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+} 
\ No newline at end of file
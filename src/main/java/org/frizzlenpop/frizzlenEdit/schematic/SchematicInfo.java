@@ -0,0 +1,144 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+/**
+ * What the schematic index knows about one schematic file, read once from its header and
+ * block data so listing and searching never have to open the file. Immutable.
+ */
+public final class SchematicInfo {
+    private final String name;
+    private final int width;
+    private final int height;
+    private final int length;
+    private final int paletteSize;
+    private final long nonAirBlocks;
+    private final int dataVersion;
+    private final long fileSize;
+    private final String author;
+    private final long created;
+    private final long modified;
+    
+    /**
+     * Create the info of a schematic.
+     * @param name The name of the schematic, without its extension
+     * @param width The width
+     * @param height The height
+     * @param length The length
+     * @param paletteSize The number of different block states
+     * @param nonAirBlocks The number of blocks that aren't air
+     * @param dataVersion The Minecraft data version the blocks are from, or 0 if unknown
+     * @param fileSize The size of the file in bytes
+     * @param author The player who saved it, or null if unknown
+     * @param created When it was saved, in milliseconds since the epoch
+     * @param modified When the file was last modified, in milliseconds since the epoch
+     */
+    public SchematicInfo(String name, int width, int height, int length, int paletteSize, long nonAirBlocks,
+                         int dataVersion, long fileSize, String author, long created, long modified) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.paletteSize = paletteSize;
+        this.nonAirBlocks = nonAirBlocks;
+        this.dataVersion = dataVersion;
+        this.fileSize = fileSize;
+        this.author = author;
+        this.created = created;
+        this.modified = modified;
+    }
+    
+    /**
+     * Get the name of the schematic.
+     * @return The name, without its extension
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Get the width.
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+    
+    /**
+     * Get the height.
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * Get the length.
+     * @return The length
+     */
+    public int getLength() {
+        return length;
+    }
+    
+    /**
+     * Get the number of cells, air included.
+     * @return The volume
+     */
+    public long getVolume() {
+        return (long) width * height * length;
+    }
+    
+    /**
+     * Get the number of different block states.
+     * @return The palette size, or -1 if unknown, as for an imported file that hasn't been converted yet
+     */
+    public int getPaletteSize() {
+        return paletteSize;
+    }
+    
+    /**
+     * Get the number of blocks that aren't air.
+     * @return The number of blocks, or -1 if unknown
+     */
+    public long getNonAirBlocks() {
+        return nonAirBlocks;
+    }
+    
+    /**
+     * Get the Minecraft data version the blocks are from.
+     * @return The data version, or 0 if unknown
+     */
+    public int getDataVersion() {
+        return dataVersion;
+    }
+    
+    /**
+     * Get the size of the file.
+     * @return The size in bytes
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+    
+    /**
+     * Get the player who saved the schematic.
+     * @return The name, or null if unknown
+     */
+    public String getAuthor() {
+        return author;
+    }
+    
+    /**
+     * Get when the schematic was saved.
+     * @return The time in milliseconds since the epoch
+     */
+    public long getCreated() {
+        return created;
+    }
+    
+    /**
+     * Get when the file was last modified.
+     * @return The time in milliseconds since the epoch
+     */
+    public long getModified() {
+        return modified;
+    }
+} 
\ No newline at end of file
@@ -1,5 +1,6 @@
 package org.frizzlenpop.frizzlenEdit.schematic;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
@@ -10,24 +11,38 @@ import org.frizzlenpop.frizzlenEdit.operations.PasteOperation;
 import org.frizzlenpop.frizzlenEdit.operations.BatchPasteOperation;
 import org.frizzlenpop.frizzlenEdit.selection.Region;
 import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
 import org.frizzlenpop.frizzlenEdit.utils.NBTUtils;
+import org.frizzlenpop.frizzlenEdit.utils.NBTReader;
+import org.frizzlenpop.frizzlenEdit.utils.ParallelGZIPOutputStream;
 import org.frizzlenpop.frizzlenEdit.schematic.paste.OptimizedPasteSystem;
+import org.frizzlenpop.frizzlenEdit.schematic.paste.StreamingPasteSystem;
 import org.frizzlenpop.frizzlenEdit.utils.ServerPerformanceMonitor;
+import org.frizzlenpop.frizzlenEdit.world.EntityData;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.Map;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.util.zip.GZIPOutputStream;
 import java.io.DataOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.util.zip.GZIPInputStream;
@@ -39,8 +54,13 @@ import org.bukkit.Location;
  * Manages schematics (saving, loading, listing, etc.).
  */
 public class SchematicManager {
+    // Schematics listed per page
+    private static final int PAGE_SIZE = 10;
+    
     private final FrizzlenEdit plugin;
     private final File schematicsDir;
+    private final SchematicCache cache;
+    private final SchematicIndex index;
     
     /**
      * Create a new schematic manager.
@@ -54,6 +74,21 @@ public class SchematicManager {
         if (!schematicsDir.exists()) {
             schematicsDir.mkdirs();
         }
+        
+        // Decoded schematics kept for pasting again
+        cache = new SchematicCache(plugin.getConfigManager().getSchematicCacheSizeMb() * 1024L * 1024L);
+        
+        // The index from the last run is usable right away, and caught up in the background
+        index = new SchematicIndex(schematicsDir, new File(plugin.getDataFolder(), "schematic-index.dat"));
+        index.load();
+        cache.watch(schematicsDir, file -> plugin.runAsync(() -> {
+            if (file == null) {
+                index.rebuild();
+            } else if (index.refresh(file)) {
+                index.save();
+            }
+        }));
+        plugin.runAsync(index::rebuild);
     }
     
     /**
@@ -63,6 +98,24 @@ public class SchematicManager {
      * @param name The name of the schematic
      */
     public void saveSchematic(Player player, Region region, String name) {
+        boolean deduplicated = plugin.getConfigManager().isSchematicDeduplicatedFormat();
+        saveSchematic(player, region, name, false, deduplicated || plugin.getConfigManager().isSchematicSectionedFormat(), 
+                      deduplicated);
+    }
+    
+    /**
+     * Save a region as a schematic.
+     * @param player The player
+     * @param region The region to save
+     * @param name The name of the schematic
+     * @param export Whether to write a single gzip stream, for tools that can't read
+     *               the parallel layout, even when parallel compression is enabled
+     * @param sectioned Whether to save in the sectioned format instead of as a Sponge schematic
+     * @param deduplicated Whether a sectioned save is a manifest of sections kept in the
+     *                     section store, shared with every other schematic that has them
+     */
+    public void saveSchematic(Player player, Region region, String name, boolean export, boolean sectioned, 
+                              boolean deduplicated) {
         // Check if the region is too large
         int maxSize = plugin.getConfigManager().getClipboardSizeLimit();
         int volume = region.getVolume();
@@ -82,11 +135,39 @@ public class SchematicManager {
                 Logger.info("Player " + player.getName() + " saving schematic " + name + " (" + volume + " blocks)");
                 
                 // Copy the blocks to the clipboard
-                clipboard.copy(region, region.getWorld());
+                clipboard.copy(region, plugin.getOperationManager().getExtent(player), 
+                              plugin.getConfigManager().isClipboardCopyEntities());
                 
                 // Save the schematic
-                File file = new File(schematicsDir, name + ".schem");
-                SchematicFormat.save(clipboard, file);
+                int level = plugin.getConfigManager().getSchematicCompressionLevel();
+                String fileExtension = deduplicated ? SectionStore.MANIFEST_EXTENSION : 
+                                   sectioned ? SectionedSchematic.EXTENSION : ".schem";
+                File file = new File(schematicsDir, name + fileExtension);
+                // Replacing a manifest may leave sections no schematic uses
+                boolean sweep = SectionStore.isManifest(file) && file.exists();
+                if (sectioned) {
+                    SectionedSchematicWriter.write(clipboard, file, level, player.getName(), deduplicated);
+                } else {
+                    boolean parallel = !export && plugin.getConfigManager().isSchematicParallelCompression() && 
+                                      volume >= plugin.getConfigManager().getSchematicParallelMinBlocks();
+                    SchematicFormat.save(clipboard, file, level, player.getName(), parallel);
+                }
+                cache.invalidate(file);
+                
+                // A name has one native file; drop a copy saved in the other format
+                for (String extension : SchematicIndex.EXTENSIONS) {
+                    File other = new File(schematicsDir, name + extension);
+                    if (!other.equals(file) && other.exists() && !SchematicImporter.isImported(other)) {
+                        cache.invalidate(other);
+                        other.delete();
+                        sweep |= SectionStore.isManifest(other);
+                    }
+                }
+                if (sweep) {
+                    sweepSections();
+                }
+                index.refresh(file);
+                index.save();
                 
                 // Notify the player
                 plugin.getServer().getScheduler().runTask(plugin, () -> {
@@ -109,9 +190,21 @@ public class SchematicManager {
      * @param name The name of the schematic
      */
     public void loadSchematic(Player player, String name) {
+        loadSchematic(player, name, null, null);
+    }
+    
+    /**
+     * Load a box of a schematic into a player's clipboard. For sectioned schematics only the
+     * sections the box touches are read; other schematics are read whole and cropped.
+     * @param player The player
+     * @param name The name of the schematic
+     * @param min The minimum corner, relative to the schematic, or null to load all of it
+     * @param max The maximum corner, relative to the schematic, or null to load all of it
+     */
+    public void loadSchematic(Player player, String name, Vector3 min, Vector3 max) {
         // Check if the schematic exists
-        File file = new File(schematicsDir, name + ".schem");
-        if (!file.exists()) {
+        File file = findFile(name);
+        if (file == null) {
             player.sendMessage(ChatColor.RED + "Schematic " + name + " does not exist.");
             return;
         }
@@ -122,7 +215,7 @@ public class SchematicManager {
                 Logger.info("Player " + player.getName() + " loading schematic " + name);
                 
                 // Load the schematic
-                Clipboard clipboard = SchematicFormat.load(file);
+                Clipboard clipboard = min == null ? cache.get(file) : loadRegion(file, min, max);
                 
                 // Set the player's clipboard
                 plugin.getServer().getScheduler().runTask(plugin, () -> {
@@ -141,23 +234,126 @@ public class SchematicManager {
     }
     
     /**
-     * List all available schematics.
-     * @param player The player
+     * Read a box of a schematic, relative to its minimum corner.
+     * @param file The schematic file
+     * @param min The minimum corner
+     * @param max The maximum corner
+     * @return A clipboard holding just the box
+     * @throws IOException If the file can't be read or the box is outside the schematic
      */
-    public void listSchematics(Player player) {
-        // Get all schematic files
-        File[] files = schematicsDir.listFiles((dir, name) -> name.endsWith(".schem"));
+    private Clipboard loadRegion(File file, Vector3 min, Vector3 max) throws IOException {
+        File sectioned = SchematicFormat.sectionedFile(file);
+        if (sectioned != null) {
+            try (SectionedSchematic schematic = SectionedSchematic.open(sectioned)) {
+                return schematic.readRegion(min, max);
+            }
+        }
+        
+        Clipboard whole = cache.get(file);
+        int minX = Math.max(0, Math.min(min.getX(), max.getX()));
+        int minY = Math.max(0, Math.min(min.getY(), max.getY()));
+        int minZ = Math.max(0, Math.min(min.getZ(), max.getZ()));
+        int maxX = Math.min(whole.getWidth() - 1, Math.max(min.getX(), max.getX()));
+        int maxY = Math.min(whole.getHeight() - 1, Math.max(min.getY(), max.getY()));
+        int maxZ = Math.min(whole.getLength() - 1, Math.max(min.getZ(), max.getZ()));
+        if (minX > maxX || minY > maxY || minZ > maxZ) {
+            throw new IOException("The box is outside the schematic (" + whole.getWidth() + "x" + 
+                                 whole.getHeight() + "x" + whole.getLength() + ")");
+        }
         
-        if (files == null || files.length == 0) {
+        Clipboard clipboard = new Clipboard(new Vector3(0, 0, 0), maxX - minX + 1, maxY - minY + 1, maxZ - minZ + 1);
+        whole.forEachBlock((position, data) -> {
+            int x = position.getX();
+            int y = position.getY();
+            int z = position.getZ();
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                clipboard.setBlock(new Vector3(x - minX, y - minY, z - minZ), data);
+            }
+        });
+        
+        Map<Integer, byte[]> blockEntities = new HashMap<>();
+        whole.getBlockEntities().forEach((index, nbt) -> {
+            Vector3 position = whole.positionOf(index);
+            int x = position.getX();
+            int y = position.getY();
+            int z = position.getZ();
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                blockEntities.put(clipboard.indexOf(x - minX, y - minY, z - minZ), nbt);
+            }
+        });
+        clipboard.setBlockEntities(blockEntities);
+        
+        List<EntityData> entities = new ArrayList<>();
+        for (EntityData entity : whole.getEntities()) {
+            if (entity.getX() >= minX && entity.getX() < maxX + 1 && entity.getY() >= minY && entity.getY() < maxY + 1 && 
+                entity.getZ() >= minZ && entity.getZ() < maxZ + 1) {
+                entities.add(entity.withPosition(entity.getX() - minX, entity.getY() - minY, entity.getZ() - minZ));
+            }
+        }
+        clipboard.setEntities(entities);
+        return clipboard;
+    }
+    
+    /**
+     * Find the file of a schematic, in whichever format it was saved.
+     * @param name The name of the schematic
+     * @return The file, or null if there is no such schematic
+     */
+    File findFile(String name) {
+        return index.resolve(name);
+    }
+    
+    /**
+     * List the available schematics, a page at a time.
+     * @param player The player
+     * @param page The page, starting at 1
+     */
+    public void listSchematics(Player player, int page) {
+        sendPage(player, index.getAll(), page, "Available schematics", "//schematic list");
+    }
+    
+    /**
+     * List the schematics whose name or author contains some text, a page at a time.
+     * @param player The player
+     * @param query The text to look for
+     * @param page The page, starting at 1
+     */
+    public void searchSchematics(Player player, String query, int page) {
+        sendPage(player, index.search(query), page, "Schematics matching '" + query + "'", "//schematic search " + query);
+    }
+    
+    /**
+     * Send one page of schematics from the index.
+     * @param player The player
+     * @param schematics The schematics to page through
+     * @param page The page, starting at 1
+     * @param title The title of the list
+     * @param command The command that shows the next page, without the page number
+     */
+    private void sendPage(Player player, List<SchematicInfo> schematics, int page, String title, String command) {
+        if (!index.isReady()) {
+            player.sendMessage(ChatColor.GRAY + "The schematic index is still being built; some schematics may be missing.");
+        }
+        if (schematics.isEmpty()) {
             player.sendMessage(ChatColor.YELLOW + "No schematics found.");
             return;
         }
         
-        // List the schematics
-        player.sendMessage(ChatColor.BLUE + "Available schematics:");
-        for (File file : files) {
-            String name = file.getName().replace(".schem", "");
-            player.sendMessage(ChatColor.GRAY + "- " + name);
+        int pages = (schematics.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        page = Math.max(1, Math.min(page, pages));
+        
+        player.sendMessage(ChatColor.BLUE + title + " (page " + page + "/" + pages + ", " + schematics.size() + " total):");
+        for (int i = (page - 1) * PAGE_SIZE; i < Math.min(page * PAGE_SIZE, schematics.size()); i++) {
+            SchematicInfo info = schematics.get(i);
+            player.sendMessage(ChatColor.GRAY + "- " + ChatColor.WHITE + info.getName() + ChatColor.GRAY + " " + 
+                              info.getWidth() + "x" + info.getHeight() + "x" + info.getLength() + ", " + 
+                              (info.getNonAirBlocks() >= 0 ? info.getNonAirBlocks() + " blocks, " : "") + 
+                              (info.getPaletteSize() >= 0 ? info.getPaletteSize() + " states, " : "") + 
+                              MemoryEstimates.format(info.getFileSize()) + 
+                              (info.getAuthor() != null ? ", by " + info.getAuthor() : ""));
+        }
+        if (page < pages) {
+            player.sendMessage(ChatColor.GRAY + "Use " + command + " " + (page + 1) + " for the next page.");
         }
     }
     
@@ -168,37 +364,60 @@ public class SchematicManager {
      */
     public void deleteSchematic(Player player, String name) {
         // Check if the schematic exists
-        File file = new File(schematicsDir, name + ".schem");
-        if (!file.exists()) {
+        File file = findFile(name);
+        if (file == null) {
             player.sendMessage(ChatColor.RED + "Schematic " + name + " does not exist.");
             return;
         }
         
         // Delete the schematic
+        cache.invalidate(file);
         if (file.delete()) {
+            if (SchematicImporter.isImported(file)) {
+                SchematicImporter.invalidate(file);
+            }
+            if (SectionStore.isManifest(file)) {
+                plugin.runAsync(this::sweepSections);
+            }
+            // A copy in another format, such as an imported one, keeps the name listed
+            plugin.runAsync(() -> {
+                index.refresh(file);
+                index.save();
+            });
             player.sendMessage(ChatColor.GREEN + "Deleted schematic " + name + ".");
         } else {
             player.sendMessage(ChatColor.RED + "Failed to delete schematic " + name + ".");
         }
     }
     
+    /**
+     * Remove the sections no deduplicated schematic uses any more, after a manifest was
+     * deleted or replaced. Reads every manifest, so must not run on the main thread.
+     */
+    private void sweepSections() {
+        File[] manifests = schematicsDir.listFiles((dir, fileName) -> fileName.endsWith(SectionStore.MANIFEST_EXTENSION));
+        if (manifests == null) {
+            return;
+        }
+        try {
+            int removed = SectionStore.of(schematicsDir).sweep(manifests);
+            if (removed > 0) {
+                Logger.debug("Removed " + removed + " sections no schematic uses");
+            }
+        } catch (IOException e) {
+            Logger.warning("Could not clean up the section store: " + e.getMessage());
+        }
+    }
+    
     /**
      * Get a list of all available schematics.
      * @return A list of schematic names
      */
     public List<String> getSchematicList() {
         List<String> result = new ArrayList<>();
-        
-        // Get all schematic files
-        File[] files = schematicsDir.listFiles((dir, name) -> name.endsWith(".schem"));
-        
-        if (files != null) {
-            for (File file : files) {
-                String name = file.getName().replace(".schem", "");
-                result.add(name);
-            }
+        for (SchematicInfo info : index.getAll()) {
+            result.add(info.getName());
         }
-        
         return result;
     }
     
@@ -206,7 +425,24 @@ public class SchematicManager {
      * Shutdown the schematic manager.
      */
     public void shutdown() {
-        // Nothing to do here for now
+        cache.shutdown();
+        index.save();
+    }
+    
+    /**
+     * Get the index of the schematics folder.
+     * @return The index
+     */
+    public SchematicIndex getIndex() {
+        return index;
+    }
+    
+    /**
+     * Get the cache of decoded schematics.
+     * @return The cache
+     */
+    public SchematicCache getCache() {
+        return cache;
     }
     
     /**
@@ -218,8 +454,8 @@ public class SchematicManager {
      */
     public void pasteSchematic(Player player, String name, Vector3 position, boolean ignoreAir) {
         // Check if the schematic exists
-        File file = new File(schematicsDir, name + ".schem");
-        if (!file.exists()) {
+        File file = findFile(name);
+        if (file == null) {
             player.sendMessage(ChatColor.RED + "Schematic " + name + " does not exist.");
             return;
         }
@@ -230,7 +466,7 @@ public class SchematicManager {
                 Logger.info("Player " + player.getName() + " pasting schematic " + name);
                 
                 // Load the schematic
-                Clipboard clipboard = SchematicFormat.load(file);
+                Clipboard clipboard = cache.get(file);
                 
                 // Create and execute a paste operation on the main thread
                 plugin.getServer().getScheduler().runTask(plugin, () -> {
@@ -273,8 +509,8 @@ public class SchematicManager {
     public void batchPasteSchematic(Player player, String name, Vector3 position, 
                                    boolean ignoreAir, int batchSize, int tickDelay) {
         // Check if the schematic exists
-        File file = new File(schematicsDir, name + ".schem");
-        if (!file.exists()) {
+        File file = findFile(name);
+        if (file == null) {
             player.sendMessage(ChatColor.RED + "Schematic " + name + " does not exist.");
             return;
         }
@@ -285,7 +521,7 @@ public class SchematicManager {
                 Logger.info("Player " + player.getName() + " batch pasting schematic " + name);
                 
                 // Load the schematic
-                Clipboard clipboard = SchematicFormat.load(file);
+                Clipboard clipboard = cache.get(file);
                 
                 // Create and execute a batch paste operation on the main thread
                 plugin.getServer().getScheduler().runTask(plugin, () -> {
@@ -297,7 +533,7 @@ public class SchematicManager {
                         
                         // Execute the operation
                         plugin.getOperationManager().execute(player, operation);
-                        
+                    
                     } catch (Exception e) {
                         Logger.severe("Error batch pasting schematic: " + e.getMessage());
                         e.printStackTrace();
@@ -327,19 +563,15 @@ public class SchematicManager {
      */
     public void optimizedPasteSchematic(Player player, String name, boolean noAir, int initialBatchSize, int initialDelay) {
         // Ensure the schematic exists
-        File file = new File(schematicsDir, name + ".schem");
-        if (!file.exists()) {
-            // Try with .schematic extension as a fallback
-            file = new File(schematicsDir, name + ".schematic");
-            if (!file.exists()) {
-                player.sendMessage(ChatColor.RED + "Schematic " + name + " not found!");
-                return;
-            }
+        File file = findFile(name);
+        if (file == null) {
+            player.sendMessage(ChatColor.RED + "Schematic " + name + " not found!");
+            return;
         }
-
+        
         try {
             // Load the schematic
-            Clipboard clipboard = SchematicFormat.load(file);
+            Clipboard clipboard = cache.get(file);
             
             if (clipboard == null) {
                 player.sendMessage(ChatColor.RED + "Failed to load schematic data.");
@@ -366,6 +598,59 @@ public class SchematicManager {
         }
     }
     
+    /**
+     * Pastes a schematic straight from its file, a few sections at a time, so memory use
+     * doesn't grow with its size. Sectioned and imported schematics can be streamed; Sponge
+     * schematics are pasted with the optimized paste system instead.
+     *
+     * @param player The player executing the command
+     * @param name The name of the schematic to paste
+     * @param noAir Whether to skip air blocks when pasting
+     * @param initialBatchSize The blocks placed in the first tick
+     * @param initialDelay The initial delay between batches, for the fallback paste
+     */
+    public void streamPasteSchematic(Player player, String name, boolean noAir, int initialBatchSize, int initialDelay) {
+        File file = findFile(name);
+        if (file == null) {
+            player.sendMessage(ChatColor.RED + "Schematic " + name + " not found!");
+            return;
+        }
+        if (!file.getName().endsWith(SectionedSchematic.EXTENSION) && !SectionStore.isManifest(file) && 
+            !SchematicImporter.isImported(file)) {
+            player.sendMessage(ChatColor.YELLOW + "Only sectioned schematics can be streamed; pasting " + name + 
+                              " from memory. Save it with //schematic save <name> sectioned to stream it.");
+            optimizedPasteSchematic(player, name, noAir, initialBatchSize, initialDelay);
+            return;
+        }
+        
+        Location origin = player.getLocation();
+        plugin.runAsync(() -> {
+            try {
+                // Only the header is read here; the sections are read as the paste goes
+                SectionedSchematic schematic = SectionedSchematic.open(SchematicFormat.sectionedFile(file));
+                Logger.info("Player " + player.getName() + " streaming schematic " + name);
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    StreamingPasteSystem paste = new StreamingPasteSystem(plugin, player, schematic, origin, noAir, 
+                                                                          initialBatchSize, ServerPerformanceMonitor.getInstance());
+                    
+                    // The paste closes the schematic when it finishes, so close it here if it never starts
+                    if (!plugin.getOperationManager().execute(player, paste)) {
+                        try {
+                            schematic.close();
+                        } catch (IOException e) {
+                            Logger.debug("Could not close schematic after refused paste: " + e.getMessage());
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                Logger.severe("Error opening schematic for streaming paste: " + e.getMessage());
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    player.sendMessage(ChatColor.RED + "Error loading schematic: " + e.getMessage());
+                });
+            }
+        });
+    }
+    
     /**
      * Pastes a schematic using adaptive performance monitoring to optimize batch size and delay.
      * This method now uses the completely optimized paste system.
@@ -384,20 +669,88 @@ public class SchematicManager {
     /**
      * Static class for schematic file format handling.
      */
-    private static class SchematicFormat {
+    static class SchematicFormat {
+        // Data version written when the server can't report its own (Minecraft 1.16.5)
+        private static final int FALLBACK_DATA_VERSION = 2586;
+        
+        // Deflate level used when none is given
+        private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+        
+        // Sections compressed or inflated at once by the parallel layout
+        private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+        
+        private static volatile int dataVersion = -1;
+        
         /**
-         * Save a clipboard to a file.
+         * Save a clipboard to a file with the default compression level.
          * @param clipboard The clipboard
          * @param file The file
          * @throws IOException If an error occurs
          */
         public static void save(Clipboard clipboard, File file) throws IOException {
+            save(clipboard, file, DEFAULT_COMPRESSION_LEVEL);
+        }
+        
+        /**
+         * Save a clipboard to a file. The file is written next to its destination first and
+         * moved into place once complete, so a failed save never leaves a broken schematic.
+         * @param clipboard The clipboard
+         * @param file The file
+         * @param compressionLevel The deflate level, from 0 to 9
+         * @throws IOException If an error occurs
+         */
+        public static void save(Clipboard clipboard, File file, int compressionLevel) throws IOException {
+            save(clipboard, file, compressionLevel, null);
+        }
+        
+        /**
+         * Save a clipboard to a file, recording who saved it. The file is written next to its
+         * destination first and moved into place once complete, so a failed save never leaves
+         * a broken schematic.
+         * @param clipboard The clipboard
+         * @param file The file
+         * @param compressionLevel The deflate level, from 0 to 9
+         * @param author The player saving it, or null
+         * @throws IOException If an error occurs
+         */
+        public static void save(Clipboard clipboard, File file, int compressionLevel, String author) throws IOException {
+            save(clipboard, file, compressionLevel, author, false);
+        }
+        
+        /**
+         * Save a clipboard to a file, optionally in sections that are compressed in parallel.
+         * Either way the file is a Sponge schematic in a gzip stream; the parallel layout
+         * just splits the stream into independent gzip members, which every gzip reader
+         * accepts, so it can also be read back in parallel.
+         * @param clipboard The clipboard
+         * @param file The file
+         * @param compressionLevel The deflate level, from 0 to 9
+         * @param author The player saving it, or null
+         * @param parallel Whether to compress in parallel sections
+         * @throws IOException If an error occurs
+         */
+        public static void save(Clipboard clipboard, File file, int compressionLevel, String author, boolean parallel) throws IOException {
             // Implementation of the Sponge Schematic format (version 2)
             // https://github.com/SpongePowered/Schematic-Specification
             
-            try (FileOutputStream fos = new FileOutputStream(file);
-                 GZIPOutputStream gzos = new GZIPOutputStream(fos);
-                 DataOutputStream dos = new DataOutputStream(gzos)) {
+            int width = clipboard.getWidth();
+            int height = clipboard.getHeight();
+            int length = clipboard.getLength();
+            
+            // One pass over the blocks builds both the palette and the id of every cell
+            List<String> palette = new ArrayList<>();
+            int[] blockIds = indexBlocks(clipboard, palette);
+            byte[] blockData = new byte[blockIds.length * varIntSize(palette.size() - 1)];
+            int blockDataLength = 0;
+            for (int blockId : blockIds) {
+                blockDataLength = writeVarInt(blockData, blockDataLength, blockId);
+            }
+            
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            OutputStream compressed = parallel
+                    ? new ParallelGZIPOutputStream(new FileOutputStream(temp), compressionLevel, compressionExecutor(), PARALLELISM)
+                    : new LeveledGZIPOutputStream(new FileOutputStream(temp), compressionLevel);
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(compressed, 65536))) {
                 
                 // Write the root compound tag
                 dos.writeByte(10); // TAG_COMPOUND
@@ -406,69 +759,165 @@ public class SchematicManager {
                 // Write the schematic version
                 writeByte(dos, "Version", (byte) 2);
                 
-                // Write the data version (Minecraft 1.16.5 = 2586)
-                writeInt(dos, "DataVersion", 2586);
+                // Write the data version of the server the blocks came from
+                writeInt(dos, "DataVersion", getDataVersion());
                 
                 // Write the dimensions
-                writeShort(dos, "Width", (short) clipboard.getWidth());
-                writeShort(dos, "Height", (short) clipboard.getHeight());
-                writeShort(dos, "Length", (short) clipboard.getLength());
-                
-                // Build a palette of all unique block states
-                Map<BlockData, Integer> palette = new java.util.HashMap<>();
-                Map<String, Integer> blockStatePalette = new java.util.HashMap<>();
-                int nextId = 0;
+                writeShort(dos, "Width", (short) width);
+                writeShort(dos, "Height", (short) height);
+                writeShort(dos, "Length", (short) length);
                 
-                for (Map.Entry<Vector3, BlockData> entry : clipboard.getBlocks().entrySet()) {
-                    BlockData data = entry.getValue();
-                    if (!palette.containsKey(data)) {
-                        String blockState = data.getAsString();
-                        palette.put(data, nextId);
-                        blockStatePalette.put(blockState, nextId);
-                        nextId++;
-                    }
+                // Write the metadata the schematic index lists
+                writeCompoundStart(dos, "Metadata");
+                writeStringTag(dos, "Name", file.getName().replaceFirst("\\.schem$", ""));
+                if (author != null) {
+                    writeStringTag(dos, "Author", author);
                 }
+                writeLong(dos, "Date", System.currentTimeMillis());
+                dos.writeByte(0); // TAG_END
                 
                 // Write the palette
+                writeInt(dos, "PaletteMax", palette.size());
                 writeCompoundStart(dos, "Palette");
-                for (Map.Entry<String, Integer> entry : blockStatePalette.entrySet()) {
-                    writeInt(dos, entry.getKey(), entry.getValue());
+                for (int id = 0; id < palette.size(); id++) {
+                    writeInt(dos, palette.get(id), id);
                 }
                 dos.writeByte(0); // TAG_END
                 
-                // Prepare the block data array
-                int totalBlocks = clipboard.getWidth() * clipboard.getHeight() * clipboard.getLength();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream(totalBlocks);
-                DataOutputStream blockDataOut = new DataOutputStream(baos);
+                // Write the block data
+                writeByteArray(dos, "BlockData", blockData, blockDataLength);
                 
-                // Write block data using VarInt encoding
-                for (int y = 0; y < clipboard.getHeight(); y++) {
-                    for (int z = 0; z < clipboard.getLength(); z++) {
-                        for (int x = 0; x < clipboard.getWidth(); x++) {
-                            Vector3 pos = new Vector3(x, y, z);
-                            BlockData data = clipboard.getBlock(pos);
-                            
-                            int paletteId = 0; // Default to air
-                            if (data != null) {
-                                paletteId = palette.getOrDefault(data, 0);
-                            }
-                            
-                            // Write the palette ID as a VarInt
-                            writeVarInt(blockDataOut, paletteId);
-                        }
-                    }
+                // Write the block entities and entities, only when there are any
+                if (!clipboard.getBlockEntities().isEmpty()) {
+                    writeBlockEntities(dos, clipboard);
+                }
+                if (!clipboard.getEntities().isEmpty()) {
+                    writeEntities(dos, clipboard.getEntities());
                 }
-                
-                // Write the block data
-                byte[] blockData = baos.toByteArray();
-                writeByteArray(dos, "BlockData", blockData);
                 
                 // End the root compound
                 dos.writeByte(0); // TAG_END
+            } catch (IOException e) {
+                temp.delete();
+                throw e;
+            }
+            
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            Logger.info("Saved schematic with dimensions " + width + "x" + 
+                       height + "x" + length + 
+                       " (" + clipboard.getVolume() + " blocks)");
+        }
+        
+        /**
+         * Give every cell of a clipboard a palette id, in y, z, x order.
+         * 
+         * @param clipboard The clipboard
+         * @param palette Filled with the block state of each id; id 0 is always air, which empty cells use
+         * @return The id of every cell
+         */
+        static int[] indexBlocks(Clipboard clipboard, List<String> palette) {
+            int width = clipboard.getWidth();
+            int height = clipboard.getHeight();
+            int length = clipboard.getLength();
+            int[] blockIds = new int[width * height * length];
+            
+            palette.add("minecraft:air");
+            Map<BlockData, Integer> ids = new HashMap<>();
+            // Neighbouring cells are often the same block, which saves a lookup
+            BlockData[] last = new BlockData[1];
+            int[] lastId = new int[1];
+            
+            clipboard.forEachBlock((position, data) -> {
+                int x = position.getX();
+                int y = position.getY();
+                int z = position.getZ();
+                if (x < 0 || y < 0 || z < 0 || x >= width || y >= height || z >= length) {
+                    return;
+                }
                 
-                Logger.info("Saved schematic with dimensions " + clipboard.getWidth() + "x" + 
-                           clipboard.getHeight() + "x" + clipboard.getLength() + 
-                           " (" + clipboard.getVolume() + " blocks)");
+                int id;
+                if (data == last[0]) {
+                    id = lastId[0];
+                } else {
+                    id = ids.computeIfAbsent(data, key -> {
+                        String blockState = key.getAsString();
+                        if (blockState.equals("minecraft:air")) {
+                            return 0;
+                        }
+                        palette.add(blockState);
+                        return palette.size() - 1;
+                    });
+                    last[0] = data;
+                    lastId[0] = id;
+                }
+                blockIds[(y * length + z) * width + x] = id;
+            });
+            return blockIds;
+        }
+        
+        /**
+         * Get the data version of the server, so the schematic records which version its
+         * block states are from.
+         * @return The data version
+         */
+        @SuppressWarnings("deprecation")
+        static int getDataVersion() {
+            int version = dataVersion;
+            if (version < 0) {
+                try {
+                    version = Bukkit.getUnsafe().getDataVersion();
+                } catch (Throwable e) {
+                    // Not available on every server, or outside of one
+                    version = FALLBACK_DATA_VERSION;
+                }
+                dataVersion = version;
+            }
+            return version;
+        }
+        
+        /**
+         * Get the sectioned file to read a schematic from: the file itself if it is sectioned
+         * or a manifest, or its converted copy if it is imported from another tool.
+         * 
+         * @param file The schematic file
+         * @return The sectioned file, or null for a Sponge schematic
+         * @throws IOException If an imported file can't be converted
+         */
+        static File sectionedFile(File file) throws IOException {
+            if (file.getName().endsWith(SectionedSchematic.EXTENSION) || SectionStore.isManifest(file)) {
+                return file;
+            }
+            if (SchematicImporter.isImported(file)) {
+                return SchematicImporter.convert(file);
+            }
+            return null;
+        }
+        
+        /**
+         * Get the threads the parallel layout compresses and inflates on: the plugin's
+         * async pool, or the common pool when running outside of the plugin.
+         * @return The executor
+         */
+        private static Executor compressionExecutor() {
+            FrizzlenEdit plugin = FrizzlenEdit.getInstance();
+            if (plugin != null && plugin.getAsyncExecutor() != null) {
+                return plugin.getAsyncExecutor();
+            }
+            return ForkJoinPool.commonPool();
+        }
+        
+        /**
+         * A gzip stream with a chosen deflate level.
+         */
+        private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+            LeveledGZIPOutputStream(FileOutputStream out, int level) throws IOException {
+                super(new BufferedOutputStream(out, 65536), 65536);
+                def.setLevel(Math.max(0, Math.min(9, level)));
             }
         }
         
@@ -498,11 +947,23 @@ public class SchematicManager {
             dos.writeInt(value);
         }
         
-        private static void writeByteArray(DataOutputStream dos, String name, byte[] value) throws IOException {
+        private static void writeLong(DataOutputStream dos, String name, long value) throws IOException {
+            dos.writeByte(4); // TAG_LONG
+            writeString(dos, name);
+            dos.writeLong(value);
+        }
+        
+        private static void writeStringTag(DataOutputStream dos, String name, String value) throws IOException {
+            dos.writeByte(8); // TAG_STRING
+            writeString(dos, name);
+            writeString(dos, value);
+        }
+        
+        private static void writeByteArray(DataOutputStream dos, String name, byte[] value, int length) throws IOException {
             dos.writeByte(7); // TAG_BYTE_ARRAY
             writeString(dos, name);
-            dos.writeInt(value.length);
-            dos.write(value);
+            dos.writeInt(length);
+            dos.write(value, 0, length);
         }
         
         private static void writeCompoundStart(DataOutputStream dos, String name) throws IOException {
@@ -510,16 +971,80 @@ public class SchematicManager {
             writeString(dos, name);
         }
         
-        private static void writeVarInt(DataOutputStream dos, int value) throws IOException {
-            while (true) {
-                if ((value & ~0x7F) == 0) {
-                    dos.writeByte(value);
+        private static void writeListStart(DataOutputStream dos, String name, int elementType, int count) throws IOException {
+            dos.writeByte(9); // TAG_LIST
+            writeString(dos, name);
+            dos.writeByte(elementType);
+            dos.writeInt(count);
+        }
+        
+        /**
+         * Write the BlockEntities list: each compound is its position and id, then the NBT
+         * the clipboard holds for it.
+         */
+        private static void writeBlockEntities(DataOutputStream dos, Clipboard clipboard) throws IOException {
+            Map<Integer, byte[]> blockEntities = clipboard.getBlockEntities();
+            writeListStart(dos, "BlockEntities", 10, blockEntities.size()); // of TAG_COMPOUND
+            for (Map.Entry<Integer, byte[]> entry : blockEntities.entrySet()) {
+                Vector3 position = clipboard.positionOf(entry.getKey());
+                dos.writeByte(11); // TAG_INT_ARRAY
+                writeString(dos, "Pos");
+                dos.writeInt(3);
+                dos.writeInt(position.getX());
+                dos.writeInt(position.getY());
+                dos.writeInt(position.getZ());
+                writeId(dos, entry.getValue());
+                // Its entries and the compound's end tag
+                dos.write(entry.getValue());
+            }
+        }
+        
+        /**
+         * Write the Entities list: each compound is its position and id, then its NBT.
+         */
+        private static void writeEntities(DataOutputStream dos, List<EntityData> entities) throws IOException {
+            writeListStart(dos, "Entities", 10, entities.size()); // of TAG_COMPOUND
+            for (EntityData entity : entities) {
+                writeListStart(dos, "Pos", 6, 3); // of TAG_DOUBLE
+                dos.writeDouble(entity.getX());
+                dos.writeDouble(entity.getY());
+                dos.writeDouble(entity.getZ());
+                writeId(dos, entity.getNbt());
+                dos.write(entity.getNbt());
+            }
+        }
+        
+        /**
+         * Write the Sponge Id of a block entity or entity, taken from the "id" in its NBT.
+         */
+        private static void writeId(DataOutputStream dos, byte[] nbt) throws IOException {
+            NBTReader reader = new NBTReader(new ByteArrayInputStream(nbt));
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                if (reader.getName().equals("id") && type == NBTReader.TAG_STRING) {
+                    writeStringTag(dos, "Id", reader.readString());
                     return;
                 }
-                
-                dos.writeByte((value & 0x7F) | 0x80);
+                reader.skip(type);
+            }
+        }
+        
+        private static int writeVarInt(byte[] buffer, int offset, int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
                 value >>>= 7;
             }
+            buffer[offset++] = (byte) value;
+            return offset;
+        }
+        
+        private static int varIntSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0) {
+                size++;
+                value >>>= 7;
+            }
+            return size;
         }
         
         /**
@@ -529,59 +1054,125 @@ public class SchematicManager {
          * @throws IOException If an error occurs
          */
         public static Clipboard load(File file) throws IOException {
-            // Read the schematic file using the NBT parser
-            Map<String, Object> schematicData = NBTUtils.readSchematic(file);
-            
-            // Extract dimensions with type checking
-            int width = getIntValue(schematicData, "Width");
-            int height = getIntValue(schematicData, "Height");
-            int length = getIntValue(schematicData, "Length");
+            File sectioned = sectionedFile(file);
+            if (sectioned != null) {
+                try (SectionedSchematic schematic = SectionedSchematic.open(sectioned)) {
+                    return schematic.read();
+                }
+            }
             
-            // Get the palette (maps block states to indices)
-            @SuppressWarnings("unchecked")
-            Map<String, Object> rawPalette = (Map<String, Object>) schematicData.get("Palette");
-            Map<String, Integer> palette = NBTUtils.parsePalette(rawPalette);
+            int width = -1;
+            int height = -1;
+            int length = -1;
+            BlockData[] palette = null;
+            int[] blockIds = null;
+            List<double[]> blockEntityPositions = new ArrayList<>();
+            List<byte[]> blockEntityNbt = new ArrayList<>();
+            List<double[]> entityPositions = new ArrayList<>();
+            List<byte[]> entityNbt = new ArrayList<>();
             
-            // Create a reversed palette (maps indices to block states)
-            Map<Integer, String> reversedPalette = NBTUtils.reversePalette(palette);
+            // Stream the file tag by tag, keeping the palette, the block ids, and the NBT of block entities and entities
+            try (NBTReader reader = NBTReader.open(file, compressionExecutor(), PARALLELISM)) {
+                if (!reader.readRoot().equals("Schematic")) {
+                    throw new IOException("Invalid schematic file: Root tag name is not 'Schematic'");
+                }
+                
+                byte type;
+                while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                    switch (reader.getName()) {
+                        case "Version":
+                            int version = reader.readInt(type);
+                            if (version != 1 && version != 2) {
+                                Logger.warning("Schematic version " + version + " may not be fully supported. Attempting to load anyway.");
+                            }
+                            break;
+                        case "Width":
+                            width = reader.readInt(type);
+                            break;
+                        case "Height":
+                            height = reader.readInt(type);
+                            break;
+                        case "Length":
+                            length = reader.readInt(type);
+                            break;
+                        case "Palette":
+                            if (type != NBTReader.TAG_COMPOUND) {
+                                throw new IOException("Invalid schematic file: Palette is not a compound tag");
+                            }
+                            palette = readPalette(reader);
+                            break;
+                        case "BlockData":
+                            if (type != NBTReader.TAG_BYTE_ARRAY) {
+                                throw new IOException("Invalid schematic file: BlockData is not a byte array");
+                            }
+                            int byteLength = reader.readArrayLength();
+                            // Sized from the dimensions when they came first, which they do in files we write
+                            long volume = (long) width * height * length;
+                            int capacity = width > 0 && height > 0 && length > 0 && volume <= Integer.MAX_VALUE
+                                    ? (int) volume : byteLength;
+                            blockIds = reader.readVarInts(byteLength, capacity);
+                            break;
+                        case "BlockEntities":
+                        case "TileEntities":
+                            readNbtList(reader, type, blockEntityPositions, blockEntityNbt);
+                            break;
+                        case "Entities":
+                            readNbtList(reader, type, entityPositions, entityNbt);
+                            break;
+                        default:
+                            // Offsets, metadata and anything else we don't use
+                            reader.skip(type);
+                            break;
+                    }
+                }
+            }
             
-            // Extract the block data (stored as a byte array of indices)
-            byte[] blockData = (byte[]) schematicData.get("BlockData");
+            // Basic validation
+            if (width < 0 || height < 0 || length < 0) {
+                throw new IOException("Invalid schematic file: Missing dimension data");
+            }
+            if (blockIds == null || palette == null) {
+                throw new IOException("Invalid schematic file: Missing block data or palette");
+            }
+            if ((long) width * height * length > blockIds.length) {
+                throw new IOException("Invalid schematic file: Block data is shorter than the dimensions");
+            }
             
             // Create a clipboard with the dimensions
             Vector3 origin = new Vector3(0, 0, 0);
             Clipboard clipboard = new Clipboard(origin, width, height, length);
             
-            // Process block data and add blocks to the clipboard
+            // Block ids are stored in y, z, x order
             int index = 0;
             for (int y = 0; y < height; y++) {
                 for (int z = 0; z < length; z++) {
                     for (int x = 0; x < width; x++) {
-                        int blockId = blockData[index] & 0xFF;
-                        
-                        // Handle VarInt encoding for block IDs
-                        int varIntShift = 7;
-                        while ((blockData[index] & 0x80) != 0) {
-                            index++;
-                            blockId |= (blockData[index] & 0x7F) << varIntShift;
-                            varIntShift += 7;
-                        }
-                        
-                        index++;
-                        
-                        // Get the block state from the palette
-                        String blockState = reversedPalette.get(blockId);
-                        if (blockState != null) {
-                            // Convert the block state to Bukkit BlockData
-                            BlockData data = NBTUtils.parseBlockState(blockState);
-                            
-                            // Add the block to the clipboard
-                            clipboard.setBlock(new Vector3(x, y, z), data);
+                        int blockId = blockIds[index++];
+                        if (blockId < palette.length && palette[blockId] != null) {
+                            clipboard.setBlock(new Vector3(x, y, z), palette[blockId]);
                         }
                     }
                 }
             }
             
+            Map<Integer, byte[]> blockEntities = new HashMap<>();
+            for (int i = 0; i < blockEntityPositions.size(); i++) {
+                double[] position = blockEntityPositions.get(i);
+                int x = (int) position[0];
+                int y = (int) position[1];
+                int z = (int) position[2];
+                if (x >= 0 && y >= 0 && z >= 0 && x < width && y < height && z < length) {
+                    blockEntities.put(clipboard.indexOf(x, y, z), blockEntityNbt.get(i));
+                }
+            }
+            clipboard.setBlockEntities(blockEntities);
+            List<EntityData> entities = new ArrayList<>();
+            for (int i = 0; i < entityPositions.size(); i++) {
+                double[] position = entityPositions.get(i);
+                entities.add(new EntityData(position[0], position[1], position[2], entityNbt.get(i)));
+            }
+            clipboard.setEntities(entities);
+            
             Logger.info("Loaded schematic with dimensions " + width + "x" + height + "x" + length + 
                        " (" + clipboard.getVolume() + " blocks)");
             
@@ -589,31 +1180,255 @@ public class SchematicManager {
         }
         
         /**
-         * Helper method to get an int value from a map, handling different number types.
+         * Read a list of block entities or entities, keeping each as its position and the
+         * rest of its NBT. The Sponge Id becomes the "id" the server reads.
+         * @param reader The reader, just past the list's name
+         * @param type The type of the tag
+         * @param positions The positions, added to
+         * @param nbt The NBT of each, added to
+         * @throws IOException If the list can't be read
+         */
+        static void readNbtList(NBTReader reader, byte type, List<double[]> positions, List<byte[]> nbt) throws IOException {
+            if (type != NBTReader.TAG_LIST) {
+                reader.skip(type);
+                return;
+            }
+            byte elementType = reader.readListType();
+            int count = reader.readArrayLength();
+            for (int i = 0; i < count; i++) {
+                if (elementType != NBTReader.TAG_COMPOUND) {
+                    reader.skip(elementType);
+                    continue;
+                }
+                
+                double[] position = null;
+                String id = null;
+                boolean hasId = false;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                DataOutputStream out = new DataOutputStream(bytes);
+                byte entryType;
+                while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+                    String name = reader.getName();
+                    if (name.equals("Pos")) {
+                        position = readPosition(reader, entryType);
+                    } else if (name.equals("Id") && entryType == NBTReader.TAG_STRING) {
+                        id = reader.readString();
+                    } else {
+                        hasId |= name.equals("id");
+                        out.writeByte(entryType);
+                        writeString(out, name);
+                        reader.copy(entryType, out);
+                    }
+                }
+                if (!hasId && id != null) {
+                    writeStringTag(out, "id", id);
+                }
+                out.writeByte(0); // TAG_END
+                
+                if (position != null) {
+                    positions.add(position);
+                    nbt.add(bytes.toByteArray());
+                }
+            }
+        }
+        
+        /**
+         * Read a position written as an int array or a list of numbers.
+         * @return The position, or null if it is neither
+         */
+        private static double[] readPosition(NBTReader reader, byte type) throws IOException {
+            double[] position = new double[3];
+            if (type == NBTReader.TAG_INT_ARRAY) {
+                int count = reader.readArrayLength();
+                for (int i = 0; i < count; i++) {
+                    int value = reader.readInt(NBTReader.TAG_INT);
+                    if (i < 3) {
+                        position[i] = value;
+                    }
+                }
+            } else if (type == NBTReader.TAG_LIST) {
+                byte elementType = reader.readListType();
+                int count = reader.readArrayLength();
+                for (int i = 0; i < count; i++) {
+                    double value = elementType == NBTReader.TAG_DOUBLE ? reader.readDouble() : reader.readInt(elementType);
+                    if (i < 3) {
+                        position[i] = value;
+                    }
+                }
+            } else {
+                reader.skip(type);
+                return null;
+            }
+            return position;
+        }
+        
+        /**
+         * Read what the schematic index needs from a file, without decoding its blocks into
+         * a clipboard.
          * 
-         * @param map The map containing the data
-         * @param key The key to look up
-         * @return The int value
-         * @throws IOException If the key does not exist or is not a number
+         * @param file The file
+         * @return The info
+         * @throws IOException If the file can't be read or is not a schematic
          */
-        private static int getIntValue(Map<String, Object> map, String key) throws IOException {
-            if (!map.containsKey(key)) {
-                throw new IOException("Missing required field: " + key);
+        public static SchematicInfo readInfo(File file) throws IOException {
+            if (SchematicImporter.isImported(file)) {
+                return SchematicImporter.readInfo(file);
+            }
+            File sectioned = sectionedFile(file);
+            if (sectioned != null) {
+                try (SectionedSchematic schematic = SectionedSchematic.open(sectioned)) {
+                    return schematic.getInfo(SchematicIndex.nameOf(file), file);
+                }
             }
             
-            Object value = map.get(key);
+            int width = -1;
+            int height = -1;
+            int length = -1;
+            int dataVersion = 0;
+            String author = null;
+            long created = 0;
+            boolean[] air = null;
+            int paletteSize = 0;
+            long[] nonAir = new long[1];
             
-            if (value instanceof Integer) {
-                return (Integer) value;
-            } else if (value instanceof Short) {
-                return ((Short) value).intValue();
-            } else if (value instanceof Byte) {
-                return ((Byte) value).intValue();
-            } else if (value instanceof Long) {
-                return ((Long) value).intValue();
-            } else {
-                throw new IOException("Field " + key + " is not a number");
+            try (NBTReader reader = NBTReader.open(file, compressionExecutor(), PARALLELISM)) {
+                if (!reader.readRoot().equals("Schematic")) {
+                    throw new IOException("Invalid schematic file: Root tag name is not 'Schematic'");
+                }
+                
+                byte type;
+                while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                    switch (reader.getName()) {
+                        case "Width":
+                            width = reader.readInt(type);
+                            break;
+                        case "Height":
+                            height = reader.readInt(type);
+                            break;
+                        case "Length":
+                            length = reader.readInt(type);
+                            break;
+                        case "DataVersion":
+                            dataVersion = reader.readInt(type);
+                            break;
+                        case "Metadata":
+                            if (type != NBTReader.TAG_COMPOUND) {
+                                reader.skip(type);
+                                break;
+                            }
+                            byte entryType;
+                            while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+                                if (reader.getName().equals("Author") && entryType == NBTReader.TAG_STRING) {
+                                    author = reader.readString();
+                                } else if (reader.getName().equals("Date") && entryType != NBTReader.TAG_STRING) {
+                                    created = reader.readLong(entryType);
+                                } else {
+                                    reader.skip(entryType);
+                                }
+                            }
+                            break;
+                        case "Palette":
+                            if (type != NBTReader.TAG_COMPOUND) {
+                                throw new IOException("Invalid schematic file: Palette is not a compound tag");
+                            }
+                            // Only which ids are air matters here, so the states aren't parsed
+                            air = new boolean[16];
+                            byte paletteType;
+                            while ((paletteType = reader.nextTag()) != NBTReader.TAG_END) {
+                                String blockState = reader.getName();
+                                int id = reader.readInt(paletteType);
+                                if (id < 0) {
+                                    throw new IOException("Invalid schematic file: Negative palette id for " + blockState);
+                                }
+                                if (id >= air.length) {
+                                    air = Arrays.copyOf(air, Math.max(id + 1, air.length * 2));
+                                }
+                                air[id] = isAir(blockState);
+                                paletteSize++;
+                            }
+                            break;
+                        case "BlockData":
+                            if (type != NBTReader.TAG_BYTE_ARRAY) {
+                                throw new IOException("Invalid schematic file: BlockData is not a byte array");
+                            }
+                            if (air == null) {
+                                throw new IOException("Invalid schematic file: BlockData comes before the palette");
+                            }
+                            boolean[] airIds = air;
+                            reader.readVarInts(reader.readArrayLength(), id -> {
+                                if (id >= airIds.length || !airIds[id]) {
+                                    nonAir[0]++;
+                                }
+                            });
+                            break;
+                        default:
+                            reader.skip(type);
+                            break;
+                    }
+                }
+            }
+            
+            if (width < 0 || height < 0 || length < 0) {
+                throw new IOException("Invalid schematic file: Missing dimension data");
+            }
+            if (air == null) {
+                throw new IOException("Invalid schematic file: Missing block data or palette");
+            }
+            
+            String name = file.getName();
+            int extension = name.lastIndexOf('.');
+            if (extension > 0) {
+                name = name.substring(0, extension);
+            }
+            
+            // Schematics saved without metadata count from when the file was made
+            long modified = file.lastModified();
+            if (created == 0) {
+                created = getCreationTime(file, modified);
+            }
+            return new SchematicInfo(name, width, height, length, paletteSize, nonAir[0], dataVersion,
+                    file.length(), author, created, modified);
+        }
+        
+        static boolean isAir(String blockState) {
+            return blockState.equals("minecraft:air") || blockState.equals("minecraft:cave_air") ||
+                   blockState.equals("minecraft:void_air");
+        }
+        
+        static long getCreationTime(File file, long fallback) {
+            try {
+                long created = Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toMillis();
+                return created > 0 ? created : fallback;
+            } catch (IOException e) {
+                return fallback;
+            }
+        }
+        
+        /**
+         * Read a palette compound into block data indexed by id. Each state is parsed once,
+         * rather than once for every block that uses it.
+         * 
+         * @param reader The reader, positioned at the palette's entries
+         * @return The block data, with null for ids the palette doesn't use
+         * @throws IOException If an error occurs while reading
+         */
+        private static BlockData[] readPalette(NBTReader reader) throws IOException {
+            BlockData[] palette = new BlockData[16];
+            
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                String blockState = reader.getName();
+                int id = reader.readInt(type);
+                if (id < 0) {
+                    throw new IOException("Invalid schematic file: Negative palette id for " + blockState);
+                }
+                
+                if (id >= palette.length) {
+                    palette = Arrays.copyOf(palette, Math.max(id + 1, palette.length * 2));
+                }
+                palette[id] = NBTUtils.parseBlockState(blockState);
             }
+            return palette;
         }
     }
 } 
\ No newline at end of file
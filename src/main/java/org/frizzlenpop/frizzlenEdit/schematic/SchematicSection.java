@@ -0,0 +1,93 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.bukkit.block.data.BlockData;
+
+/**
+ * One 16x16x16 section of a sectioned schematic, decoded on its own. Sections at the far
+ * edges of a schematic are still 16 blocks on each side; cells past the schematic's size
+ * hold air and are never read.
+ */
+public final class SchematicSection {
+    // Blocks along each side of a section
+    public static final int SIZE = 16;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+    
+    private final int sectionX;
+    private final int sectionY;
+    private final int sectionZ;
+    private final BlockData[] palette;
+    private final short[] ids;
+    private final int nonAirBlocks;
+    
+    /**
+     * Create a decoded section.
+     * @param sectionX The section's x, in sections
+     * @param sectionY The section's y, in sections
+     * @param sectionZ The section's z, in sections
+     * @param palette The blocks of the section, by local id
+     * @param ids The local id of every cell in y, z, x order, or null if the palette has one block
+     * @param nonAirBlocks The number of cells that aren't air
+     */
+    SchematicSection(int sectionX, int sectionY, int sectionZ, BlockData[] palette, short[] ids, int nonAirBlocks) {
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+        this.palette = palette;
+        this.ids = ids;
+        this.nonAirBlocks = nonAirBlocks;
+    }
+    
+    /**
+     * Get the section's x, in sections.
+     * @return The x
+     */
+    public int getSectionX() {
+        return sectionX;
+    }
+    
+    /**
+     * Get the section's y, in sections.
+     * @return The y
+     */
+    public int getSectionY() {
+        return sectionY;
+    }
+    
+    /**
+     * Get the section's z, in sections.
+     * @return The z
+     */
+    public int getSectionZ() {
+        return sectionZ;
+    }
+    
+    /**
+     * Get a block of the section.
+     * @param x The x within the section, from 0 to 15
+     * @param y The y within the section, from 0 to 15
+     * @param z The z within the section, from 0 to 15
+     * @return The block data
+     */
+    public BlockData getBlock(int x, int y, int z) {
+        if (ids == null) {
+            return palette[0];
+        }
+        return palette[ids[(y * SIZE + z) * SIZE + x]];
+    }
+    
+    /**
+     * Get the different blocks in the section.
+     * @return The palette; must not be changed
+     */
+    public BlockData[] getPalette() {
+        return palette;
+    }
+    
+    /**
+     * Get the number of cells that aren't air.
+     * @return The number of blocks
+     */
+    public int getNonAirBlocks() {
+        return nonAirBlocks;
+    }
+} 
\ No newline at end of file
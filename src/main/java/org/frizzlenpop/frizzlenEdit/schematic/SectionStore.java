@@ -0,0 +1,214 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Content-addressed store of schematic sections, for deduplicated schematics. Each section
+ * is kept once, deflated, in a file named after the SHA-256 of its uncompressed encoding,
+ * however many schematics use it; a deduplicated schematic is a manifest that lists the
+ * hashes of its sections. Saving a revision that shares most of its sections with an
+ * earlier one only writes the sections that changed.
+ *
+ * Sections no manifest uses any more are removed by {@link #sweep}.
+ */
+public final class SectionStore {
+    // File extension of deduplicated schematic manifests
+    public static final String MANIFEST_EXTENSION = ".femanifest";
+    
+    // Bytes of a section's hash
+    static final int HASH_SIZE = 32;
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    // One store per directory, so saves and sweeps of the same store see each other
+    private static final Map<String, SectionStore> stores = new ConcurrentHashMap<>();
+    
+    private final File directory;
+    
+    // Held shared while a manifest is written, and exclusively while sweeping
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private SectionStore(File directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Get the store the sections of the manifests in a folder are in: the sections folder
+     * next to the other plugin data, or inside the folder when running outside of the plugin.
+     * @param folder The folder of the manifests
+     * @return The store
+     */
+    static SectionStore of(File folder) {
+        FrizzlenEdit plugin = FrizzlenEdit.getInstance();
+        File directory = plugin != null ? new File(plugin.getDataFolder(), "sections")
+                                        : new File(folder.getAbsoluteFile(), ".sections");
+        return stores.computeIfAbsent(directory.getAbsolutePath(), path -> new SectionStore(directory));
+    }
+    
+    /**
+     * Check if a file is a deduplicated schematic manifest.
+     * @param file The file
+     * @return True for .femanifest files
+     */
+    public static boolean isManifest(File file) {
+        return file.getName().endsWith(MANIFEST_EXTENSION);
+    }
+    
+    /**
+     * Hash the uncompressed encoding of a section.
+     * @param section The encoded section
+     * @return The hash, {@link #HASH_SIZE} bytes
+     */
+    static byte[] hash(byte[] section) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(section);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to have SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Get the lock to hold while writing a manifest, from its first section until the
+     * manifest is in place, so a sweep never drops sections it is about to list.
+     * @return The lock
+     */
+    Lock writeLock() {
+        return lock.readLock();
+    }
+    
+    /**
+     * Check if the store holds a section.
+     * @param hashes The hashes of the sections
+     * @param index The index of the section's hash
+     * @return True if it is stored
+     */
+    boolean contains(byte[] hashes, int index) {
+        return fileOf(hashes, index).isFile();
+    }
+    
+    /**
+     * Store a section under its hash. The section is written to a temporary file of its own
+     * next to its place first and moved there once complete, so a section in the store is
+     * always whole, even when two threads store it at once.
+     * @param hashes The hashes of the sections
+     * @param index The index of the section's hash
+     * @param compressed The deflated section
+     * @throws IOException If it can't be written
+     */
+    void put(byte[] hashes, int index, byte[] compressed) throws IOException {
+        File file = fileOf(hashes, index);
+        file.getParentFile().mkdirs();
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName() + ".", ".tmp");
+        try {
+            Files.write(temp, compressed);
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+    
+    /**
+     * Read a section.
+     * @param hashes The hashes of the sections
+     * @param index The index of the section's hash
+     * @return The deflated section
+     * @throws IOException If it is missing or can't be read
+     */
+    byte[] get(byte[] hashes, int index) throws IOException {
+        File file = fileOf(hashes, index);
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            throw new IOException("Section " + file.getName() + " is missing from the section store");
+        }
+    }
+    
+    /**
+     * Remove the sections none of the given manifests use. Nothing is removed if any of
+     * them can't be read, as its sections would be lost with it.
+     * @param manifests Every manifest that uses this store
+     * @return The number of sections removed
+     * @throws IOException If a manifest can't be read
+     */
+    public int sweep(File[] manifests) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Set<String> used = new HashSet<>();
+            for (File manifest : manifests) {
+                try (SectionedSchematic schematic = SectionedSchematic.open(manifest)) {
+                    byte[] hashes = schematic.getSectionHashes();
+                    for (int i = 0; i < hashes.length / HASH_SIZE; i++) {
+                        used.add(hex(hashes, i));
+                    }
+                }
+            }
+            
+            int removed = 0;
+            File[] folders = directory.listFiles(File::isDirectory);
+            if (folders == null) {
+                return 0;
+            }
+            for (File folder : folders) {
+                File[] files = folder.listFiles(File::isFile);
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    if (!used.contains(folder.getName() + file.getName())) {
+                        if (file.delete()) {
+                            removed++;
+                        } else {
+                            Logger.debug("Could not delete unused section " + file.getName());
+                        }
+                    }
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the file of a section: a folder per first byte of the hash, so no folder holds
+     * too many files.
+     */
+    private File fileOf(byte[] hashes, int index) {
+        String hex = hex(hashes, index);
+        return new File(new File(directory, hex.substring(0, 2)), hex.substring(2));
+    }
+    
+    private static String hex(byte[] hashes, int index) {
+        char[] chars = new char[HASH_SIZE * 2];
+        for (int i = 0; i < HASH_SIZE; i++) {
+            int b = hashes[index * HASH_SIZE + i] & 0xFF;
+            chars[i * 2] = HEX[b >> 4];
+            chars[i * 2 + 1] = HEX[b & 15];
+        }
+        return new String(chars);
+    }
+} 
\ No newline at end of file
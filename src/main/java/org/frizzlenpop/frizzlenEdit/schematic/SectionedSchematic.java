@@ -0,0 +1,464 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.utils.NBTUtils;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.EntityData;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads FrizzlenEdit's native sectioned schematics: the blocks cut into 16x16x16 sections
+ * that are compressed independently, each with its own palette, behind a header that
+ * records where every section is. Any section can be read without touching the others, so
+ * a box of a huge schematic can be loaded, inspected or pasted in bounded memory.
+ *
+ * Layout: the header ({@link #MAGIC}, version, size, data version, author, save time, the
+ * number of distinct block states, and where the block entities and entities are), then
+ * for every section in y, z, x order its offset, compressed length and number of non-air
+ * blocks, then the sections themselves, and last the block entities and entities, deflated
+ * together. See {@link SectionedSchematicWriter} for how each is encoded.
+ *
+ * A deduplicated schematic is a manifest with the same layout but its own magic, whose
+ * index holds the hash and number of non-air blocks of every section instead; the sections
+ * are read from the {@link SectionStore}.
+ *
+ * Sections can be read from several threads at once.
+ */
+public class SectionedSchematic implements Closeable {
+    // File extension of sectioned schematics
+    public static final String EXTENSION = ".fesch";
+    
+    // "FESC"
+    static final int MAGIC = 0x46455343;
+    
+    // "FESM", for manifests of deduplicated schematics
+    static final int MANIFEST_MAGIC = 0x4645534D;
+    static final int VERSION = 2;
+    
+    private final File file;
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int length;
+    private final int dataVersion;
+    private final String author;
+    private final long created;
+    private final int paletteSize;
+    private final long nbtOffset;
+    private final int nbtLength;
+    private final int sectionsX;
+    private final int sectionsY;
+    private final int sectionsZ;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] nonAir;
+    
+    // For manifests: where the sections are, and their hashes back to back
+    private final SectionStore store;
+    private final byte[] hashes;
+    
+    // Block states parsed so far, shared by every section
+    private final Map<String, BlockData> states = new ConcurrentHashMap<>();
+    
+    private SectionedSchematic(File file, FileChannel channel, DataInputStream in) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        int magic = in.readInt();
+        if (magic != MAGIC && magic != MANIFEST_MAGIC) {
+            throw new IOException("Not a sectioned schematic: " + file.getName());
+        }
+        int version = in.readInt();
+        // Manifests were added with version 2
+        if (version < (magic == MANIFEST_MAGIC ? 2 : 1) || version > VERSION) {
+            throw new IOException("Unsupported sectioned schematic version " + version);
+        }
+        
+        width = in.readInt();
+        height = in.readInt();
+        length = in.readInt();
+        if (width <= 0 || height <= 0 || length <= 0) {
+            throw new IOException("Invalid sectioned schematic size " + width + "x" + height + "x" + length);
+        }
+        dataVersion = in.readInt();
+        author = in.readBoolean() ? in.readUTF() : null;
+        created = in.readLong();
+        paletteSize = in.readInt();
+        
+        // Version 1 files have no block entities or entities
+        if (version >= 2) {
+            nbtOffset = in.readLong();
+            nbtLength = in.readInt();
+        } else {
+            nbtOffset = 0;
+            nbtLength = 0;
+        }
+        
+        sectionsX = sections(width);
+        sectionsY = sections(height);
+        sectionsZ = sections(length);
+        int count = sectionsX * sectionsY * sectionsZ;
+        nonAir = new int[count];
+        if (magic == MANIFEST_MAGIC) {
+            offsets = null;
+            lengths = null;
+            store = SectionStore.of(file.getAbsoluteFile().getParentFile());
+            hashes = new byte[count * SectionStore.HASH_SIZE];
+            for (int i = 0; i < count; i++) {
+                in.readFully(hashes, i * SectionStore.HASH_SIZE, SectionStore.HASH_SIZE);
+                nonAir[i] = in.readInt();
+            }
+        } else {
+            offsets = new long[count];
+            lengths = new int[count];
+            store = null;
+            hashes = null;
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+                nonAir[i] = in.readInt();
+            }
+        }
+    }
+    
+    /**
+     * Open a sectioned schematic, reading only its header.
+     * @param file The file
+     * @return The schematic, which must be closed
+     * @throws IOException If the file can't be read or is not a sectioned schematic
+     */
+    public static SectionedSchematic open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // The header is read through a stream from the start; sections are read by position
+            InputStream header = new java.io.BufferedInputStream(Channels.newInputStream(channel.position(0)), 65536);
+            return new SectionedSchematic(file, channel, new DataInputStream(header));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Get the number of sections needed to cover a number of blocks.
+     * @param blocks The number of blocks
+     * @return The number of sections
+     */
+    static int sections(int blocks) {
+        return (blocks + SchematicSection.SIZE - 1) / SchematicSection.SIZE;
+    }
+    
+    /**
+     * Get the width.
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+    
+    /**
+     * Get the height.
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * Get the length.
+     * @return The length
+     */
+    public int getLength() {
+        return length;
+    }
+    
+    /**
+     * Get the number of sections along x.
+     * @return The number of sections
+     */
+    public int getSectionsX() {
+        return sectionsX;
+    }
+    
+    /**
+     * Get the number of sections along y.
+     * @return The number of sections
+     */
+    public int getSectionsY() {
+        return sectionsY;
+    }
+    
+    /**
+     * Get the number of sections along z.
+     * @return The number of sections
+     */
+    public int getSectionsZ() {
+        return sectionsZ;
+    }
+    
+    /**
+     * Get the number of non-air blocks in a section, from the header.
+     * @param sectionX The section's x, in sections
+     * @param sectionY The section's y, in sections
+     * @param sectionZ The section's z, in sections
+     * @return The number of blocks
+     */
+    public int getNonAirBlocks(int sectionX, int sectionY, int sectionZ) {
+        return nonAir[sectionIndex(sectionX, sectionY, sectionZ)];
+    }
+    
+    /**
+     * Get the number of non-air blocks in the whole schematic, from the header.
+     * @return The number of blocks
+     */
+    public long getNonAirBlocks() {
+        long blocks = 0;
+        for (int count : nonAir) {
+            blocks += count;
+        }
+        return blocks;
+    }
+    
+    /**
+     * Describe the schematic for the index, from its header alone.
+     * @param name The name of the schematic
+     * @return The info
+     */
+    public SchematicInfo getInfo(String name) {
+        return getInfo(name, file);
+    }
+    
+    /**
+     * Describe a schematic converted to this file, from the header alone.
+     * @param name The name of the schematic
+     * @param source The file it was converted from, whose size and modification time are used
+     * @return The info
+     */
+    public SchematicInfo getInfo(String name, File source) {
+        long modified = source.lastModified();
+        return new SchematicInfo(name, width, height, length, paletteSize, getNonAirBlocks(), dataVersion,
+                source.length(), author, created != 0 ? created : modified, modified);
+    }
+    
+    /**
+     * Get the hashes of the sections of a manifest.
+     * @return The hashes back to back, in y, z, x order; empty if this is not a manifest
+     */
+    byte[] getSectionHashes() {
+        return hashes != null ? hashes : new byte[0];
+    }
+    
+    /**
+     * Read and decode one section.
+     * @param sectionX The section's x, in sections
+     * @param sectionY The section's y, in sections
+     * @param sectionZ The section's z, in sections
+     * @return The section
+     * @throws IOException If the section can't be read
+     */
+    public SchematicSection readSection(int sectionX, int sectionY, int sectionZ) throws IOException {
+        int index = sectionIndex(sectionX, sectionY, sectionZ);
+        byte[] compressed = store != null ? store.get(hashes, index) : readBytes(offsets[index], lengths[index]);
+        return decode(sectionX, sectionY, sectionZ, inflate(compressed), nonAir[index]);
+    }
+    
+    /**
+     * Read the block entities and entities inside the box a clipboard covers into it.
+     * @param clipboard The clipboard
+     * @param min Where the clipboard's minimum corner is, relative to the schematic
+     * @throws IOException If they can't be read
+     */
+    public void readNbt(Clipboard clipboard, Vector3 min) throws IOException {
+        if (nbtLength == 0) {
+            return;
+        }
+        int minX = min.getX();
+        int minY = min.getY();
+        int minZ = min.getZ();
+        int maxX = minX + clipboard.getWidth() - 1;
+        int maxY = minY + clipboard.getHeight() - 1;
+        int maxZ = minZ + clipboard.getLength() - 1;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(inflate(readBytes(nbtOffset, nbtLength))));
+        
+        // Block entities by their index in the schematic, which becomes their index in the clipboard
+        Map<Integer, byte[]> blockEntities = new HashMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int index = in.readInt();
+            byte[] nbt = new byte[in.readInt()];
+            in.readFully(nbt);
+            int x = index % width;
+            int y = index / (width * length);
+            int z = (index / width) % length;
+            if (x >= minX && y >= minY && z >= minZ && x <= maxX && y <= maxY && z <= maxZ) {
+                blockEntities.put(clipboard.indexOf(x - minX, y - minY, z - minZ), nbt);
+            }
+        }
+        
+        List<EntityData> entities = new ArrayList<>();
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            double x = in.readDouble();
+            double y = in.readDouble();
+            double z = in.readDouble();
+            byte[] nbt = new byte[in.readInt()];
+            in.readFully(nbt);
+            if (x >= minX && y >= minY && z >= minZ && x < maxX + 1 && y < maxY + 1 && z < maxZ + 1) {
+                entities.add(new EntityData(x - minX, y - minY, z - minZ, nbt));
+            }
+        }
+        clipboard.setBlockEntities(blockEntities);
+        clipboard.setEntities(entities);
+    }
+    
+    private byte[] readBytes(long position, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            int read = channel.read(bytes, position + bytes.position());
+            if (read < 0) {
+                throw new EOFException("Sectioned schematic is truncated: " + file.getName());
+            }
+        }
+        return bytes.array();
+    }
+    
+    /**
+     * Read the whole schematic into a clipboard.
+     * @return The clipboard
+     * @throws IOException If a section can't be read
+     */
+    public Clipboard read() throws IOException {
+        return readRegion(new Vector3(0, 0, 0), new Vector3(width - 1, height - 1, length - 1));
+    }
+    
+    /**
+     * Read a box of the schematic into a clipboard, decoding only the sections it touches.
+     * The clipboard's blocks start at 0, 0, 0 at the box's minimum corner.
+     * @param min The minimum corner, relative to the schematic
+     * @param max The maximum corner, relative to the schematic
+     * @return The clipboard
+     * @throws IOException If the box is outside the schematic or a section can't be read
+     */
+    public Clipboard readRegion(Vector3 min, Vector3 max) throws IOException {
+        int minX = Math.max(0, Math.min(min.getX(), max.getX()));
+        int minY = Math.max(0, Math.min(min.getY(), max.getY()));
+        int minZ = Math.max(0, Math.min(min.getZ(), max.getZ()));
+        int maxX = Math.min(width - 1, Math.max(min.getX(), max.getX()));
+        int maxY = Math.min(height - 1, Math.max(min.getY(), max.getY()));
+        int maxZ = Math.min(length - 1, Math.max(min.getZ(), max.getZ()));
+        if (minX > maxX || minY > maxY || minZ > maxZ) {
+            throw new IOException("The box is outside the schematic (" + width + "x" + height + "x" + length + ")");
+        }
+        
+        Clipboard clipboard = new Clipboard(new Vector3(0, 0, 0), maxX - minX + 1, maxY - minY + 1, maxZ - minZ + 1);
+        int size = SchematicSection.SIZE;
+        for (int sy = minY / size; sy <= maxY / size; sy++) {
+            for (int sz = minZ / size; sz <= maxZ / size; sz++) {
+                for (int sx = minX / size; sx <= maxX / size; sx++) {
+                    SchematicSection section = readSection(sx, sy, sz);
+                    
+                    // The part of the section inside the box
+                    int fromX = Math.max(minX, sx * size);
+                    int fromY = Math.max(minY, sy * size);
+                    int fromZ = Math.max(minZ, sz * size);
+                    int toX = Math.min(maxX, sx * size + size - 1);
+                    int toY = Math.min(maxY, sy * size + size - 1);
+                    int toZ = Math.min(maxZ, sz * size + size - 1);
+                    for (int y = fromY; y <= toY; y++) {
+                        for (int z = fromZ; z <= toZ; z++) {
+                            for (int x = fromX; x <= toX; x++) {
+                                BlockData data = section.getBlock(x - sx * size, y - sy * size, z - sz * size);
+                                clipboard.setBlock(new Vector3(x - minX, y - minY, z - minZ), data);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        readNbt(clipboard, new Vector3(minX, minY, minZ));
+        return clipboard;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    private int sectionIndex(int sectionX, int sectionY, int sectionZ) {
+        if (sectionX < 0 || sectionY < 0 || sectionZ < 0 ||
+            sectionX >= sectionsX || sectionY >= sectionsY || sectionZ >= sectionsZ) {
+            throw new IndexOutOfBoundsException("No section at " + sectionX + ", " + sectionY + ", " + sectionZ);
+        }
+        return (sectionY * sectionsZ + sectionZ) * sectionsX + sectionX;
+    }
+    
+    private byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // Most sections fit; a section with a long palette grows the buffer
+            byte[] output = new byte[SchematicSection.VOLUME * 2 + 1024];
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == output.length) {
+                    output = java.util.Arrays.copyOf(output, output.length * 2);
+                }
+                int n = inflater.inflate(output, size, output.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Corrupt data in " + file.getName());
+                }
+                size += n;
+            }
+            return size == output.length ? output : java.util.Arrays.copyOf(output, size);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt data in " + file.getName(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private SchematicSection decode(int sectionX, int sectionY, int sectionZ, byte[] data, int nonAirBlocks) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int count = in.readUnsignedShort();
+        if (count == 0) {
+            throw new IOException("Empty palette in a section of " + file.getName());
+        }
+        
+        BlockData[] palette = new BlockData[count];
+        for (int i = 0; i < count; i++) {
+            palette[i] = states.computeIfAbsent(in.readUTF(), NBTUtils::parseBlockState);
+        }
+        
+        short[] ids = null;
+        if (count > 1) {
+            ids = new short[SchematicSection.VOLUME];
+            boolean wide = count > 256;
+            for (int i = 0; i < ids.length; i++) {
+                int id = wide ? in.readUnsignedShort() : in.readUnsignedByte();
+                if (id >= count) {
+                    throw new IOException("Block id out of the palette in a section of " + file.getName());
+                }
+                ids[i] = (short) id;
+            }
+        }
+        return new SchematicSection(sectionX, sectionY, sectionZ, palette, ids, nonAirBlocks);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,376 @@
+package org.frizzlenpop.frizzlenEdit.schematic;
+
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.world.EntityData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes FrizzlenEdit's native sectioned schematics; see {@link SectionedSchematic} for
+ * the layout.
+ *
+ * Each section is deflated on its own and holds its own palette: the number of states, the
+ * states as strings, and then, unless the section is a single block, the local id of each
+ * of its 4096 cells in y, z, x order, one byte each for up to 256 states and two beyond.
+ *
+ * The block entities and entities follow the sections, deflated together: the number of
+ * block entities, each as its index in the schematic and its NBT, then the number of
+ * entities, each as its position and its NBT.
+ *
+ * A deduplicated schematic is written as a manifest: the sections go to the
+ * {@link SectionStore} under the hash of their uncompressed encoding, skipping any already
+ * there, and the index lists the hashes.
+ */
+public final class SectionedSchematicWriter {
+    // Bytes of the index per section: offset, compressed length and non-air blocks
+    private static final int INDEX_ENTRY_SIZE = 8 + 4 + 4;
+    
+    // Bytes of a manifest's index per section: hash and non-air blocks
+    private static final int MANIFEST_ENTRY_SIZE = SectionStore.HASH_SIZE + 4;
+    
+    // Bytes of the header saying where the block entities and entities are
+    private static final int NBT_ENTRY_SIZE = 8 + 4;
+    
+    /**
+     * Block ids of a whole schematic, looked up by position.
+     */
+    interface BlockIds {
+        /**
+         * Get the id of a block.
+         * @return The index of its state in the palette
+         */
+        int get(int x, int y, int z);
+    }
+    
+    private SectionedSchematicWriter() {
+    }
+    
+    /**
+     * Write a clipboard as a sectioned schematic. The file is written next to its destination
+     * first and moved into place once complete.
+     * @param clipboard The clipboard
+     * @param file The file
+     * @param compressionLevel The deflate level, from 0 to 9
+     * @param author The player saving it, or null
+     * @throws IOException If the file can't be written
+     */
+    public static void write(Clipboard clipboard, File file, int compressionLevel, String author) throws IOException {
+        write(clipboard, file, compressionLevel, author, false);
+    }
+    
+    /**
+     * Write a clipboard as a sectioned schematic, or as a manifest of a deduplicated one.
+     * The file is written next to its destination first and moved into place once complete.
+     * @param clipboard The clipboard
+     * @param file The file
+     * @param compressionLevel The deflate level, from 0 to 9
+     * @param author The player saving it, or null
+     * @param deduplicated Whether to put the sections in the section store and write a manifest
+     * @throws IOException If the file can't be written
+     */
+    public static void write(Clipboard clipboard, File file, int compressionLevel, String author, 
+                             boolean deduplicated) throws IOException {
+        int width = clipboard.getWidth();
+        int height = clipboard.getHeight();
+        int length = clipboard.getLength();
+        if (width <= 0 || height <= 0 || length <= 0) {
+            throw new IOException("Cannot save an empty clipboard");
+        }
+        
+        // Global ids first, the same pass the Sponge writer makes
+        List<String> palette = new ArrayList<>();
+        int[] blockIds = SchematicManager.SchematicFormat.indexBlocks(clipboard, palette);
+        write(width, height, length, palette, (x, y, z) -> blockIds[(y * length + z) * width + x], 
+              clipboard.getBlockEntities(), clipboard.getEntities(), deduplicated ? SectionStore.of(file.getAbsoluteFile().getParentFile()) : null, 
+              file, compressionLevel, author, System.currentTimeMillis());
+    }
+    
+    /**
+     * Write block ids as a sectioned schematic, without block entities or entities.
+     * @param width The width
+     * @param height The height
+     * @param length The length
+     * @param palette The block states by id; id 0 must be air
+     * @param blockIds The id of every block
+     * @param file The file
+     * @param compressionLevel The deflate level, from 0 to 9
+     * @param author The author, or null
+     * @param created When the schematic was made
+     * @throws IOException If the file can't be written
+     */
+    static void write(int width, int height, int length, List<String> palette, BlockIds blockIds, File file, 
+                      int compressionLevel, String author, long created) throws IOException {
+        write(width, height, length, palette, blockIds, Collections.emptyMap(), Collections.emptyList(), null, 
+              file, compressionLevel, author, created);
+    }
+    
+    /**
+     * Write block ids as a sectioned schematic, for importers that produce them without a
+     * clipboard.
+     * @param width The width
+     * @param height The height
+     * @param length The length
+     * @param palette The block states by id; id 0 must be air
+     * @param blockIds The id of every block
+     * @param blockEntities The NBT of block entities by their index in y, z, x order
+     * @param entities The entities, relative to the minimum corner
+     * @param store The store to put the sections in, writing a manifest, or null to write them to the file
+     * @param file The file
+     * @param compressionLevel The deflate level, from 0 to 9
+     * @param author The author, or null
+     * @param created When the schematic was made
+     * @throws IOException If the file can't be written
+     */
+    static void write(int width, int height, int length, List<String> palette, BlockIds blockIds, 
+                      Map<Integer, byte[]> blockEntities, List<EntityData> entities, SectionStore store, 
+                      File file, int compressionLevel, String author, long created) throws IOException {
+        boolean[] air = new boolean[palette.size()];
+        for (int i = 0; i < air.length; i++) {
+            air[i] = SchematicManager.SchematicFormat.isAir(palette.get(i));
+        }
+        
+        int sectionsX = SectionedSchematic.sections(width);
+        int sectionsY = SectionedSchematic.sections(height);
+        int sectionsZ = SectionedSchematic.sections(length);
+        int count = sectionsX * sectionsY * sectionsZ;
+        
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(store != null ? SectionedSchematic.MANIFEST_MAGIC : SectionedSchematic.MAGIC);
+        header.writeInt(SectionedSchematic.VERSION);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.writeInt(length);
+        header.writeInt(SchematicManager.SchematicFormat.getDataVersion());
+        header.writeBoolean(author != null);
+        if (author != null) {
+            header.writeUTF(author);
+        }
+        header.writeLong(created);
+        header.writeInt(palette.size());
+        
+        long[] offsets = new long[count];
+        int[] lengths = new int[count];
+        int[] nonAir = new int[count];
+        byte[] hashes = store != null ? new byte[count * SectionStore.HASH_SIZE] : null;
+        
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Deflater deflater = new Deflater(Math.max(0, Math.min(9, compressionLevel)));
+        if (store != null) {
+            store.writeLock().lock();
+        }
+        try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+            out.setLength(0);
+            long position = headerBytes.size() + NBT_ENTRY_SIZE + 
+                           (long) count * (store != null ? MANIFEST_ENTRY_SIZE : INDEX_ENTRY_SIZE);
+            out.seek(position);
+            
+            SectionEncoder encoder = new SectionEncoder(palette, air, deflater);
+            int index = 0;
+            for (int sy = 0; sy < sectionsY; sy++) {
+                for (int sz = 0; sz < sectionsZ; sz++) {
+                    for (int sx = 0; sx < sectionsX; sx++) {
+                        if (store != null) {
+                            // A section already in the store is neither compressed nor written again
+                            byte[] section = encoder.serialize(blockIds, width, height, length, sx, sy, sz);
+                            System.arraycopy(SectionStore.hash(section), 0, hashes, index * SectionStore.HASH_SIZE, 
+                                             SectionStore.HASH_SIZE);
+                            if (!store.contains(hashes, index)) {
+                                store.put(hashes, index, encoder.compress(section));
+                            }
+                        } else {
+                            byte[] section = encoder.encode(blockIds, width, height, length, sx, sy, sz);
+                            out.write(section);
+                            offsets[index] = position;
+                            lengths[index] = section.length;
+                            position += section.length;
+                        }
+                        nonAir[index] = encoder.nonAir;
+                        index++;
+                    }
+                }
+            }
+            
+            // Block entities and entities last, only when there are any
+            long nbtOffset = 0;
+            int nbtLength = 0;
+            if (!blockEntities.isEmpty() || !entities.isEmpty()) {
+                byte[] nbt = encoder.compress(serializeNbt(blockEntities, entities));
+                out.write(nbt);
+                nbtOffset = position;
+                nbtLength = nbt.length;
+            }
+            
+            // Now that everything's place is known, fill in the header and index
+            header.writeLong(nbtOffset);
+            header.writeInt(nbtLength);
+            for (int i = 0; i < count; i++) {
+                if (store != null) {
+                    header.write(hashes, i * SectionStore.HASH_SIZE, SectionStore.HASH_SIZE);
+                } else {
+                    header.writeLong(offsets[i]);
+                    header.writeInt(lengths[i]);
+                }
+                header.writeInt(nonAir[i]);
+            }
+            out.seek(0);
+            out.write(headerBytes.toByteArray());
+            out.close();
+            
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            deflater.end();
+            if (store != null) {
+                store.writeLock().unlock();
+            }
+        }
+    }
+    
+    private static byte[] serializeNbt(Map<Integer, byte[]> blockEntities, List<EntityData> entities) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(blockEntities.size());
+        for (Map.Entry<Integer, byte[]> entry : blockEntities.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        out.writeInt(entities.size());
+        for (EntityData entity : entities) {
+            out.writeDouble(entity.getX());
+            out.writeDouble(entity.getY());
+            out.writeDouble(entity.getZ());
+            out.writeInt(entity.getNbt().length);
+            out.write(entity.getNbt());
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Encodes sections one after another, reusing its buffers between them.
+     */
+    static final class SectionEncoder {
+        private final List<String> palette;
+        private final boolean[] air;
+        private final Deflater deflater;
+        
+        // Local id of each global id in the current section, or -1
+        private final int[] localIds;
+        private final int[] cells = new int[SchematicSection.VOLUME];
+        private final List<Integer> used = new ArrayList<>();
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream(SchematicSection.VOLUME * 2);
+        private byte[] compressed = new byte[SchematicSection.VOLUME];
+        
+        // Non-air blocks in the section encoded last
+        int nonAir;
+        
+        SectionEncoder(List<String> palette, boolean[] air, Deflater deflater) {
+            this.palette = palette;
+            this.air = air;
+            this.deflater = deflater;
+            this.localIds = new int[palette.size()];
+            Arrays.fill(localIds, -1);
+        }
+        
+        /**
+         * Encode one section from the global ids of the whole schematic.
+         * @return The compressed section
+         */
+        byte[] encode(BlockIds blockIds, int width, int height, int length, int sx, int sy, int sz) throws IOException {
+            return compress(serialize(blockIds, width, height, length, sx, sy, sz));
+        }
+        
+        /**
+         * Serialize one section from the global ids of the whole schematic, without
+         * compressing it. Equal sections serialize to equal bytes.
+         * @return The serialized section
+         */
+        byte[] serialize(BlockIds blockIds, int width, int height, int length, int sx, int sy, int sz) throws IOException {
+            int size = SchematicSection.SIZE;
+            nonAir = 0;
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    for (int x = 0; x < size; x++) {
+                        int bx = sx * size + x;
+                        int by = sy * size + y;
+                        int bz = sz * size + z;
+                        // Cells past the edge of the schematic are air, which is always global id 0
+                        int global = bx < width && by < height && bz < length ? blockIds.get(bx, by, bz) : 0;
+                        if (localIds[global] < 0) {
+                            localIds[global] = used.size();
+                            used.add(global);
+                        }
+                        if (!air[global]) {
+                            nonAir++;
+                        }
+                        cells[(y * size + z) * size + x] = localIds[global];
+                    }
+                }
+            }
+            byte[] section = serialize();
+            
+            for (int global : used) {
+                localIds[global] = -1;
+            }
+            used.clear();
+            return section;
+        }
+        
+        /**
+         * Serialize the current section: palette, then ids.
+         */
+        byte[] serialize() throws IOException {
+            raw.reset();
+            DataOutputStream out = new DataOutputStream(raw);
+            out.writeShort(used.size());
+            for (int global : used) {
+                out.writeUTF(palette.get(global));
+            }
+            if (used.size() > 1) {
+                boolean wide = used.size() > 256;
+                for (int cell : cells) {
+                    if (wide) {
+                        out.writeShort(cell);
+                    } else {
+                        out.writeByte(cell);
+                    }
+                }
+            }
+            return raw.toByteArray();
+        }
+        
+        byte[] compress(byte[] data) {
+            deflater.reset();
+            deflater.setInput(data);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+            return Arrays.copyOf(compressed, size);
+        }
+    }
+} 
\ No newline at end of file
@@ -6,12 +6,18 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
 import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.operations.JobProfile;
+import org.frizzlenpop.frizzlenEdit.operations.OperationStats;
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.scheduler.TaskScheduler;
+import org.frizzlenpop.frizzlenEdit.utils.EditMetrics;
 import org.frizzlenpop.frizzlenEdit.utils.ServerPerformanceMonitor;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -20,7 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 public class OptimizedPasteSystem {
-
+    
     // For organizing blocks by chunk
     public static class ChunkCoordinate {
         final int x;
@@ -76,6 +82,8 @@ public class OptimizedPasteSystem {
     }
     
     private final FrizzlenEdit plugin;
+    private final TaskScheduler scheduler;
+    private final Clock clock;
     private final Player player;
     private final Clipboard clipboard;
     private final World world;
@@ -91,8 +99,13 @@ public class OptimizedPasteSystem {
     private final AtomicInteger remainingBlocks;
     private ExecutorService processingPool;
     private BlockingQueue<OptimizedBatch> batchQueue;
-    private BukkitTask pasteTask;
+    private ScheduledTask pasteTask;
+    
+    // Allocation and CPU time of preparing and placing batches, while profiling is enabled
+    private final boolean profiling;
+    private final OperationStats stats;
     
+    private static final String STATS_TYPE = "optimized_paste";
     private static final int MIN_BATCH_SIZE = 50;
     private static final int MAX_BATCH_SIZE = 5000;
     
@@ -109,6 +122,10 @@ public class OptimizedPasteSystem {
         this.initialBatchSize = initialBatchSize;
         this.initialDelay = initialDelay;
         this.performanceMonitor = performanceMonitor;
+        this.scheduler = plugin.getTaskScheduler();
+        this.clock = plugin.getClock();
+        this.profiling = plugin.getConfigManager().isProfilingEnabled();
+        this.stats = plugin.getOperationManager().getStats();
         
         this.allBlocks = new ArrayList<>();
         this.isRunning = new AtomicBoolean(false);
@@ -182,7 +199,12 @@ public class OptimizedPasteSystem {
         
         for (List<BlockEntry> batch : initialBatches) {
             processingPool.submit(() -> {
+                long bytes = profiling ? JobProfile.getAllocatedOnThread() : 0;
+                long cpu = profiling ? JobProfile.getCpuTimeOnThread() : 0;
                 OptimizedBatch optimizedBatch = prepareOptimizedBatch(batch);
+                if (profiling) {
+                    recordPhase(JobProfile.Phase.PLAN, batch.size(), bytes, cpu);
+                }
                 try {
                     batchQueue.put(optimizedBatch);
                 } catch (InterruptedException e) {
@@ -208,10 +230,10 @@ public class OptimizedPasteSystem {
     }
     
     private void startPasteTask() {
-        final long startTime = System.currentTimeMillis();
+        final long startTime = clock.currentTimeMillis();
         int currentDelay = initialDelay;
         
-        pasteTask = plugin.getServer().getScheduler().runTaskTimer(plugin, new Runnable() {
+        pasteTask = scheduler.runTaskTimer(new Runnable() {
             private int consecutiveEmptyPolls = 0;
             private int currentBatchSize = initialBatchSize;
             private int currentTickDelay = initialDelay;
@@ -227,13 +249,7 @@ public class OptimizedPasteSystem {
                 
                 // Check if processing is complete and queue is empty
                 if (processingPool.isTerminated() && batchQueue.isEmpty() && remainingBlocks.get() == 0) {
-                    isRunning.set(false);
-                    long duration = System.currentTimeMillis() - startTime;
-                    player.sendMessage("§aOptimized paste completed in " + (duration / 1000.0) + " seconds.");
-                    
-                    if (pasteTask != null) {
-                        pasteTask.cancel();
-                    }
+                    complete(startTime);
                     return;
                 }
                 
@@ -250,13 +266,7 @@ public class OptimizedPasteSystem {
                         // If we've had many empty polls and processing is done, we're probably finished
                         if (consecutiveEmptyPolls > 20 && processingPool.isTerminated()) {
                             if (remainingBlocks.get() <= 0) {
-                                isRunning.set(false);
-                                long duration = System.currentTimeMillis() - startTime;
-                                player.sendMessage("§aOptimized paste completed in " + (duration / 1000.0) + " seconds.");
-                                
-                                if (pasteTask != null) {
-                                    pasteTask.cancel();
-                                }
+                                complete(startTime);
                             }
                         }
                         return;
@@ -265,6 +275,9 @@ public class OptimizedPasteSystem {
                     consecutiveEmptyPolls = 0;
                     
                     // Process the batch by chunks
+                    long batchStart = clock.nanoTime();
+                    long batchBytes = profiling ? JobProfile.getAllocatedOnThread() : 0;
+                    long batchCpu = profiling ? JobProfile.getCpuTimeOnThread() : 0;
                     int blocksProcessed = 0;
                     for (Map.Entry<ChunkCoordinate, List<BlockEntry>> entry : batch.blocksByChunk.entrySet()) {
                         List<BlockEntry> chunkBlocks = entry.getValue();
@@ -289,6 +302,14 @@ public class OptimizedPasteSystem {
                         }
                     }
                     
+                    if (profiling) {
+                        recordPhase(JobProfile.Phase.APPLY, blocksProcessed, batchBytes, batchCpu);
+                    }
+                    
+                    // Publish the batch for the budget overlay
+                    EditMetrics.getInstance().recordWork(clock.nanoTime() - batchStart, blocksProcessed);
+                    EditMetrics.getInstance().recordBatchSize(currentBatchSize);
+                    
                     // Update progress
                     blocksPlaced.addAndGet(blocksProcessed);
                     remainingBlocks.addAndGet(-blocksProcessed);
@@ -299,7 +320,7 @@ public class OptimizedPasteSystem {
                     if (totalPlaced % 5000 < blocksProcessed || totalPlaced == totalBlocks) {
                         updateProgress(player, totalPlaced, totalBlocks, startTime);
                     }
-                    
+                
                 } catch (Exception e) {
                     plugin.getLogger().log(Level.SEVERE, "Error during paste operation", e);
                     player.sendMessage("§cError during paste: " + e.getMessage());
@@ -334,6 +355,38 @@ public class OptimizedPasteSystem {
         }, 0L, currentDelay);
     }
     
+    /**
+     * Finish the paste once every block is placed, adding the block entities and entities.
+     * @param startTime When the paste started
+     */
+    private void complete(long startTime) {
+        isRunning.set(false);
+        Vector3 position = Vector3.fromLocation(origin).add(clipboard.getOrigin().multiply(-1));
+        clipboard.pasteNbt(position, new BukkitExtent(world, false));
+        if (profiling) {
+            stats.countJob(STATS_TYPE);
+        }
+        long duration = clock.currentTimeMillis() - startTime;
+        player.sendMessage("§aOptimized paste completed in " + (duration / 1000.0) + " seconds.");
+        
+        if (pasteTask != null) {
+            pasteTask.cancel();
+        }
+    }
+    
+    /**
+     * Record the allocation and CPU time of a phase of this paste, from counters read on the
+     * current thread when the phase started.
+     * @param phase The phase
+     * @param blocks The number of blocks the phase covered
+     * @param bytesAtStart The bytes the thread had allocated when the phase started
+     * @param cpuAtStart The CPU time the thread had used when the phase started
+     */
+    private void recordPhase(JobProfile.Phase phase, int blocks, long bytesAtStart, long cpuAtStart) {
+        stats.record(STATS_TYPE, phase, blocks, JobProfile.getAllocatedOnThread() - bytesAtStart, 
+                    JobProfile.getCpuTimeOnThread() - cpuAtStart);
+    }
+    
     private OptimizedBatch prepareOptimizedBatch(List<BlockEntry> blocks) {
         Map<ChunkCoordinate, List<BlockEntry>> blocksByChunk = new HashMap<>();
         boolean hasPhysicsBlocks = false;
@@ -389,7 +442,7 @@ public class OptimizedPasteSystem {
     }
     
     private void updateProgress(Player player, int blocksPlaced, int totalBlocks, long startTime) {
-        long currentTime = System.currentTimeMillis();
+        long currentTime = clock.currentTimeMillis();
         double progress = (double) blocksPlaced / totalBlocks;
         long elapsedTime = currentTime - startTime;
         
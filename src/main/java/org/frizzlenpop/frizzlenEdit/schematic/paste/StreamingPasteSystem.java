@@ -0,0 +1,382 @@
+package org.frizzlenpop.frizzlenEdit.schematic.paste;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.operations.JobProfile;
+import org.frizzlenpop.frizzlenEdit.operations.Operation;
+import org.frizzlenpop.frizzlenEdit.operations.OperationStats;
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.schematic.SchematicSection;
+import org.frizzlenpop.frizzlenEdit.schematic.SectionedSchematic;
+import org.frizzlenpop.frizzlenEdit.utils.EditMetrics;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.ServerPerformanceMonitor;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pastes a sectioned schematic straight from its file. A background thread decodes sections
+ * one chunk column at a time into a small bounded queue, and the main thread places them a
+ * batch per tick, so memory use stays the same whatever the size of the schematic.
+ *
+ * Unlike {@link OptimizedPasteSystem}, blocks are never collected up front: only the
+ * sections waiting in the queue and the one being placed are in memory. Block entities and
+ * entities are read after the last section and added once every block is placed.
+ *
+ * The paste is run through the operation manager like any other. It doesn't keep the blocks
+ * it replaces, as that would grow with the schematic, so it can't be undone.
+ */
+public class StreamingPasteSystem implements Operation {
+    // Decoded sections waiting to be placed; 4096 blocks each
+    private static final int QUEUE_SECTIONS = 32;
+    
+    private static final String STATS_TYPE = "streaming_paste";
+    private static final int MIN_BATCH_SIZE = 50;
+    private static final int MAX_BATCH_SIZE = 20000;
+    
+    private final FrizzlenEdit plugin;
+    private final Player player;
+    private final SectionedSchematic schematic;
+    private final World world;
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    private final boolean noAir;
+    private final ServerPerformanceMonitor performanceMonitor;
+    private final Clock clock;
+    private final long totalBlocks;
+    
+    private final BlockingQueue<SchematicSection> queue = new ArrayBlockingQueue<>(QUEUE_SECTIONS);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean decodingDone;
+    private volatile Exception failure;
+    private final CompletableFuture<HistoryEntry> completion = new CompletableFuture<>();
+    private HistoryEntry entry;
+    private Extent extent;
+    
+    // Block entities and entities of the whole schematic, once decoding is done
+    private volatile Clipboard nbt;
+    
+    // Main thread only: the section being placed and how far into it
+    private SchematicSection current;
+    private int cursor;
+    private int batchSize;
+    private long blocksPlaced;
+    private long startTime;
+    private ScheduledTask pasteTask;
+    
+    // Allocation and CPU time of decoding and placing, while profiling is enabled
+    private final boolean profiling;
+    private final OperationStats stats;
+    
+    /**
+     * Create a streaming paste. The paste owns the schematic and closes it when done.
+     * @param plugin The plugin instance
+     * @param player The player pasting
+     * @param schematic The open schematic
+     * @param origin Where the schematic's minimum corner goes
+     * @param noAir Whether to skip air blocks
+     * @param initialBatchSize The blocks placed in the first tick; adjusted with the TPS
+     * @param performanceMonitor The TPS source, or null for a fixed batch size
+     */
+    public StreamingPasteSystem(FrizzlenEdit plugin, Player player, SectionedSchematic schematic,
+                               Location origin, boolean noAir, int initialBatchSize,
+                               ServerPerformanceMonitor performanceMonitor) {
+        this.plugin = plugin;
+        this.player = player;
+        this.schematic = schematic;
+        this.world = origin.getWorld();
+        this.originX = origin.getBlockX();
+        this.originY = origin.getBlockY();
+        this.originZ = origin.getBlockZ();
+        this.noAir = noAir;
+        this.batchSize = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, initialBatchSize));
+        this.performanceMonitor = performanceMonitor;
+        this.clock = plugin.getClock();
+        this.profiling = plugin.getConfigManager().isProfilingEnabled();
+        this.stats = plugin.getOperationManager().getStats();
+        this.totalBlocks = noAir ? schematic.getNonAirBlocks() :
+                          (long) schematic.getWidth() * schematic.getHeight() * schematic.getLength();
+    }
+    
+    /**
+     * Start decoding in the background and placing on the main thread. Must be called on
+     * the main thread.
+     */
+    public void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        startTime = clock.currentTimeMillis();
+        
+        Thread decoder = new Thread(this::decode, "FrizzlenEdit-StreamingPaste");
+        decoder.setDaemon(true);
+        decoder.start();
+        
+        pasteTask = plugin.getTaskScheduler().runTaskTimer(this::tick, 1L, 1L);
+        player.sendMessage(ChatColor.GREEN + "Started streaming paste of " + totalBlocks + " blocks.");
+    }
+    
+    @Override
+    public HistoryEntry execute() {
+        entry = new HistoryEntry(player, extent != null ? extent : new BukkitExtent(world, false), getDescription());
+        start();
+        return entry;
+    }
+    
+    /**
+     * Stop the paste; blocks already placed stay.
+     */
+    public void stop() {
+        if (running.compareAndSet(true, false)) {
+            if (pasteTask != null) {
+                pasteTask.cancel();
+            }
+            queue.clear();
+            completion.cancel(false);
+        }
+    }
+    
+    /**
+     * Decode the sections a chunk column at a time, waiting whenever the queue is full.
+     */
+    private void decode() {
+        try {
+            for (int sx = 0; sx < schematic.getSectionsX(); sx++) {
+                for (int sz = 0; sz < schematic.getSectionsZ(); sz++) {
+                    // Bottom up, so falling blocks land on what is already placed
+                    for (int sy = 0; sy < schematic.getSectionsY(); sy++) {
+                        if (!running.get()) {
+                            return;
+                        }
+                        if (noAir && schematic.getNonAirBlocks(sx, sy, sz) == 0) {
+                            continue;
+                        }
+                        
+                        long bytes = profiling ? JobProfile.getAllocatedOnThread() : 0;
+                        long cpu = profiling ? JobProfile.getCpuTimeOnThread() : 0;
+                        SchematicSection section = schematic.readSection(sx, sy, sz);
+                        if (profiling) {
+                            recordPhase(JobProfile.Phase.PLAN, SchematicSection.VOLUME, bytes, cpu);
+                        }
+                        
+                        while (!queue.offer(section, 100, TimeUnit.MILLISECONDS)) {
+                            if (!running.get()) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+            
+            Vector3 zero = new Vector3(0, 0, 0);
+            Clipboard extras = new Clipboard(zero, schematic.getWidth(), schematic.getHeight(), schematic.getLength());
+            schematic.readNbt(extras, zero);
+            nbt = extras;
+        } catch (IOException | RuntimeException e) {
+            // Reported by the next tick, which stops the paste
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            decodingDone = true;
+            try {
+                schematic.close();
+            } catch (IOException e) {
+                Logger.debug("Could not close schematic after streaming paste: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Place up to a batch of blocks from the queue.
+     */
+    private void tick() {
+        if (!running.get()) {
+            return;
+        }
+        if (failure != null) {
+            Logger.severe("Error reading schematic during streaming paste: " + failure);
+            player.sendMessage(ChatColor.RED + "Error reading schematic: " + failure.getMessage());
+            stop();
+            return;
+        }
+        adjustBatchSize();
+        
+        long batchStart = clock.nanoTime();
+        long bytes = profiling ? JobProfile.getAllocatedOnThread() : 0;
+        long cpu = profiling ? JobProfile.getCpuTimeOnThread() : 0;
+        int placed = 0;
+        while (placed < batchSize) {
+            if (current == null) {
+                current = queue.poll();
+                cursor = 0;
+                if (current == null) {
+                    break;
+                }
+            }
+            placed += placeFrom(current, batchSize - placed);
+            if (cursor == SchematicSection.VOLUME) {
+                current = null;
+            }
+        }
+        
+        if (placed > 0) {
+            if (profiling) {
+                recordPhase(JobProfile.Phase.APPLY, placed, bytes, cpu);
+            }
+            EditMetrics.getInstance().recordWork(clock.nanoTime() - batchStart, placed);
+            EditMetrics.getInstance().recordBatchSize(batchSize);
+            
+            // Report progress about every 5%
+            long before = blocksPlaced;
+            blocksPlaced += placed;
+            long step = Math.max(1, totalBlocks / 20);
+            if (before / step != blocksPlaced / step) {
+                updateProgress();
+            }
+        }
+        
+        if (current == null && decodingDone && queue.isEmpty() && failure == null) {
+            running.set(false);
+            pasteTask.cancel();
+            if (nbt != null) {
+                nbt.pasteNbt(new Vector3(originX, originY, originZ), extent != null ? extent : new BukkitExtent(world, false));
+            }
+            if (profiling) {
+                stats.countJob(STATS_TYPE);
+            }
+            long duration = clock.currentTimeMillis() - startTime;
+            player.sendMessage(ChatColor.GREEN + "Streaming paste completed: " + blocksPlaced +
+                              " blocks in " + (duration / 1000.0) + " seconds.");
+            completion.complete(entry);
+        }
+    }
+    
+    /**
+     * Place blocks of a section from the cursor on.
+     * @param section The section
+     * @param limit The most blocks to place
+     * @return The number of blocks placed
+     */
+    private int placeFrom(SchematicSection section, int limit) {
+        int size = SchematicSection.SIZE;
+        int baseX = section.getSectionX() * size;
+        int baseY = section.getSectionY() * size;
+        int baseZ = section.getSectionZ() * size;
+        int placed = 0;
+        
+        while (cursor < SchematicSection.VOLUME && placed < limit) {
+            int x = cursor & (size - 1);
+            int z = (cursor >> 4) & (size - 1);
+            int y = cursor >> 8;
+            cursor++;
+            
+            // Cells past the edge of the schematic are padding
+            if (baseX + x >= schematic.getWidth() || baseY + y >= schematic.getHeight() ||
+                baseZ + z >= schematic.getLength()) {
+                continue;
+            }
+            BlockData data = section.getBlock(x, y, z);
+            if (noAir && data.getMaterial().isAir()) {
+                continue;
+            }
+            if (extent != null) {
+                extent.setBlock(new Vector3(originX + baseX + x, originY + baseY + y, originZ + baseZ + z), data);
+            } else {
+                world.getBlockAt(originX + baseX + x, originY + baseY + y, originZ + baseZ + z).setBlockData(data, false);
+            }
+            placed++;
+        }
+        return placed;
+    }
+    
+    @Override
+    public Player getPlayer() {
+        return player;
+    }
+    
+    @Override
+    public String getDescription() {
+        return "Streaming Paste";
+    }
+    
+    @Override
+    public int getVolume() {
+        return (int) Math.min(Integer.MAX_VALUE, totalBlocks);
+    }
+    
+    @Override
+    public void setExtent(Extent extent) {
+        this.extent = extent;
+    }
+    
+    @Override
+    public boolean isSpreadOverTicks() {
+        return true;
+    }
+    
+    @Override
+    public boolean isUndoable() {
+        return false;
+    }
+    
+    @Override
+    public CompletableFuture<HistoryEntry> getCompletion() {
+        return completion;
+    }
+    
+    private void adjustBatchSize() {
+        if (performanceMonitor == null) {
+            return;
+        }
+        double tps = performanceMonitor.getCurrentTps();
+        if (tps > 19.0) {
+            batchSize = Math.min(MAX_BATCH_SIZE, (int) (batchSize * 1.2));
+        } else if (tps < 10.0) {
+            batchSize = Math.max(MIN_BATCH_SIZE, batchSize / 3);
+        } else if (tps < 15.0) {
+            batchSize = Math.max(MIN_BATCH_SIZE, (int) (batchSize * 0.7));
+        }
+    }
+    
+    /**
+     * Record the allocation and CPU time of a phase of this paste, from counters read on the
+     * current thread when the phase started.
+     * @param phase The phase
+     * @param blocks The number of blocks the phase covered
+     * @param bytesAtStart The bytes the thread had allocated when the phase started
+     * @param cpuAtStart The CPU time the thread had used when the phase started
+     */
+    private void recordPhase(JobProfile.Phase phase, int blocks, long bytesAtStart, long cpuAtStart) {
+        stats.record(STATS_TYPE, phase, blocks, JobProfile.getAllocatedOnThread() - bytesAtStart,
+                    JobProfile.getCpuTimeOnThread() - cpuAtStart);
+    }
+    
+    private void updateProgress() {
+        double progress = totalBlocks > 0 ? (double) blocksPlaced / totalBlocks : 1.0;
+        long elapsed = clock.currentTimeMillis() - startTime;
+        String eta = "";
+        if (progress > 0.05 && elapsed > 1000) {
+            long remaining = (long) (elapsed / progress) - elapsed;
+            eta = " (ETA: " + (remaining / 60000 > 0 ? remaining / 60000 + "m " : "") + (remaining / 1000 % 60) + "s)";
+        }
+        player.sendMessage(ChatColor.GREEN + "Paste progress: " + ChatColor.WHITE + blocksPlaced + "/" + totalBlocks +
+                          ChatColor.GRAY + String.format(" (%.1f%%)", progress * 100) + eta);
+    }
+} 
\ No newline at end of file
@@ -10,24 +10,24 @@ import org.bukkit.event.block.Action;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.ItemStack;
 import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.session.LocalSession;
+import org.frizzlenpop.frizzlenEdit.session.SessionManager;
 import org.frizzlenpop.frizzlenEdit.utils.Vector3;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
 
 /**
  * Manages player selections and selection wands.
  */
 public class SelectionManager implements Listener {
     private final FrizzlenEdit plugin;
-    private final Map<UUID, Region> selections = new HashMap<>();
+    private final SessionManager sessions;
     
     // The selection wand material
     private static final Material WAND_MATERIAL = Material.WOODEN_AXE;
     
     public SelectionManager(FrizzlenEdit plugin) {
         this.plugin = plugin;
+        this.sessions = plugin.getSessionManager();
     }
     
     /**
@@ -36,7 +36,7 @@ public class SelectionManager implements Listener {
      * @return True if the player has a selection
      */
     public boolean hasSelection(Player player) {
-        Region region = selections.get(player.getUniqueId());
+        Region region = getSelection(player);
         return region != null && region.getPos1() != null && region.getPos2() != null;
     }
     
@@ -46,7 +46,8 @@ public class SelectionManager implements Listener {
      * @return The player's selection, or null if they don't have one
      */
     public Region getSelection(Player player) {
-        return selections.get(player.getUniqueId());
+        LocalSession session = sessions.getIfPresent(player.getUniqueId());
+        return session == null ? null : session.getSelection();
     }
     
     /**
@@ -59,8 +60,8 @@ public class SelectionManager implements Listener {
         // Create a new region with null positions
         Region region = new Region(world, null, null);
         
-        // Store the selection
-        selections.put(player.getUniqueId(), region);
+        // Store the selection, once the session is back if it is being read from disk
+        sessions.getSession(player).thenAccept(session -> session.setSelection(region));
         
         return region;
     }
@@ -71,7 +72,7 @@ public class SelectionManager implements Listener {
      * @param position The position
      */
     public void setPosition1(Player player, Vector3 position) {
-        Region region = selections.get(player.getUniqueId());
+        Region region = getSelection(player);
         
         if (region == null || region.getWorld() != player.getWorld()) {
             region = createSelection(player, player.getWorld());
@@ -94,7 +95,7 @@ public class SelectionManager implements Listener {
      * @param position The position
      */
     public void setPosition2(Player player, Vector3 position) {
-        Region region = selections.get(player.getUniqueId());
+        Region region = getSelection(player);
         
         if (region == null || region.getWorld() != player.getWorld()) {
             region = createSelection(player, player.getWorld());
@@ -169,6 +170,10 @@ public class SelectionManager implements Listener {
         // Cancel the event to prevent breaking/placing blocks
         event.setCancelled(true);
         
+        if (!sessions.checkLoaded(player)) {
+            return;
+        }
+        
         // Get the clicked block position
         Vector3 position = Vector3.fromBlock(event.getClickedBlock());
         
@@ -0,0 +1,310 @@
+package org.frizzlenpop.frizzlenEdit.session;
+
+import org.frizzlenpop.frizzlenEdit.brushes.Brush;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Everything FrizzlenEdit remembers about one player: their selection, clipboard, brush,
+ * brush mask and undo/redo history.
+ *
+ * The selection, clipboard, brush and mask are single references, so they are read without
+ * locking and a value set on one thread is visible to every thread after it. The history is
+ * changed several steps at a time (push, trim, clear redo), so it is guarded by the session.
+ *
+ * A session being written to disk is retired first. Using it again while it is written
+ * brings it back, and the write is thrown away; once written, it is closed and must not
+ * be used any more.
+ */
+public class LocalSession {
+    private final UUID uuid;
+    private volatile Region selection;
+    private volatile Clipboard clipboard;
+    private volatile Brush brush;
+    private volatile String mask;
+    private volatile long lastAccess;
+    
+    // Whether the session is being written out, and whether it has left memory; guarded by this
+    private boolean retired;
+    private boolean closed;
+    
+    // Newest entry first; guarded by this
+    private final Deque<HistoryEntry> undoHistory = new ArrayDeque<>();
+    private final Deque<HistoryEntry> redoHistory = new ArrayDeque<>();
+    
+    /**
+     * Create a new empty session.
+     * @param uuid The player's UUID
+     */
+    public LocalSession(UUID uuid) {
+        this.uuid = uuid;
+    }
+    
+    /**
+     * Get the UUID of the player this session belongs to.
+     * @return The player's UUID
+     */
+    public UUID getUniqueId() {
+        return uuid;
+    }
+    
+    /**
+     * Get the last time this session was used.
+     * @return The time in milliseconds
+     */
+    public long getLastAccess() {
+        return lastAccess;
+    }
+    
+    /**
+     * Record that this session was used, bringing it back if it is being written out.
+     * @param now The current time in milliseconds
+     * @return False if the session has left memory, so the caller must look it up again
+     */
+    public synchronized boolean use(long now) {
+        if (closed) {
+            return false;
+        }
+        retired = false;
+        this.lastAccess = now;
+        return true;
+    }
+    
+    /**
+     * Mark this session as being written out.
+     * @return False if it is already being written out or has left memory
+     */
+    public synchronized boolean retire() {
+        if (retired || closed) {
+            return false;
+        }
+        retired = true;
+        return true;
+    }
+    
+    /**
+     * Close this session once it has been written out, unless it was used again meanwhile.
+     * @return True if it was closed, false if it is in use again and must stay in memory
+     */
+    public synchronized boolean close() {
+        if (!retired) {
+            return false;
+        }
+        retired = false;
+        closed = true;
+        return true;
+    }
+    
+    /**
+     * Stop writing this session out after the write failed.
+     */
+    public synchronized void cancelRetire() {
+        retired = false;
+    }
+    
+    /**
+     * Check if there is anything in this session worth keeping.
+     * @return True if the session has a selection, clipboard, brush, mask or history
+     */
+    public boolean hasState() {
+        return selection != null || clipboard != null || brush != null || mask != null || hasHistory();
+    }
+    
+    /**
+     * Get the player's selection.
+     * @return The selection, or null if they don't have one
+     */
+    public Region getSelection() {
+        return selection;
+    }
+    
+    /**
+     * Set the player's selection.
+     * @param selection The selection, or null to clear it
+     */
+    public void setSelection(Region selection) {
+        this.selection = selection;
+    }
+    
+    /**
+     * Get the player's clipboard.
+     * @return The clipboard, or null if they don't have one
+     */
+    public Clipboard getClipboard() {
+        return clipboard;
+    }
+    
+    /**
+     * Set the player's clipboard.
+     * @param clipboard The clipboard, or null to clear it
+     */
+    public void setClipboard(Clipboard clipboard) {
+        this.clipboard = clipboard;
+    }
+    
+    /**
+     * Get the player's brush.
+     * @return The brush, or null if they don't have one
+     */
+    public Brush getBrush() {
+        return brush;
+    }
+    
+    /**
+     * Set the player's brush.
+     * @param brush The brush, or null to clear it
+     */
+    public void setBrush(Brush brush) {
+        this.brush = brush;
+    }
+    
+    /**
+     * Get the player's brush mask.
+     * @return The mask, or null if they don't have one
+     */
+    public String getMask() {
+        return mask;
+    }
+    
+    /**
+     * Set the player's brush mask.
+     * @param mask The mask, or null to clear it
+     */
+    public void setMask(String mask) {
+        this.mask = mask;
+    }
+    
+    /**
+     * Add an operation to the undo history and clear the redo history.
+     * @param entry The history entry
+     * @param maxSize The most entries to keep; older ones are dropped
+     */
+    public synchronized void remember(HistoryEntry entry, int maxSize) {
+        undoHistory.addFirst(entry);
+        while (undoHistory.size() > maxSize) {
+            undoHistory.removeLast();
+        }
+        redoHistory.clear();
+    }
+    
+    /**
+     * Take the most recent operation off the undo history.
+     * @return The entry, or null if there is nothing to undo
+     */
+    public synchronized HistoryEntry popUndo() {
+        return undoHistory.pollFirst();
+    }
+    
+    /**
+     * Put an operation back on top of the undo history, after it was redone.
+     * @param entry The history entry
+     */
+    public synchronized void pushUndo(HistoryEntry entry) {
+        undoHistory.addFirst(entry);
+    }
+    
+    /**
+     * Take the most recently undone operation off the redo history.
+     * @return The entry, or null if there is nothing to redo
+     */
+    public synchronized HistoryEntry popRedo() {
+        return redoHistory.pollFirst();
+    }
+    
+    /**
+     * Put an operation on top of the redo history, after it was undone.
+     * @param entry The history entry
+     */
+    public synchronized void pushRedo(HistoryEntry entry) {
+        redoHistory.addFirst(entry);
+    }
+    
+    /**
+     * Get the number of operations that can be undone.
+     * @return The undo history size
+     */
+    public synchronized int getUndoSize() {
+        return undoHistory.size();
+    }
+    
+    /**
+     * Get the number of operations that can be redone.
+     * @return The redo history size
+     */
+    public synchronized int getRedoSize() {
+        return redoHistory.size();
+    }
+    
+    /**
+     * Check if the player has any undo or redo history.
+     * @return True if there is history
+     */
+    public synchronized boolean hasHistory() {
+        return !undoHistory.isEmpty() || !redoHistory.isEmpty();
+    }
+    
+    /**
+     * Get a copy of the undo history.
+     * @return The entries, newest first
+     */
+    public synchronized List<HistoryEntry> getUndoHistory() {
+        return new ArrayList<>(undoHistory);
+    }
+    
+    /**
+     * Get a copy of the redo history.
+     * @return The entries, most recently undone first
+     */
+    public synchronized List<HistoryEntry> getRedoHistory() {
+        return new ArrayList<>(redoHistory);
+    }
+    
+    /**
+     * Drop the undo and redo history.
+     */
+    public synchronized void clearHistory() {
+        undoHistory.clear();
+        redoHistory.clear();
+    }
+    
+    /**
+     * Trim the history down to the most recent operations. The redo history is dropped
+     * entirely, since it is the least likely to be used.
+     * @param keep The number of undo entries to keep
+     * @return The estimated number of bytes freed
+     */
+    public synchronized long trimHistory(int keep) {
+        long freed = 0;
+        for (HistoryEntry entry : redoHistory) {
+            freed += entry.estimateMemoryBytes();
+        }
+        redoHistory.clear();
+        
+        while (undoHistory.size() > Math.max(0, keep)) {
+            freed += undoHistory.removeLast().estimateMemoryBytes();
+        }
+        return freed;
+    }
+    
+    /**
+     * Estimate the memory held by the undo and redo history.
+     * @return The estimated size in bytes
+     */
+    public synchronized long estimateHistoryBytes() {
+        long bytes = 0;
+        for (HistoryEntry entry : undoHistory) {
+            bytes += entry.estimateMemoryBytes();
+        }
+        for (HistoryEntry entry : redoHistory) {
+            bytes += entry.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,413 @@
+package org.frizzlenpop.frizzlenEdit.session;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.brushes.Brush;
+import org.frizzlenpop.frizzlenEdit.brushes.BrushManager;
+import org.frizzlenpop.frizzlenEdit.clipboard.Clipboard;
+import org.frizzlenpop.frizzlenEdit.clipboard.TeamClipboard;
+import org.frizzlenpop.frizzlenEdit.history.HistoryEntry;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+import org.frizzlenpop.frizzlenEdit.world.EntityData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes session files: everything in a player's session, from their selection,
+ * brush and mask to their clipboard and undo/redo history, gzip-compressed, so it can leave
+ * memory while the player is away. Block entities and entities go along, as the NBT the
+ * clipboard and history entries hold them as.
+ *
+ * Block states are written as a palette built up along the way: the first time a state
+ * appears its string follows its index, after that only the index is written. History of
+ * operations that didn't happen in a Bukkit world is not written.
+ *
+ * Team clipboards are written in the same way, one per file, with their owner.
+ */
+public class SessionFile {
+    // File extension of session files
+    public static final String EXTENSION = ".fesession";
+    
+    // "FESS"
+    private static final int MAGIC = 0x46455353;
+    // "FETC", for team clipboards
+    private static final int TEAM_MAGIC = 0x46455443;
+    private static final int VERSION = 3;
+    
+    private SessionFile() {
+    }
+    
+    /**
+     * Write a session to a file. The file is written next to its destination first and
+     * moved into place once complete, so a crash never leaves a half-written session.
+     * @param session The session
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public static void write(LocalSession session, File file) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temp), 65536)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            Palette palette = new Palette();
+            
+            // A selection in a world that isn't loaded when the session is read back is dropped
+            Region selection = session.getSelection();
+            out.writeBoolean(selection != null && selection.getWorld() != null);
+            if (selection != null && selection.getWorld() != null) {
+                out.writeUTF(selection.getWorld().getName());
+                writeVector(out, selection.getMinimumPoint());
+                writeVector(out, selection.getMaximumPoint());
+            }
+            Brush brush = session.getBrush();
+            String brushSettings = brush != null ? brush.getSettings() : null;
+            writeOptionalString(out, brushSettings);
+            writeOptionalString(out, session.getMask());
+            
+            Clipboard clipboard = session.getClipboard();
+            out.writeBoolean(clipboard != null);
+            if (clipboard != null) {
+                writeClipboard(out, clipboard, palette);
+            }
+            
+            writeHistory(out, session.getUndoHistory(), palette);
+            writeHistory(out, session.getRedoHistory(), palette);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Read a session file into a session.
+     * @param file The file
+     * @param session The session to restore into
+     * @param player The player the history belongs to
+     * @throws IOException If the file can't be read or is not a session file
+     */
+    public static void read(File file, LocalSession session, Player player) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), 65536)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a session file: " + file.getName());
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported session version " + version);
+            }
+            List<BlockData> palette = new ArrayList<>();
+            
+            if (in.readBoolean()) {
+                World world = Bukkit.getWorld(in.readUTF());
+                Vector3 min = readVector(in);
+                Vector3 max = readVector(in);
+                if (world != null) {
+                    session.setSelection(new Region(world, min, max));
+                }
+            }
+            String brushSettings = readOptionalString(in);
+            if (brushSettings != null) {
+                try {
+                    session.setBrush(BrushManager.fromSettings(FrizzlenEdit.getInstance(), brushSettings));
+                } catch (IllegalArgumentException e) {
+                    Logger.warning("Could not restore brush " + brushSettings + ": " + e.getMessage());
+                }
+            }
+            session.setMask(readOptionalString(in));
+            
+            if (in.readBoolean()) {
+                session.setClipboard(readClipboard(in, palette));
+            }
+            
+            // Pushed oldest first, so the newest entry ends up on top again
+            List<HistoryEntry> undo = readHistory(in, palette, player);
+            for (int i = undo.size() - 1; i >= 0; i--) {
+                session.pushUndo(undo.get(i));
+            }
+            List<HistoryEntry> redo = readHistory(in, palette, player);
+            for (int i = redo.size() - 1; i >= 0; i--) {
+                session.pushRedo(redo.get(i));
+            }
+        }
+    }
+    
+    /**
+     * Write a team clipboard and its owner to a file, the same way as a session's clipboard.
+     * The file is written next to its destination first and moved into place once complete.
+     * @param team The team clipboard
+     * @param file The file
+     * @throws IOException If the file can't be written
+     */
+    public static void writeTeamClipboard(TeamClipboard team, File file) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temp), 65536)))) {
+            out.writeInt(TEAM_MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(team.getName());
+            out.writeLong(team.getOwner().getMostSignificantBits());
+            out.writeLong(team.getOwner().getLeastSignificantBits());
+            out.writeUTF(team.getOwnerName());
+            writeClipboard(out, team.getClipboard(), new Palette());
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Read a team clipboard written by {@link #writeTeamClipboard}.
+     * @param file The file
+     * @return The team clipboard
+     * @throws IOException If the file can't be read or is not a team clipboard file
+     */
+    public static TeamClipboard readTeamClipboard(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), 65536)))) {
+            if (in.readInt() != TEAM_MAGIC) {
+                throw new IOException("Not a team clipboard file: " + file.getName());
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported team clipboard version " + version);
+            }
+            String name = in.readUTF();
+            UUID owner = new UUID(in.readLong(), in.readLong());
+            String ownerName = in.readUTF();
+            return new TeamClipboard(name, owner, ownerName, readClipboard(in, new ArrayList<>()));
+        }
+    }
+    
+    private static void writeClipboard(DataOutputStream out, Clipboard clipboard, Palette palette) throws IOException {
+        writeVector(out, clipboard.getOrigin());
+        out.writeInt(clipboard.getWidth());
+        out.writeInt(clipboard.getHeight());
+        out.writeInt(clipboard.getLength());
+        
+        Map<Vector3, BlockData> blocks = clipboard.getBlocks();
+        out.writeInt(blocks.size());
+        for (Map.Entry<Vector3, BlockData> block : blocks.entrySet()) {
+            writeVector(out, block.getKey());
+            palette.write(out, block.getValue());
+        }
+        
+        out.writeInt(clipboard.getBlockEntities().size());
+        for (Map.Entry<Integer, byte[]> blockEntity : clipboard.getBlockEntities().entrySet()) {
+            out.writeInt(blockEntity.getKey());
+            writeBytes(out, blockEntity.getValue());
+        }
+        out.writeInt(clipboard.getEntities().size());
+        for (EntityData entity : clipboard.getEntities()) {
+            writeEntity(out, entity);
+        }
+    }
+    
+    private static Clipboard readClipboard(DataInputStream in, List<BlockData> palette) throws IOException {
+        Vector3 origin = readVector(in);
+        Clipboard clipboard = new Clipboard(origin, in.readInt(), in.readInt(), in.readInt());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Vector3 position = readVector(in);
+            clipboard.setBlock(position, readBlock(in, palette));
+        }
+        
+        int blockEntityCount = in.readInt();
+        Map<Integer, byte[]> blockEntities = new HashMap<>();
+        for (int i = 0; i < blockEntityCount; i++) {
+            blockEntities.put(in.readInt(), readBytes(in));
+        }
+        clipboard.setBlockEntities(blockEntities);
+        int entityCount = in.readInt();
+        List<EntityData> entities = new ArrayList<>(entityCount);
+        for (int i = 0; i < entityCount; i++) {
+            entities.add(readEntity(in));
+        }
+        clipboard.setEntities(entities);
+        return clipboard;
+    }
+    
+    private static void writeHistory(DataOutputStream out, List<HistoryEntry> entries, Palette palette) throws IOException {
+        for (HistoryEntry entry : entries) {
+            World world = entry.getWorld();
+            if (world == null) {
+                continue;
+            }
+            
+            out.writeBoolean(true);
+            out.writeUTF(entry.getDescription());
+            out.writeUTF(world.getName());
+            
+            Map<Vector3, BlockData> newBlocks = entry.getNewBlocks();
+            out.writeInt(entry.getPreviousBlocks().size());
+            for (Map.Entry<Vector3, BlockData> block : entry.getPreviousBlocks().entrySet()) {
+                writeVector(out, block.getKey());
+                palette.write(out, block.getValue());
+                palette.write(out, newBlocks.getOrDefault(block.getKey(), block.getValue()));
+            }
+            
+            writeBlockEntities(out, entry.getPreviousBlockEntities());
+            writeBlockEntities(out, entry.getNewBlockEntities());
+            out.writeInt(entry.getAddedEntities().size());
+            for (Map.Entry<UUID, EntityData> entity : entry.getAddedEntities().entrySet()) {
+                out.writeLong(entity.getKey().getMostSignificantBits());
+                out.writeLong(entity.getKey().getLeastSignificantBits());
+                writeEntity(out, entity.getValue());
+            }
+        }
+        out.writeBoolean(false);
+    }
+    
+    private static List<HistoryEntry> readHistory(DataInputStream in, List<BlockData> palette, Player player) throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        while (in.readBoolean()) {
+            String description = in.readUTF();
+            World world = Bukkit.getWorld(in.readUTF());
+            
+            // Entries of worlds that are no longer loaded are read past and dropped
+            HistoryEntry entry = world != null ? new HistoryEntry(player, new BukkitExtent(world), description) : null;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Vector3 position = readVector(in);
+                BlockData oldData = readBlock(in, palette);
+                BlockData newData = readBlock(in, palette);
+                if (entry != null) {
+                    entry.addBlock(position, oldData, newData);
+                }
+            }
+            
+            Map<Vector3, byte[]> previousBlockEntities = readBlockEntities(in);
+            Map<Vector3, byte[]> newBlockEntities = readBlockEntities(in);
+            int entityCount = in.readInt();
+            for (int i = 0; i < entityCount; i++) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                EntityData entity = readEntity(in);
+                if (entry != null) {
+                    entry.addEntity(id, entity);
+                }
+            }
+            if (entry != null) {
+                previousBlockEntities.forEach(entry::addPreviousBlockEntity);
+                newBlockEntities.forEach(entry::addBlockEntity);
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+    
+    private static void writeBlockEntities(DataOutputStream out, Map<Vector3, byte[]> blockEntities) throws IOException {
+        out.writeInt(blockEntities.size());
+        for (Map.Entry<Vector3, byte[]> blockEntity : blockEntities.entrySet()) {
+            writeVector(out, blockEntity.getKey());
+            writeBytes(out, blockEntity.getValue());
+        }
+    }
+    
+    private static Map<Vector3, byte[]> readBlockEntities(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<Vector3, byte[]> blockEntities = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Vector3 position = readVector(in);
+            blockEntities.put(position, readBytes(in));
+        }
+        return blockEntities;
+    }
+    
+    private static void writeEntity(DataOutputStream out, EntityData entity) throws IOException {
+        out.writeDouble(entity.getX());
+        out.writeDouble(entity.getY());
+        out.writeDouble(entity.getZ());
+        writeBytes(out, entity.getNbt());
+    }
+    
+    private static EntityData readEntity(DataInputStream in) throws IOException {
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double z = in.readDouble();
+        return new EntityData(x, y, z, readBytes(in));
+    }
+    
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Bad NBT length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    private static void writeOptionalString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readOptionalString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    private static void writeVector(DataOutputStream out, Vector3 vector) throws IOException {
+        out.writeInt(vector.getX());
+        out.writeInt(vector.getY());
+        out.writeInt(vector.getZ());
+    }
+    
+    private static Vector3 readVector(DataInputStream in) throws IOException {
+        return new Vector3(in.readInt(), in.readInt(), in.readInt());
+    }
+    
+    private static BlockData readBlock(DataInputStream in, List<BlockData> palette) throws IOException {
+        int id = in.readInt();
+        if (id == palette.size()) {
+            palette.add(Bukkit.createBlockData(in.readUTF()));
+        } else if (id < 0 || id > palette.size()) {
+            throw new IOException("Bad palette index " + id);
+        }
+        return palette.get(id);
+    }
+    
+    /**
+     * The block states written so far, by the index they were given.
+     */
+    private static class Palette {
+        private final Map<BlockData, Integer> ids = new HashMap<>();
+        
+        void write(DataOutputStream out, BlockData data) throws IOException {
+            Integer id = ids.get(data);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+            
+            id = ids.size();
+            ids.put(data, id);
+            out.writeInt(id);
+            out.writeUTF(data.getAsString());
+        }
+    }
+} 
\ No newline at end of file
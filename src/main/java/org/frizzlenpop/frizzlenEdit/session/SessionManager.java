@@ -0,0 +1,430 @@
+package org.frizzlenpop.frizzlenEdit.session;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the session of every player. Safe to use from the main thread and async tasks alike:
+ * a session is created at most once per player, and is fully constructed before any other
+ * thread can see it.
+ *
+ * Sessions of players who leave, or of offline players that nobody has used for a while,
+ * are written to the sessions folder and dropped from memory. They are read back in the
+ * background when the player returns, so memory only grows with the players who are
+ * actually building. The main thread never waits for the disk: until a session is back,
+ * {@link #getIfPresent} returns null and {@link #getSession} a future that completes once
+ * it is read, and {@link #isLoading} tells callers to ask the player to try again.
+ */
+public class SessionManager implements Listener {
+    private final FrizzlenEdit plugin;
+    private final File directory;
+    private final ConcurrentMap<UUID, LocalSession> sessions = new ConcurrentHashMap<>();
+    
+    // Players whose session is on disk instead of in memory
+    private final Set<UUID> spilled = ConcurrentHashMap.newKeySet();
+    
+    // Sessions being read back from disk
+    private final ConcurrentMap<UUID, CompletableFuture<LocalSession>> restoring = new ConcurrentHashMap<>();
+    
+    // How often idle sessions are looked for (in ticks)
+    private static final long IDLE_CHECK_INTERVAL = 1200L;
+    
+    private ScheduledTask idleTask;
+    
+    /**
+     * Create a new session manager.
+     * @param plugin The plugin instance
+     */
+    public SessionManager(FrizzlenEdit plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "sessions");
+        
+        if (!directory.exists() && !directory.mkdirs()) {
+            Logger.warning("Could not create sessions directory: " + directory.getAbsolutePath());
+        }
+        findSpilledSessions();
+        
+        if (plugin.getConfigManager().getSessionIdleTimeoutMinutes() > 0) {
+            idleTask = plugin.getTaskScheduler().runTaskTimer(this::evictIdleSessions, IDLE_CHECK_INTERVAL, IDLE_CHECK_INTERVAL);
+        }
+    }
+    
+    /**
+     * Get a player's session, creating it if the player doesn't have one and reading it
+     * back in the background if it is on disk.
+     * @param player The player
+     * @return The session; already complete unless it is being read from disk
+     */
+    public CompletableFuture<LocalSession> getSession(Player player) {
+        return lookup(player.getUniqueId(), player);
+    }
+    
+    /**
+     * Get a player's session, creating it if the player doesn't have one and reading it
+     * back in the background if it is on disk.
+     * @param uuid The player's UUID
+     * @return The session; already complete unless it is being read from disk
+     */
+    public CompletableFuture<LocalSession> getSession(UUID uuid) {
+        return lookup(uuid, Bukkit.getPlayer(uuid));
+    }
+    
+    /**
+     * Get a player's session if it is in memory, without creating one. A session on disk
+     * starts being read back if the player is online, but isn't waited for.
+     * @param uuid The player's UUID
+     * @return The session, or null if the player doesn't have one or it is still on disk
+     */
+    public LocalSession getIfPresent(UUID uuid) {
+        LocalSession session = sessions.get(uuid);
+        if (session != null && use(session)) {
+            return session;
+        }
+        
+        // Not in memory, or it left memory just now
+        Player player = Bukkit.getPlayer(uuid);
+        if ((sessions.containsKey(uuid) || spilled.contains(uuid)) && player != null) {
+            return lookup(uuid, player).getNow(null);
+        }
+        return null;
+    }
+    
+    /**
+     * Get a player's session without creating one, reading it back from disk if it was
+     * written out, even if the player is offline.
+     * @param uuid The player's UUID
+     * @return The session, or null if the player doesn't have one
+     */
+    public CompletableFuture<LocalSession> getExisting(UUID uuid) {
+        if (!sessions.containsKey(uuid) && !spilled.contains(uuid)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return lookup(uuid, Bukkit.getPlayer(uuid));
+    }
+    
+    /**
+     * Check if a player's session is on disk or being read back, so what they do now
+     * wouldn't see their selection, clipboard or history yet.
+     * @param uuid The player's UUID
+     * @return True if the session isn't in memory yet
+     */
+    public boolean isLoading(UUID uuid) {
+        return spilled.contains(uuid);
+    }
+    
+    /**
+     * Tell a player to try again if their session is still being read from disk.
+     * @param player The player
+     * @return True if the player's session is in memory, or they don't have one
+     */
+    public boolean checkLoaded(Player player) {
+        if (!isLoading(player.getUniqueId())) {
+            return true;
+        }
+        
+        // Make sure it is on its way, in case nothing asked for it yet
+        lookup(player.getUniqueId(), player);
+        player.sendMessage(ChatColor.YELLOW + "Your session is still loading, try again in a moment.");
+        return false;
+    }
+    
+    /**
+     * Get every session in memory. The view reflects sessions added and removed while
+     * iterating it, and never throws a ConcurrentModificationException.
+     * @return The sessions
+     */
+    public Collection<LocalSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+    
+    /**
+     * Remove a player's session from memory without writing it out.
+     * @param uuid The player's UUID
+     * @return The removed session, or null if the player didn't have one
+     */
+    public LocalSession removeSession(UUID uuid) {
+        return sessions.remove(uuid);
+    }
+    
+    /**
+     * Write a player's session to disk and drop it from memory. The session is retired while
+     * it is written; if it is used again meanwhile, it stays in memory and the file is thrown
+     * away, so no change is lost.
+     * @param uuid The player's UUID
+     * @return True if the session left memory
+     */
+    public boolean evict(UUID uuid) {
+        LocalSession session = sessions.get(uuid);
+        if (session == null || !session.retire()) {
+            return false;
+        }
+        
+        // Sessions without anything worth keeping are just dropped
+        File file = getFile(uuid);
+        boolean written = false;
+        if (session.hasState()) {
+            try {
+                SessionFile.write(session, file);
+                written = true;
+            } catch (IOException e) {
+                session.cancelRetire();
+                Logger.warning("Could not write session of " + uuid + ", keeping it in memory: " + e.getMessage());
+                return false;
+            }
+        }
+        
+        synchronized (session) {
+            if (!session.close()) {
+                // Used while it was written, so the file is already out of date
+                if (written && !file.delete()) {
+                    Logger.warning("Could not delete session file " + file.getName());
+                }
+                return false;
+            }
+            // On disk before it leaves the map, so a lookup in between reads it back
+            if (written) {
+                spilled.add(uuid);
+            }
+            sessions.remove(uuid, session);
+        }
+        Logger.debug("Evicted session of " + uuid);
+        return true;
+    }
+    
+    /**
+     * Get the number of sessions waiting on disk.
+     * @return The number of sessions
+     */
+    public int getSpilledCount() {
+        return spilled.size();
+    }
+    
+    /**
+     * Stop looking for idle sessions and write every session to disk, so they survive a
+     * restart. Call once the async tasks are done, so no eviction is still writing a session.
+     */
+    public void shutdown() {
+        if (idleTask != null) {
+            idleTask.cancel();
+            idleTask = null;
+        }
+        
+        for (UUID uuid : new ArrayList<>(sessions.keySet())) {
+            evict(uuid);
+        }
+    }
+    
+    /**
+     * Start reading a returning player's session in the background, so their first command
+     * doesn't have to wait for it.
+     */
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        if (spilled.contains(player.getUniqueId())) {
+            restore(player.getUniqueId(), player);
+        }
+    }
+    
+    /**
+     * Write the session of a leaving player to disk.
+     */
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        if (!plugin.getConfigManager().isSessionSpillOnQuit()) {
+            return;
+        }
+        
+        UUID uuid = event.getPlayer().getUniqueId();
+        plugin.runAsync(() -> evict(uuid));
+    }
+    
+    /**
+     * Evict the sessions of offline players nobody has used within the idle timeout. Online
+     * players keep theirs, however long they go without building.
+     */
+    private void evictIdleSessions() {
+        long timeout = plugin.getConfigManager().getSessionIdleTimeoutMinutes() * 60_000L;
+        long now = plugin.getClock().currentTimeMillis();
+        
+        List<UUID> idle = new ArrayList<>();
+        for (LocalSession session : sessions.values()) {
+            if (now - session.getLastAccess() > timeout && Bukkit.getPlayer(session.getUniqueId()) == null) {
+                idle.add(session.getUniqueId());
+            }
+        }
+        
+        if (!idle.isEmpty()) {
+            plugin.runAsync(() -> {
+                int evicted = 0;
+                for (UUID uuid : idle) {
+                    if (evict(uuid)) {
+                        evicted++;
+                    }
+                }
+                Logger.info("Evicted " + evicted + " idle session(s)");
+            });
+        }
+    }
+    
+    /**
+     * Get a player's session in use, creating it if it isn't in memory, or reading it back
+     * from disk without waiting for it.
+     * @param uuid The player's UUID
+     * @param player The player, or null if they are offline
+     * @return The session once it is in use
+     */
+    private CompletableFuture<LocalSession> lookup(UUID uuid, Player player) {
+        while (true) {
+            LocalSession session = sessions.get(uuid);
+            if (session == null) {
+                if (spilled.contains(uuid)) {
+                    // Looked up again once read, since it may have been written out meanwhile
+                    return restore(uuid, player).thenCompose(restored -> use(restored) 
+                        ? CompletableFuture.completedFuture(restored) : lookup(uuid, player));
+                }
+                session = sessions.computeIfAbsent(uuid, LocalSession::new);
+            }
+            if (use(session)) {
+                return CompletableFuture.completedFuture(session);
+            }
+            // It was written out and left memory just now, so it is read back on the next pass
+        }
+    }
+    
+    private boolean use(LocalSession session) {
+        return session.use(plugin.getClock().currentTimeMillis());
+    }
+    
+    /**
+     * Start reading a player's session back from disk on an async thread, unless that has
+     * already started.
+     * @param uuid The player's UUID
+     * @param player The player, or null if they are offline
+     * @return The session once it is back in memory
+     */
+    private CompletableFuture<LocalSession> restore(UUID uuid, Player player) {
+        CompletableFuture<LocalSession> future = restoring.get(uuid);
+        if (future != null) {
+            return future;
+        }
+        
+        CompletableFuture<LocalSession> created = new CompletableFuture<>();
+        future = restoring.putIfAbsent(uuid, created);
+        if (future != null) {
+            return future;
+        }
+        plugin.runAsync(() -> {
+            try {
+                created.complete(read(uuid, player));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            } finally {
+                restoring.remove(uuid, created);
+            }
+        });
+        return created;
+    }
+    
+    /**
+     * Read a session from disk and put it in memory. Not done inside the map's own locking,
+     * so other players' sessions are never held up by the disk.
+     * @param uuid The player's UUID
+     * @param player The player, or null if they are offline
+     * @return The session
+     */
+    private LocalSession read(UUID uuid, Player player) {
+        if (!spilled.contains(uuid)) {
+            // Read back by someone else in the meantime
+            return sessions.computeIfAbsent(uuid, LocalSession::new);
+        }
+        
+        LocalSession session = new LocalSession(uuid);
+        File file = getFile(uuid);
+        boolean restored = false;
+        try {
+            long start = plugin.getClock().currentTimeMillis();
+            SessionFile.read(file, session, player);
+            restored = true;
+            Logger.debug("Restored session of " + uuid + " in " + (plugin.getClock().currentTimeMillis() - start) + "ms");
+        } catch (IOException | RuntimeException e) {
+            // Leave the file where it is, so it can be looked at
+            Logger.warning("Could not restore session of " + uuid + ": " + e.getMessage());
+        }
+        
+        // In memory before it stops counting as on disk, so a lookup in between waits for it
+        LocalSession existing = sessions.putIfAbsent(uuid, session);
+        spilled.remove(uuid);
+        if (restored && !file.delete()) {
+            Logger.warning("Could not delete session file " + file.getName());
+        }
+        return existing != null ? existing : session;
+    }
+    
+    /**
+     * Find the session files left from earlier, and delete the ones older than the retention
+     * period and any a write didn't finish.
+     */
+    private void findSpilledSessions() {
+        File[] partial = directory.listFiles((dir, name) -> name.endsWith(SessionFile.EXTENSION + ".tmp"));
+        if (partial != null) {
+            for (File file : partial) {
+                if (!file.delete()) {
+                    Logger.warning("Could not delete unfinished session file " + file.getName());
+                }
+            }
+        }
+        
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SessionFile.EXTENSION));
+        if (files == null) {
+            return;
+        }
+        
+        long cutoff = plugin.getClock().currentTimeMillis() - plugin.getConfigManager().getSessionRetentionDays() * 86_400_000L;
+        for (File file : files) {
+            String name = file.getName();
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(name.substring(0, name.length() - SessionFile.EXTENSION.length()));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            
+            if (file.lastModified() < cutoff) {
+                if (!file.delete()) {
+                    Logger.warning("Could not delete expired session file " + name);
+                }
+            } else {
+                spilled.add(uuid);
+            }
+        }
+        
+        if (!spilled.isEmpty()) {
+            Logger.info("Found " + spilled.size() + " stored session(s)");
+        }
+    }
+    
+    private File getFile(UUID uuid) {
+        return new File(directory, uuid + SessionFile.EXTENSION);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,192 @@
+package org.frizzlenpop.frizzlenEdit.trace;
+
+import org.bukkit.Bukkit;
+import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.Extent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact copy of the blocks in a box of the world, stored as a palette of block
+ * state strings and one palette index per block (in y, z, x order).
+ */
+public class AreaSnapshot {
+    private final Vector3 min;
+    private final int width;
+    private final int height;
+    private final int length;
+    private final List<String> palette;
+    private final int[] indices;
+    
+    /**
+     * Create a snapshot from already captured data.
+     * @param min The minimum corner
+     * @param width The width (X-axis)
+     * @param height The height (Y-axis)
+     * @param length The length (Z-axis)
+     * @param palette The block states used in the snapshot
+     * @param indices The palette index of each block
+     */
+    public AreaSnapshot(Vector3 min, int width, int height, int length, List<String> palette, int[] indices) {
+        this.min = min;
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.palette = palette;
+        this.indices = indices;
+    }
+    
+    /**
+     * Capture the blocks between two corners. Must be called on the main thread.
+     * @param extent The extent to capture from
+     * @param min The minimum corner
+     * @param max The maximum corner
+     * @return The snapshot
+     */
+    public static AreaSnapshot capture(Extent extent, Vector3 min, Vector3 max) {
+        int width = max.getX() - min.getX() + 1;
+        int height = max.getY() - min.getY() + 1;
+        int length = max.getZ() - min.getZ() + 1;
+        
+        List<String> palette = new ArrayList<>();
+        Map<BlockData, Integer> paletteIds = new HashMap<>();
+        int[] indices = new int[width * height * length];
+        
+        // Batch reads come back in the same y, z, x order as the snapshot
+        BlockData[] blocks = extent.getBlocks(min, max);
+        for (int i = 0; i < blocks.length; i++) {
+            BlockData data = blocks[i];
+            Integer id = paletteIds.get(data);
+            if (id == null) {
+                id = palette.size();
+                paletteIds.put(data, id);
+                palette.add(data.getAsString());
+            }
+            indices[i] = id;
+        }
+        
+        return new AreaSnapshot(min, width, height, length, palette, indices);
+    }
+    
+    /**
+     * Write the snapshot back into an extent at the position it was taken from. Must be called on the main thread.
+     * @param extent The extent
+     */
+    public void restore(Extent extent) {
+        BlockData[] states = new BlockData[palette.size()];
+        for (int p = 0; p < states.length; p++) {
+            states[p] = Bukkit.createBlockData(palette.get(p));
+        }
+        
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < length; z++) {
+                for (int x = 0; x < width; x++) {
+                    extent.setBlock(min.getX() + x, min.getY() + y, min.getZ() + z, states[indices[i++]]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the minimum corner of this snapshot.
+     * @return The minimum corner
+     */
+    public Vector3 getMin() {
+        return min;
+    }
+    
+    /**
+     * Get the maximum corner of this snapshot.
+     * @return The maximum corner
+     */
+    public Vector3 getMax() {
+        return new Vector3(min.getX() + width - 1, min.getY() + height - 1, min.getZ() + length - 1);
+    }
+    
+    /**
+     * Get the number of blocks in this snapshot.
+     * @return The number of blocks
+     */
+    public int getVolume() {
+        return indices.length;
+    }
+    
+    /**
+     * Write this snapshot to a stream.
+     * @param out The stream
+     * @throws IOException If the snapshot can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(min.getX());
+        out.writeInt(min.getY());
+        out.writeInt(min.getZ());
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(length);
+        
+        writeVarInt(out, palette.size());
+        for (String state : palette) {
+            out.writeUTF(state);
+        }
+        for (int index : indices) {
+            writeVarInt(out, index);
+        }
+    }
+    
+    /**
+     * Read a snapshot from a stream.
+     * @param in The stream
+     * @return The snapshot
+     * @throws IOException If the snapshot can't be read
+     */
+    public static AreaSnapshot read(DataInput in) throws IOException {
+        Vector3 min = new Vector3(in.readInt(), in.readInt(), in.readInt());
+        int width = in.readInt();
+        int height = in.readInt();
+        int length = in.readInt();
+        
+        int paletteSize = readVarInt(in);
+        List<String> palette = new ArrayList<>(paletteSize);
+        for (int p = 0; p < paletteSize; p++) {
+            palette.add(in.readUTF());
+        }
+        
+        int[] indices = new int[width * height * length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = readVarInt(in);
+        }
+        
+        return new AreaSnapshot(min, width, height, length, palette, indices);
+    }
+    
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 35) {
+                throw new IOException("VarInt too long");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,182 @@
+package org.frizzlenpop.frizzlenEdit.trace;
+
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A single command in a recorded trace, together with the state needed to run it again:
+ * where the player stood, what they had selected and, the first time an area is touched,
+ * a snapshot of the blocks in it.
+ */
+public class TraceEvent {
+    private final long offsetMillis;
+    private final String command;
+    private final String world;
+    private final Vector3 position;
+    private final float yaw;
+    private final float pitch;
+    private final Vector3 selectionMin;
+    private final Vector3 selectionMax;
+    private final AreaSnapshot snapshot;
+    
+    /**
+     * Create a new trace event.
+     * @param offsetMillis The time since the start of the recording
+     * @param command The command line without the leading slash
+     * @param world The name of the world the player was in
+     * @param position The player's block position
+     * @param yaw The player's yaw
+     * @param pitch The player's pitch
+     * @param selectionMin The minimum corner of the selection, or null if there was none
+     * @param selectionMax The maximum corner of the selection, or null if there was none
+     * @param snapshot The blocks in the affected area, or null if not captured
+     */
+    public TraceEvent(long offsetMillis, String command, String world, Vector3 position, float yaw, float pitch,
+                      Vector3 selectionMin, Vector3 selectionMax, AreaSnapshot snapshot) {
+        this.offsetMillis = offsetMillis;
+        this.command = command;
+        this.world = world;
+        this.position = position;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.selectionMin = selectionMin;
+        this.selectionMax = selectionMax;
+        this.snapshot = snapshot;
+    }
+    
+    /**
+     * Get the time since the start of the recording.
+     * @return The time in milliseconds
+     */
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+    
+    /**
+     * Get the command line, without the leading slash.
+     * @return The command line
+     */
+    public String getCommand() {
+        return command;
+    }
+    
+    /**
+     * Get the name of the world the command was run in.
+     * @return The world name
+     */
+    public String getWorld() {
+        return world;
+    }
+    
+    /**
+     * Get the player's block position.
+     * @return The position
+     */
+    public Vector3 getPosition() {
+        return position;
+    }
+    
+    /**
+     * Get the player's yaw.
+     * @return The yaw
+     */
+    public float getYaw() {
+        return yaw;
+    }
+    
+    /**
+     * Get the player's pitch.
+     * @return The pitch
+     */
+    public float getPitch() {
+        return pitch;
+    }
+    
+    /**
+     * Get the minimum corner of the player's selection.
+     * @return The minimum corner, or null if there was no selection
+     */
+    public Vector3 getSelectionMin() {
+        return selectionMin;
+    }
+    
+    /**
+     * Get the maximum corner of the player's selection.
+     * @return The maximum corner, or null if there was no selection
+     */
+    public Vector3 getSelectionMax() {
+        return selectionMax;
+    }
+    
+    /**
+     * Get the snapshot of the affected area.
+     * @return The snapshot, or null if none was captured
+     */
+    public AreaSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Write this event to a stream.
+     * @param out The stream
+     * @throws IOException If the event can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(offsetMillis);
+        out.writeUTF(command);
+        out.writeUTF(world);
+        writeVector(out, position);
+        out.writeFloat(yaw);
+        out.writeFloat(pitch);
+        
+        out.writeBoolean(selectionMin != null && selectionMax != null);
+        if (selectionMin != null && selectionMax != null) {
+            writeVector(out, selectionMin);
+            writeVector(out, selectionMax);
+        }
+        
+        out.writeBoolean(snapshot != null);
+        if (snapshot != null) {
+            snapshot.write(out);
+        }
+    }
+    
+    /**
+     * Read an event from a stream.
+     * @param in The stream
+     * @return The event
+     * @throws IOException If the event can't be read
+     */
+    public static TraceEvent read(DataInput in) throws IOException {
+        long offsetMillis = in.readLong();
+        String command = in.readUTF();
+        String world = in.readUTF();
+        Vector3 position = readVector(in);
+        float yaw = in.readFloat();
+        float pitch = in.readFloat();
+        
+        Vector3 selectionMin = null;
+        Vector3 selectionMax = null;
+        if (in.readBoolean()) {
+            selectionMin = readVector(in);
+            selectionMax = readVector(in);
+        }
+        
+        AreaSnapshot snapshot = in.readBoolean() ? AreaSnapshot.read(in) : null;
+        
+        return new TraceEvent(offsetMillis, command, world, position, yaw, pitch, selectionMin, selectionMax, snapshot);
+    }
+    
+    private static void writeVector(DataOutput out, Vector3 vector) throws IOException {
+        out.writeInt(vector.getX());
+        out.writeInt(vector.getY());
+        out.writeInt(vector.getZ());
+    }
+    
+    private static Vector3 readVector(DataInput in) throws IOException {
+        return new Vector3(in.readInt(), in.readInt(), in.readInt());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,91 @@
+package org.frizzlenpop.frizzlenEdit.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes trace files: a gzip-compressed stream of {@link TraceEvent}s
+ * following a short header.
+ */
+public class TraceFile {
+    // File extension of trace files
+    public static final String EXTENSION = ".fetrace";
+    
+    // "FETR"
+    private static final int MAGIC = 0x46455452;
+    private static final int VERSION = 1;
+    
+    private TraceFile() {
+    }
+    
+    /**
+     * Read all events from a trace file.
+     * @param file The file
+     * @return The events, in the order they were recorded
+     * @throws IOException If the file can't be read or is not a trace file
+     */
+    public static List<TraceEvent> read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), 65536)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a trace file: " + file.getName());
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trace version " + version);
+            }
+            
+            List<TraceEvent> events = new ArrayList<>();
+            while (in.readBoolean()) {
+                events.add(TraceEvent.read(in));
+            }
+            return events;
+        }
+    }
+    
+    /**
+     * Writes events to a trace file as they are recorded.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        
+        /**
+         * Create a new trace file, replacing any existing file.
+         * @param file The file
+         * @throws IOException If the file can't be created
+         */
+        public Writer(File file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file), 65536)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+        
+        /**
+         * Append an event to the file.
+         * @param event The event
+         * @throws IOException If the event can't be written
+         */
+        public void write(TraceEvent event) throws IOException {
+            out.writeBoolean(true);
+            event.write(out);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.writeBoolean(false);
+            out.close();
+        }
+    }
+} 
\ No newline at end of file
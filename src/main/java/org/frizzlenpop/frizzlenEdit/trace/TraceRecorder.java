@@ -0,0 +1,244 @@
+package org.frizzlenpop.frizzlenEdit.trace;
+
+import org.bukkit.Location;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.selection.Region;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+import org.frizzlenpop.frizzlenEdit.world.BukkitExtent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the FrizzlenEdit commands players run into trace files, so real editing
+ * sessions can be replayed later for benchmarking. Recording is opt-in per player; the
+ * benchmarks module replays the files offline, without a server or a real player.
+ */
+public class TraceRecorder implements Listener {
+    private final FrizzlenEdit plugin;
+    private final File directory;
+    
+    // Active recordings by player
+    private final Map<UUID, Recording> recordings = new HashMap<>();
+    
+    // Serializes and compresses events off the main thread, in the order they were recorded
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "FrizzlenEdit-TraceWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Commands that only look at or change player state, so the blocks around them don't matter
+    private static final Set<String> NO_SNAPSHOT_COMMANDS = new HashSet<>(Arrays.asList(
+        "wand", "pos1", "pos2", "p1", "p2", "expand", "contract", "size", "chunkinfo",
+        "brush", "brushtool", "mask", "rotate", "flip", "undo", "redo", "schematic",
+        "paste", "pastelarge"
+    ));
+    
+    // Blocks around the selection read by operations that look at neighbours (smooth, naturalize, ...)
+    private static final int SNAPSHOT_MARGIN = 2;
+    
+    /**
+     * Create a new trace recorder.
+     * @param plugin The plugin instance
+     */
+    public TraceRecorder(FrizzlenEdit plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "traces");
+    }
+    
+    /**
+     * Get the directory trace files are stored in.
+     * @return The directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Check if a player's commands are being recorded.
+     * @param player The player
+     * @return True if the player is being recorded
+     */
+    public boolean isRecording(Player player) {
+        return recordings.containsKey(player.getUniqueId());
+    }
+    
+    /**
+     * Start recording a player's commands.
+     * @param player The player
+     * @param name The name of the trace file, without extension
+     * @return The trace file
+     * @throws IOException If the trace file can't be created
+     */
+    public File start(Player player, String name) throws IOException {
+        stop(player);
+        
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        
+        File file = new File(directory, name + TraceFile.EXTENSION);
+        recordings.put(player.getUniqueId(), new Recording(file, new TraceFile.Writer(file), plugin.getClock().currentTimeMillis()));
+        Logger.info("Started recording trace " + file.getName() + " for " + player.getName());
+        return file;
+    }
+    
+    /**
+     * Stop recording a player's commands.
+     * @param player The player
+     * @return The number of events recorded, or -1 if the player wasn't being recorded
+     */
+    public int stop(Player player) {
+        Recording recording = recordings.remove(player.getUniqueId());
+        if (recording == null) {
+            return -1;
+        }
+        
+        writer.execute(() -> {
+            try {
+                recording.writer.close();
+            } catch (IOException e) {
+                Logger.warning("Failed to finish trace " + recording.file.getName() + ": " + e.getMessage());
+            }
+        });
+        Logger.info("Stopped recording trace " + recording.file.getName() + " (" + recording.events + " events)");
+        return recording.events;
+    }
+    
+    /**
+     * Stop all recordings and wait for them to be written.
+     */
+    public void shutdown() {
+        for (UUID uuid : recordings.keySet().toArray(new UUID[0])) {
+            Player player = plugin.getServer().getPlayer(uuid);
+            if (player != null) {
+                stop(player);
+            }
+        }
+        
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        Recording recording = recordings.get(event.getPlayer().getUniqueId());
+        if (recording == null) {
+            return;
+        }
+        
+        // Only record our own edit commands, not /fe itself or other plugins' commands
+        String command = event.getMessage().substring(1);
+        String label = command.split(" ")[0];
+        PluginCommand pluginCommand = plugin.getServer().getPluginCommand(label);
+        if (pluginCommand == null || pluginCommand.getPlugin() != plugin || pluginCommand.getName().equals("frizzlenedit")) {
+            return;
+        }
+        
+        Player player = event.getPlayer();
+        Location location = player.getLocation();
+        
+        Vector3 selectionMin = null;
+        Vector3 selectionMax = null;
+        Region region = plugin.getSelectionManager().getSelection(player);
+        if (plugin.getSelectionManager().hasSelection(player) && region.getWorld() == player.getWorld()) {
+            selectionMin = region.getMinimumPoint();
+            selectionMax = region.getMaximumPoint();
+        }
+        
+        // Snapshot the selected area the first time a command touches it; later commands
+        // on the same area are replayed on top of what the earlier ones left behind.
+        // It has to be read now, before the command changes it, so only areas small
+        // enough to read within the tick are captured
+        AreaSnapshot snapshot = null;
+        if (selectionMin != null && !NO_SNAPSHOT_COMMANDS.contains(pluginCommand.getName())) {
+            String key = player.getWorld().getName() + ":" + selectionMin + ":" + selectionMax;
+            Vector3 margin = new Vector3(SNAPSHOT_MARGIN, SNAPSHOT_MARGIN, SNAPSHOT_MARGIN);
+            Vector3 min = selectionMin.subtract(margin);
+            Vector3 max = selectionMax.add(margin);
+            long volume = (long) (max.getX() - min.getX() + 1) * (max.getY() - min.getY() + 1) * (max.getZ() - min.getZ() + 1);
+            int maxBlocks = plugin.getConfigManager().getTraceMaxSnapshotBlocks();
+            if (volume <= maxBlocks && recording.snapshotAreas.add(key)) {
+                snapshot = AreaSnapshot.capture(new BukkitExtent(player.getWorld()), min, max);
+            }
+        }
+        
+        TraceEvent traceEvent = new TraceEvent(
+            plugin.getClock().currentTimeMillis() - recording.startedAt, command, player.getWorld().getName(),
+            Vector3.fromLocation(location), location.getYaw(), location.getPitch(),
+            selectionMin, selectionMax, snapshot);
+        recording.events++;
+        
+        writer.execute(() -> {
+            try {
+                recording.writer.write(traceEvent);
+            } catch (IOException e) {
+                Logger.warning("Failed to write trace " + recording.file.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        stop(event.getPlayer());
+    }
+    
+    /**
+     * List the trace files that have been recorded.
+     * @return The names of the trace files, without extension
+     */
+    public List<String> listTraces() {
+        String[] files = directory.list((dir, name) -> name.endsWith(TraceFile.EXTENSION));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        
+        Arrays.sort(files);
+        String[] names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = files[i].substring(0, files[i].length() - TraceFile.EXTENSION.length());
+        }
+        return Arrays.asList(names);
+    }
+    
+    /**
+     * A trace being recorded for one player.
+     */
+    private static class Recording {
+        final File file;
+        final TraceFile.Writer writer;
+        final long startedAt;
+        final Set<String> snapshotAreas = new HashSet<>();
+        int events;
+        
+        Recording(File file, TraceFile.Writer writer, long startedAt) {
+            this.file = file;
+            this.writer = writer;
+            this.startedAt = startedAt;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,132 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+import org.bukkit.ChatColor;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarStyle;
+import org.bukkit.boss.BossBar;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+
+/**
+ * A boss bar for admins showing how much of each server tick FrizzlenEdit is using.
+ * It only reads the counters in {@link EditMetrics} and the operation manager once per
+ * second, and only while someone is watching.
+ */
+public class BudgetOverlay implements Listener {
+    // Milliseconds per server tick
+    private static final double MS_PER_TICK = 50.0;
+    
+    // Update once per second
+    private static final long UPDATE_INTERVAL = 20L;
+    
+    private final FrizzlenEdit plugin;
+    private final Clock clock;
+    private final BossBar bar;
+    private ScheduledTask task;
+    
+    // Counter values at the previous update
+    private long lastNanos;
+    private long lastBlocks;
+    private long lastUpdate;
+    
+    /**
+     * Create a new budget overlay.
+     * @param plugin The plugin instance
+     */
+    public BudgetOverlay(FrizzlenEdit plugin) {
+        this.plugin = plugin;
+        this.clock = plugin.getClock();
+        this.bar = plugin.getServer().createBossBar("FrizzlenEdit", BarColor.GREEN, BarStyle.SEGMENTED_10);
+    }
+    
+    /**
+     * Show or hide the overlay for a player.
+     * @param player The player
+     * @return True if the overlay is now shown
+     */
+    public boolean toggle(Player player) {
+        if (bar.getPlayers().contains(player)) {
+            bar.removePlayer(player);
+            if (bar.getPlayers().isEmpty()) {
+                stop();
+            }
+            return false;
+        }
+        
+        bar.addPlayer(player);
+        if (task == null) {
+            start();
+        }
+        return true;
+    }
+    
+    /**
+     * Hide the overlay for everyone.
+     */
+    public void shutdown() {
+        bar.removeAll();
+        stop();
+    }
+    
+    private void start() {
+        EditMetrics metrics = EditMetrics.getInstance();
+        lastNanos = metrics.getMainThreadNanos();
+        lastBlocks = metrics.getBlocksApplied();
+        lastUpdate = clock.nanoTime();
+        update(0);
+        task = plugin.getTaskScheduler().runTaskTimer(() -> update(UPDATE_INTERVAL), UPDATE_INTERVAL, UPDATE_INTERVAL);
+    }
+    
+    private void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+    
+    /**
+     * Refresh the overlay from the counters.
+     * @param ticks The server ticks that ran since the previous update. The timer counts ticks,
+     *              not time, so this stays right when the server falls behind 20 TPS
+     */
+    private void update(long ticks) {
+        EditMetrics metrics = EditMetrics.getInstance();
+        long nanos = metrics.getMainThreadNanos();
+        long blocks = metrics.getBlocksApplied();
+        long now = clock.nanoTime();
+        
+        double seconds = Math.max(0.001, (now - lastUpdate) / 1_000_000_000.0);
+        double msPerTick = ticks > 0 ? (nanos - lastNanos) / 1_000_000.0 / ticks : 0;
+        double blocksPerSecond = (blocks - lastBlocks) / seconds;
+        
+        lastNanos = nanos;
+        lastBlocks = blocks;
+        lastUpdate = now;
+        
+        int active = plugin.getOperationManager().getActiveOperations();
+        int queued = plugin.getOperationManager().getQueuedOperations();
+        int batchSize = metrics.getBatchSize();
+        
+        ChatColor color = msPerTick < 10 ? ChatColor.GREEN : msPerTick < 25 ? ChatColor.YELLOW : ChatColor.RED;
+        bar.setTitle(color + String.format("%.1f", msPerTick) + "ms/tick" +
+                     ChatColor.GRAY + " | jobs " + ChatColor.WHITE + active + ChatColor.GRAY + " active, " +
+                     ChatColor.WHITE + queued + ChatColor.GRAY + " queued | " +
+                     ChatColor.WHITE + String.format("%.0f", blocksPerSecond) + ChatColor.GRAY + " blocks/s | batch " +
+                     ChatColor.WHITE + (batchSize > 0 ? String.valueOf(batchSize) : "-"));
+        bar.setColor(msPerTick < 10 ? BarColor.GREEN : msPerTick < 25 ? BarColor.YELLOW : BarColor.RED);
+        bar.setProgress(Math.min(1.0, msPerTick / MS_PER_TICK));
+    }
+    
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        bar.removePlayer(event.getPlayer());
+        if (bar.getPlayers().isEmpty()) {
+            stop();
+        }
+    }
+} 
\ No newline at end of file
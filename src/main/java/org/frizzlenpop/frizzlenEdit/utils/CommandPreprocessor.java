@@ -44,6 +44,7 @@ public class CommandPreprocessor implements Listener {
         editCommands.add("pastelarge");
         editCommands.add("flip");
         editCommands.add("rotate");
+        editCommands.add("clipboard");
         editCommands.add("undo");
         editCommands.add("redo");
         editCommands.add("set");
@@ -120,4 +121,20 @@ public class CommandPreprocessor implements Listener {
             }
         }
     }
+    
+    /**
+     * Hold back edit commands while the player's session is still being read from disk,
+     * as they would run without the player's selection, clipboard or history.
+     */
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
+    public void onEditCommand(PlayerCommandPreprocessEvent event) {
+        String label = event.getMessage().replaceFirst("^/+", "").split(" ")[0].toLowerCase();
+        if (label.startsWith("frizzlenedit:")) {
+            label = label.substring("frizzlenedit:".length());
+        }
+        
+        if (editCommands.contains(label) && !plugin.getSessionManager().checkLoaded(event.getPlayer())) {
+            event.setCancelled(true);
+        }
+    }
 } 
\ No newline at end of file
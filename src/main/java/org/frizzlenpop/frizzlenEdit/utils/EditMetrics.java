@@ -0,0 +1,75 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of the work FrizzlenEdit does on the main thread.
+ * The code that applies blocks already times its own work, so it adds to these
+ * counters directly; readers take the difference between two reads.
+ */
+public class EditMetrics {
+    private static final EditMetrics instance = new EditMetrics();
+    
+    // Main thread time spent applying edits, in nanoseconds
+    private final AtomicLong mainThreadNanos = new AtomicLong();
+    
+    // Blocks applied to the world
+    private final AtomicLong blocksApplied = new AtomicLong();
+    
+    // The batch size most recently used by a batched paste
+    private final AtomicInteger batchSize = new AtomicInteger();
+    
+    private EditMetrics() {
+    }
+    
+    /**
+     * Get the instance of the edit metrics.
+     * @return The edit metrics instance
+     */
+    public static EditMetrics getInstance() {
+        return instance;
+    }
+    
+    /**
+     * Record work done on the main thread.
+     * @param nanos The time the work took, in nanoseconds
+     * @param blocks The number of blocks applied
+     */
+    public void recordWork(long nanos, long blocks) {
+        mainThreadNanos.addAndGet(nanos);
+        blocksApplied.addAndGet(blocks);
+    }
+    
+    /**
+     * Record the batch size a batched paste is currently using.
+     * @param size The batch size
+     */
+    public void recordBatchSize(int size) {
+        batchSize.set(size);
+    }
+    
+    /**
+     * Get the total main thread time spent applying edits.
+     * @return The time in nanoseconds
+     */
+    public long getMainThreadNanos() {
+        return mainThreadNanos.get();
+    }
+    
+    /**
+     * Get the total number of blocks applied.
+     * @return The number of blocks
+     */
+    public long getBlocksApplied() {
+        return blocksApplied.get();
+    }
+    
+    /**
+     * Get the batch size most recently used by a batched paste.
+     * @return The batch size, or 0 if no batched paste has run
+     */
+    public int getBatchSize() {
+        return batchSize.get();
+    }
+} 
\ No newline at end of file
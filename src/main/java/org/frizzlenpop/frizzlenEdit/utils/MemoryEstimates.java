@@ -0,0 +1,44 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+/**
+ * Rough sizes of the objects player data is made of, for memory accounting.
+ * These assume a 64-bit JVM with compressed object pointers and are meant to tell
+ * a 10 MB clipboard apart from a 2 GB one, not to be exact.
+ */
+public final class MemoryEstimates {
+    // A HashMap node plus its share of the table array
+    public static final long HASH_MAP_ENTRY = 40;
+    
+    // A Vector3 (object header and three ints)
+    public static final long VECTOR3 = 24;
+    
+    // A block data instance; copies are cloned, so each one is counted separately
+    public static final long BLOCK_DATA = 32;
+    
+    // The header and length of an array, before its elements
+    public static final long ARRAY = 16;
+    
+    // The fixed part of a brush (object header and settings)
+    public static final long BRUSH = 64;
+    
+    private MemoryEstimates() {
+    }
+    
+    /**
+     * Format a number of bytes for display.
+     * @param bytes The number of bytes
+     * @return The formatted size, e.g. "12.3 MB"
+     */
+    public static String format(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024L * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+} 
\ No newline at end of file
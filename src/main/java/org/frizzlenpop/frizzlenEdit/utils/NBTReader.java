@@ -0,0 +1,480 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads NBT one tag at a time, without building a tree of the whole file.
+ *
+ * The caller walks a compound with {@link #nextTag()}, looks at {@link #getName()}, and
+ * either reads the value with one of the read methods or skips it with {@link #skip(byte)}.
+ * Skipped tags are read past without creating anything, so a reader only pays for the
+ * tags it actually wants.
+ */
+public class NBTReader implements Closeable {
+    
+    // NBT tag types
+    public static final byte TAG_END = 0;
+    public static final byte TAG_BYTE = 1;
+    public static final byte TAG_SHORT = 2;
+    public static final byte TAG_INT = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_FLOAT = 5;
+    public static final byte TAG_DOUBLE = 6;
+    public static final byte TAG_BYTE_ARRAY = 7;
+    public static final byte TAG_STRING = 8;
+    public static final byte TAG_LIST = 9;
+    public static final byte TAG_COMPOUND = 10;
+    public static final byte TAG_INT_ARRAY = 11;
+    public static final byte TAG_LONG_ARRAY = 12;
+    
+    // Buffer size for reading files and inflating them
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final DataInputStream in;
+    private String name;
+    private int varIntBytes;
+    
+    /**
+     * Create a reader over uncompressed NBT.
+     *
+     * @param in The input stream, which should be buffered
+     */
+    public NBTReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+    
+    /**
+     * Open a gzip-compressed NBT file, such as a schematic.
+     *
+     * @param file The file
+     * @return The reader
+     * @throws IOException If the file can't be opened
+     */
+    public static NBTReader open(File file) throws IOException {
+        return open(file, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Open a gzip-compressed NBT file. Files written with {@link ParallelGZIPOutputStream}
+     * are inflated in parallel; any other gzip is read on the calling thread.
+     *
+     * @param file The file
+     * @param executor The threads to inflate on
+     * @param parallelism The number of sections inflated at once
+     * @return The reader
+     * @throws IOException If the file can't be opened
+     */
+    public static NBTReader open(File file, Executor executor, int parallelism) throws IOException {
+        InputStream parallel = ParallelGZIPInputStream.openIfParallel(file, executor, parallelism);
+        if (parallel != null) {
+            return new NBTReader(new BufferedInputStream(parallel, BUFFER_SIZE));
+        }
+        
+        InputStream fileIn = new FileInputStream(file);
+        try {
+            // Buffered on both sides of the inflater, so single-byte reads stay cheap
+            InputStream gzip = new GZIPInputStream(new BufferedInputStream(fileIn, BUFFER_SIZE), BUFFER_SIZE);
+            return new NBTReader(new BufferedInputStream(gzip, BUFFER_SIZE));
+        } catch (IOException e) {
+            fileIn.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Read the root tag, which must be a compound. Its entries can then be read with {@link #nextTag()}.
+     *
+     * @return The name of the root tag
+     * @throws IOException If the root is not a compound
+     */
+    public String readRoot() throws IOException {
+        byte type = in.readByte();
+        if (type != TAG_COMPOUND) {
+            throw new IOException("Root tag is not a compound tag");
+        }
+        name = readString();
+        return name;
+    }
+    
+    /**
+     * Move to the next entry of the compound being read.
+     *
+     * @return The type of the entry, or {@link #TAG_END} at the end of the compound
+     * @throws IOException If an error occurs while reading
+     */
+    public byte nextTag() throws IOException {
+        byte type = in.readByte();
+        name = type == TAG_END ? null : readString();
+        return type;
+    }
+    
+    /**
+     * Get the name of the entry {@link #nextTag()} moved to.
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Read a whole number of any size. Lets fields that other tools write as a byte, short
+     * or long be read the same way as ints.
+     *
+     * @param type The type of the tag
+     * @return The value
+     * @throws IOException If the tag is not a whole number
+     */
+    public int readInt(byte type) throws IOException {
+        switch (type) {
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_INT:
+                return in.readInt();
+            case TAG_LONG:
+                return (int) in.readLong();
+            default:
+                throw new IOException("Tag " + name + " is not a number");
+        }
+    }
+    
+    /**
+     * Read a whole number of any size as a long, for values such as timestamps.
+     *
+     * @param type The type of the tag
+     * @return The value
+     * @throws IOException If the tag is not a whole number
+     */
+    public long readLong(byte type) throws IOException {
+        return type == TAG_LONG ? in.readLong() : readInt(type);
+    }
+    
+    /**
+     * Read a double value.
+     *
+     * @return The value
+     * @throws IOException If an error occurs while reading
+     */
+    public double readDouble() throws IOException {
+        return in.readDouble();
+    }
+    
+    /**
+     * Read a string value.
+     *
+     * @return The string
+     * @throws IOException If an error occurs while reading
+     */
+    public String readString() throws IOException {
+        int length = in.readUnsignedShort();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Read the length of an array tag. The elements follow, and have to be read or skipped.
+     *
+     * @return The number of elements
+     * @throws IOException If an error occurs while reading
+     */
+    public int readArrayLength() throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative array length in tag " + name);
+        }
+        return length;
+    }
+    
+    /**
+     * Read the contents of a byte array tag.
+     *
+     * @param length The length of the array, from {@link #readArrayLength()}
+     * @return The bytes
+     * @throws IOException If the data ends early
+     */
+    public byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Read the contents of a long array tag.
+     *
+     * @param length The length of the array, from {@link #readArrayLength()}
+     * @return The values
+     * @throws IOException If the data ends early
+     */
+    public long[] readLongs(int length) throws IOException {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+    
+    /**
+     * Read the element type of a list tag. The length follows, from {@link #readArrayLength()},
+     * and then the elements; compound elements are walked with {@link #nextTag()}.
+     *
+     * @return The type of the elements
+     * @throws IOException If an error occurs while reading
+     */
+    public byte readListType() throws IOException {
+        return in.readByte();
+    }
+    
+    /**
+     * Decode the VarInts packed in a byte array tag, as in a Sponge schematic's block data,
+     * straight from the stream into an int array.
+     *
+     * @param byteLength The length of the byte array, from {@link #readArrayLength()}
+     * @param capacity The number of values expected; the array grows if there are more
+     * @return The values; the array may be longer than the number of values read
+     * @throws IOException If the data ends in the middle of a VarInt
+     */
+    public int[] readVarInts(int byteLength, int capacity) throws IOException {
+        int[] values = new int[Math.max(1, capacity)];
+        int count = 0;
+        int remaining = byteLength;
+        
+        while (remaining > 0) {
+            int value = readVarInt(remaining);
+            remaining -= varIntBytes;
+            
+            if (count == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[count++] = value;
+        }
+        return values;
+    }
+    
+    /**
+     * Decode the VarInts packed in a byte array tag one at a time, without keeping them.
+     *
+     * @param byteLength The length of the byte array, from {@link #readArrayLength()}
+     * @param action Called with each value, in order
+     * @throws IOException If the data ends in the middle of a VarInt
+     */
+    public void readVarInts(int byteLength, IntConsumer action) throws IOException {
+        int remaining = byteLength;
+        while (remaining > 0) {
+            int value = readVarInt(remaining);
+            remaining -= varIntBytes;
+            action.accept(value);
+        }
+    }
+    
+    /**
+     * Read one VarInt, and set {@link #varIntBytes} to the number of bytes it took.
+     *
+     * @param limit The number of bytes left in the array
+     * @return The value
+     * @throws IOException If the VarInt runs past the limit or is longer than an int
+     */
+    private int readVarInt(int limit) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int read = 0;
+        int b;
+        do {
+            if (read++ == limit || shift > 28) {
+                throw new IOException("Malformed VarInt in tag " + name);
+            }
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        
+        varIntBytes = read;
+        return value;
+    }
+    
+    /**
+     * Skip the value of a tag without creating anything for it.
+     *
+     * @param type The type of the tag
+     * @throws IOException If an error occurs while reading
+     */
+    public void skip(byte type) throws IOException {
+        switch (type) {
+            case TAG_END:
+                return;
+            case TAG_BYTE:
+                skipBytes(1);
+                return;
+            case TAG_SHORT:
+                skipBytes(2);
+                return;
+            case TAG_INT:
+            case TAG_FLOAT:
+                skipBytes(4);
+                return;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                skipBytes(8);
+                return;
+            case TAG_BYTE_ARRAY:
+                skipBytes(readArrayLength());
+                return;
+            case TAG_STRING:
+                skipBytes(in.readUnsignedShort());
+                return;
+            case TAG_LIST: {
+                byte elementType = in.readByte();
+                int length = readArrayLength();
+                for (int i = 0; i < length; i++) {
+                    skip(elementType);
+                }
+                return;
+            }
+            case TAG_COMPOUND: {
+                byte entryType;
+                while ((entryType = in.readByte()) != TAG_END) {
+                    skipBytes(in.readUnsignedShort());
+                    skip(entryType);
+                }
+                return;
+            }
+            case TAG_INT_ARRAY:
+                skipBytes(readArrayLength() * 4L);
+                return;
+            case TAG_LONG_ARRAY:
+                skipBytes(readArrayLength() * 8L);
+                return;
+            default:
+                throw new IOException("Unknown tag type: " + type);
+        }
+    }
+    
+    /**
+     * Copy the value of a tag as it is, for NBT that is kept without being looked at, such
+     * as the contents of a chest. A compound is copied with its end tag.
+     *
+     * @param type The type of the tag
+     * @param out Where to write the value
+     * @throws IOException If an error occurs while reading or writing
+     */
+    public void copy(byte type, DataOutput out) throws IOException {
+        switch (type) {
+            case TAG_END:
+                return;
+            case TAG_BYTE:
+                copyBytes(1, out);
+                return;
+            case TAG_SHORT:
+                copyBytes(2, out);
+                return;
+            case TAG_INT:
+            case TAG_FLOAT:
+                copyBytes(4, out);
+                return;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                copyBytes(8, out);
+                return;
+            case TAG_BYTE_ARRAY: {
+                int length = readArrayLength();
+                out.writeInt(length);
+                copyBytes(length, out);
+                return;
+            }
+            case TAG_STRING: {
+                int length = in.readUnsignedShort();
+                out.writeShort(length);
+                copyBytes(length, out);
+                return;
+            }
+            case TAG_LIST: {
+                byte elementType = in.readByte();
+                int length = readArrayLength();
+                out.writeByte(elementType);
+                out.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    copy(elementType, out);
+                }
+                return;
+            }
+            case TAG_COMPOUND: {
+                byte entryType;
+                while ((entryType = in.readByte()) != TAG_END) {
+                    out.writeByte(entryType);
+                    int nameLength = in.readUnsignedShort();
+                    out.writeShort(nameLength);
+                    copyBytes(nameLength, out);
+                    copy(entryType, out);
+                }
+                out.writeByte(TAG_END);
+                return;
+            }
+            case TAG_INT_ARRAY: {
+                int length = readArrayLength();
+                out.writeInt(length);
+                copyBytes(length * 4L, out);
+                return;
+            }
+            case TAG_LONG_ARRAY: {
+                int length = readArrayLength();
+                out.writeInt(length);
+                copyBytes(length * 8L, out);
+                return;
+            }
+            default:
+                throw new IOException("Unknown tag type: " + type);
+        }
+    }
+    
+    private void copyBytes(long count, DataOutput out) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(count, 8192)];
+        while (count > 0) {
+            int n = (int) Math.min(count, buffer.length);
+            in.readFully(buffer, 0, n);
+            out.write(buffer, 0, n);
+            count -= n;
+        }
+    }
+    
+    /**
+     * Skip a number of bytes. The underlying stream may skip fewer than asked at once,
+     * so this keeps going until they are all gone.
+     *
+     * @param count The number of bytes
+     * @throws IOException If the stream ends first
+     */
+    private void skipBytes(long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                // skip may return 0 without being at the end, so check with a read
+                if (in.read() < 0) {
+                    throw new EOFException("Unexpected end of NBT data");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+} 
\ No newline at end of file
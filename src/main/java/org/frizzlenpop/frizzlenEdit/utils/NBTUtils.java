@@ -39,8 +39,8 @@ public class NBTUtils {
         Map<String, Object> result = new HashMap<>();
         
         try (FileInputStream fis = new FileInputStream(file);
-             GZIPInputStream gzis = new GZIPInputStream(fis);
-             DataInputStream dis = new DataInputStream(gzis)) {
+             GZIPInputStream gzis = new GZIPInputStream(new BufferedInputStream(fis, 65536), 65536);
+             DataInputStream dis = new DataInputStream(new BufferedInputStream(gzis, 65536))) {
             
             // Read the root compound tag
             byte tagType = dis.readByte();
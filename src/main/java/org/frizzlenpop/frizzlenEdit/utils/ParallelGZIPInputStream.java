@@ -0,0 +1,252 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads gzip written by {@link ParallelGZIPOutputStream}, inflating its members in parallel.
+ *
+ * Members are read ahead from the file by the size in their extra field and inflated on the
+ * executor, while the caller reads the output of earlier members in order. Only a bounded
+ * number of members is in memory at once.
+ */
+public class ParallelGZIPInputStream extends InputStream {
+    private final DataInputStream in;
+    private final Executor executor;
+    private final int maxPending;
+    
+    // Members being inflated, in file order
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private boolean endOfFile;
+    private boolean sawEndMember;
+    private byte[] current = new byte[0];
+    private int position;
+    
+    /**
+     * Create a new parallel gzip reader.
+     * @param in The compressed stream, positioned at its first member
+     * @param executor The threads to inflate on
+     * @param parallelism The number of members inflated at once
+     */
+    public ParallelGZIPInputStream(InputStream in, Executor executor, int parallelism) {
+        this.in = new DataInputStream(in);
+        this.executor = executor;
+        this.maxPending = Math.max(1, parallelism) * 2;
+    }
+    
+    /**
+     * Check if a file was written by {@link ParallelGZIPOutputStream}, by looking for the
+     * extra field in its first member.
+     * @param file The file
+     * @return True if its members can be inflated in parallel
+     * @throws IOException If the file can't be read
+     */
+    public static boolean isParallel(File file) throws IOException {
+        byte[] header = new byte[ParallelGZIPOutputStream.HEADER_SIZE + 2 + ParallelGZIPOutputStream.EXTRA_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+        }
+        return isParallelHeader(header);
+    }
+    
+    /**
+     * Open a file for reading, in parallel if it was written that way.
+     * @param file The file
+     * @param executor The threads to inflate on
+     * @param parallelism The number of members inflated at once
+     * @return The decompressed stream, or null if the file is ordinary gzip
+     * @throws IOException If the file can't be opened
+     */
+    public static InputStream openIfParallel(File file, Executor executor, int parallelism) throws IOException {
+        if (!isParallel(file)) {
+            return null;
+        }
+        return new ParallelGZIPInputStream(new BufferedInputStream(new FileInputStream(file), 65536), executor, parallelism);
+    }
+    
+    private static boolean isParallelHeader(byte[] header) {
+        return header[0] == 0x1f && header[1] == (byte) 0x8b && header[2] == 8 &&
+               (header[3] & ParallelGZIPOutputStream.FLAG_EXTRA) != 0 &&
+               readShort(header, 10) == ParallelGZIPOutputStream.EXTRA_SIZE &&
+               header[12] == ParallelGZIPOutputStream.SUBFIELD_1 && header[13] == ParallelGZIPOutputStream.SUBFIELD_2 &&
+               readShort(header, 14) == 4;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+    
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        pending.clear();
+        in.close();
+    }
+    
+    /**
+     * Make sure there is output to read, waiting for the next member if needed.
+     * @return False at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        while (position == current.length) {
+            readAhead();
+            if (pending.isEmpty()) {
+                if (!sawEndMember) {
+                    throw new EOFException("Compressed data is truncated");
+                }
+                return false;
+            }
+            current = await(pending.poll());
+            position = 0;
+        }
+        return true;
+    }
+    
+    /**
+     * Read members from the file and start inflating them, until enough are in flight.
+     */
+    private void readAhead() throws IOException {
+        while (!endOfFile && pending.size() < maxPending) {
+            byte[] member = readMember();
+            if (member == null) {
+                endOfFile = true;
+                break;
+            }
+            
+            int size = readInt(member, member.length - 4);
+            if (size == 0) {
+                // The empty member that closes the stream
+                sawEndMember = true;
+                continue;
+            }
+            sawEndMember = false;
+            pending.add(CompletableFuture.supplyAsync(() -> inflate(member, size), executor));
+        }
+    }
+    
+    /**
+     * Read one whole member from the file.
+     * @return The member, or null at the end of the file
+     */
+    private byte[] readMember() throws IOException {
+        byte[] header = new byte[ParallelGZIPOutputStream.HEADER_SIZE + 2 + ParallelGZIPOutputStream.EXTRA_SIZE];
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        header[0] = (byte) first;
+        in.readFully(header, 1, header.length - 1);
+        if (!isParallelHeader(header)) {
+            throw new ZipException("Not a parallel gzip member");
+        }
+        
+        int total = readInt(header, 16);
+        if (total < header.length + ParallelGZIPOutputStream.TRAILER_SIZE) {
+            throw new ZipException("Invalid gzip member size: " + total);
+        }
+        byte[] member = new byte[total];
+        System.arraycopy(header, 0, member, 0, header.length);
+        in.readFully(member, header.length, total - header.length);
+        return member;
+    }
+    
+    private static byte[] inflate(byte[] member, int size) {
+        int start = ParallelGZIPOutputStream.HEADER_SIZE + 2 + ParallelGZIPOutputStream.EXTRA_SIZE;
+        int end = member.length - ParallelGZIPOutputStream.TRAILER_SIZE;
+        byte[] output = new byte[size];
+        
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, start, end - start);
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int n = inflater.inflate(output, length, size - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != size) {
+                throw new ZipException("Gzip member is shorter than its recorded size");
+            }
+            
+            CRC32 crc = new CRC32();
+            crc.update(output, 0, size);
+            if ((int) crc.getValue() != readInt(member, end)) {
+                throw new ZipException("Corrupt gzip member (CRC mismatch)");
+            }
+            return output;
+        } catch (DataFormatException | ZipException e) {
+            throw new CompletionException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Decompression failed", cause);
+        }
+    }
+    
+    private static int readShort(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8;
+    }
+    
+    private static int readInt(byte[] buffer, int offset) {
+        return readShort(buffer, offset) | readShort(buffer, offset + 2) << 16;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,193 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes gzip as a series of independently deflated members, compressed in parallel.
+ *
+ * The data is cut into sections of {@link #SECTION_SIZE} bytes, each written as its own gzip
+ * member, so any gzip reader still sees one stream. Like BGZF, every member records its own
+ * compressed size in an extra field ("FE"), which lets {@link ParallelGZIPInputStream} find
+ * the members without inflating them and inflate them in parallel. The stream ends with an
+ * empty member, so a truncated file can be told apart from a complete one.
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+    // Uncompressed bytes per member
+    public static final int SECTION_SIZE = 1024 * 1024;
+    
+    // Gzip header: magic, deflate, FEXTRA, no mtime, no extra flags, unknown OS
+    static final int HEADER_SIZE = 10;
+    static final int EXTRA_SIZE = 8;
+    static final int TRAILER_SIZE = 8;
+    static final byte FLAG_EXTRA = 4;
+    static final byte SUBFIELD_1 = 'F';
+    static final byte SUBFIELD_2 = 'E';
+    
+    private final OutputStream out;
+    private final int level;
+    private final Executor executor;
+    private final int maxPending;
+    
+    // Members being compressed, oldest first; written out in this order
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private byte[] section = new byte[SECTION_SIZE];
+    private int count;
+    private boolean closed;
+    
+    /**
+     * Create a new parallel gzip stream.
+     * @param out The stream to write the compressed data to
+     * @param level The deflate level, from 0 to 9
+     * @param executor The threads to compress on
+     * @param parallelism The number of sections compressed at once
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int level, Executor executor, int parallelism) {
+        this.out = out;
+        this.level = Math.max(0, Math.min(9, level));
+        this.executor = executor;
+        // Twice the threads, so a thread is never idle while the oldest section is written
+        this.maxPending = Math.max(1, parallelism) * 2;
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        if (count == section.length) {
+            submit();
+        }
+        section[count++] = (byte) b;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == section.length) {
+                submit();
+            }
+            int n = Math.min(len, section.length - count);
+            System.arraycopy(b, off, section, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Finish writing: compress what is left, write every member and the closing empty member.
+     * @throws IOException If writing fails
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (count > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            out.write(await(pending.poll()));
+        }
+        out.write(compress(new byte[0], 0, level));
+        closed = true;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+    
+    private void submit() throws IOException {
+        byte[] data = section;
+        int length = count;
+        int sectionLevel = level;
+        pending.add(CompletableFuture.supplyAsync(() -> compress(data, length, sectionLevel), executor));
+        section = new byte[SECTION_SIZE];
+        count = 0;
+        
+        // Keep memory bounded by writing out the oldest sections once enough are in flight
+        while (pending.size() >= maxPending) {
+            out.write(await(pending.poll()));
+        }
+    }
+    
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+    }
+    
+    /**
+     * Compress one section into a complete gzip member.
+     * @param data The section
+     * @param length The number of bytes in the section
+     * @param level The deflate level
+     * @return The member
+     */
+    static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            
+            // Incompressible data grows by a few bytes per 16K block at worst
+            int headerSize = HEADER_SIZE + 2 + EXTRA_SIZE;
+            byte[] member = new byte[headerSize + length + length / 16384 * 5 + 64 + TRAILER_SIZE];
+            int size = headerSize;
+            while (!deflater.finished()) {
+                if (size == member.length - TRAILER_SIZE) {
+                    member = Arrays.copyOf(member, member.length * 2);
+                }
+                size += deflater.deflate(member, size, member.length - TRAILER_SIZE - size);
+            }
+            
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            int total = size + TRAILER_SIZE;
+            
+            // Header, with the member's size in the extra field
+            member[0] = 0x1f;
+            member[1] = (byte) 0x8b;
+            member[2] = Deflater.DEFLATED;
+            member[3] = FLAG_EXTRA;
+            member[9] = (byte) 0xff;
+            writeShort(member, 10, EXTRA_SIZE);
+            member[12] = SUBFIELD_1;
+            member[13] = SUBFIELD_2;
+            writeShort(member, 14, 4);
+            writeInt(member, 16, total);
+            
+            // Trailer
+            writeInt(member, size, (int) crc.getValue());
+            writeInt(member, size + 4, length);
+            return member.length == total ? member : Arrays.copyOf(member, total);
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static void writeShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+    }
+    
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        writeShort(buffer, offset, value);
+        writeShort(buffer, offset + 2, value >>> 16);
+    }
+} 
\ No newline at end of file
@@ -1,23 +1,27 @@
 package org.frizzlenpop.frizzlenEdit.utils;
 
-import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitTask;
+import org.frizzlenpop.frizzlenEdit.scheduler.BukkitTaskScheduler;
+import org.frizzlenpop.frizzlenEdit.scheduler.Clock;
+import org.frizzlenpop.frizzlenEdit.scheduler.ScheduledTask;
+import org.frizzlenpop.frizzlenEdit.scheduler.SystemClock;
+import org.frizzlenpop.frizzlenEdit.scheduler.TaskScheduler;
 
 /**
  * Utility class for monitoring server performance.
  * Keeps track of TPS (Ticks Per Second) to help optimize operations.
  */
 public class ServerPerformanceMonitor {
-    private static final int SAMPLE_WINDOW = 10; // Sample window in seconds
+    private static final int SAMPLE_WINDOW = 10; // Sample window in ticks
     private static final double IDEAL_TPS = 20.0; // Minecraft runs at 20 TPS ideally
     private static final double PERFORMANCE_THRESHOLD_HIGH = 19.0; // High performance threshold
     private static final double PERFORMANCE_THRESHOLD_MEDIUM = 17.0; // Medium performance threshold
     private static final double PERFORMANCE_THRESHOLD_LOW = 14.0; // Low performance threshold
     
     private static ServerPerformanceMonitor instance;
-    private final Plugin plugin;
-    private BukkitTask monitorTask;
+    private final TaskScheduler scheduler;
+    private final Clock clock;
+    private ScheduledTask monitorTask;
     
     // TPS tracking
     private final long[] tickTimes = new long[SAMPLE_WINDOW];
@@ -26,12 +30,15 @@ public class ServerPerformanceMonitor {
     private double currentTps = IDEAL_TPS;
     
     /**
-     * Initialize the server performance monitor.
-     * @param plugin The plugin instance
+     * Create a performance monitor that measures the ticks of a scheduler. Monitors created
+     * this way are not the shared instance; use this to monitor a simulated server.
+     * @param scheduler The scheduler whose ticks are measured
+     * @param clock The clock the ticks are timed with
      */
-    private ServerPerformanceMonitor(Plugin plugin) {
-        this.plugin = plugin;
-        this.lastTickTime = System.currentTimeMillis();
+    public ServerPerformanceMonitor(TaskScheduler scheduler, Clock clock) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.lastTickTime = clock.currentTimeMillis();
         startMonitoring();
     }
     
@@ -45,7 +52,7 @@ public class ServerPerformanceMonitor {
             if (plugin == null) {
                 throw new IllegalArgumentException("Plugin cannot be null on first initialization");
             }
-            instance = new ServerPerformanceMonitor(plugin);
+            instance = new ServerPerformanceMonitor(new BukkitTaskScheduler(plugin), SystemClock.INSTANCE);
         }
         return instance;
     }
@@ -68,8 +75,8 @@ public class ServerPerformanceMonitor {
         }
         
         // Schedule the monitoring task to run each tick
-        monitorTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            long now = System.currentTimeMillis();
+        monitorTask = scheduler.runTaskTimer(() -> {
+            long now = clock.currentTimeMillis();
             long elapsed = now - lastTickTime;
             lastTickTime = now;
             
@@ -0,0 +1,233 @@
+package org.frizzlenpop.frizzlenEdit.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Writes records of slow jobs as JSON lines, one object per line.
+ * Records are queued by the caller and written in batches on a background thread,
+ * so logging never blocks the main thread on disk I/O. Files are rotated by size:
+ * the active file is {@code <name>.jsonl}, older files are {@code <name>.1.jsonl} and up.
+ */
+public class SlowJobLog {
+    // How often queued records are written out
+    private static final long FLUSH_INTERVAL_MS = 2000;
+    
+    // Records beyond this many waiting to be written are dropped
+    private static final int QUEUE_CAPACITY = 10000;
+    
+    private final File directory;
+    private final String name;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger dropped = new AtomicInteger(0);
+    private final ScheduledExecutorService writer;
+    
+    /**
+     * Create a new slow job log.
+     * @param directory The directory the log files are written to
+     * @param name The base name of the log files
+     * @param maxFileBytes The size at which the active file is rotated
+     * @param maxFiles The number of files to keep, including the active one
+     */
+    public SlowJobLog(File directory, String name, long maxFileBytes, int maxFiles) {
+        this.directory = directory;
+        this.name = name;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "FrizzlenEdit-SlowJobLog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Queue a record to be written. Values may be strings, numbers, booleans, maps or collections.
+     * @param record The record
+     */
+    public void log(Map<String, ?> record) {
+        if (!queue.offer(toJson(record))) {
+            dropped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Queue a record that is built on the background thread, for records that take
+     * work to put together.
+     * @param record Builds the record
+     */
+    public void log(Supplier<? extends Map<String, ?>> record) {
+        try {
+            writer.execute(() -> log(record.get()));
+        } catch (RejectedExecutionException e) {
+            // Closed
+            dropped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Write all queued records and stop the background writer.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    /**
+     * Write all queued records to the active file.
+     */
+    private synchronized void flush() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        
+        List<String> batch = new ArrayList<>(queue.size());
+        queue.drainTo(batch);
+        
+        int lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            Logger.warning("Slow job log queue was full, dropped " + lost + " records");
+        }
+        
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            
+            File file = new File(directory, name + ".jsonl");
+            if (file.length() >= maxFileBytes) {
+                rotate();
+            }
+            
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+                for (String line : batch) {
+                    out.write(line);
+                    out.newLine();
+                }
+            }
+        } catch (IOException e) {
+            Logger.warning("Failed to write slow job log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Shift every file up by one, dropping the oldest.
+     */
+    private void rotate() {
+        File oldest = new File(directory, name + "." + (maxFiles - 1) + ".jsonl");
+        if (oldest.exists() && !oldest.delete()) {
+            Logger.warning("Failed to delete old slow job log " + oldest.getName());
+        }
+        
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            File from = new File(directory, i == 0 ? name + ".jsonl" : name + "." + i + ".jsonl");
+            File to = new File(directory, name + "." + (i + 1) + ".jsonl");
+            if (from.exists() && !from.renameTo(to)) {
+                Logger.warning("Failed to rotate slow job log " + from.getName());
+            }
+        }
+    }
+    
+    /**
+     * Convert a value to JSON.
+     * @param value The value
+     * @return The JSON text
+     */
+    static String toJson(Object value) {
+        StringBuilder builder = new StringBuilder();
+        appendJson(builder, value);
+        return builder.toString();
+    }
+    
+    private static void appendJson(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        } else if (value instanceof Map) {
+            builder.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                appendString(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                appendJson(builder, entry.getValue());
+            }
+            builder.append('}');
+        } else if (value instanceof Collection) {
+            builder.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                appendJson(builder, element);
+            }
+            builder.append(']');
+        } else {
+            appendString(builder, value.toString());
+        }
+    }
+    
+    private static void appendString(StringBuilder builder, String text) {
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,201 @@
+package org.frizzlenpop.frizzlenEdit.world;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Entity;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An extent that reads and writes a loaded Bukkit world. Must be used on the main thread,
+ * except for reading block entities and entities, which waits for the main thread when
+ * called from another.
+ */
+public class BukkitExtent implements Extent {
+    private final World world;
+    private final boolean applyPhysics;
+    
+    // While keeping replaced block entities: where the block entities of each chunk written
+    // to are, read once per chunk, and the ones overwritten that haven't been taken yet
+    private Map<Long, Set<Vector3>> blockEntityPositions;
+    private Map<Vector3, byte[]> replacedBlockEntities;
+    
+    /**
+     * Create an extent for a world that applies physics when blocks are set.
+     * @param world The world
+     */
+    public BukkitExtent(World world) {
+        this(world, true);
+    }
+    
+    /**
+     * Create an extent for a world.
+     * @param world The world
+     * @param applyPhysics Whether setting a block updates its neighbours
+     */
+    public BukkitExtent(World world, boolean applyPhysics) {
+        this.world = world;
+        this.applyPhysics = applyPhysics;
+    }
+    
+    @Override
+    public String getName() {
+        return world.getName();
+    }
+    
+    @Override
+    public int getMinY() {
+        return world.getMinHeight();
+    }
+    
+    @Override
+    public int getMaxY() {
+        return world.getMaxHeight();
+    }
+    
+    @Override
+    public BlockData getBlock(int x, int y, int z) {
+        return world.getBlockData(x, y, z);
+    }
+    
+    @Override
+    public boolean setBlock(int x, int y, int z, BlockData data) {
+        if (y < world.getMinHeight() || y >= world.getMaxHeight()) {
+            return false;
+        }
+        Block block = world.getBlockAt(x, y, z);
+        if (replacedBlockEntities != null) {
+            keepBlockEntity(block);
+        }
+        block.setBlockData(data, applyPhysics);
+        return true;
+    }
+    
+    /**
+     * Keep the block entity of a block that is about to be overwritten, if it has one.
+     * @param block The block
+     */
+    private void keepBlockEntity(Block block) {
+        long chunkKey = ((long) (block.getX() >> 4) << 32) | ((block.getZ() >> 4) & 0xFFFFFFFFL);
+        Set<Vector3> positions = blockEntityPositions.computeIfAbsent(chunkKey, key -> {
+            BlockState[] states = block.getChunk().getTileEntities(false);
+            if (states.length == 0) {
+                return Collections.emptySet();
+            }
+            Set<Vector3> found = new HashSet<>();
+            for (BlockState state : states) {
+                found.add(new Vector3(state.getX(), state.getY(), state.getZ()));
+            }
+            return found;
+        });
+        if (positions.isEmpty()) {
+            return;
+        }
+        
+        // Only the block entity that was there before the first write counts
+        Vector3 position = new Vector3(block.getX(), block.getY(), block.getZ());
+        if (positions.remove(position)) {
+            try {
+                byte[] nbt = BukkitNbt.saveBlockEntity(block);
+                if (nbt != null) {
+                    replacedBlockEntities.put(position, nbt);
+                }
+            } catch (IOException | RuntimeException e) {
+                Logger.debug("Could not keep the block entity at " + position + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public BlockData[] getSection(int sectionX, int sectionY, int sectionZ) {
+        // A chunk snapshot reads the whole section without creating a Block per position
+        ChunkSnapshot snapshot = world.getChunkAt(sectionX, sectionZ).getChunkSnapshot(false, false, false);
+        BlockData[] blocks = new BlockData[SECTION_SIZE * SECTION_SIZE * SECTION_SIZE];
+        int baseY = sectionY * SECTION_SIZE;
+        
+        int i = 0;
+        for (int y = 0; y < SECTION_SIZE; y++) {
+            for (int z = 0; z < SECTION_SIZE; z++) {
+                for (int x = 0; x < SECTION_SIZE; x++) {
+                    blocks[i++] = snapshot.getBlockData(x, baseY + y, z);
+                }
+            }
+        }
+        return blocks;
+    }
+    
+    @Override
+    public Map<Vector3, byte[]> getBlockEntities(Vector3 min, Vector3 max) {
+        return BukkitNbt.onMainThread(() -> BukkitNbt.readBlockEntities(world, min, max));
+    }
+    
+    @Override
+    public boolean setBlockEntity(Vector3 position, byte[] nbt) {
+        try {
+            BukkitNbt.loadBlockEntity(world.getBlockAt(position.getX(), position.getY(), position.getZ()), nbt);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Logger.debug("Could not set the block entity at " + position + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    @Override
+    public void keepReplacedBlockEntities() {
+        if (replacedBlockEntities == null) {
+            blockEntityPositions = new HashMap<>();
+            replacedBlockEntities = new HashMap<>();
+        }
+    }
+    
+    @Override
+    public byte[] takeReplacedBlockEntity(Vector3 position) {
+        if (replacedBlockEntities == null || replacedBlockEntities.isEmpty()) {
+            return null;
+        }
+        return replacedBlockEntities.remove(position);
+    }
+    
+    @Override
+    public List<EntityData> getEntities(Vector3 min, Vector3 max) {
+        return BukkitNbt.onMainThread(() -> BukkitNbt.readEntities(world, min, max));
+    }
+    
+    @Override
+    public UUID addEntity(EntityData entity) {
+        try {
+            return BukkitNbt.spawnEntity(world, entity);
+        } catch (IOException | RuntimeException e) {
+            Logger.debug("Could not add an entity at " + entity.getX() + ", " + entity.getY() + ", " + entity.getZ() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    @Override
+    public boolean removeEntity(UUID id) {
+        Entity entity = Bukkit.getEntity(id);
+        if (entity == null || !world.equals(entity.getWorld())) {
+            return false;
+        }
+        entity.remove();
+        return true;
+    }
+    
+    @Override
+    public World getWorld() {
+        return world;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,338 @@
+package org.frizzlenpop.frizzlenEdit.world;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.structure.Mirror;
+import org.bukkit.block.structure.StructureRotation;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.structure.Structure;
+import org.bukkit.structure.StructureManager;
+import org.bukkit.util.BlockVector;
+import org.bukkit.util.BoundingBox;
+import org.frizzlenpop.frizzlenEdit.FrizzlenEdit;
+import org.frizzlenpop.frizzlenEdit.utils.Logger;
+import org.frizzlenpop.frizzlenEdit.utils.NBTReader;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes the NBT of block entities and entities in a Bukkit world.
+ *
+ * Block entities go through a structure of one block, the only public way to get at their
+ * NBT; entities through the server's entity serializer. Both only run for the positions
+ * that have one, so a region of plain blocks costs nothing extra.
+ */
+final class BukkitNbt {
+    // Entity tags that are given again wherever the entity is placed
+    private static final Set<String> ENTITY_PLACEMENT_TAGS = Set.of("Pos", "UUID", "Passengers");
+    
+    private static final BlockVector ONE_BLOCK = new BlockVector(1, 1, 1);
+    
+    // Only used by structures placed with less than full integrity, which these never are
+    private static final Random RANDOM = new Random();
+    
+    private BukkitNbt() {
+    }
+    
+    /**
+     * Run a task on the main thread and wait for it, or right away if already on it.
+     * Worlds may only be read there, and copies read them from other threads.
+     *
+     * The calling thread blocks until the next tick has run the task, so this must not be
+     * called from a thread the main thread is itself waiting for, nor after the plugin's
+     * scheduler has stopped running tasks; either would wait forever.
+     * @param task The task
+     * @return The task's result
+     */
+    static <T> T onMainThread(Callable<T> task) {
+        try {
+            if (Bukkit.isPrimaryThread()) {
+                return task.call();
+            }
+            CompletableFuture<T> result = new CompletableFuture<>();
+            FrizzlenEdit.getInstance().getTaskScheduler().runTask(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the main thread", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not read the world: " + e.getCause().getMessage(), e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read the world: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Read every block entity in a box.
+     * @param world The world
+     * @param min The minimum corner
+     * @param max The maximum corner
+     * @return The NBT of each block entity, by position
+     */
+    static Map<Vector3, byte[]> readBlockEntities(World world, Vector3 min, Vector3 max) {
+        Map<Vector3, byte[]> blockEntities = new HashMap<>();
+        for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+            for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+                Chunk chunk = world.getChunkAt(chunkX, chunkZ);
+                // Live states; only their positions are needed
+                for (BlockState state : chunk.getTileEntities(false)) {
+                    int x = state.getX();
+                    int y = state.getY();
+                    int z = state.getZ();
+                    if (x < min.getX() || y < min.getY() || z < min.getZ() ||
+                        x > max.getX() || y > max.getY() || z > max.getZ()) {
+                        continue;
+                    }
+                    try {
+                        byte[] nbt = saveBlockEntity(state.getBlock());
+                        if (nbt != null) {
+                            blockEntities.put(new Vector3(x, y, z), nbt);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        Logger.debug("Could not read the block entity at " + x + ", " + y + ", " + z + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return blockEntities;
+    }
+    
+    /**
+     * Read the NBT of one block entity.
+     * @param block The block
+     * @return The NBT, or null if the block has no block entity
+     * @throws IOException If the structure can't be read back
+     */
+    static byte[] saveBlockEntity(Block block) throws IOException {
+        StructureManager manager = Bukkit.getStructureManager();
+        Structure structure = manager.createStructure();
+        structure.fill(block.getLocation(), ONE_BLOCK, false);
+        ByteArrayOutputStream saved = new ByteArrayOutputStream(512);
+        manager.saveStructure(saved, structure);
+        
+        // The block entity is blocks[0].nbt
+        try (NBTReader reader = gzipReader(saved.toByteArray())) {
+            reader.readRoot();
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                if (!reader.getName().equals("blocks") || type != NBTReader.TAG_LIST) {
+                    reader.skip(type);
+                    continue;
+                }
+                byte elementType = reader.readListType();
+                int count = reader.readArrayLength();
+                for (int i = 0; i < count; i++) {
+                    if (elementType != NBTReader.TAG_COMPOUND) {
+                        reader.skip(elementType);
+                        continue;
+                    }
+                    byte entryType;
+                    while ((entryType = reader.nextTag()) != NBTReader.TAG_END) {
+                        if (reader.getName().equals("nbt") && entryType == NBTReader.TAG_COMPOUND) {
+                            ByteArrayOutputStream nbt = new ByteArrayOutputStream(256);
+                            reader.copy(entryType, new DataOutputStream(nbt));
+                            return nbt.toByteArray();
+                        }
+                        reader.skip(entryType);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Give a block its block entity data, by placing a structure of just that block.
+     * @param block The block, already set to the block the data belongs to
+     * @param nbt The NBT
+     * @throws IOException If the structure can't be built
+     */
+    static void loadBlockEntity(Block block, byte[] nbt) throws IOException {
+        String state = block.getBlockData().getAsString();
+        int bracket = state.indexOf('[');
+        String name = bracket < 0 ? state : state.substring(0, bracket);
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(nbt.length + 256);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(NBTReader.TAG_COMPOUND);
+            out.writeUTF("");
+            writeDataVersion(out);
+            writeIntList(out, "size", 1, 1, 1);
+            
+            writeListStart(out, "palette", NBTReader.TAG_COMPOUND, 1);
+            writeString(out, "Name", name);
+            if (bracket >= 0) {
+                out.writeByte(NBTReader.TAG_COMPOUND);
+                out.writeUTF("Properties");
+                for (String property : state.substring(bracket + 1, state.length() - 1).split(",")) {
+                    int equals = property.indexOf('=');
+                    writeString(out, property.substring(0, equals), property.substring(equals + 1));
+                }
+                out.writeByte(NBTReader.TAG_END);
+            }
+            out.writeByte(NBTReader.TAG_END);
+            
+            writeListStart(out, "blocks", NBTReader.TAG_COMPOUND, 1);
+            writeIntList(out, "pos", 0, 0, 0);
+            out.writeByte(NBTReader.TAG_INT);
+            out.writeUTF("state");
+            out.writeInt(0);
+            out.writeByte(NBTReader.TAG_COMPOUND);
+            out.writeUTF("nbt");
+            out.write(nbt);
+            out.writeByte(NBTReader.TAG_END);
+            
+            writeListStart(out, "entities", NBTReader.TAG_COMPOUND, 0);
+            out.writeByte(NBTReader.TAG_END);
+        }
+        
+        StructureManager manager = Bukkit.getStructureManager();
+        Structure structure = manager.loadStructure(new ByteArrayInputStream(bytes.toByteArray()));
+        structure.place(block.getLocation(), false, StructureRotation.NONE, Mirror.NONE, 0, 1.0f, RANDOM);
+    }
+    
+    /**
+     * Read every entity whose position is inside a box, other than players.
+     * @param world The world
+     * @param min The minimum corner
+     * @param max The maximum corner
+     * @return The entities
+     */
+    static List<EntityData> readEntities(World world, Vector3 min, Vector3 max) {
+        BoundingBox box = new BoundingBox(min.getX(), min.getY(), min.getZ(), max.getX() + 1, max.getY() + 1, max.getZ() + 1);
+        List<EntityData> entities = new ArrayList<>();
+        for (Entity entity : world.getNearbyEntities(box)) {
+            Location location = entity.getLocation();
+            if (entity instanceof Player || !box.contains(location.getX(), location.getY(), location.getZ())) {
+                continue;
+            }
+            try {
+                byte[] nbt = saveEntity(entity);
+                if (nbt != null) {
+                    entities.add(new EntityData(location.getX(), location.getY(), location.getZ(), nbt));
+                }
+            } catch (IOException | RuntimeException e) {
+                Logger.debug("Could not read entity " + entity.getType() + ": " + e.getMessage());
+            }
+        }
+        return entities;
+    }
+    
+    /**
+     * Read the NBT of an entity, without its position, UUID and passengers.
+     * @param entity The entity
+     * @return The NBT, or null if the entity can't be saved
+     * @throws IOException If the serialized entity can't be read back
+     */
+    @SuppressWarnings("deprecation")
+    static byte[] saveEntity(Entity entity) throws IOException {
+        ByteArrayOutputStream nbt = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(nbt);
+        boolean hasId = false;
+        try (NBTReader reader = gzipReader(Bukkit.getUnsafe().serializeEntity(entity))) {
+            reader.readRoot();
+            byte type;
+            while ((type = reader.nextTag()) != NBTReader.TAG_END) {
+                String name = reader.getName();
+                if (ENTITY_PLACEMENT_TAGS.contains(name)) {
+                    reader.skip(type);
+                    continue;
+                }
+                hasId |= name.equals("id");
+                out.writeByte(type);
+                out.writeUTF(name);
+                reader.copy(type, out);
+            }
+        }
+        out.writeByte(NBTReader.TAG_END);
+        // Entities the server doesn't save, such as ones being removed, come back without an id
+        return hasId ? nbt.toByteArray() : null;
+    }
+    
+    /**
+     * Spawn an entity from its NBT.
+     * @param world The world
+     * @param entity The entity
+     * @return The id of the spawned entity
+     * @throws IOException If the entity can't be built
+     */
+    @SuppressWarnings("deprecation")
+    static UUID spawnEntity(World world, EntityData entity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entity.getNbt().length + 64);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(NBTReader.TAG_COMPOUND);
+            out.writeUTF("");
+            // Ahead of the entity's own entries, so the version it was saved with wins
+            writeDataVersion(out);
+            out.write(entity.getNbt());
+        }
+        
+        Entity spawned = Bukkit.getUnsafe().deserializeEntity(bytes.toByteArray(), world);
+        // Keeps the rotation the entity was saved with
+        Location location = spawned.getLocation();
+        location.setX(entity.getX());
+        location.setY(entity.getY());
+        location.setZ(entity.getZ());
+        spawned.spawnAt(location);
+        return spawned.getUniqueId();
+    }
+    
+    private static NBTReader gzipReader(byte[] bytes) throws IOException {
+        return new NBTReader(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes))));
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static void writeDataVersion(DataOutputStream out) throws IOException {
+        out.writeByte(NBTReader.TAG_INT);
+        out.writeUTF("DataVersion");
+        out.writeInt(Bukkit.getUnsafe().getDataVersion());
+    }
+    
+    private static void writeListStart(DataOutputStream out, String name, byte elementType, int length) throws IOException {
+        out.writeByte(NBTReader.TAG_LIST);
+        out.writeUTF(name);
+        out.writeByte(elementType);
+        out.writeInt(length);
+    }
+    
+    private static void writeIntList(DataOutputStream out, String name, int x, int y, int z) throws IOException {
+        writeListStart(out, name, NBTReader.TAG_INT, 3);
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeInt(z);
+    }
+    
+    private static void writeString(DataOutputStream out, String name, String value) throws IOException {
+        out.writeByte(NBTReader.TAG_STRING);
+        out.writeUTF(name);
+        out.writeUTF(value);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,70 @@
+package org.frizzlenpop.frizzlenEdit.world;
+
+/**
+ * An entity as a position and its NBT, apart from any world. The NBT is the entries of a
+ * compound followed by its end tag, without the entity's position or UUID, which are given
+ * again wherever it is placed. Immutable.
+ */
+public final class EntityData {
+    private final double x;
+    private final double y;
+    private final double z;
+    private final byte[] nbt;
+    
+    /**
+     * Create an entity.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @param nbt The NBT, which must not be changed afterwards
+     */
+    public EntityData(double x, double y, double z, byte[] nbt) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.nbt = nbt;
+    }
+    
+    /**
+     * Get the X coordinate.
+     * @return The X coordinate
+     */
+    public double getX() {
+        return x;
+    }
+    
+    /**
+     * Get the Y coordinate.
+     * @return The Y coordinate
+     */
+    public double getY() {
+        return y;
+    }
+    
+    /**
+     * Get the Z coordinate.
+     * @return The Z coordinate
+     */
+    public double getZ() {
+        return z;
+    }
+    
+    /**
+     * Get the NBT.
+     * @return The NBT, which must not be changed
+     */
+    public byte[] getNbt() {
+        return nbt;
+    }
+    
+    /**
+     * Get the same entity at another position.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The entity
+     */
+    public EntityData withPosition(double x, double y, double z) {
+        return new EntityData(x, y, z, nbt);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,191 @@
+package org.frizzlenpop.frizzlenEdit.world;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Something blocks can be read from and written to by coordinates, such as a Bukkit world
+ * or a world that only exists in memory. Operations, brushes and clipboards go through an
+ * extent instead of the world, so they can run without a server.
+ */
+public interface Extent {
+    // Blocks along each side of a chunk section
+    int SECTION_SIZE = 16;
+    
+    /**
+     * Get the name of this extent.
+     * @return The name
+     */
+    String getName();
+    
+    /**
+     * Get the lowest Y coordinate blocks can be placed at.
+     * @return The minimum Y coordinate
+     */
+    int getMinY();
+    
+    /**
+     * Get the Y coordinate above the highest block that can be placed.
+     * @return The maximum Y coordinate (exclusive)
+     */
+    int getMaxY();
+    
+    /**
+     * Get the block at a position.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The block data
+     */
+    BlockData getBlock(int x, int y, int z);
+    
+    /**
+     * Set the block at a position.
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @param data The block data
+     * @return False if the position is outside the extent
+     */
+    boolean setBlock(int x, int y, int z, BlockData data);
+    
+    /**
+     * Get the block at a position.
+     * @param position The position
+     * @return The block data
+     */
+    default BlockData getBlock(Vector3 position) {
+        return getBlock(position.getX(), position.getY(), position.getZ());
+    }
+    
+    /**
+     * Set the block at a position.
+     * @param position The position
+     * @param data The block data
+     * @return False if the position is outside the extent
+     */
+    default boolean setBlock(Vector3 position, BlockData data) {
+        return setBlock(position.getX(), position.getY(), position.getZ(), data);
+    }
+    
+    /**
+     * Read all blocks in a box at once.
+     * @param min The minimum corner
+     * @param max The maximum corner
+     * @return The blocks, in y, z, x order
+     */
+    default BlockData[] getBlocks(Vector3 min, Vector3 max) {
+        int width = max.getX() - min.getX() + 1;
+        int height = max.getY() - min.getY() + 1;
+        int length = max.getZ() - min.getZ() + 1;
+        BlockData[] blocks = new BlockData[width * height * length];
+        
+        int i = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    blocks[i++] = getBlock(x, y, z);
+                }
+            }
+        }
+        return blocks;
+    }
+    
+    /**
+     * Read the 16x16x16 chunk section at section coordinates.
+     * @param sectionX The section X coordinate (block X >> 4)
+     * @param sectionY The section Y coordinate (block Y >> 4)
+     * @param sectionZ The section Z coordinate (block Z >> 4)
+     * @return The 4096 blocks of the section, in y, z, x order
+     */
+    default BlockData[] getSection(int sectionX, int sectionY, int sectionZ) {
+        Vector3 min = new Vector3(sectionX * SECTION_SIZE, sectionY * SECTION_SIZE, sectionZ * SECTION_SIZE);
+        Vector3 max = min.add(new Vector3(SECTION_SIZE - 1, SECTION_SIZE - 1, SECTION_SIZE - 1));
+        return getBlocks(min, max);
+    }
+    
+    /**
+     * Get the block entities in a box, such as the items in chests and the text on signs.
+     * Only positions that have one are returned.
+     * @param min The minimum corner
+     * @param max The maximum corner
+     * @return The NBT of each block entity, as the entries of a compound followed by its
+     *         end tag, by position; empty if the extent keeps no block entities
+     */
+    default Map<Vector3, byte[]> getBlockEntities(Vector3 min, Vector3 max) {
+        return Collections.emptyMap();
+    }
+    
+    /**
+     * Give the block at a position the block entity data it had when it was read. The block
+     * itself must already be set.
+     * @param position The position
+     * @param nbt The NBT, as returned by {@link #getBlockEntities}
+     * @return False if the extent keeps no block entities or the data could not be applied
+     */
+    default boolean setBlockEntity(Vector3 position, byte[] nbt) {
+        return false;
+    }
+    
+    /**
+     * Get the entities in a box, other than players.
+     * @param min The minimum corner
+     * @param max The maximum corner
+     * @return The entities whose position is inside the box; empty if the extent keeps no entities
+     */
+    default List<EntityData> getEntities(Vector3 min, Vector3 max) {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * Add an entity at its position.
+     * @param entity The entity
+     * @return The id the entity was given, or null if the extent keeps no entities or the
+     *         entity could not be added
+     */
+    default UUID addEntity(EntityData entity) {
+        return null;
+    }
+    
+    /**
+     * Remove an entity added through {@link #addEntity}.
+     * @param id The id it was given
+     * @return False if it no longer exists or the extent keeps no entities
+     */
+    default boolean removeEntity(UUID id) {
+        return false;
+    }
+    
+    /**
+     * Start keeping the block entity of each block this extent overwrites, until it is
+     * taken with {@link #takeReplacedBlockEntity}. History entries turn this on for the
+     * extent their operation writes through, so undo can bring back chest contents and
+     * sign text. Does nothing if the extent keeps no block entities.
+     */
+    default void keepReplacedBlockEntities() {
+    }
+    
+    /**
+     * Get and forget the block entity that was at a position before a block was set there.
+     * @param position The position
+     * @return The NBT, as returned by {@link #getBlockEntities}, or null if the block that
+     *         was replaced had none or replaced block entities aren't being kept
+     */
+    default byte[] takeReplacedBlockEntity(Vector3 position) {
+        return null;
+    }
+    
+    /**
+     * Get the Bukkit world behind this extent.
+     * @return The world, or null if the extent isn't backed by one
+     */
+    default World getWorld() {
+        return null;
+    }
+} 
\ No newline at end of file
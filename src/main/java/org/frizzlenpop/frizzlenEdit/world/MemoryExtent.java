@@ -0,0 +1,249 @@
+package org.frizzlenpop.frizzlenEdit.world;
+
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.frizzlenpop.frizzlenEdit.utils.MemoryEstimates;
+import org.frizzlenpop.frizzlenEdit.utils.Vector3;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An extent that only exists in memory. Blocks are stored per 16x16x16 section as indices
+ * into a palette shared by the whole extent, and sections that were never written are air.
+ * Not thread-safe.
+ */
+public class MemoryExtent implements Extent {
+    // Number of blocks in a section
+    private static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+    
+    private final String name;
+    private final int minY;
+    private final int maxY;
+    
+    // Palette of every block state used; index 0 is always air
+    private final List<BlockData> palette = new ArrayList<>();
+    private final Map<BlockData, Integer> paletteIds = new HashMap<>();
+    
+    // Section key -> palette index of each block, in y, z, x order
+    private final Map<Long, char[]> sections = new HashMap<>();
+    
+    // Block entity NBT by position, and entities by the id they were given
+    private final Map<Vector3, byte[]> blockEntities = new HashMap<>();
+    private final Map<UUID, EntityData> entities = new LinkedHashMap<>();
+    
+    // Block entities overwritten since keeping them started, until taken; null when not kept
+    private Map<Vector3, byte[]> replacedBlockEntities;
+    
+    /**
+     * Create an empty extent with the height range of an overworld.
+     * @param name The name of the extent
+     */
+    public MemoryExtent(String name) {
+        this(name, -64, 320);
+    }
+    
+    /**
+     * Create an empty extent.
+     * @param name The name of the extent
+     * @param minY The lowest Y coordinate
+     * @param maxY The Y coordinate above the highest block (exclusive)
+     */
+    public MemoryExtent(String name, int minY, int maxY) {
+        this.name = name;
+        this.minY = minY;
+        this.maxY = maxY;
+        getPaletteId(Material.AIR.createBlockData());
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public int getMinY() {
+        return minY;
+    }
+    
+    @Override
+    public int getMaxY() {
+        return maxY;
+    }
+    
+    @Override
+    public BlockData getBlock(int x, int y, int z) {
+        char[] section = sections.get(sectionKey(x >> 4, y >> 4, z >> 4));
+        if (section == null) {
+            return palette.get(0);
+        }
+        return palette.get(section[index(x, y, z)]);
+    }
+    
+    @Override
+    public boolean setBlock(int x, int y, int z, BlockData data) {
+        if (y < minY || y >= maxY) {
+            return false;
+        }
+        
+        // Setting a block replaces its block entity
+        if (!blockEntities.isEmpty()) {
+            Vector3 position = new Vector3(x, y, z);
+            byte[] replaced = blockEntities.remove(position);
+            if (replaced != null && replacedBlockEntities != null) {
+                replacedBlockEntities.putIfAbsent(position, replaced);
+            }
+        }
+        
+        int id = getPaletteId(data);
+        long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        char[] section = sections.get(key);
+        if (section == null) {
+            // Don't allocate a section just to write air into it
+            if (id == 0) {
+                return true;
+            }
+            section = new char[SECTION_VOLUME];
+            sections.put(key, section);
+        }
+        section[index(x, y, z)] = (char) id;
+        return true;
+    }
+    
+    @Override
+    public BlockData[] getSection(int sectionX, int sectionY, int sectionZ) {
+        BlockData[] blocks = new BlockData[SECTION_VOLUME];
+        char[] section = sections.get(sectionKey(sectionX, sectionY, sectionZ));
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            blocks[i] = palette.get(section == null ? 0 : section[i]);
+        }
+        return blocks;
+    }
+    
+    @Override
+    public Map<Vector3, byte[]> getBlockEntities(Vector3 min, Vector3 max) {
+        Map<Vector3, byte[]> found = new HashMap<>();
+        blockEntities.forEach((position, nbt) -> {
+            if (position.getX() >= min.getX() && position.getY() >= min.getY() && position.getZ() >= min.getZ() &&
+                position.getX() <= max.getX() && position.getY() <= max.getY() && position.getZ() <= max.getZ()) {
+                found.put(position, nbt);
+            }
+        });
+        return found;
+    }
+    
+    @Override
+    public boolean setBlockEntity(Vector3 position, byte[] nbt) {
+        if (position.getY() < minY || position.getY() >= maxY) {
+            return false;
+        }
+        blockEntities.put(position, nbt);
+        return true;
+    }
+    
+    @Override
+    public void keepReplacedBlockEntities() {
+        if (replacedBlockEntities == null) {
+            replacedBlockEntities = new HashMap<>();
+        }
+    }
+    
+    @Override
+    public byte[] takeReplacedBlockEntity(Vector3 position) {
+        if (replacedBlockEntities == null || replacedBlockEntities.isEmpty()) {
+            return null;
+        }
+        return replacedBlockEntities.remove(position);
+    }
+    
+    @Override
+    public List<EntityData> getEntities(Vector3 min, Vector3 max) {
+        List<EntityData> found = new ArrayList<>();
+        for (EntityData entity : entities.values()) {
+            if (entity.getX() >= min.getX() && entity.getY() >= min.getY() && entity.getZ() >= min.getZ() &&
+                entity.getX() < max.getX() + 1 && entity.getY() < max.getY() + 1 && entity.getZ() < max.getZ() + 1) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+    
+    @Override
+    public UUID addEntity(EntityData entity) {
+        UUID id = UUID.randomUUID();
+        entities.put(id, entity);
+        return id;
+    }
+    
+    @Override
+    public boolean removeEntity(UUID id) {
+        return entities.remove(id) != null;
+    }
+    
+    /**
+     * Remove every block, block entity and entity, leaving the extent empty.
+     */
+    public void clear() {
+        sections.clear();
+        blockEntities.clear();
+        entities.clear();
+        if (replacedBlockEntities != null) {
+            replacedBlockEntities.clear();
+        }
+    }
+    
+    /**
+     * Get the number of sections that hold blocks.
+     * @return The number of sections
+     */
+    public int getSectionCount() {
+        return sections.size();
+    }
+    
+    /**
+     * Get the number of distinct block states used.
+     * @return The palette size
+     */
+    public int getPaletteSize() {
+        return palette.size();
+    }
+    
+    /**
+     * Estimate the memory held by this extent.
+     * @return The estimated size in bytes
+     */
+    public long estimateMemoryBytes() {
+        long sectionBytes = MemoryEstimates.HASH_MAP_ENTRY + 16 + SECTION_VOLUME * 2L;
+        return sections.size() * sectionBytes + palette.size() * (MemoryEstimates.HASH_MAP_ENTRY + MemoryEstimates.BLOCK_DATA);
+    }
+    
+    /**
+     * Get the palette index of a block state, adding it to the palette if needed.
+     * @param data The block data
+     * @return The palette index
+     */
+    private int getPaletteId(BlockData data) {
+        Integer id = paletteIds.get(data);
+        if (id == null) {
+            if (palette.size() > Character.MAX_VALUE) {
+                throw new IllegalStateException("Too many block states in extent " + name);
+            }
+            id = palette.size();
+            palette.add(data);
+            paletteIds.put(data, id);
+        }
+        return id;
+    }
+    
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+    
+    private static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((long) sectionX & 0x3FFFFF) << 42 | ((long) sectionZ & 0x3FFFFF) << 20 | (sectionY & 0xFFFFF);
+    }
+} 
\ No newline at end of file